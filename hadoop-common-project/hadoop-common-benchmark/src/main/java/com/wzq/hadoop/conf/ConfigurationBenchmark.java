@@ -0,0 +1,71 @@
+package com.wzq.hadoop.conf;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在内层循环中读取配置：{@link Configuration}与{@link ConfigurationSnapshot}的对比，以及加载默认资源的开销
+ * <p>
+ * {@link #configuration()} and {@link #snapshot()} read one int, one long, one boolean and one class,
+ * like a task's per-record code would. {@link #expand()} reads a value with nested variable
+ * references. {@link #copy()} clones the configuration for a task and overrides one value.
+ * {@link #load()} creates a configuration and parses core-default.xml.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigurationBenchmark {
+
+    private Configuration conf;
+    private ConfigurationSnapshot snapshot;
+
+    @Setup
+    public void setup() {
+        conf = new Configuration();
+        conf.setInt("bench.int", 4096);
+        conf.setLong("bench.long", 1L << 32);
+        conf.setBoolean("bench.boolean", true);
+        conf.set("bench.class", String.class.getName());
+        conf.set("bench.dir", "${hadoop.tmp.dir}/bench/${bench.int}");
+        snapshot = conf.snapshot();
+    }
+
+    @Benchmark
+    public long configuration() {
+        long sum = conf.getInt("bench.int", 0) + conf.getLong("bench.long", 0L);
+        if (conf.getBoolean("bench.boolean", false)) {
+            sum++;
+        }
+        return sum + conf.getClass("bench.class", null).hashCode();
+    }
+
+    @Benchmark
+    public long snapshot() {
+        long sum = snapshot.getInt("bench.int", 0) + snapshot.getLong("bench.long", 0L);
+        if (snapshot.getBoolean("bench.boolean", false)) {
+            sum++;
+        }
+        return sum + snapshot.getClass("bench.class", null).hashCode();
+    }
+
+    @Benchmark
+    public String expand() {
+        return conf.get("bench.dir");
+    }
+
+    @Benchmark
+    public int copy() {
+        Configuration copy = new Configuration(conf);
+        copy.setInt("bench.task", 1);
+        return copy.getInt("bench.int", 0);
+    }
+
+    @Benchmark
+    public int load() {
+        return new Configuration().size();
+    }
+}
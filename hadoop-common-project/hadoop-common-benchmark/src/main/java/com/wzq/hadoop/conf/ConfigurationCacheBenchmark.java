@@ -0,0 +1,52 @@
+package com.wzq.hadoop.conf;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 创建Configuration并加载默认资源：解析XML与读取{@link ConfigurationCache}的对比
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConfigurationCacheBenchmark {
+
+    @Param({"false", "true"})
+    private boolean cached;
+
+    private File dir;
+
+    @Setup
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("conf-cache-benchmark").toFile();
+        if (cached) {
+            System.setProperty(ConfigurationCache.CACHE_DIR_PROPERTY, dir.getPath());
+        } else {
+            System.clearProperty(ConfigurationCache.CACHE_DIR_PROPERTY);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.clearProperty(ConfigurationCache.CACHE_DIR_PROPERTY);
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public int load() {
+        return new Configuration().size();
+    }
+}
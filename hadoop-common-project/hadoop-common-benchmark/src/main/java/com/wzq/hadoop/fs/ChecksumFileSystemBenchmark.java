@@ -0,0 +1,86 @@
+package com.wzq.hadoop.fs;
+
+import com.wzq.hadoop.conf.Configuration;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写入与顺序读取一个8MB文件的吞吐量：原始的本地文件系统与带校验和的本地文件系统的对比
+ * <p>
+ * {@code checksum} is {@code RAW} for {@link RawLocalFileSystem}, or the
+ * {@link ChecksumFileSystem#CHECKSUM_TYPE_KEY} of a {@link LocalFileSystem}. Reads and writes go
+ * through 64KB arrays, as a SequenceFile or codec stream would issue them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChecksumFileSystemBenchmark {
+
+    private static final int FILE_SIZE = 8 << 20;
+
+    @Param({"RAW", "CRC32C", "CRC32"})
+    private String checksum;
+
+    private FileSystem fs;
+    private Path dir;
+    private Path readFile;
+    private Path writeFile;
+    private byte[] buffer;
+
+    @Setup
+    public void setup() throws IOException {
+        Configuration conf = new Configuration();
+        LocalFileSystem local = FileSystem.getLocal(conf);
+        if ("RAW".equals(checksum)) {
+            fs = local.getRawFileSystem();
+        } else {
+            conf.set(ChecksumFileSystem.CHECKSUM_TYPE_KEY, checksum);
+            fs = FileSystem.getLocal(conf);
+        }
+        dir = new Path(Files.createTempDirectory("checksum-benchmark").toString());
+        readFile = new Path(dir, "read");
+        writeFile = new Path(dir, "write");
+        buffer = new byte[64 * 1024];
+        new Random(0).nextBytes(buffer);
+        write(readFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fs.delete(dir, true);
+    }
+
+    private long write(Path file) throws IOException {
+        FSDataOutputStream out = fs.create(file);
+        for (int written = 0; written < FILE_SIZE; written += buffer.length) {
+            out.write(buffer, 0, buffer.length);
+        }
+        long length = out.getPos();
+        out.close();
+        return length;
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        return write(writeFile);
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        long total = 0;
+        try (FSDataInputStream in = fs.open(readFile)) {
+            int n;
+            while ((n = in.read(buffer, 0, buffer.length)) > 0) {
+                total += n;
+            }
+        }
+        return total;
+    }
+}
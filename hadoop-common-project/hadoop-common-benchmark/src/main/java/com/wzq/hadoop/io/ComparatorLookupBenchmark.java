@@ -0,0 +1,33 @@
+package com.wzq.hadoop.io;
+
+import com.wzq.hadoop.io.basic.IntWritable;
+import com.wzq.hadoop.io.basic.Text;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 多个排序线程同时调用{@link WritableComparator#get(Class)}的吞吐量
+ * <p>
+ * Run with {@code -t} to change the number of threads; the registry must not serialize them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ComparatorLookupBenchmark {
+
+    @Benchmark
+    public WritableComparator getRegistered() {
+        return WritableComparator.get(Text.class);
+    }
+
+    @Benchmark
+    public WritableComparator getMixed() {
+        WritableComparator.get(Text.class);
+        return WritableComparator.get(IntWritable.class);
+    }
+}
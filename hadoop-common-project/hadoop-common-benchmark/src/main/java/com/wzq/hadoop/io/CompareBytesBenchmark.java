@@ -0,0 +1,47 @@
+package com.wzq.hadoop.io;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WritableComparator#compareBytes}(每次8字节)与逐字节比较的吞吐量
+ * <p>
+ * The two keys share everything but the last byte, so every comparison scans the whole key.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompareBytesBenchmark {
+
+    @Param({"4", "16", "64", "256", "1024", "4096"})
+    private int keyLength;
+
+    private final FastByteComparisons.Comparer<byte[]> pureJava =
+            FastByteComparisons.lexicographicalComparerJavaImpl();
+
+    private byte[] key1;
+    private byte[] key2;
+
+    @Setup
+    public void setup() {
+        key1 = new byte[keyLength];
+        new Random(keyLength).nextBytes(key1);
+        key2 = key1.clone();
+        key2[keyLength - 1]++;
+    }
+
+    @Benchmark
+    public int compareBytes() {
+        return WritableComparator.compareBytes(key1, 0, keyLength, key2, 0, keyLength);
+    }
+
+    @Benchmark
+    public int pureJava() {
+        return pureJava.compareTo(key1, 0, keyLength, key2, 0, keyLength);
+    }
+}
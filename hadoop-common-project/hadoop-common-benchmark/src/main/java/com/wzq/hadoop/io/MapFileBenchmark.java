@@ -0,0 +1,73 @@
+package com.wzq.hadoop.io;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.FileSystem;
+import com.wzq.hadoop.fs.Path;
+import com.wzq.hadoop.io.basic.LongWritable;
+import com.wzq.hadoop.io.basic.Text;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MapFile随机点查的吞吐量，按索引间隔
+ * <p>
+ * The map holds {@value #RECORDS} LongWritable/Text records; every operation is one {@code get} of a
+ * random key, half of which are absent.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MapFileBenchmark {
+
+    private static final int RECORDS = 100000;
+
+    @Param({"32", "128"})
+    private int indexInterval;
+
+    private FileSystem fs;
+    private Path dir;
+    private MapFile.Reader reader;
+
+    private final Random random = new Random(42);
+    private final LongWritable key = new LongWritable();
+    private final Text value = new Text();
+
+    @Setup
+    public void setup() throws IOException {
+        Configuration conf = new Configuration();
+        conf.setInt(MapFile.INDEX_INTERVAL_KEY, indexInterval);
+        fs = FileSystem.getLocal(conf);
+        dir = new Path(Files.createTempDirectory("map-file-benchmark").toString());
+        String mapDir = new Path(dir, "test.map").toString();
+
+        // 只写偶数key，奇数key查不到
+        MapFile.Writer writer = new MapFile.Writer(conf, fs, mapDir, LongWritable.class, Text.class);
+        for (int i = 0; i < RECORDS; i++) {
+            key.set(i * 2L);
+            value.set("value-" + i);
+            writer.append(key, value);
+        }
+        writer.close();
+
+        reader = new MapFile.Reader(fs, mapDir, conf);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        reader.close();
+        fs.delete(dir, true);
+    }
+
+    @Benchmark
+    public Writable get() throws IOException {
+        key.set(random.nextInt(RECORDS * 2));
+        return reader.get(key, value);
+    }
+}
@@ -0,0 +1,97 @@
+package com.wzq.hadoop.io;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.FileSystem;
+import com.wzq.hadoop.fs.Path;
+import com.wzq.hadoop.io.basic.LongWritable;
+import com.wzq.hadoop.io.basic.Text;
+import com.wzq.hadoop.io.compress.CompressionCodec;
+import com.wzq.hadoop.io.compress.DefaultCodec;
+import com.wzq.hadoop.util.ReflectionUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SequenceFile写入与顺序读取的吞吐量，一次操作是整个文件，按value大小与压缩方式（DefaultCodec）
+ * <p>
+ * Every file holds {@value #RECORDS} LongWritable/Text records with values of {@code valueSize} bytes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SequenceFileBenchmark {
+
+    private static final int RECORDS = 10000;
+
+    @Param({"16", "256"})
+    private int valueSize;
+
+    @Param({"NONE", "RECORD", "BLOCK"})
+    private SequenceFile.CompressionType compression;
+
+    private Configuration conf;
+    private FileSystem fs;
+    private Path dir;
+    private Path readFile;
+    private Path writeFile;
+    private CompressionCodec codec;
+
+    private final LongWritable key = new LongWritable();
+    private Text value;
+
+    @Setup
+    public void setup() throws IOException {
+        conf = new Configuration();
+        fs = FileSystem.getLocal(conf);
+        codec = ReflectionUtils.newInstance(DefaultCodec.class, conf);
+        dir = new Path(Files.createTempDirectory("sequence-file-benchmark").toString());
+        readFile = new Path(dir, "read.seq");
+        writeFile = new Path(dir, "write.seq");
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < valueSize; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+        value = new Text(sb.toString());
+        write(readFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fs.delete(dir, true);
+    }
+
+    private long write(Path file) throws IOException {
+        SequenceFile.Writer writer = SequenceFile.createWriter(fs, conf, file, LongWritable.class, Text.class,
+                compression, codec);
+        for (int i = 0; i < RECORDS; i++) {
+            key.set(i);
+            writer.append(key, value);
+        }
+        long length = writer.getLength();
+        writer.close();
+        return length;
+    }
+
+    @Benchmark
+    public long write() throws IOException {
+        return write(writeFile);
+    }
+
+    @Benchmark
+    public long read() throws IOException {
+        SequenceFile.Reader reader = new SequenceFile.Reader(fs, readFile, conf);
+        long sum = 0;
+        while (reader.next(key, value)) {
+            sum += key.get();
+        }
+        reader.close();
+        return sum;
+    }
+}
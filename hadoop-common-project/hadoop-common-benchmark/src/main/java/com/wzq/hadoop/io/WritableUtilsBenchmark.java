@@ -0,0 +1,70 @@
+package com.wzq.hadoop.io;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link WritableUtils#writeVInt} / {@link WritableUtils#readVLong} 的吞吐量
+ * <p>
+ * The values cover the 1, 2, 5 and 9 byte encodings. {@link WritableUtils#writeVInt} runs in
+ * {@link VInt} with its own int-range values, so every row measures the value its label shows.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WritableUtilsBenchmark {
+
+    @Param({"100", "200", "2000000000", "9000000000000000000"})
+    private long value;
+
+    private final DataOutputBuffer out = new DataOutputBuffer();
+    private final DataInputBuffer in = new DataInputBuffer();
+
+    private byte[] serialized;
+    private int serializedLength;
+
+    @Setup
+    public void setup() throws IOException {
+        DataOutputBuffer buffer = new DataOutputBuffer();
+        WritableUtils.writeVLong(buffer, value);
+        serialized = buffer.getData();
+        serializedLength = buffer.getLength();
+    }
+
+    @Benchmark
+    public DataOutputBuffer writeVLong() throws IOException {
+        out.reset();
+        WritableUtils.writeVLong(out, value);
+        return out;
+    }
+
+    @Benchmark
+    public long readVLong() throws IOException {
+        in.reset(serialized, serializedLength);
+        return WritableUtils.readVLong(in);
+    }
+
+    /**
+     * writeVInt只接受int，用int范围内的值覆盖1、2、5字节的编码
+     */
+    @State(Scope.Thread)
+    public static class VInt {
+
+        @Param({"100", "200", "2000000000"})
+        private int value;
+
+        private final DataOutputBuffer out = new DataOutputBuffer();
+
+        @Benchmark
+        public DataOutputBuffer writeVInt() throws IOException {
+            out.reset();
+            WritableUtils.writeVInt(out, value);
+            return out;
+        }
+    }
+}
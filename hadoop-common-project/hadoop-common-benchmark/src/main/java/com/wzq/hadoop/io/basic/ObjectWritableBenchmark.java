@@ -0,0 +1,85 @@
+package com.wzq.hadoop.io.basic;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.io.DataInputBuffer;
+import com.wzq.hadoop.io.DataOutputBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ObjectWritable#writeObject} / {@link ObjectWritable#readObject} 的吞吐量
+ * <p>
+ * Every record carries its class names, so this shows the price of the polymorphic format
+ * compared to {@link TextBenchmark}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ObjectWritableBenchmark {
+
+    @Param({"16", "256", "4096"})
+    private int recordSize;
+
+    private final Configuration conf = new Configuration(false);
+    private final DataOutputBuffer out = new DataOutputBuffer();
+    private final DataInputBuffer in = new DataInputBuffer();
+    private final ObjectWritable target = new ObjectWritable();
+
+    private Text text;
+    private String string;
+
+    private byte[] serializedText;
+    private int serializedTextLength;
+    private byte[] serializedString;
+    private int serializedStringLength;
+
+    @Setup
+    public void setup() throws IOException {
+        char[] chars = new char[recordSize];
+        Arrays.fill(chars, 'x');
+        string = new String(chars);
+        text = new Text(string);
+
+        DataOutputBuffer buffer = new DataOutputBuffer();
+        ObjectWritable.writeObject(buffer, text, Text.class, conf);
+        serializedText = Arrays.copyOf(buffer.getData(), buffer.getLength());
+        serializedTextLength = buffer.getLength();
+
+        buffer.reset();
+        ObjectWritable.writeObject(buffer, string, String.class, conf);
+        serializedString = Arrays.copyOf(buffer.getData(), buffer.getLength());
+        serializedStringLength = buffer.getLength();
+    }
+
+    @Benchmark
+    public DataOutputBuffer writeWritable() throws IOException {
+        out.reset();
+        ObjectWritable.writeObject(out, text, Text.class, conf);
+        return out;
+    }
+
+    @Benchmark
+    public Object readWritable() throws IOException {
+        in.reset(serializedText, serializedTextLength);
+        return ObjectWritable.readObject(in, target, conf);
+    }
+
+    @Benchmark
+    public DataOutputBuffer writeString() throws IOException {
+        out.reset();
+        ObjectWritable.writeObject(out, string, String.class, conf);
+        return out;
+    }
+
+    @Benchmark
+    public Object readString() throws IOException {
+        in.reset(serializedString, serializedStringLength);
+        return ObjectWritable.readObject(in, target, conf);
+    }
+}
@@ -0,0 +1,70 @@
+package com.wzq.hadoop.io.basic;
+
+import com.wzq.hadoop.io.DataInputBuffer;
+import com.wzq.hadoop.io.DataOutputBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link IntWritable}, {@link LongWritable}, {@link VIntWritable} 序列化 + 反序列化的吞吐量
+ * <p>
+ * {@code value} decides how many bytes the variable-length encoding needs (1, 3 and 5 bytes),
+ * the fixed-length types are measured with the same values for comparison.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PrimitiveWritableBenchmark {
+
+    @Param({"100", "100000", "1000000000"})
+    private int value;
+
+    private final DataOutputBuffer out = new DataOutputBuffer();
+    private final DataInputBuffer in = new DataInputBuffer();
+
+    private final IntWritable intWritable = new IntWritable();
+    private final IntWritable intCopy = new IntWritable();
+    private final LongWritable longWritable = new LongWritable();
+    private final LongWritable longCopy = new LongWritable();
+    private final VIntWritable vintWritable = new VIntWritable();
+    private final VIntWritable vintCopy = new VIntWritable();
+
+    @Setup
+    public void setup() {
+        intWritable.set(value);
+        longWritable.set(value);
+        vintWritable.set(value);
+    }
+
+    @Benchmark
+    public IntWritable intRoundTrip() throws IOException {
+        out.reset();
+        intWritable.write(out);
+        in.reset(out.getData(), out.getLength());
+        intCopy.readFields(in);
+        return intCopy;
+    }
+
+    @Benchmark
+    public LongWritable longRoundTrip() throws IOException {
+        out.reset();
+        longWritable.write(out);
+        in.reset(out.getData(), out.getLength());
+        longCopy.readFields(in);
+        return longCopy;
+    }
+
+    @Benchmark
+    public VIntWritable vintRoundTrip() throws IOException {
+        out.reset();
+        vintWritable.write(out);
+        in.reset(out.getData(), out.getLength());
+        vintCopy.readFields(in);
+        return vintCopy;
+    }
+}
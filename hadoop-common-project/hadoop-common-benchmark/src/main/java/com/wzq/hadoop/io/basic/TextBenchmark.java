@@ -0,0 +1,76 @@
+package com.wzq.hadoop.io.basic;
+
+import com.wzq.hadoop.io.DataInputBuffer;
+import com.wzq.hadoop.io.DataOutputBuffer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Text#write(java.io.DataOutput)} / {@link Text#readFields(java.io.DataInput)} 的吞吐量
+ * <p>
+ * Run with {@code -prof gc} to see the allocation rate per record size.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TextBenchmark {
+
+    /**
+     * Number of UTF-8 bytes in the serialized text, excluding the vint length prefix.
+     */
+    @Param({"16", "256", "4096"})
+    private int recordSize;
+
+    private final DataOutputBuffer out = new DataOutputBuffer();
+    private final DataInputBuffer in = new DataInputBuffer();
+
+    private Text text;
+    private Text copy;
+    private byte[] serialized;
+    private int serializedLength;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[] utf8 = new byte[recordSize];
+        Random random = new Random(recordSize);
+        for (int i = 0; i < utf8.length; i++) {
+            utf8[i] = (byte) ('a' + random.nextInt(26));
+        }
+        text = new Text(utf8);
+        copy = new Text();
+
+        DataOutputBuffer buffer = new DataOutputBuffer();
+        text.write(buffer);
+        serialized = buffer.getData();
+        serializedLength = buffer.getLength();
+    }
+
+    @Benchmark
+    public DataOutputBuffer write() throws IOException {
+        out.reset();
+        text.write(out);
+        return out;
+    }
+
+    @Benchmark
+    public Text readFields() throws IOException {
+        in.reset(serialized, serializedLength);
+        copy.readFields(in);
+        return copy;
+    }
+
+    @Benchmark
+    public Text roundTrip() throws IOException {
+        out.reset();
+        text.write(out);
+        in.reset(out.getData(), out.getLength());
+        copy.readFields(in);
+        return copy;
+    }
+}
@@ -0,0 +1,73 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.io.DataOutputBuffer;
+import com.wzq.hadoop.util.ReflectionUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压缩一个小的数据块时，每次新建压缩器与从CodecPool借出压缩器的对比
+ * <p>
+ * Each invocation compresses a {@code payloadSize}-byte record, which is the case SequenceFile's
+ * record compression and short-lived streams hit: allocating the Deflater dominates the work.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecPoolBenchmark {
+
+    @Param({"1024", "65536"})
+    private int payloadSize;
+
+    private Configuration conf;
+    private CompressionCodec codec;
+    private byte[] payload;
+    private DataOutputBuffer buffer;
+
+    @Setup
+    public void setup() {
+        conf = new Configuration();
+        codec = ReflectionUtils.newInstance(DefaultCodec.class, conf);
+        payload = new byte[payloadSize];
+        Random random = new Random(0);
+        for (int i = 0; i < payloadSize; i++) {
+            payload[i] = (byte) ('a' + random.nextInt(8));
+        }
+        buffer = new DataOutputBuffer();
+    }
+
+    @Benchmark
+    public int newCompressor() throws IOException {
+        Compressor compressor = codec.createCompressor();
+        try {
+            return compress(compressor);
+        } finally {
+            compressor.end();
+        }
+    }
+
+    @Benchmark
+    public int pooledCompressor() throws IOException {
+        Compressor compressor = CodecPool.getCompressor(codec, conf);
+        try {
+            return compress(compressor);
+        } finally {
+            CodecPool.returnCompressor(compressor);
+        }
+    }
+
+    private int compress(Compressor compressor) throws IOException {
+        buffer.reset();
+        CompressionOutputStream out = codec.createOutputStream(buffer, compressor);
+        out.write(payload, 0, payload.length);
+        out.finish();
+        return buffer.getLength();
+    }
+}
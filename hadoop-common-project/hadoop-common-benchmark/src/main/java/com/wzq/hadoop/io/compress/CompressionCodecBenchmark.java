@@ -0,0 +1,89 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.io.DataOutputBuffer;
+import com.wzq.hadoop.util.ReflectionUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各个编解码器压缩与解压缩的吞吐量
+ * <p>
+ * Each invocation compresses or decompresses {@value #SIZE} bytes of text-like data, so
+ * ops/s * 4 is the throughput in MB/s. The (de)compressors are leased once and reused.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionCodecBenchmark {
+
+    private static final int SIZE = 4 << 20;
+
+    @Param({"DefaultCodec", "Lz4Codec", "SnappyCodec"})
+    private String codecName;
+
+    private CompressionCodec codec;
+    private Compressor compressor;
+    private Decompressor decompressor;
+    private byte[] data;
+    private byte[] compressed;
+    private byte[] readBuffer;
+    private DataOutputBuffer buffer;
+
+    @Setup
+    public void setup() throws Exception {
+        Configuration conf = new Configuration();
+        codec = ReflectionUtils.newInstance(
+                conf.getClassByName("com.wzq.hadoop.io.compress." + codecName).asSubclass(CompressionCodec.class), conf);
+        compressor = CodecPool.getCompressor(codec, conf);
+        decompressor = CodecPool.getDecompressor(codec);
+
+        String[] words = {"hadoop", "sequence", "file", "codec", "block", "record", "key", "value"};
+        Random random = new Random(0);
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < SIZE) {
+            sb.append(words[random.nextInt(words.length)]).append(random.nextInt(10000)).append(' ');
+        }
+        data = sb.substring(0, SIZE).getBytes();
+        buffer = new DataOutputBuffer(SIZE);
+        compress();
+        compressed = Arrays.copyOf(buffer.getData(), buffer.getLength());
+        readBuffer = new byte[64 * 1024];
+    }
+
+    @TearDown
+    public void tearDown() {
+        CodecPool.returnCompressor(compressor);
+        CodecPool.returnDecompressor(decompressor);
+    }
+
+    @Benchmark
+    public int compress() throws IOException {
+        buffer.reset();
+        compressor.reset();
+        CompressionOutputStream out = codec.createOutputStream(buffer, compressor);
+        out.write(data, 0, data.length);
+        out.finish();
+        return buffer.getLength();
+    }
+
+    @Benchmark
+    public long decompress() throws IOException {
+        decompressor.reset();
+        CompressionInputStream in = codec.createInputStream(new ByteArrayInputStream(compressed), decompressor);
+        long total = 0;
+        int n;
+        while ((n = in.read(readBuffer, 0, readBuffer.length)) != -1) {
+            total += n;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,55 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.Path;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 对一个目录列表中的每个文件查找编解码器
+ * <p>
+ * The listing mixes compressed files, plain files and names with several dots, as a directory of
+ * job output does. Throughput is reported per listing of {@link #FILES} paths.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionCodecFactoryBenchmark {
+
+    private static final int FILES = 1024;
+
+    private static final String[] NAMES = {
+            "part-r-%05d.gz", "part-r-%05d.lz4", "part-r-%05d", "part-r-%05d.snappy",
+            "log.2023-04-12.%05d.txt", "_SUCCESS.%05d", "data.%05d.deflate", "v1.2.%05d.tar"};
+
+    private CompressionCodecFactory factory;
+    private Path[] paths;
+
+    @Setup
+    public void setup() {
+        factory = new CompressionCodecFactory(new Configuration());
+        paths = new Path[FILES];
+        for (int i = 0; i < FILES; i++) {
+            paths[i] = new Path("/user/wzq/output/" + String.format(NAMES[i % NAMES.length], i));
+        }
+    }
+
+    @Benchmark
+    public void getCodec(Blackhole bh) {
+        for (Path path : paths) {
+            bh.consume(factory.getCodec(path));
+        }
+    }
+
+    @Benchmark
+    public void getCodecByName(Blackhole bh) {
+        for (int i = 0; i < FILES; i++) {
+            bh.consume(factory.getCodecByName((i & 1) == 0 ? "gzip" : "Lz4Codec"));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.io.DataOutputBuffer;
+import com.wzq.hadoop.util.ReflectionUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单线程的CompressorStream与ParallelCompressorStream压缩同样数据的对比
+ * <p>
+ * Each invocation deflates {@value #SIZE} bytes of text-like data written 64KB at a time, as an
+ * export job would. {@code threads = 0} is the plain {@link CompressorStream}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ParallelCompressorBenchmark {
+
+    private static final int SIZE = 16 << 20;
+    private static final int WRITE_SIZE = 64 * 1024;
+
+    @Param({"0", "1", "4"})
+    private int threads;
+
+    private Configuration conf;
+    private CompressionCodec codec;
+    private ExecutorService executor;
+    private byte[] data;
+    private DataOutputBuffer buffer;
+
+    @Setup
+    public void setup() {
+        conf = new Configuration();
+        codec = ReflectionUtils.newInstance(DefaultCodec.class, conf);
+        if (threads > 0) {
+            executor = Executors.newFixedThreadPool(threads);
+        }
+        String[] words = {"hadoop", "sequence", "file", "codec", "block", "record", "key", "value"};
+        Random random = new Random(0);
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < SIZE) {
+            sb.append(words[random.nextInt(words.length)]).append(random.nextInt(10000)).append(' ');
+        }
+        data = sb.substring(0, SIZE).getBytes();
+        buffer = new DataOutputBuffer(SIZE / 2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public int compress() throws IOException {
+        buffer.reset();
+        OutputStream out = threads == 0
+                ? codec.createOutputStream(buffer)
+                : new ParallelCompressorStream(buffer, codec, conf, executor,
+                ParallelCompressorStream.PARALLEL_BLOCK_SIZE_DEFAULT, threads);
+        for (int off = 0; off < data.length; off += WRITE_SIZE) {
+            out.write(data, off, Math.min(WRITE_SIZE, data.length - off));
+        }
+        out.close();
+        return buffer.getLength();
+    }
+}
@@ -0,0 +1,85 @@
+package com.wzq.hadoop.io.sort;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.FileSystem;
+import com.wzq.hadoop.fs.Path;
+import com.wzq.hadoop.io.WritableComparator;
+import com.wzq.hadoop.io.basic.IntWritable;
+import com.wzq.hadoop.io.basic.Text;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 归并一组溢写文件的吞吐量，一次操作读完全部记录
+ * <p>
+ * {@code segments} above {@code io.sort.factor} (10) adds intermediate passes that are written
+ * to and read back from the temporary directory.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MergerBenchmark {
+
+    private static final int RECORDS = 100000;
+
+    @Param({"10", "100"})
+    private int segments;
+
+    private Configuration conf;
+    private FileSystem fs;
+    private Path baseDir;
+    private Path tmpDir;
+    private List<Path> spills;
+
+    @Setup
+    public void setup() throws IOException {
+        conf = new Configuration();
+        conf.setInt(SortBuffer.IO_SORT_MB_KEY, 16);
+        fs = FileSystem.getLocal(conf);
+        baseDir = new Path(Files.createTempDirectory("merger-benchmark").toString());
+        tmpDir = new Path(baseDir, "tmp");
+
+        // 每个溢写文件有RECORDS / segments条记录
+        Random random = new Random(0);
+        Text key = new Text();
+        IntWritable value = new IntWritable();
+        spills = new ArrayList<>();
+        for (int s = 0; s < segments; s++) {
+            SortBuffer<Text, IntWritable> buffer = new SortBuffer<>(conf, Text.class, IntWritable.class,
+                    new Path(baseDir, "segment" + s));
+            for (int i = 0; i < RECORDS / segments; i++) {
+                key.set(Long.toHexString(random.nextLong()));
+                value.set(i);
+                buffer.collect(key, value);
+            }
+            spills.addAll(buffer.flush());
+            buffer.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fs.delete(baseDir, true);
+    }
+
+    @Benchmark
+    public long merge() throws IOException {
+        Merger merger = new Merger(conf, fs, WritableComparator.get(Text.class), tmpDir);
+        RawKeyValueIterator records = merger.merge(spills, false);
+        long bytes = 0;
+        while (records.next()) {
+            bytes += records.getKey().getLength() + records.getValue().getLength();
+        }
+        records.close();
+        return bytes;
+    }
+}
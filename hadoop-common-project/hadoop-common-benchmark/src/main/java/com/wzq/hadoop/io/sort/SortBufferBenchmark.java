@@ -0,0 +1,67 @@
+package com.wzq.hadoop.io.sort;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.FileSystem;
+import com.wzq.hadoop.fs.Path;
+import com.wzq.hadoop.io.basic.IntWritable;
+import com.wzq.hadoop.io.basic.Text;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SortBuffer收集、排序并溢写一批随机Text key的吞吐量，一次操作是一整批记录
+ * <p>
+ * {@code io.sort.mb} is large enough to hold every record, so each operation is one in-memory
+ * sort followed by a single spill file.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SortBufferBenchmark {
+
+    @Param({"10000", "100000"})
+    private int records;
+
+    private Configuration conf;
+    private Path spillDir;
+    private Text[] keys;
+    private final IntWritable value = new IntWritable();
+
+    @Setup
+    public void setup() throws IOException {
+        conf = new Configuration();
+        conf.setInt(SortBuffer.IO_SORT_MB_KEY, 16);
+        spillDir = new Path(Files.createTempDirectory("sort-buffer-benchmark").toString());
+
+        Random random = new Random(0);
+        keys = new Text[records];
+        for (int i = 0; i < records; i++) {
+            keys[i] = new Text(Long.toHexString(random.nextLong()));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        FileSystem.getLocal(conf).delete(spillDir, true);
+    }
+
+    @Benchmark
+    public List<Path> collectSortAndSpill() throws IOException {
+        SortBuffer<Text, IntWritable> buffer = new SortBuffer<>(conf, Text.class, IntWritable.class, spillDir);
+        for (int i = 0; i < records; i++) {
+            value.set(i);
+            buffer.collect(keys[i], value);
+        }
+        List<Path> spills = buffer.flush();
+        buffer.close();
+        return spills;
+    }
+}
@@ -0,0 +1,52 @@
+package com.wzq.hadoop.util;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.io.basic.IntWritable;
+import com.wzq.hadoop.io.basic.Text;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ReflectionUtils#copy(Configuration, Object, Object)} 的吞吐量
+ * <p>
+ * copy() goes through the {@link com.wzq.hadoop.io.serializer.SerializationFactory}, so this
+ * also covers the serializer lookup done for every call.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReflectionUtilsBenchmark {
+
+    @Param({"16", "256", "4096"})
+    private int recordSize;
+
+    private final Configuration conf = new Configuration(false);
+
+    private final IntWritable intSrc = new IntWritable(42);
+    private final IntWritable intDst = new IntWritable();
+    private Text textSrc;
+    private final Text textDst = new Text();
+
+    @Setup
+    public void setup() {
+        char[] chars = new char[recordSize];
+        Arrays.fill(chars, 'x');
+        textSrc = new Text(new String(chars));
+    }
+
+    @Benchmark
+    public IntWritable copyIntWritable() throws IOException {
+        return ReflectionUtils.copy(conf, intSrc, intDst);
+    }
+
+    @Benchmark
+    public Text copyText() throws IOException {
+        return ReflectionUtils.copy(conf, textSrc, textDst);
+    }
+}
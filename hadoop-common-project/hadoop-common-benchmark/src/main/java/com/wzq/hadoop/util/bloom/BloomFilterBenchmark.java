@@ -0,0 +1,82 @@
+package com.wzq.hadoop.util.bloom;
+
+import com.wzq.hadoop.io.DataOutputBuffer;
+import com.wzq.hadoop.io.WritableComparator;
+import com.wzq.hadoop.io.basic.Text;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BloomFilter判定的吞吐量，以及64位哈希与{@code WritableComparator.hashBytes}的对比
+ * <p>
+ * The filter holds {@value #ENTRIES} Text keys sized for a 1% false positive rate; probes cycle
+ * through {@value #PROBES} keys of which 90% are absent.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BloomFilterBenchmark {
+
+    private static final int ENTRIES = 100000;
+    private static final int PROBES = 1024;
+
+    @Param({"16", "128"})
+    private int keySize;
+
+    private BloomFilter filter;
+    private byte[][] probes;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        filter = BloomFilter.create(ENTRIES, 0.01);
+        DataOutputBuffer buffer = new DataOutputBuffer();
+        for (int i = 0; i < ENTRIES; i++) {
+            filter.add(key(i));
+        }
+        probes = new byte[PROBES][];
+        for (int i = 0; i < PROBES; i++) {
+            // 十分之一命中
+            Text key = key(i % 10 == 0 ? i : ENTRIES + i);
+            buffer.reset();
+            key.write(buffer);
+            probes[i] = Arrays.copyOf(buffer.getData(), buffer.getLength());
+        }
+    }
+
+    private Text key(int i) {
+        StringBuilder sb = new StringBuilder().append(i).append('-');
+        while (sb.length() < keySize) {
+            sb.append((char) ('a' + sb.length() % 26));
+        }
+        return new Text(sb.toString());
+    }
+
+    private byte[] nextProbe() {
+        return probes[next++ & (PROBES - 1)];
+    }
+
+    @Benchmark
+    public boolean membershipTest() {
+        byte[] probe = nextProbe();
+        return filter.membershipTest(probe, 0, probe.length);
+    }
+
+    @Benchmark
+    public long hash64() {
+        byte[] probe = nextProbe();
+        return HashFunction.hash64(probe, 0, probe.length, 0);
+    }
+
+    @Benchmark
+    public int hashBytes() {
+        byte[] probe = nextProbe();
+        return WritableComparator.hashBytes(probe, probe.length);
+    }
+}
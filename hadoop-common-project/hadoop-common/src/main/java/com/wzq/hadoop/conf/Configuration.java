@@ -3,20 +3,30 @@ package com.wzq.hadoop.conf;
 import com.wzq.hadoop.util.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.w3c.dom.*;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.w3c.dom.Text;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.BiFunction;
+import java.util.function.Function;
 
 /**
  *
@@ -66,6 +76,11 @@ public class Configuration {
 
     private HashMap<String, String> updatingResource;
 
+    /**
+     * 加载默认资源时记录{@code <xi:include>}引入的资源，写入{@link ConfigurationCache}；其它时候为null
+     */
+    private List<String> includeStamps;
+
     static {
         ClassLoader cL = Thread.currentThread().getContextClassLoader();
         if (cL == null) {
@@ -88,6 +103,16 @@ public class Configuration {
      */
     private Properties properties;
 
+    /**
+     * 与复制出来的Configuration共享的只读底层，为null时properties中就是全部的键值对
+     * <p>
+     * When a configuration is copied, its loaded properties become this base and are never modified
+     * again. The original and the copy each keep only their own later {@code set} calls in
+     * {@link #properties}, whose {@link Properties#getProperty defaults} is the base, so a copy costs
+     * O(overrides) instead of O(all properties).
+     */
+    private Properties base;
+
     /**
      * 用于记录通过set()方式改变的配置项。也就是说，出现在overlay中的键值对是应用设置的，而不是通过对配置资源解析得到的
      */
@@ -128,12 +153,70 @@ public class Configuration {
         this.storeResource = false;
     }
 
+    /**
+     * 复制一个配置类。已加载的属性不会被复制，而是与{@code other}共享
+     * <p>
+     * A copy that does not record resources makes {@code other} load first if it has not yet, so
+     * the resources are parsed once and {@code other} and all its copies share the result. Only the
+     * resource list, the final parameters and the values {@code other} has {@code set} since
+     * it was loaded or last copied are copied. Changes made to either configuration afterwards are not
+     * visible in the other one.
+     *
+     * @param other         the configuration from which to clone settings
+     * @param storeResource whether to record the resource each property was loaded from; if
+     *                      {@code other} did not record them, the copy reloads its resources
+     */
     public Configuration(Configuration other, boolean storeResource) {
-        // TODO public Configuration(Configuration other, boolean storeResource)
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("复制构造函数");
+        }
+        synchronized (other) {
+            // 输入流只能读一次：先让other读取并记下解析的结果，两个配置重新加载时都使用这个结果
+            for (Object resource : other.resources) {
+                if (resource instanceof InputStream) {
+                    other.getProps();
+                    break;
+                }
+            }
+            // 不记录来源时总是共享：other还没有加载就先加载，之后的副本都使用这一次的结果。
+            // 要在复制finalParameters之前，加载时才会填充它
+            if (!storeResource || other.properties != null) {
+                this.base = other.shareProperties();
+                // properties只含有other在共享之后set的值
+                this.properties = (Properties) other.properties.clone();
+            }
+            this.resources = new ArrayList<Object>(other.resources);
+            this.finalParameters = new HashSet<String>(other.finalParameters);
+            this.loadDefaults = other.loadDefaults;
+            this.quietmode = other.quietmode;
+            this.classLoader = other.classLoader;
+            if (other.overlay != null) {
+                this.overlay = (Properties) other.overlay.clone();
+            }
+            this.storeResource = storeResource;
+            if (storeResource) {
+                if (other.updatingResource != null) {
+                    this.updatingResource = new HashMap<String, String>(other.updatingResource);
+                } else {
+                    this.updatingResource = new HashMap<String, String>();
+                    this.properties = null;
+                    this.base = null;
+                    this.finalParameters.clear();
+                }
+            }
+        }
+        synchronized (Configuration.class) {
+            REGISTRY.put(this, null);
+        }
     }
 
+    /**
+     * 复制一个配置类
+     *
+     * @param other the configuration from which to clone settings
+     */
     public Configuration(Configuration other) {
-        // TODO public Configuration(Configuration other)
+        this(other, false);
     }
 
     // ##################################################################################
@@ -185,7 +268,9 @@ public class Configuration {
      */
     public synchronized void reloadConfiguration() {
         properties = null;
+        base = null;
         finalParameters.clear();
+        invalidateExpansions();
     }
 
     private synchronized void addResourceObject(Object resource) {
@@ -203,8 +288,50 @@ public class Configuration {
      * @param resources  资源
      * @param quiet      调试
      */
-    private void loadResources(Properties properties, ArrayList resources, boolean quiet) {
+    private void loadResources(Properties properties, ArrayList<Object> resources, boolean quiet) {
         if (loadDefaults) {
+            loadDefaultResources(properties, quiet);
+        }
+        for (int i = 0; i < resources.size(); i++) {
+            Object resource = resources.get(i);
+            LOG.debug("loadResources resource : [{}]", resource);
+            Object loaded = loadResource(properties, resource, quiet);
+            if (loaded != resource) {
+                // 读过的输入流换成它解析出来的属性
+                resources.set(i, loaded);
+            }
+        }
+    }
+
+    /**
+     * 加载默认资源。设置了{@link ConfigurationCache#CACHE_DIR_PROPERTY}时，优先从二进制缓存中读取合并后的结果
+     * <p>
+     * This runs first in {@link #loadResources}, so {@code properties} and {@link #finalParameters}
+     * hold exactly the default resources afterwards, which is what the cache records.
+     */
+    private void loadDefaultResources(Properties properties, boolean quiet) {
+        // 需要记录每个属性来源时不使用缓存
+        File cacheDir = storeResource ? null : ConfigurationCache.getCacheDir();
+        String fingerprint = null;
+        if (cacheDir != null) {
+            fingerprint = getDefaultResourcesFingerprint();
+            ConfigurationCache cache = ConfigurationCache.load(cacheDir, fingerprint);
+            if (cache != null && !includesUnchanged(cache)) {
+                LOG.debug("an included resource changed, ignoring configuration cache in {}", cacheDir);
+                cache = null;
+            }
+            if (cache != null) {
+                if (!quiet) {
+                    LOG.info("loaded default resources from cache " + cacheDir);
+                }
+                cache.apply(properties, finalParameters);
+                return;
+            }
+            includeStamps = new ArrayList<String>();
+        }
+
+        List<String> includes = includeStamps;
+        try {
             for (String resource : defaultResources) {
                 loadResource(properties, resource, quiet);
             }
@@ -213,144 +340,433 @@ public class Configuration {
             if (getResource("hadoop-site.xml") != null) {
                 loadResource(properties, "hadoop-site.xml", quiet);
             }
+        } finally {
+            includeStamps = null;
         }
-        for (Object resource : resources) {
-            LOG.debug("loadResources resource : [{}]", resource);
-            loadResource(properties, resource, quiet);
+
+        if (cacheDir != null) {
+            ConfigurationCache.save(cacheDir,
+                    new ConfigurationCache(fingerprint, properties, finalParameters, includes));
+        }
+    }
+
+    /**
+     * 默认资源的指纹：每个资源的名字、URL、修改时间和长度，任何一个默认资源改变时指纹都会改变
+     */
+    String getDefaultResourcesFingerprint() {
+        List<String> names = new ArrayList<String>(defaultResources);
+        names.add("hadoop-site.xml");
+        StringBuilder sb = new StringBuilder();
+        for (String name : names) {
+            sb.append(name).append('=');
+            URL url = getResource(name);
+            sb.append(url == null ? "-" : stamp(url)).append('\n');
         }
+        return sb.toString();
     }
 
-    private void loadResource(Properties properties, Object name, boolean quiet) {
+    /**
+     * 一个资源的URL、修改时间和长度，格式为{@code url@modified:length}；本地文件不存在时为{@code url@-}
+     */
+    private static String stamp(URL url) {
+        long modified = 0;
+        long length = -1;
         try {
-            DocumentBuilderFactory docBuilderFactory = DocumentBuilderFactory.newInstance();
-            // 忽略xml文件中所有的注释
-            docBuilderFactory.setIgnoringComments(true);
-            docBuilderFactory.setNamespaceAware(true);
+            if ("file".equals(url.getProtocol())) {
+                File file = new File(url.toURI());
+                if (!file.exists()) {
+                    return url + "@-";
+                }
+                modified = file.lastModified();
+                length = file.length();
+            } else {
+                URLConnection connection = url.openConnection();
+                modified = connection.getLastModified();
+                length = connection.getContentLengthLong();
+            }
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            LOG.debug("no modification time for {}: {}", url, e.toString());
+        }
+        return url + "@" + modified + ":" + length;
+    }
 
+    /**
+     * 缓存中记录的每个{@code <xi:include>}引入的资源是否都没有改变
+     */
+    private static boolean includesUnchanged(ConfigurationCache cache) {
+        for (String recorded : cache.getIncludes()) {
+            int at = recorded.lastIndexOf('@');
             try {
-                docBuilderFactory.setXIncludeAware(true);
-            } catch (UnsupportedOperationException e) {
-                LOG.error("Failed to set setXIncludeAware(true) for parser "
-                                + docBuilderFactory
-                                + ":" + e,
-                        e);
+                if (at < 0 || !recorded.equals(stamp(new URL(recorded.substring(0, at))))) {
+                    return false;
+                }
+            } catch (MalformedURLException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * XInclude的命名空间
+     */
+    private static final String XINCLUDE_NS = "http://www.w3.org/2001/XInclude";
+
+    /**
+     * 所有配置资源共用的StAX工厂，它创建reader是线程安全的
+     */
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXMLInputFactory();
+
+    private static XMLInputFactory createXMLInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * 一个输入流资源解析出来的属性，按出现的顺序记录，重新加载时代替已经关闭的输入流
+     * <p>
+     * Replaying the properties through {@link #loadProperty} applies the final parameters of the
+     * resources loaded before it exactly as the first parse did.
+     */
+    private static final class ParsedResource {
+        private final String name;
+        private final List<String> attrs = new ArrayList<String>();
+        private final List<String> values = new ArrayList<String>();
+        private final BitSet finals = new BitSet();
+
+        ParsedResource(Object stream) {
+            this.name = stream.toString();
+        }
+
+        void add(String attr, String value, boolean finalParameter) {
+            if (finalParameter) {
+                finals.set(attrs.size());
             }
+            attrs.add(attr);
+            values.add(value);
+        }
 
-            DocumentBuilder builder = docBuilderFactory.newDocumentBuilder();
-            Document doc = null;
-            Element root = null;
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
 
+    /**
+     * 加载一个资源：classpath中的文件名（String）、URL、本地文件（Path）、输入流（InputStream）或者DOM元素（Element）
+     * <p>
+     * Everything except an Element is parsed with a streaming StAX reader, so no DOM is built. An
+     * InputStream resource is closed after it has been read, so it can only be parsed once; the
+     * properties read from it are returned as a {@link ParsedResource} to keep in its place.
+     *
+     * @return the object to keep in the resource list for the next reload
+     */
+    private Object loadResource(Properties properties, Object name, boolean quiet) {
+        try {
             LOG.debug("name class: [{}]", name.getClass().getName());
 
+            if (name instanceof Element) {
+                loadElement(properties, (Element) name, quiet);
+                return name;
+            }
+            if (name instanceof ParsedResource) {
+                ParsedResource parsed = (ParsedResource) name;
+                for (int i = 0; i < parsed.attrs.size(); i++) {
+                    loadProperty(properties, parsed.name, parsed.attrs.get(i), parsed.values.get(i), parsed.finals.get(i));
+                }
+                return name;
+            }
+
+            URL url = null;
+            InputStream in = null;
             if (name instanceof URL) {
-                // TODO an URL resource
+                url = (URL) name;
             } else if (name instanceof String) {
-                URL url = getResource((String) name);
+                url = getResource((String) name);
                 LOG.debug("Resource name : [{}]; url : [{}]", name, url);
-                if (url != null) {
-                    if (!quiet) {
-                        LOG.info("parsing " + url);
-                    }
-                    doc = builder.parse(url.toString());
-                }
             } else if (name instanceof Path) {
-                // TODO a file resource
+                Path file = ((Path) name).toAbsolutePath();
+                if (Files.exists(file)) {
+                    url = file.toUri().toURL();
+                }
             } else if (name instanceof InputStream) {
-                // TODO an InputStream resource
-            } else if (name instanceof Element) {
-                root = (Element) name;
+                in = (InputStream) name;
             }
 
-            // 判断是否获取到doc
-            if (doc == null && root == null) {
+            // 判断是否获取到资源
+            if (url == null && in == null) {
                 if (quiet) {
-                    return;
+                    return name;
                 }
                 throw new RuntimeException(name + " not found");
             }
 
-            // 为root赋值
-            if (root == null) {
-                root = doc.getDocumentElement();
+            if (url != null) {
+                if (!quiet) {
+                    LOG.info("parsing " + url);
+                }
+                in = url.openStream();
             }
-
-            // 判断顶级元素是否为configuration
-            if (!"configuration".equals(root.getTagName())) {
-                LOG.error("bad conf file : top-level element not <configuration>");
+            if (url == null) {
+                // 解析时把属性记录到ParsedResource中
+                ParsedResource parsed = new ParsedResource(name);
+                try {
+                    parse(properties, in, null, parsed);
+                } finally {
+                    in.close();
+                }
+                return parsed;
             }
+            try {
+                parse(properties, in, url, name);
+            } finally {
+                in.close();
+            }
+            return name;
+        } catch (IOException e) {
+            LOG.error("error parsing conf file: " + e);
+            throw new RuntimeException(e);
+        } catch (XMLStreamException e) {
+            LOG.error("error parsing conf file: " + e);
+            throw new RuntimeException(e);
+        }
+    }
 
-            // 获取所有的属性
-            NodeList props = root.getChildNodes();
-            LOG.debug("props : [{}]", props);
-            for (int i = 0; i < props.getLength(); i++) {
-                Node propNode = props.item(i);
-
-                if (!(propNode instanceof Element)) {
+    /**
+     * 流式解析一个配置文件，{@code <xi:include>}引入的文件递归解析
+     *
+     * @param in   the document
+     * @param base the URL of the document, against which relative includes are resolved; may be null
+     * @param name the resource being loaded, recorded as the source of its properties
+     */
+    private void parse(Properties properties, InputStream in, URL base, Object name)
+            throws IOException, XMLStreamException {
+        XMLStreamReader reader = base == null
+                ? XML_INPUT_FACTORY.createXMLStreamReader(in)
+                : XML_INPUT_FACTORY.createXMLStreamReader(base.toString(), in);
+        try {
+            StringBuilder token = new StringBuilder();
+            boolean inToken = false;
+            boolean root = true;
+            boolean inProperty = false;
+            String attr = null;
+            String value = null;
+            boolean finalParameter = false;
+
+            // 大于0时正在跳过一个已经成功加载的<xi:include>（包括其中的<xi:fallback>）
+            int skipDepth = 0;
+            // 每个加载失败的<xi:include>一项，记录是否遇到了它的<xi:fallback>
+            Deque<Boolean> failedIncludes = new ArrayDeque<Boolean>();
+
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (skipDepth > 0) {
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        skipDepth++;
+                    } else if (event == XMLStreamConstants.END_ELEMENT) {
+                        skipDepth--;
+                    }
                     continue;
                 }
 
-                Element prop = (Element) propNode;
+                switch (event) {
+                    case XMLStreamConstants.START_ELEMENT:
+                        String tag = reader.getLocalName();
+                        if (root && !"configuration".equals(tag)) {
+                            LOG.error("bad conf file : top-level element not <configuration>");
+                        }
+                        root = false;
+
+                        if (XINCLUDE_NS.equals(reader.getNamespaceURI())) {
+                            if ("include".equals(tag)) {
+                                String href = reader.getAttributeValue(null, "href");
+                                if (include(properties, href, base, name)) {
+                                    skipDepth = 1;
+                                } else {
+                                    failedIncludes.push(Boolean.FALSE);
+                                }
+                            } else if ("fallback".equals(tag) && !failedIncludes.isEmpty()) {
+                                failedIncludes.pop();
+                                failedIncludes.push(Boolean.TRUE);
+                            }
+                        } else if ("property".equals(tag)) {
+                            inProperty = true;
+                            attr = null;
+                            value = null;
+                            finalParameter = false;
+                        } else if (inProperty) {
+                            if ("name".equals(tag) || "value".equals(tag) || "final".equals(tag)) {
+                                token.setLength(0);
+                                inToken = true;
+                            }
+                        } else if (!"configuration".equals(tag)) {
+                            LOG.warn("bad conf file: element not <property>");
+                        }
+                        break;
 
-                if ("configuration".equals(prop.getTagName())) {
-                    loadResource(properties, prop, quiet);
-                    continue;
-                }
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.CDATA:
+                    case XMLStreamConstants.SPACE:
+                        if (inToken) {
+                            token.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                        break;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        String endTag = reader.getLocalName();
+                        if (XINCLUDE_NS.equals(reader.getNamespaceURI())) {
+                            if ("include".equals(endTag) && !failedIncludes.pop()) {
+                                throw new RuntimeException(name + ": included resource not found and no "
+                                        + "<xi:fallback> given");
+                            }
+                        } else if (inToken) {
+                            // 空元素与DOM中没有子节点一样，视为没有值
+                            if ("name".equals(endTag)) {
+                                attr = token.length() == 0 ? null : token.toString().trim();
+                            } else if ("value".equals(endTag)) {
+                                value = token.length() == 0 ? null : token.toString();
+                            } else if ("final".equals(endTag)) {
+                                finalParameter = "true".equals(token.toString());
+                            }
+                            inToken = false;
+                        } else if ("property".equals(endTag)) {
+                            loadProperty(properties, name, attr, value, finalParameter);
+                            inProperty = false;
+                        }
+                        break;
 
-                if (!"property".equals(prop.getTagName())) {
-                    LOG.warn("bad conf file: element not <property>");
+                    default:
+                        break;
                 }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * 处理{@code <xi:include href="...">}：相对路径先相对于当前文件解析，当前文件没有URL时依次尝试classpath和工作目录
+     * <p>
+     * Included properties are treated as if they were inline, so they keep {@code name} as their
+     * source and obey the same final parameters.
+     *
+     * @return false if the included resource could not be opened, so that its fallback applies
+     */
+    private boolean include(Properties properties, String href, URL base, Object name)
+            throws IOException, XMLStreamException {
+        if (href == null) {
+            return false;
+        }
+        URL url;
+        try {
+            url = base != null ? new URL(base, href) : new URL(href);
+        } catch (MalformedURLException e) {
+            url = getResource(href);
+            if (url == null) {
+                url = Paths.get(href).toAbsolutePath().toUri().toURL();
+            }
+        }
 
-                NodeList fields = prop.getChildNodes();
-                String attr = null;
-                String value = null;
-                boolean finalParameter = false;
+        if (includeStamps != null) {
+            // 加载失败的include也要记录，文件出现之后缓存才会失效
+            includeStamps.add(stamp(url));
+        }
+        InputStream in;
+        try {
+            in = url.openStream();
+        } catch (IOException e) {
+            LOG.debug("include {} not found: {}", url, e.toString());
+            return false;
+        }
+        try {
+            parse(properties, in, url, name);
+        } finally {
+            in.close();
+        }
+        return true;
+    }
 
-                for (int j = 0; j < fields.getLength(); j++) {
-                    Node filedNode = fields.item(j);
-                    if (!(filedNode instanceof Element)) {
-                        continue;
-                    }
-                    Element field = (Element) filedNode;
+    /**
+     * 加载一个DOM形式的{@code <configuration>}元素
+     */
+    private void loadElement(Properties properties, Element root, boolean quiet) {
+        // 判断顶级元素是否为configuration
+        if (!"configuration".equals(root.getTagName())) {
+            LOG.error("bad conf file : top-level element not <configuration>");
+        }
 
-                    if ("name".equals(field.getTagName()) && field.hasChildNodes()) {
-                        attr = ((Text) field.getFirstChild()).getData().trim();
-                    }
-                    if ("value".equals(field.getTagName()) && field.hasChildNodes()) {
-                        value = ((Text) field.getFirstChild()).getData();
-                    }
-                    if ("final".equals(field.getTagName()) && field.hasChildNodes()) {
-                        finalParameter = "true".equals(((Text) field.getFirstChild()).getData());
-                    }
+        // 获取所有的属性
+        NodeList props = root.getChildNodes();
+        for (int i = 0; i < props.getLength(); i++) {
+            Node propNode = props.item(i);
+
+            if (!(propNode instanceof Element)) {
+                continue;
+            }
+
+            Element prop = (Element) propNode;
+
+            if ("configuration".equals(prop.getTagName())) {
+                loadResource(properties, prop, quiet);
+                continue;
+            }
+
+            if (!"property".equals(prop.getTagName())) {
+                LOG.warn("bad conf file: element not <property>");
+            }
+
+            NodeList fields = prop.getChildNodes();
+            String attr = null;
+            String value = null;
+            boolean finalParameter = false;
+
+            for (int j = 0; j < fields.getLength(); j++) {
+                Node filedNode = fields.item(j);
+                if (!(filedNode instanceof Element)) {
+                    continue;
                 }
+                Element field = (Element) filedNode;
 
-                if (attr != null) {
-                    if (value != null) {
-                        if (!finalParameters.contains(attr)) {
-                            properties.setProperty(attr, value);
-                            if (storeResource) {
-                                updatingResource.put(attr, name.toString());
-                            }
-                        } else if (!value.equals(properties.getProperty(attr))) {
-                            LOG.warn(name + ": a attempt to override final parameter: " + attr + "; Ignoring");
-                        }
-                    }
-                    if (finalParameter) {
-                        finalParameters.add(attr);
-                    }
+                if ("name".equals(field.getTagName()) && field.hasChildNodes()) {
+                    attr = ((Text) field.getFirstChild()).getData().trim();
+                }
+                if ("value".equals(field.getTagName()) && field.hasChildNodes()) {
+                    value = ((Text) field.getFirstChild()).getData();
+                }
+                if ("final".equals(field.getTagName()) && field.hasChildNodes()) {
+                    finalParameter = "true".equals(((Text) field.getFirstChild()).getData());
                 }
             }
-        } catch (IOException e) {
-            LOG.error("error parsing conf file: " + e);
-            throw new RuntimeException(e);
-        } catch (DOMException e) {
-            LOG.error("error parsing conf file: " + e);
-            throw new RuntimeException(e);
-        } catch (SAXException e) {
-            LOG.error("error parsing conf file: " + e);
-            throw new RuntimeException(e);
-        } catch (ParserConfigurationException e) {
-            LOG.error("error parsing conf file: " + e);
-            throw new RuntimeException(e);
+
+            loadProperty(properties, root, attr, value, finalParameter);
+        }
+    }
+
+    /**
+     * 设置解析出来的一个属性，已经声明为final的属性不会被覆盖
+     */
+    private void loadProperty(Properties properties, Object name, String attr, String value,
+                              boolean finalParameter) {
+        if (attr == null) {
+            return;
+        }
+        if (name instanceof ParsedResource) {
+            ((ParsedResource) name).add(attr, value, finalParameter);
+        }
+        if (value != null) {
+            if (!finalParameters.contains(attr)) {
+                properties.setProperty(attr, value);
+                if (storeResource) {
+                    updatingResource.put(attr, name.toString());
+                }
+            } else if (!value.equals(properties.getProperty(attr))) {
+                LOG.warn(name + ": a attempt to override final parameter: " + attr + "; Ignoring");
+            }
+        }
+        if (finalParameter) {
+            finalParameters.add(attr);
         }
     }
 
@@ -381,6 +797,136 @@ public class Configuration {
         return properties;
     }
 
+    /**
+     * 把已加载的properties变为共享的只读底层，之后的set写入一个新的、以它为defaults的properties
+     *
+     * @return the shared base
+     */
+    private synchronized Properties shareProperties() {
+        Properties props = getProps();
+        if (base == null) {
+            base = props;
+            properties = new Properties(base);
+        }
+        return base;
+    }
+
+    /**
+     * 把共享的底层合并到自己的properties中，用于需要完整、可修改的{@link Properties}的场合。
+     * 返回的是{@link TrackedProperties}，通过它的修改同样会让已展开的值失效
+     */
+    private synchronized Properties unshareProperties() {
+        Properties props = getProps();
+        if (base != null || !(props instanceof TrackedProperties)) {
+            Properties flat = new TrackedProperties();
+            if (base != null) {
+                flat.putAll(base);
+            }
+            flat.putAll(props);
+            properties = flat;
+            base = null;
+        }
+        return properties;
+    }
+
+    /**
+     * 交给调用方修改的properties，每次修改都让已展开的值失效
+     * <p>
+     * Covers the {@link Properties}/{@link Map} mutators; changes made through the key, value or
+     * entry views are only seen after the next call to {@link #getProperties()}.
+     */
+    private final class TrackedProperties extends Properties {
+
+        @Override
+        public synchronized Object put(Object key, Object value) {
+            Object old = super.put(key, value);
+            invalidateExpansions();
+            return old;
+        }
+
+        @Override
+        public synchronized void putAll(Map<?, ?> t) {
+            super.putAll(t);
+            invalidateExpansions();
+        }
+
+        @Override
+        public synchronized Object remove(Object key) {
+            Object old = super.remove(key);
+            invalidateExpansions();
+            return old;
+        }
+
+        @Override
+        public synchronized void clear() {
+            super.clear();
+            invalidateExpansions();
+        }
+
+        @Override
+        public synchronized Object putIfAbsent(Object key, Object value) {
+            Object old = super.putIfAbsent(key, value);
+            invalidateExpansions();
+            return old;
+        }
+
+        @Override
+        public synchronized boolean remove(Object key, Object value) {
+            boolean removed = super.remove(key, value);
+            invalidateExpansions();
+            return removed;
+        }
+
+        @Override
+        public synchronized Object replace(Object key, Object value) {
+            Object old = super.replace(key, value);
+            invalidateExpansions();
+            return old;
+        }
+
+        @Override
+        public synchronized boolean replace(Object key, Object oldValue, Object newValue) {
+            boolean replaced = super.replace(key, oldValue, newValue);
+            invalidateExpansions();
+            return replaced;
+        }
+
+        @Override
+        public synchronized void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+            super.replaceAll(function);
+            invalidateExpansions();
+        }
+
+        @Override
+        public synchronized Object compute(Object key, BiFunction<? super Object, ? super Object, ?> function) {
+            Object value = super.compute(key, function);
+            invalidateExpansions();
+            return value;
+        }
+
+        @Override
+        public synchronized Object computeIfAbsent(Object key, Function<? super Object, ?> function) {
+            Object value = super.computeIfAbsent(key, function);
+            invalidateExpansions();
+            return value;
+        }
+
+        @Override
+        public synchronized Object computeIfPresent(Object key, BiFunction<? super Object, ? super Object, ?> function) {
+            Object value = super.computeIfPresent(key, function);
+            invalidateExpansions();
+            return value;
+        }
+
+        @Override
+        public synchronized Object merge(Object key, Object value,
+                                         BiFunction<? super Object, ? super Object, ?> function) {
+            Object merged = super.merge(key, value, function);
+            invalidateExpansions();
+            return merged;
+        }
+    }
+
     public URL getResource(String name) {
         // 从这里获取文件
         URL url = classLoader.getResource(name);
@@ -388,59 +934,163 @@ public class Configuration {
         return url;
     }
 
+    /**
+     * 返回完整的properties，对它的修改会直接影响这个配置，已展开的值随之失效
+     * <p>
+     * If the properties are shared with a copy, this configuration first takes its own copy of them.
+     */
     public Properties getProperties() {
-        if (properties == null) {
-            properties = getProps();
-        }
-        return properties;
+        Properties props = unshareProperties();
+        invalidateExpansions();
+        return props;
     }
 
-    private static Pattern varPat = Pattern.compile("\\$\\{[^\\}\\$\u0020]+\\}");
+    /**
+     * 变量展开的最大嵌套深度
+     */
     private static int MAX_SUBST = 20;
 
     /**
-     * 属性扩展
+     * 已展开的值，key为属性名。属性改变时整个map被替换，而不是清空，
+     * 这样正在展开旧值的线程只会把结果写进被丢弃的map
+     */
+    private volatile ConcurrentHashMap<String, String> expansions = new ConcurrentHashMap<String, String>();
+
+    /**
+     * 含有变量引用的原始值编译后的模板，原始值相同模板就相同，所以属性改变时不需要失效
+     * <p>
+     * Each configuration keeps its own templates, so a copy starts empty and compiles the values it
+     * actually reads. The map holds at most {@link #MAX_TEMPLATES} entries and is cleared when full,
+     * which bounds it even when {@code set} keeps storing new values.
+     */
+    private final ConcurrentHashMap<String, ValueTemplate> templates = new ConcurrentHashMap<String, ValueTemplate>();
+
+    private static final int MAX_TEMPLATES = 1024;
+
+    /**
+     * 属性被修改后调用，之后的get重新展开变量
+     */
+    private void invalidateExpansions() {
+        expansions = new ConcurrentHashMap<String, String>();
+    }
+
+    /**
+     * 属性扩展：{@code ${var}}先从系统属性中查找，再从其他配置项中查找，找不到的变量原样保留
+     * <p>
+     * Values are expanded recursively. The expansion of every property is cached until the
+     * configuration changes through {@code set}, {@code clear}, a new resource or the
+     * {@link Properties} returned by {@link #getProperties()}, so system properties are read when a
+     * value is first expanded after a change.
      *
-     * @param expr
-     * @return
+     * @throws IllegalStateException if the variables refer to each other in a cycle, or are nested
+     *                               more than {@link #MAX_SUBST} deep
      */
     private String substituteVars(String expr) {
         if (expr == null) {
             return null;
         }
+        return expand(expr, expansions, new ArrayDeque<String>());
+    }
 
-        Matcher match = varPat.matcher(expr);
-        String eval = expr;
+    /**
+     * 展开一个属性的值并缓存
+     *
+     * @param resolving the variables being expanded, innermost first, for cycle detection
+     */
+    private String getExpanded(String name, Map<String, String> cache, Deque<String> resolving) {
+        String value = cache.get(name);
+        if (value != null) {
+            return value;
+        }
+        String raw = getProps().getProperty(name);
+        if (raw == null) {
+            return null;
+        }
+        resolving.push(name);
+        try {
+            value = expand(raw, cache, resolving);
+        } finally {
+            resolving.pop();
+        }
+        cache.put(name, value);
+        return value;
+    }
 
-        for (int s = 0; s < MAX_SUBST; s++) {
-            match.reset(eval);
-            // 如果没有匹配到，返回
-            if (!match.find()) {
-                return eval;
+    private String expand(String expr, Map<String, String> cache, Deque<String> resolving) {
+        if (!ValueTemplate.hasVariables(expr)) {
+            return expr;
+        }
+        ValueTemplate template = templates.get(expr);
+        if (template == null) {
+            template = ValueTemplate.compile(expr);
+            if (templates.size() >= MAX_TEMPLATES) {
+                templates.clear();
             }
+            templates.put(expr, template);
+        }
 
-            String var = match.group();
-            var = var.substring(2, var.length() - 1); // remove ${...}
-            String val = null;
-
-            try {
-                // 尝试获取系统属性
-                LOG.debug("准备获取系统属性, expr: [{}], val: [{}]", expr, var);
-                val = System.getProperty(var);
-                LOG.debug("获取系统属性后, expr: [{}], val: [{}]", expr, val);
-            } catch (SecurityException se) {
-                LOG.warn("Unexpected SecurityException in Configuration", se);
-            }
+        int count = template.getVariableCount();
+        if (count == 0) {
+            return expr;
+        }
+        StringBuilder sb = new StringBuilder(expr.length() + 16 * count);
+        for (int i = 0; i < count; i++) {
+            sb.append(template.getLiteral(i));
+            String var = template.getVariable(i);
+            String val = resolve(var, cache, resolving);
             if (val == null) {
-                val = getRaw(val);
+                sb.append("${").append(var).append('}');
+            } else {
+                sb.append(val);
             }
-            if (val == null) {
-                return eval;
+        }
+        return sb.append(template.getLiteral(count)).toString();
+    }
+
+    private String resolve(String var, Map<String, String> cache, Deque<String> resolving) {
+        if (resolving.contains(var)) {
+            StringBuilder cycle = new StringBuilder(var);
+            for (String name : resolving) {
+                cycle.insert(0, name + " -> ");
+                if (name.equals(var)) {
+                    break;
+                }
             }
-            // subsitute
-            eval = eval.substring(0, match.start()) + val + eval.substring(match.end());
+            throw new IllegalStateException("Variable substitution cycle: " + cycle);
+        }
+        if (resolving.size() >= MAX_SUBST) {
+            throw new IllegalStateException("Variable substitution depth too large: " + MAX_SUBST + " "
+                    + resolving.peekLast());
+        }
+
+        String val = null;
+        try {
+            // 尝试获取系统属性
+            val = System.getProperty(var);
+        } catch (SecurityException se) {
+            LOG.warn("Unexpected SecurityException in Configuration", se);
         }
-        throw new IllegalStateException("Variable substitution depth too large: " + MAX_SUBST + " " + expr);
+        if (val == null) {
+            return getExpanded(var, cache, resolving);
+        }
+        resolving.push(var);
+        try {
+            return expand(val, cache, resolving);
+        } finally {
+            resolving.pop();
+        }
+    }
+
+    /**
+     * 创建当前配置的只读快照，用于在热点代码中反复读取配置
+     * <p>
+     * The snapshot expands and stores every value once; its getters take no lock and parse each
+     * value at most once. Later changes to this configuration are not visible in the snapshot.
+     *
+     * @return an immutable view of the current properties
+     */
+    public synchronized ConfigurationSnapshot snapshot() {
+        return new ConfigurationSnapshot(this, getProps());
     }
 
     public String getRaw(String name) {
@@ -448,11 +1098,17 @@ public class Configuration {
     }
 
     public String get(String name) {
-        return substituteVars(getProps().getProperty(name));
+        ConcurrentHashMap<String, String> cache = expansions;
+        String value = cache.get(name);
+        if (value != null) {
+            return value;
+        }
+        return getExpanded(name, cache, new ArrayDeque<String>());
     }
 
     public String get(String name, String defaultValue) {
-        return substituteVars(getProps().getProperty(name, defaultValue));
+        String value = get(name);
+        return value != null ? value : substituteVars(defaultValue);
     }
 
     /**
@@ -632,9 +1288,10 @@ public class Configuration {
 
     // ##################################################################################
     // Set
-    public void set(String name, String value) {
+    public synchronized void set(String name, String value) {
         getOverlay().setProperty(name, value);
         getProps().setProperty(name, value);
+        invalidateExpansions();
     }
 
     public void setIfUnset(String name, String value) {
@@ -671,13 +1328,35 @@ public class Configuration {
         set(name, StringUtils.arrayToString(values));
     }
 
+    /**
+     * Set the value of the name property to the name of a theClass implementing the given interface xface.
+     */
+    public void setClass(String name, Class<?> theClass, Class<?> xface) {
+        if (!xface.isAssignableFrom(theClass)) {
+            throw new RuntimeException(theClass + " not " + xface.getName());
+        }
+        set(name, theClass.getName());
+    }
+
     // ##################################################################################
-    public int size() {
-        return getProps().size();
+    public synchronized int size() {
+        Properties props = getProps();
+        if (base == null) {
+            return props.size();
+        }
+        int size = base.size();
+        for (Object key : props.keySet()) {
+            if (!base.containsKey(key)) {
+                size++;
+            }
+        }
+        return size;
     }
 
-    public void clear() {
-        getProps().clear();
+    public synchronized void clear() {
+        properties = new Properties();
+        base = null;
         getOverlay().clear();
+        invalidateExpansions();
     }
 }
@@ -0,0 +1,292 @@
+package com.wzq.hadoop.conf;
+
+import com.wzq.hadoop.io.Writable;
+import com.wzq.hadoop.io.WritableUtils;
+import com.wzq.hadoop.io.basic.Text;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * 合并后的默认资源（core-default.xml、core-site.xml等）的二进制缓存，省去每次创建Configuration时的XML解析
+ * <p>
+ * The cache is off unless the system property {@link #CACHE_DIR_PROPERTY} names a directory. The
+ * first {@link Configuration} that loads its defaults parses the XML files as usual and writes the
+ * resulting key/value/final table to that directory; later ones, in this or any other JVM,
+ * memory-map the file and read the table back instead.
+ * <p>
+ * Each file records a fingerprint of the default resources: their names, URLs, modification times
+ * and lengths. A file is only used when its fingerprint matches the current one, so editing, adding
+ * or removing a default resource makes the cache miss and be rewritten. Files pulled in by
+ * {@code <xi:include>} are only known after parsing, so their URLs and modification stamps are
+ * stored in the file as well and checked by {@link Configuration} before the cache is used. Files are written to a
+ * temporary name and renamed into place, so concurrent processes never see a partial file. Any
+ * problem reading or writing the cache is logged and the XML files are parsed instead.
+ */
+public class ConfigurationCache implements Writable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConfigurationCache.class);
+
+    /**
+     * 缓存目录的系统属性，没有设置时不使用缓存
+     */
+    public static final String CACHE_DIR_PROPERTY = "hadoop.conf.cache.dir";
+
+    private static final byte VERSION = 2;
+
+    private static final byte FLAG_FINAL = 1;
+    private static final byte FLAG_VALUE = 2;
+
+    private String fingerprint;
+    private String[] includes;
+    private String[] names;
+    private String[] values;
+    private boolean[] finals;
+
+    public ConfigurationCache() {
+    }
+
+    ConfigurationCache(String fingerprint, Properties properties, Set<String> finalParameters) {
+        this(fingerprint, properties, finalParameters, Collections.<String>emptyList());
+    }
+
+    /**
+     * 记录默认资源加载完后的properties和final参数
+     *
+     * @param includes the stamps of the resources the default resources included, as returned by
+     *                 {@link #getIncludes()}
+     */
+    ConfigurationCache(String fingerprint, Properties properties, Set<String> finalParameters,
+                       List<String> includes) {
+        this.fingerprint = fingerprint;
+        this.includes = includes.toArray(new String[includes.size()]);
+        Set<String> keys = properties.stringPropertyNames();
+        int n = keys.size();
+        for (String name : finalParameters) {
+            if (!keys.contains(name)) {
+                n++;
+            }
+        }
+        names = new String[n];
+        values = new String[n];
+        finals = new boolean[n];
+        int i = 0;
+        for (String name : keys) {
+            names[i] = name;
+            values[i] = properties.getProperty(name);
+            finals[i] = finalParameters.contains(name);
+            i++;
+        }
+        // final参数可能没有值
+        for (String name : finalParameters) {
+            if (!keys.contains(name)) {
+                names[i] = name;
+                finals[i] = true;
+                i++;
+            }
+        }
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the {@code url@modified:length} stamp of every resource included while the default
+     * resources were parsed
+     */
+    public List<String> getIncludes() {
+        return Collections.unmodifiableList(Arrays.asList(includes));
+    }
+
+    /**
+     * @return the number of properties and value-less final parameters in the cache
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * 把缓存的默认资源加入properties和finalParameters，效果与解析默认资源相同
+     */
+    void apply(Properties properties, Set<String> finalParameters) {
+        for (int i = 0; i < names.length; i++) {
+            if (values[i] != null) {
+                properties.setProperty(names[i], values[i]);
+            }
+            if (finals[i]) {
+                finalParameters.add(names[i]);
+            }
+        }
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        Text.writeString(out, fingerprint);
+        WritableUtils.writeVInt(out, includes.length);
+        for (String include : includes) {
+            Text.writeString(out, include);
+        }
+        WritableUtils.writeVInt(out, names.length);
+        for (int i = 0; i < names.length; i++) {
+            byte flags = (byte) ((finals[i] ? FLAG_FINAL : 0) | (values[i] != null ? FLAG_VALUE : 0));
+            out.writeByte(flags);
+            Text.writeString(out, names[i]);
+            if (values[i] != null) {
+                Text.writeString(out, values[i]);
+            }
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported configuration cache version " + version);
+        }
+        fingerprint = Text.readString(in);
+        int m = WritableUtils.readVInt(in);
+        if (m < 0) {
+            throw new IOException("Invalid configuration cache include count " + m);
+        }
+        includes = new String[m];
+        for (int i = 0; i < m; i++) {
+            includes[i] = Text.readString(in);
+        }
+        int n = WritableUtils.readVInt(in);
+        if (n < 0) {
+            throw new IOException("Invalid configuration cache size " + n);
+        }
+        names = new String[n];
+        values = new String[n];
+        finals = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            byte flags = in.readByte();
+            names[i] = Text.readString(in);
+            values[i] = (flags & FLAG_VALUE) != 0 ? Text.readString(in) : null;
+            finals[i] = (flags & FLAG_FINAL) != 0;
+        }
+    }
+
+    // ##################################################################################
+    // 缓存文件
+
+    /**
+     * @return the cache directory, or null if the cache is disabled
+     */
+    static File getCacheDir() {
+        String dir = null;
+        try {
+            dir = System.getProperty(CACHE_DIR_PROPERTY);
+        } catch (SecurityException se) {
+            LOG.warn("Unexpected SecurityException in ConfigurationCache", se);
+        }
+        return dir == null || dir.isEmpty() ? null : new File(dir);
+    }
+
+    /**
+     * 缓存文件名由fingerprint的hash决定，不同classpath的进程可以共用一个缓存目录
+     */
+    static File getCacheFile(File dir, String fingerprint) {
+        return new File(dir, String.format("conf-defaults-%08x.bin", fingerprint.hashCode()));
+    }
+
+    /**
+     * 读取与fingerprint匹配的缓存
+     *
+     * @return the cache, or null if there is no usable cache file
+     */
+    static ConfigurationCache load(File dir, String fingerprint) {
+        File file = getCacheFile(dir, fingerprint);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ConfigurationCache cache = new ConfigurationCache();
+            cache.readFields(new DataInputStream(new ByteBufferInputStream(buffer)));
+            if (!fingerprint.equals(cache.fingerprint)) {
+                LOG.debug("configuration cache {} is stale", file);
+                return null;
+            }
+            return cache;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Ignoring unreadable configuration cache " + file + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * 写出缓存文件，先写到临时文件再重命名
+     */
+    static void save(File dir, ConfigurationCache cache) {
+        File tmp = null;
+        try {
+            Files.createDirectories(dir.toPath());
+            tmp = File.createTempFile("conf-defaults-", ".tmp", dir);
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                cache.write(out);
+            }
+            File file = getCacheFile(dir, cache.fingerprint);
+            Files.move(tmp.toPath(), file.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            tmp = null;
+            LOG.debug("wrote configuration cache {}", file);
+        } catch (IOException e) {
+            LOG.warn("Could not write configuration cache in " + dir + ": " + e);
+        } finally {
+            if (tmp != null && !tmp.delete()) {
+                LOG.warn("Could not delete " + tmp);
+            }
+        }
+    }
+
+    /**
+     * 从内存映射的缓存文件读取数据的输入流
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
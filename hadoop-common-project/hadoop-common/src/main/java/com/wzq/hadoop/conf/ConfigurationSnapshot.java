@@ -0,0 +1,170 @@
+package com.wzq.hadoop.conf;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * {@link Configuration}在某一时刻的只读快照，给在内层循环里读取配置的代码使用
+ * <p>
+ * All values are variable-expanded once, when the snapshot is taken, and stored in a plain
+ * {@link HashMap} that is never modified afterwards, so reads take no lock. The typed getters parse
+ * each value at most once per type and remember the result in the key's {@link Entry}; later calls
+ * are a hash lookup and a field read.
+ * <p>
+ * A snapshot does not see changes made to its configuration after {@link Configuration#snapshot()}
+ * returned; take a new one instead. The getters follow the same rules as the ones in
+ * {@link Configuration}: unparsable numbers and booleans yield the default value.
+ */
+public final class ConfigurationSnapshot {
+
+    /**
+     * 标记值不能被解析为对应的类型，此时返回调用者给的默认值
+     */
+    private static final Object INVALID = new Object();
+
+    /**
+     * 一个key对应的值，以及按类型缓存的解析结果
+     * <p>
+     * The cached fields use the racy single-check idiom: they hold immutable boxed objects, so a
+     * thread that sees a stale null simply parses the value again.
+     */
+    private static final class Entry {
+        final String value;
+        Object intValue;
+        Object longValue;
+        Object floatValue;
+        Object booleanValue;
+        Class<?> classValue;
+
+        Entry(String value) {
+            this.value = value;
+        }
+    }
+
+    private final Configuration conf;
+    private final Map<String, Entry> entries;
+
+    ConfigurationSnapshot(Configuration conf, Properties props) {
+        this.conf = conf;
+        Map<String, Entry> map = new HashMap<String, Entry>(props.size() * 2);
+        for (String name : props.stringPropertyNames()) {
+            String value = conf.get(name);
+            if (value != null) {
+                map.put(name, new Entry(value));
+            }
+        }
+        this.entries = map;
+    }
+
+    public String get(String name) {
+        Entry entry = entries.get(name);
+        return entry == null ? null : entry.value;
+    }
+
+    public String get(String name, String defaultValue) {
+        Entry entry = entries.get(name);
+        return entry == null ? defaultValue : entry.value;
+    }
+
+    public int getInt(String name, int defaultValue) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return defaultValue;
+        }
+        Object parsed = entry.intValue;
+        if (parsed == null) {
+            try {
+                String hexString = conf.getHexDigits(entry.value);
+                parsed = hexString != null ? Integer.parseInt(hexString, 16) : Integer.parseInt(entry.value);
+            } catch (NumberFormatException e) {
+                parsed = INVALID;
+            }
+            entry.intValue = parsed;
+        }
+        return parsed == INVALID ? defaultValue : (Integer) parsed;
+    }
+
+    public long getLong(String name, long defaultValue) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return defaultValue;
+        }
+        Object parsed = entry.longValue;
+        if (parsed == null) {
+            try {
+                String hexString = conf.getHexDigits(entry.value);
+                parsed = hexString != null ? Long.parseLong(hexString, 16) : Long.parseLong(entry.value);
+            } catch (NumberFormatException e) {
+                parsed = INVALID;
+            }
+            entry.longValue = parsed;
+        }
+        return parsed == INVALID ? defaultValue : (Long) parsed;
+    }
+
+    public float getFloat(String name, float defaultValue) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return defaultValue;
+        }
+        Object parsed = entry.floatValue;
+        if (parsed == null) {
+            try {
+                parsed = Float.parseFloat(entry.value);
+            } catch (NumberFormatException e) {
+                parsed = INVALID;
+            }
+            entry.floatValue = parsed;
+        }
+        return parsed == INVALID ? defaultValue : (Float) parsed;
+    }
+
+    public boolean getBoolean(String name, boolean defaultValue) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return defaultValue;
+        }
+        Object parsed = entry.booleanValue;
+        if (parsed == null) {
+            if ("true".equals(entry.value)) {
+                parsed = Boolean.TRUE;
+            } else if ("false".equals(entry.value)) {
+                parsed = Boolean.FALSE;
+            } else {
+                parsed = INVALID;
+            }
+            entry.booleanValue = parsed;
+        }
+        return parsed == INVALID ? defaultValue : (Boolean) parsed;
+    }
+
+    /**
+     * Get the value of the name property as a Class, loaded through the configuration's class loader.
+     *
+     * @throws RuntimeException if the class cannot be found; the failure is not cached
+     */
+    public Class<?> getClass(String name, Class<?> defaultValue) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return defaultValue;
+        }
+        Class<?> theClass = entry.classValue;
+        if (theClass == null) {
+            try {
+                theClass = conf.getClassByName(entry.value);
+            } catch (ClassNotFoundException e) {
+                throw new RuntimeException(e);
+            }
+            entry.classValue = theClass;
+        }
+        return theClass;
+    }
+
+    /**
+     * @return the number of properties in the snapshot
+     */
+    public int size() {
+        return entries.size();
+    }
+}
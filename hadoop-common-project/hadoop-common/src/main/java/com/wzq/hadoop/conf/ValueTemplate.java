@@ -0,0 +1,84 @@
+package com.wzq.hadoop.conf;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预编译的配置值：把值一次性切分为文本段和{@code ${var}}段，展开时不再需要正则匹配
+ * <p>
+ * A value is split into {@code n + 1} literals and {@code n} variable names, interleaved as
+ * {@code literal(0) ${variable(0)} literal(1) ... ${variable(n - 1)} literal(n)}. A variable reference
+ * is {@code ${name}} where name is non-empty and contains no '}', '$' or ' ', which is what the old
+ * {@code \$\{[^\}\$ ]+\}} pattern matched; anything else is literal text.
+ */
+final class ValueTemplate {
+
+    private final String[] literals;
+    private final String[] variables;
+
+    private ValueTemplate(String[] literals, String[] variables) {
+        this.literals = literals;
+        this.variables = variables;
+    }
+
+    /**
+     * @return true if the value may contain a variable reference and is worth compiling
+     */
+    static boolean hasVariables(String value) {
+        return value.indexOf("${") >= 0;
+    }
+
+    /**
+     * 切分一个配置值
+     */
+    static ValueTemplate compile(String value) {
+        List<String> literals = new ArrayList<String>();
+        List<String> variables = new ArrayList<String>();
+        int length = value.length();
+        int literalStart = 0;
+        int i = 0;
+        while ((i = value.indexOf("${", i)) >= 0) {
+            int end = i + 2;
+            while (end < length) {
+                char c = value.charAt(end);
+                if (c == '}' || c == '$' || c == ' ') {
+                    break;
+                }
+                end++;
+            }
+            if (end < length && value.charAt(end) == '}' && end > i + 2) {
+                literals.add(value.substring(literalStart, i));
+                variables.add(value.substring(i + 2, end));
+                i = end + 1;
+                literalStart = i;
+            } else {
+                // 不是合法的变量引用，"$"作为普通文本，从下一个字符继续查找
+                i++;
+            }
+        }
+        literals.add(value.substring(literalStart));
+        return new ValueTemplate(literals.toArray(new String[0]), variables.toArray(new String[0]));
+    }
+
+    /**
+     * @return the number of variable references
+     */
+    int getVariableCount() {
+        return variables.length;
+    }
+
+    /**
+     * @return the name of the i-th variable, without the surrounding "${" and "}"
+     */
+    String getVariable(int i) {
+        return variables[i];
+    }
+
+    /**
+     * @return the literal text before the i-th variable; {@code getLiteral(getVariableCount())} is
+     * the text after the last one
+     */
+    String getLiteral(int i) {
+        return literals[i];
+    }
+}
@@ -0,0 +1,27 @@
+package com.wzq.hadoop.fs;
+
+import java.io.IOException;
+
+/**
+ * 读取的数据与校验和不一致
+ * <p>
+ * Thrown for checksum errors.
+ */
+public class ChecksumException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final long pos;
+
+    public ChecksumException(String description, long pos) {
+        super(description);
+        this.pos = pos;
+    }
+
+    /**
+     * @return the position in the file of the first corrupt chunk
+     */
+    public long getPos() {
+        return pos;
+    }
+}
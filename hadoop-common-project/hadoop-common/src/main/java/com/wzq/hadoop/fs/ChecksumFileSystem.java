@@ -0,0 +1,516 @@
+package com.wzq.hadoop.fs;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.util.DataChecksum;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Arrays;
+
+/**
+ * 带校验和的文件系统：每个数据文件旁边有一个隐藏的校验和文件，写入时计算、读取时校验
+ * <p>
+ * Abstract Checksumed FileSystem. It provides a basic implementation of a Checksumed FileSystem,
+ * which creates a checksum file for each raw file. It generates &amp; verifies checksums at the
+ * client side.
+ * <p>
+ * The checksum file of {@code dir/name} is {@code dir/.name.crc}. It holds a header (the magic
+ * {@code "crc\0"} and the {@link DataChecksum} header) followed by one checksum per
+ * {@value #BYTES_PER_CHECKSUM_DEFAULT}-byte chunk ({@link #BYTES_PER_CHECKSUM_KEY}) of the data
+ * file. Data is checksummed and verified a buffer of chunks at a time, on sequential reads as
+ * well as on positioned reads. A file without a checksum file is read without verification.
+ */
+public abstract class ChecksumFileSystem extends FileSystem {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ChecksumFileSystem.class);
+
+    private static final byte[] CHECKSUM_VERSION = new byte[]{'c', 'r', 'c', 0};
+
+    /**
+     * 校验和文件的header长度：magic与{@link DataChecksum}的header
+     */
+    private static final int CHECKSUM_HEADER_LEN = CHECKSUM_VERSION.length + DataChecksum.HEADER_LEN;
+
+    /**
+     * 每多少字节数据一个校验和
+     */
+    public static final String BYTES_PER_CHECKSUM_KEY = "io.bytes.per.checksum";
+    public static final int BYTES_PER_CHECKSUM_DEFAULT = 512;
+
+    /**
+     * 校验和的类型，取值为{@link DataChecksum.Type}的名字，NULL表示不写校验和文件
+     */
+    public static final String CHECKSUM_TYPE_KEY = "io.checksum.type";
+    public static final String CHECKSUM_TYPE_DEFAULT = "CRC32C";
+
+    /**
+     * 一次计算/校验多少个chunk
+     */
+    private static final int CHUNKS_PER_BUFFER = 16;
+
+    protected final FileSystem fs;
+
+    private int bytesPerChecksum = BYTES_PER_CHECKSUM_DEFAULT;
+    private DataChecksum.Type checksumType = DataChecksum.Type.CRC32C;
+    private boolean verifyChecksum = true;
+
+    public ChecksumFileSystem(FileSystem fs) {
+        this.fs = fs;
+    }
+
+    @Override
+    public void initialize(URI name, Configuration conf) throws IOException {
+        fs.initialize(name, conf);
+        super.initialize(name, conf);
+        bytesPerChecksum = conf.getInt(BYTES_PER_CHECKSUM_KEY, BYTES_PER_CHECKSUM_DEFAULT);
+        if (bytesPerChecksum <= 0) {
+            throw new IllegalArgumentException("Invalid value for " + BYTES_PER_CHECKSUM_KEY + ": " + bytesPerChecksum);
+        }
+        String type = conf.get(CHECKSUM_TYPE_KEY, CHECKSUM_TYPE_DEFAULT).trim();
+        try {
+            checksumType = DataChecksum.Type.valueOf(type);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value for " + CHECKSUM_TYPE_KEY + ": " + type, e);
+        }
+    }
+
+    /**
+     * get the raw file system
+     */
+    public FileSystem getRawFileSystem() {
+        return fs;
+    }
+
+    /**
+     * Set whether to verify checksum.
+     */
+    public void setVerifyChecksum(boolean verifyChecksum) {
+        this.verifyChecksum = verifyChecksum;
+    }
+
+    @Override
+    public URI getUri() {
+        return fs.getUri();
+    }
+
+    /**
+     * 数据都经过底层文件系统读写，统计信息也记在底层文件系统中
+     */
+    @Override
+    public Statistics getStatistics() {
+        return fs.getStatistics();
+    }
+
+    /**
+     * Return the name of the checksum file associated with a file.
+     */
+    public static Path getChecksumFile(Path file) {
+        String name = "." + file.getName() + ".crc";
+        Path parent = file.getParent();
+        return parent == null ? new Path(name) : new Path(parent, name);
+    }
+
+    /**
+     * Return true iff file is a checksum file name.
+     */
+    public static boolean isChecksumFile(Path file) {
+        String name = file.getName();
+        return name.startsWith(".") && name.endsWith(".crc");
+    }
+
+    // ######################################################################################
+    // 输入流
+
+    /**
+     * 读取数据时按chunk校验：一次读入{@value #CHUNKS_PER_BUFFER}个chunk及它们的校验和，整块校验
+     * <p>
+     * For open()'s FSInputStream. It verifies that data matches checksums.
+     */
+    private static class ChecksumFSInputChecker extends FSInputStream {
+        private final Path file;
+        private final FSDataInputStream datas;
+        private final FSDataInputStream sums;
+        private final DataChecksum checksum;
+        private final int bytesPerChecksum;
+
+        private final byte[] buf;
+        private final byte[] sumBuf;
+        private long chunkPos = 0L;     // position in the file of buf[0], always chunk aligned
+        private int count = 0;          // valid bytes in buf
+        private int pos = 0;            // next byte to return; may be past count after a seek
+
+        ChecksumFSInputChecker(Path file, FSDataInputStream datas, FSDataInputStream sums,
+                               DataChecksum checksum) {
+            this.file = file;
+            this.datas = datas;
+            this.sums = sums;
+            this.checksum = checksum;
+            this.bytesPerChecksum = checksum.getBytesPerChecksum();
+            this.buf = new byte[bytesPerChecksum * CHUNKS_PER_BUFFER];
+            this.sumBuf = new byte[checksum.getChecksumSize(buf.length)];
+        }
+
+        /**
+         * 读入下一批chunk并校验
+         *
+         * @return false at the end of the file
+         */
+        private boolean fill() throws IOException {
+            chunkPos += count;
+            pos -= count;
+            count = 0;
+            int n = readFully(datas, buf, 0, buf.length);
+            if (n <= 0) {
+                return false;
+            }
+            int sumLen = checksum.getChecksumSize(n);
+            if (readFully(sums, sumBuf, 0, sumLen) < sumLen) {
+                throw new ChecksumException("Checksum file of " + file + " is truncated at " + chunkPos, chunkPos);
+            }
+            checksum.verifyChunkedSums(buf, 0, n, sumBuf, 0, file.toString(), chunkPos);
+            count = n;
+            return true;
+        }
+
+        private static int readFully(FSDataInputStream in, byte[] b, int off, int len) throws IOException {
+            int n = 0;
+            while (n < len) {
+                int nread = in.read(b, off + n, len - n);
+                if (nread < 0) {
+                    break;
+                }
+                n += nread;
+            }
+            return n;
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (pos >= count) {
+                if (!fill()) {
+                    return -1;
+                }
+            }
+            return buf[pos++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+                throw new IndexOutOfBoundsException();
+            } else if (len == 0) {
+                return 0;
+            }
+            while (pos >= count) {
+                if (!fill()) {
+                    return -1;
+                }
+            }
+            int n = Math.min(len, count - pos);
+            System.arraycopy(buf, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        /**
+         * 只读取并校验覆盖[position, position + len)的chunk，不改变流的当前位置
+         */
+        @Override
+        public int read(long position, byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            len = Math.min(len, buf.length * CHUNKS_PER_BUFFER);
+            long start = position - position % bytesPerChecksum;
+            int skip = (int) (position - start);
+            int rangeLen = (skip + len + bytesPerChecksum - 1) / bytesPerChecksum * bytesPerChecksum;
+
+            byte[] data = new byte[rangeLen];
+            int n = 0;
+            while (n < rangeLen) {
+                int nread = datas.read(start + n, data, n, rangeLen - n);
+                if (nread < 0) {
+                    break;
+                }
+                n += nread;
+            }
+            if (n <= skip) {
+                return -1;
+            }
+
+            int sumLen = checksum.getChecksumSize(n);
+            byte[] sumData = new byte[sumLen];
+            long sumPos = CHECKSUM_HEADER_LEN + start / bytesPerChecksum * checksum.getChecksumSize();
+            try {
+                sums.readFully(sumPos, sumData, 0, sumLen);
+            } catch (EOFException e) {
+                throw new ChecksumException("Checksum file of " + file + " is truncated at " + start, start);
+            }
+            // 并发的定位读不能共用checksum对象
+            DataChecksum.newDataChecksum(checksum.getChecksumType(), bytesPerChecksum)
+                    .verifyChunkedSums(data, 0, n, sumData, 0, file.toString(), start);
+
+            int result = Math.min(len, n - skip);
+            System.arraycopy(data, skip, b, off, result);
+            return result;
+        }
+
+        @Override
+        public long getPos() throws IOException {
+            return chunkPos + pos;
+        }
+
+        /**
+         * 在缓冲区内的seek只移动pos；否则把两个文件都定位到目标所在chunk的开头
+         */
+        @Override
+        public void seek(long target) throws IOException {
+            if (target < 0) {
+                throw new EOFException("Cannot seek to negative offset " + target);
+            }
+            if (target >= chunkPos && target <= chunkPos + count) {
+                pos = (int) (target - chunkPos);
+                return;
+            }
+            long start = target - target % bytesPerChecksum;
+            datas.seek(start);
+            sums.seek(CHECKSUM_HEADER_LEN + start / bytesPerChecksum * checksum.getChecksumSize());
+            chunkPos = start;
+            count = 0;
+            pos = (int) (target - start);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (n <= 0) {
+                return 0;
+            }
+            seek(getPos() + n);
+            return n;
+        }
+
+        @Override
+        public boolean seekToNewSource(long targetPos) throws IOException {
+            return false;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return Math.max(0, count - pos) + datas.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            datas.close();
+            sums.close();
+        }
+    }
+
+    /**
+     * Opens an FSDataInputStream at the indicated Path. The data is verified against the checksum
+     * file if there is one.
+     */
+    @Override
+    public FSDataInputStream open(Path f, int bufferSize) throws IOException {
+        FSDataInputStream datas = fs.open(f, bufferSize);
+        Path sumFile = getChecksumFile(f);
+        if (!verifyChecksum || !fs.exists(sumFile)) {
+            return datas;
+        }
+
+        FSDataInputStream sums = fs.open(sumFile, bufferSize);
+        try {
+            byte[] version = new byte[CHECKSUM_VERSION.length];
+            sums.readFully(version);
+            if (!Arrays.equals(version, CHECKSUM_VERSION)) {
+                throw new IOException("Not a checksum file: " + sumFile);
+            }
+            DataChecksum checksum = DataChecksum.newDataChecksum(sums);
+            if (checksum.getChecksumSize() > 0) {
+                return new FSDataInputStream(new ChecksumFSInputChecker(f, datas, sums, checksum));
+            }
+        } catch (IOException e) {
+            LOG.warn("Problem opening checksum file: {}. Ignoring exception: {}", sumFile, e.getMessage());
+        }
+        sums.close();
+        return datas;
+    }
+
+    // ######################################################################################
+    // 输出流
+
+    /**
+     * 写入时攒满{@value #CHUNKS_PER_BUFFER}个chunk才计算一次校验和；大的写入直接在用户的数组上计算，
+     * 不经过缓冲区
+     * <p>
+     * This class provides an output stream for a checksummed file. It generates checksums for data.
+     */
+    private static class ChecksumFSOutputSummer extends OutputStream {
+        private final FSDataOutputStream datas;
+        private final FSDataOutputStream sums;
+        private final DataChecksum checksum;
+        private final int bytesPerChecksum;
+
+        private final byte[] buf;
+        private final byte[] sumBuf;
+        private int count = 0;
+        private boolean closed = false;
+
+        ChecksumFSOutputSummer(FSDataOutputStream datas, FSDataOutputStream sums, DataChecksum checksum)
+                throws IOException {
+            this.datas = datas;
+            this.sums = sums;
+            this.checksum = checksum;
+            this.bytesPerChecksum = checksum.getBytesPerChecksum();
+            this.buf = new byte[bytesPerChecksum * CHUNKS_PER_BUFFER];
+            this.sumBuf = new byte[checksum.getChecksumSize(buf.length)];
+            sums.write(CHECKSUM_VERSION, 0, CHECKSUM_VERSION.length);
+            checksum.writeHeader(sums);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            checkClosed();
+            buf[count++] = (byte) b;
+            if (count == buf.length) {
+                flushBuffer();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkClosed();
+            if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+                throw new IndexOutOfBoundsException();
+            }
+            while (len > 0) {
+                if (count == 0 && len >= buf.length) {
+                    // 缓冲区是空的，整批的chunk直接从用户的数组写出
+                    int n = len - len % buf.length;
+                    writeChecksumChunks(b, off, n);
+                    off += n;
+                    len -= n;
+                    continue;
+                }
+                int n = Math.min(len, buf.length - count);
+                System.arraycopy(b, off, buf, count, n);
+                count += n;
+                off += n;
+                len -= n;
+                if (count == buf.length) {
+                    flushBuffer();
+                }
+            }
+        }
+
+        /**
+         * 除了最后一个chunk，len必须是chunk大小的整数倍
+         */
+        private void writeChecksumChunks(byte[] b, int off, int len) throws IOException {
+            int sumLen = checksum.getChecksumSize(len);
+            byte[] sumData = sumLen <= sumBuf.length ? sumBuf : new byte[sumLen];
+            checksum.calculateChunkedSums(b, off, len, sumData, 0);
+            datas.write(b, off, len);
+            sums.write(sumData, 0, sumLen);
+        }
+
+        private void flushBuffer() throws IOException {
+            if (count > 0) {
+                writeChecksumChunks(buf, 0, count);
+                count = 0;
+            }
+        }
+
+        /**
+         * 只写出完整的chunk，不满的chunk留到后面的写入或者close，这样校验和文件不用回头改写
+         */
+        @Override
+        public void flush() throws IOException {
+            checkClosed();
+            int full = count - count % bytesPerChecksum;
+            if (full > 0) {
+                writeChecksumChunks(buf, 0, full);
+                System.arraycopy(buf, full, buf, 0, count - full);
+                count -= full;
+            }
+            datas.flush();
+            sums.flush();
+        }
+
+        private void checkClosed() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            try {
+                flushBuffer();
+            } finally {
+                closed = true;
+                datas.close();
+                sums.close();
+            }
+        }
+    }
+
+    @Override
+    public FSDataOutputStream create(Path f, boolean overwrite, int bufferSize) throws IOException {
+        FSDataOutputStream datas = fs.create(f, overwrite, bufferSize);
+        Path sumFile = getChecksumFile(f);
+        if (checksumType == DataChecksum.Type.NULL) {
+            if (fs.exists(sumFile)) {
+                fs.delete(sumFile, false);
+            }
+            return datas;
+        }
+        FSDataOutputStream sums = fs.create(sumFile, true, bufferSize);
+        DataChecksum checksum = DataChecksum.newDataChecksum(checksumType, bytesPerChecksum);
+        return new FSDataOutputStream(new ChecksumFSOutputSummer(datas, sums, checksum), null);
+    }
+
+    // ######################################################################################
+    // 文件与目录
+
+    /**
+     * 删除文件时一起删除它的校验和文件
+     */
+    @Override
+    public boolean delete(Path f, boolean recursive) throws IOException {
+        boolean deleted = fs.delete(f, recursive);
+        Path sumFile = getChecksumFile(f);
+        if (deleted && fs.exists(sumFile)) {
+            fs.delete(sumFile, false);
+        }
+        return deleted;
+    }
+
+    @Override
+    public boolean mkdirs(Path f) throws IOException {
+        return fs.mkdirs(f);
+    }
+
+    @Override
+    public boolean exists(Path f) throws IOException {
+        return fs.exists(f);
+    }
+
+    @Override
+    public long getLength(Path f) throws IOException {
+        return fs.getLength(f);
+    }
+
+    @Override
+    public void close() throws IOException {
+        fs.close();
+        super.close();
+    }
+}
@@ -1,8 +1,5 @@
 package com.wzq.hadoop.fs;
 
-import org.omg.CORBA.PUBLIC_MEMBER;
-
-import javax.swing.plaf.PanelUI;
 import java.io.DataOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
@@ -1,10 +1,13 @@
 package com.wzq.hadoop.fs;
 
+import com.wzq.hadoop.conf.Configuration;
 import com.wzq.hadoop.conf.Configured;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -15,6 +18,133 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public abstract class FileSystem extends Configured implements Closeable {
 
+    /**
+     * 本文件系统的统计信息
+     * <p>
+     * The statistics for this file system.
+     */
+    protected Statistics statistics;
+
+    // ######################################################################################
+    // 获取FileSystem
+
+    /**
+     * 获取本地文件系统，写入的文件带有校验和
+     * <p>
+     * Get the local file system.
+     *
+     * @param conf the configuration to configure the file system with
+     * @return a LocalFileSystem
+     */
+    public static LocalFileSystem getLocal(Configuration conf) throws IOException {
+        LocalFileSystem fs = new LocalFileSystem();
+        fs.initialize(RawLocalFileSystem.NAME, conf);
+        return fs;
+    }
+
+    /**
+     * 创建FileSystem之后调用，初始化统计信息与配置
+     * <p>
+     * Called after a new FileSystem instance is constructed.
+     *
+     * @param name a uri whose authority section names the host, port, etc. for this FileSystem
+     * @param conf the configuration
+     */
+    public void initialize(URI name, Configuration conf) throws IOException {
+        statistics = new Statistics(name.getScheme());
+        setConf(conf);
+    }
+
+    /**
+     * Returns a URI whose scheme and authority identify this FileSystem.
+     */
+    public abstract URI getUri();
+
+    // ######################################################################################
+    // 文件操作
+
+    /**
+     * 打开一个文件，返回FSDataInputStream
+     * <p>
+     * Opens an FSDataInputStream at the indicated Path.
+     *
+     * @param f          the file name to open
+     * @param bufferSize the size of the buffer to be used.
+     */
+    public abstract FSDataInputStream open(Path f, int bufferSize) throws IOException;
+
+    /**
+     * Opens an FSDataInputStream at the indicated Path.
+     *
+     * @param f the file to open
+     */
+    public FSDataInputStream open(Path f) throws IOException {
+        return open(f, getConf().getInt("io.file.buffer.size", 4096));
+    }
+
+    /**
+     * 创建一个文件，返回FSDataOutputStream
+     * <p>
+     * Opens an FSDataOutputStream at the indicated Path.
+     *
+     * @param f          the file name to open
+     * @param overwrite  if a file with this name already exists, then if true,
+     *                   the file will be overwritten, and if false an error will be thrown.
+     * @param bufferSize the size of the buffer to be used.
+     */
+    public abstract FSDataOutputStream create(Path f, boolean overwrite, int bufferSize) throws IOException;
+
+    /**
+     * Opens an FSDataOutputStream at the indicated Path. Files are overwritten by default.
+     */
+    public FSDataOutputStream create(Path f) throws IOException {
+        return create(f, true, getConf().getInt("io.file.buffer.size", 4096));
+    }
+
+    /**
+     * 删除一个文件
+     * <p>
+     * Delete a file.
+     *
+     * @param f         the path to delete.
+     * @param recursive if path is a directory and set to true, the directory is deleted else
+     *                  throws an exception. In case of a file the recursive can be set to either true or false.
+     * @return true if delete is successful else false.
+     */
+    public abstract boolean delete(Path f, boolean recursive) throws IOException;
+
+    /**
+     * 创建目录，包括所有不存在的父目录
+     * <p>
+     * Make the given file and all non-existent parents into directories.
+     */
+    public abstract boolean mkdirs(Path f) throws IOException;
+
+    /**
+     * Check if exists.
+     *
+     * @param f source file
+     */
+    public abstract boolean exists(Path f) throws IOException;
+
+    /**
+     * 返回文件的长度
+     * <p>
+     * The number of bytes in a file.
+     */
+    public abstract long getLength(Path f) throws IOException;
+
+    /**
+     * Return the statistics for this file system.
+     */
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public void close() throws IOException {
+    }
+
     /**
      * Statistics类是FileSystem的静态内部类，用于跟踪文件系统操作的统计数据，如读取次数、
      * 写入次数、读取字节数、写入字节数等。它提供了一组方法来获取和重置这些统计信息。
@@ -0,0 +1,33 @@
+package com.wzq.hadoop.fs;
+
+import java.io.File;
+
+/**
+ * 带校验和的本地文件系统，{@link FileSystem#getLocal}返回的就是它
+ * <p>
+ * Implement the FileSystem API for the checksumed local filesystem. Use
+ * {@link #getRawFileSystem()} for files that carry their own checksums or are rewritten often,
+ * such as sort spills.
+ */
+public class LocalFileSystem extends ChecksumFileSystem {
+
+    public LocalFileSystem() {
+        this(new RawLocalFileSystem());
+    }
+
+    public LocalFileSystem(FileSystem rawLocalFileSystem) {
+        super(rawLocalFileSystem);
+    }
+
+    /**
+     * Convert a path to a File.
+     */
+    public File pathToFile(Path path) {
+        return ((RawLocalFileSystem) fs).pathToFile(path);
+    }
+
+    @Override
+    public String toString() {
+        return "LocalFS";
+    }
+}
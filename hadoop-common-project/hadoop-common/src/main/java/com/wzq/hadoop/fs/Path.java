@@ -4,6 +4,7 @@ import com.wzq.hadoop.conf.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Objects;
@@ -185,9 +186,12 @@ public class Path implements Comparable {
     /**
      * Return the {@link FileSystem} that owns this Path.
      */
-    public FileSystem getFileSystem(Configuration conf) {
-        // TODO FileSystem
-        return null;
+    public FileSystem getFileSystem(Configuration conf) throws IOException {
+        String scheme = uri.getScheme();
+        if (scheme == null || RawLocalFileSystem.NAME.getScheme().equals(scheme)) {
+            return FileSystem.getLocal(conf);
+        }
+        throw new IOException("No FileSystem for scheme: " + scheme);
     }
 
     /**
@@ -197,7 +201,6 @@ public class Path implements Comparable {
      */
     public boolean isAbsolute() {
         int start = hasWindowsDrive(uri.getPath(), true) ? 3 : 0;
-        LOG.info("start = {}", start);
         return uri.getPath().startsWith(SEPARATOR, start);
     }
 
@@ -208,7 +211,6 @@ public class Path implements Comparable {
      */
     public String getName() {
         String path = uri.getPath();
-        LOG.info("path = {}", path);
         int slash = path.lastIndexOf(SEPARATOR);
         return path.substring(slash + 1);
     }
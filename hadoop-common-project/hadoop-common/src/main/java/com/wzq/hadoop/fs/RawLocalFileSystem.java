@@ -0,0 +1,200 @@
+package com.wzq.hadoop.fs;
+
+import java.io.*;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 本地文件系统的实现，直接读写java.io.File，不做校验和
+ * <p>
+ * Implement the FileSystem API for the raw local filesystem.
+ */
+public class RawLocalFileSystem extends FileSystem {
+
+    static final URI NAME = URI.create("file:///");
+
+    /**
+     * Convert a path to a File.
+     */
+    public File pathToFile(Path path) {
+        return new File(path.toUri().getPath());
+    }
+
+    @Override
+    public URI getUri() {
+        return NAME;
+    }
+
+    // ######################################################################################
+    // 输入流
+
+    /**
+     * 本地文件的输入流，基于FileChannel实现定位读，定位读不改变流的当前位置
+     * <p>
+     * For open()'s FSInputStream
+     */
+    class LocalFSFileInputStream extends FSInputStream {
+        private final FileInputStream fis;
+        private final FileChannel channel;
+        private long position;
+
+        public LocalFSFileInputStream(Path f) throws IOException {
+            this.fis = new FileInputStream(pathToFile(f));
+            this.channel = fis.getChannel();
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            channel.position(pos);
+            this.position = pos;
+        }
+
+        @Override
+        public long getPos() throws IOException {
+            return this.position;
+        }
+
+        @Override
+        public boolean seekToNewSource(long targetPos) throws IOException {
+            return false;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return fis.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            fis.close();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = fis.read();
+            if (value >= 0) {
+                this.position++;
+                statistics.incrementBytesRead(1);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int value = fis.read(b, off, len);
+            if (value > 0) {
+                this.position += value;
+                statistics.incrementBytesRead(value);
+            }
+            return value;
+        }
+
+        @Override
+        public int read(long position, byte[] b, int off, int len) throws IOException {
+            ByteBuffer bb = ByteBuffer.wrap(b, off, len);
+            int value = channel.read(bb, position);
+            if (value > 0) {
+                statistics.incrementBytesRead(value);
+            }
+            return value;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long value = fis.skip(n);
+            if (value > 0) {
+                this.position += value;
+            }
+            return value;
+        }
+    }
+
+    @Override
+    public FSDataInputStream open(Path f, int bufferSize) throws IOException {
+        if (!exists(f)) {
+            throw new FileNotFoundException(f.toString());
+        }
+        statistics.incrementReadOps(1);
+        return new FSDataInputStream(new BufferedFSInputStream(
+                new LocalFSFileInputStream(f), bufferSize));
+    }
+
+    // ######################################################################################
+    // 输出流
+
+    @Override
+    public FSDataOutputStream create(Path f, boolean overwrite, int bufferSize) throws IOException {
+        if (exists(f) && !overwrite) {
+            throw new IOException("File already exists:" + f);
+        }
+        Path parent = f.getParent();
+        if (parent != null && !mkdirs(parent)) {
+            throw new IOException("Mkdirs failed to create " + parent);
+        }
+        statistics.incrementWriteOps(1);
+        return new FSDataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(pathToFile(f)), bufferSize), statistics);
+    }
+
+    // ######################################################################################
+    // 文件与目录
+
+    @Override
+    public boolean delete(Path p, boolean recursive) throws IOException {
+        File f = pathToFile(p);
+        if (!f.exists()) {
+            return false;
+        }
+        statistics.incrementWriteOps(1);
+        if (f.isFile()) {
+            return f.delete();
+        }
+        File[] children = f.listFiles();
+        if (!recursive && children != null && children.length != 0) {
+            throw new IOException("Directory " + f + " is not empty");
+        }
+        return fullyDelete(f);
+    }
+
+    private static boolean fullyDelete(File dir) {
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isDirectory() ? !fullyDelete(child) : !child.delete()) {
+                    return false;
+                }
+            }
+        }
+        return dir.delete();
+    }
+
+    @Override
+    public boolean mkdirs(Path f) throws IOException {
+        File p2f = pathToFile(f);
+        if (p2f.exists() && !p2f.isDirectory()) {
+            throw new FileNotFoundException("Destination exists and is not a directory: " + p2f);
+        }
+        statistics.incrementWriteOps(1);
+        return p2f.isDirectory() || p2f.mkdirs();
+    }
+
+    @Override
+    public boolean exists(Path f) throws IOException {
+        return pathToFile(f).exists();
+    }
+
+    @Override
+    public long getLength(Path f) throws IOException {
+        File file = pathToFile(f);
+        if (!file.exists()) {
+            throw new FileNotFoundException("File " + f + " does not exist.");
+        }
+        return file.length();
+    }
+
+    @Override
+    public String toString() {
+        return "LocalFS";
+    }
+}
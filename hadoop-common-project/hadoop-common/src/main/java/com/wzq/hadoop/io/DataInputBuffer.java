@@ -51,7 +51,7 @@ public class DataInputBuffer extends DataInputStream {
     private Buffer buffer;
 
     public DataInputBuffer() {
-        super(new Buffer());
+        this(new Buffer());
     }
 
     public DataInputBuffer(Buffer buffer) {
@@ -0,0 +1,243 @@
+package com.wzq.hadoop.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.nio.ByteOrder;
+
+/**
+ * 按字典序比较两个字节数组(无符号)
+ * <p>
+ * Utility code to do optimized byte-array comparison. {@code UnsafeComparer} reads 8 bytes at a time
+ * through {@code sun.misc.Unsafe} and is picked as the default when the JVM exposes it; otherwise
+ * {@code PureJavaComparer} compares one unsigned byte per iteration.
+ * <p>
+ * {@code sun.misc.Unsafe} is only reached through reflection and a bound {@link MethodHandle}, so
+ * this class compiles without "internal proprietary API" warnings; a {@code static final} handle is
+ * a constant to the JIT and {@code invokeExact} on it compiles to the same load as a direct call.
+ */
+abstract class FastByteComparisons {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FastByteComparisons.class);
+
+    /**
+     * Lexicographically compare two byte ranges.
+     */
+    interface Comparer<T> {
+        int compareTo(T buffer1, int offset1, int length1,
+                      T buffer2, int offset2, int length2);
+    }
+
+    /**
+     * Lexicographically compare two byte arrays.
+     */
+    public static int compareTo(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+        return LexicographicalComparerHolder.BEST_COMPARER.compareTo(b1, s1, l1, b2, s2, l2);
+    }
+
+    /**
+     * @return the comparer used by {@link #compareTo}
+     */
+    static Comparer<byte[]> bestComparer() {
+        return LexicographicalComparerHolder.BEST_COMPARER;
+    }
+
+    /**
+     * @return the byte-at-a-time fallback, always available
+     */
+    static Comparer<byte[]> lexicographicalComparerJavaImpl() {
+        return LexicographicalComparerHolder.PureJavaComparer.INSTANCE;
+    }
+
+    /**
+     * Provides a lexicographical comparer implementation; either a Java implementation or a faster
+     * implementation based on {@code sun.misc.Unsafe}.
+     * <p>
+     * Uses reflection to gracefully fall back to the Java implementation if {@code Unsafe} isn't
+     * available.
+     */
+    private static class LexicographicalComparerHolder {
+        static final String UNSAFE_COMPARER_NAME =
+                LexicographicalComparerHolder.class.getName() + "$UnsafeComparer";
+
+        static final Comparer<byte[]> BEST_COMPARER = getBestComparer();
+
+        /**
+         * Returns the Unsafe-using Comparer, or falls back to the pure-Java implementation if unable
+         * to do so.
+         */
+        @SuppressWarnings("unchecked")
+        static Comparer<byte[]> getBestComparer() {
+            // sparc不支持非对齐的读取
+            if (System.getProperty("os.arch").toLowerCase().startsWith("sparc")) {
+                LOG.debug("Lexicographical comparer selected for byte aligned system architecture");
+                return lexicographicalComparerJavaImpl();
+            }
+            try {
+                Class<?> theClass = Class.forName(UNSAFE_COMPARER_NAME);
+
+                // yes, UnsafeComparer does implement Comparer<byte[]>
+                Comparer<byte[]> comparer = (Comparer<byte[]>) theClass.getEnumConstants()[0];
+                LOG.debug("Unsafe comparer selected for byte unaligned system architecture");
+                return comparer;
+            } catch (Throwable t) { // ensure we really catch *everything*
+                LOG.debug("Unsafe comparer not available, falling back to pure Java: {}", t.toString());
+                return lexicographicalComparerJavaImpl();
+            }
+        }
+
+        private enum PureJavaComparer implements Comparer<byte[]> {
+            INSTANCE;
+
+            @Override
+            public int compareTo(byte[] buffer1, int offset1, int length1,
+                                 byte[] buffer2, int offset2, int length2) {
+                // Short circuit equal case
+                if (buffer1 == buffer2 &&
+                        offset1 == offset2 &&
+                        length1 == length2) {
+                    return 0;
+                }
+                int end1 = offset1 + length1;
+                int end2 = offset2 + length2;
+                for (int i = offset1, j = offset2; i < end1 && j < end2; i++, j++) {
+                    int a = (buffer1[i] & 0xff);
+                    int b = (buffer2[j] & 0xff);
+                    if (a != b) {
+                        return a - b;
+                    }
+                }
+                return length1 - length2;
+            }
+        }
+
+        @SuppressWarnings("unused") // used via reflection
+        private enum UnsafeComparer implements Comparer<byte[]> {
+            INSTANCE;
+
+            /**
+             * {@code Unsafe.getLong(Object, long)}，已经绑定到Unsafe实例上
+             */
+            static final MethodHandle GET_LONG;
+
+            /**
+             * The offset to the first element in a byte array.
+             */
+            static final int BYTE_ARRAY_BASE_OFFSET;
+
+            static {
+                try {
+                    Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                    Field f = unsafeClass.getDeclaredField("theUnsafe");
+                    f.setAccessible(true);
+                    Object theUnsafe = f.get(null);
+
+                    BYTE_ARRAY_BASE_OFFSET = (Integer) unsafeClass.getMethod("arrayBaseOffset", Class.class)
+                            .invoke(theUnsafe, byte[].class);
+                    int indexScale = (Integer) unsafeClass.getMethod("arrayIndexScale", Class.class)
+                            .invoke(theUnsafe, byte[].class);
+                    // sanity check - this should never fail
+                    if (indexScale != 1) {
+                        throw new AssertionError();
+                    }
+
+                    GET_LONG = MethodHandles.lookup()
+                            .unreflect(unsafeClass.getMethod("getLong", Object.class, long.class))
+                            .bindTo(theUnsafe);
+                } catch (ReflectiveOperationException e) {
+                    // It doesn't matter what we throw; it's swallowed in getBestComparer().
+                    throw new Error(e);
+                }
+            }
+
+            /**
+             * Reads 8 bytes of {@code buffer} in native byte order.
+             */
+            static long getLong(byte[] buffer, long offset) {
+                try {
+                    return (long) GET_LONG.invokeExact((Object) buffer, offset);
+                } catch (Throwable t) {
+                    throw new IllegalStateException(t);
+                }
+            }
+
+            static final boolean littleEndian =
+                    ByteOrder.nativeOrder().equals(ByteOrder.LITTLE_ENDIAN);
+
+            /**
+             * Returns true if x1 is less than x2, when both values are treated as unsigned.
+             */
+            static boolean lessThanUnsigned(long x1, long x2) {
+                return (x1 + Long.MIN_VALUE) < (x2 + Long.MIN_VALUE);
+            }
+
+            /**
+             * Lexicographically compare two arrays.
+             *
+             * @param buffer1 left operand
+             * @param buffer2 right operand
+             * @param offset1 Where to start comparing in the left buffer
+             * @param offset2 Where to start comparing in the right buffer
+             * @param length1 How much to compare from the left buffer
+             * @param length2 How much to compare from the right buffer
+             * @return 0 if equal, < 0 if left is less than right, etc.
+             */
+            @Override
+            public int compareTo(byte[] buffer1, int offset1, int length1,
+                                 byte[] buffer2, int offset2, int length2) {
+                // Short circuit equal case
+                if (buffer1 == buffer2 &&
+                        offset1 == offset2 &&
+                        length1 == length2) {
+                    return 0;
+                }
+                final int stride = 8;
+                int minLength = Math.min(length1, length2);
+                int strideLimit = minLength & ~(stride - 1);
+                long offset1Adj = (long) offset1 + BYTE_ARRAY_BASE_OFFSET;
+                long offset2Adj = (long) offset2 + BYTE_ARRAY_BASE_OFFSET;
+                int i;
+
+                /*
+                 * Compare 8 bytes at a time. Benchmarking shows comparing 8 bytes at a time is no
+                 * slower than comparing 4 bytes at a time even on 32-bit. On the other hand, it is
+                 * substantially faster on 64-bit.
+                 */
+                for (i = 0; i < strideLimit; i += stride) {
+                    long lw = getLong(buffer1, offset1Adj + i);
+                    long rw = getLong(buffer2, offset2Adj + i);
+
+                    if (lw != rw) {
+                        if (!littleEndian) {
+                            return lessThanUnsigned(lw, rw) ? -1 : 1;
+                        }
+
+                        /*
+                         * We want to compare only the first index where left[index] != right[index].
+                         * This corresponds to the least significant nonzero byte in lw ^ rw, since lw
+                         * and rw are little-endian. Long.numberOfTrailingZeros(diff) tells us the
+                         * least significant nonzero bit, and zeroing out the first three bits of L.nTZ
+                         * gives us the shift to get that least significant nonzero byte. This comparison
+                         * logic is based on UnsignedBytes comparator from guava v21
+                         */
+                        int n = Long.numberOfTrailingZeros(lw ^ rw) & ~0x7;
+                        return ((int) ((lw >>> n) & 0xFF)) - ((int) ((rw >>> n) & 0xFF));
+                    }
+                }
+
+                // The epilogue to cover the last (minLength % 8) elements.
+                for (; i < minLength; i++) {
+                    int a = (buffer1[offset1 + i] & 0xff);
+                    int b = (buffer2[offset2 + i] & 0xff);
+                    if (a != b) {
+                        return a - b;
+                    }
+                }
+                return length1 - length2;
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package com.wzq.hadoop.io;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.FileSystem;
+import com.wzq.hadoop.fs.Path;
+import com.wzq.hadoop.io.basic.LongWritable;
+import com.wzq.hadoop.io.compress.CompressionCodec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 有序、带索引的key/value文件，用于按key查找
+ * <p>
+ * 一个MapFile是一个目录，包含两个{@link SequenceFile}：
+ * <ul>
+ *     <li>data - 按key有序的所有记录</li>
+ *     <li>index - 每隔{@value #INDEX_INTERVAL_KEY}条记录一个key，以及这条记录在data文件中的位置</li>
+ * </ul>
+ * Reader打开时把index整个读入基本类型数组（key的字节放在一个连续的数组里），
+ * 查找时在index上二分查找，然后seek到data文件中对应的位置，最多顺序扫描interval条记录
+ * <p>
+ * A file-based map from keys to values.
+ */
+public class MapFile {
+
+    /**
+     * The name of the index file.
+     */
+    public static final String INDEX_FILE_NAME = "index";
+
+    /**
+     * The name of the data file.
+     */
+    public static final String DATA_FILE_NAME = "data";
+
+    /**
+     * 每隔多少条记录写一个索引
+     */
+    public static final String INDEX_INTERVAL_KEY = "io.map.index.interval";
+    public static final int INDEX_INTERVAL_DEFAULT = 128;
+
+    protected MapFile() {
+    }   // no public ctor
+
+    /**
+     * Writes a new map.
+     */
+    public static class Writer implements Closeable {
+        private final SequenceFile.Writer data;
+        private final SequenceFile.Writer index;
+
+        private final int indexInterval;
+        private long size;
+        private final LongWritable position = new LongWritable();
+
+        // 上一个key序列化后的字节，用来检查key是否有序
+        private final WritableComparator comparator;
+        private DataOutputBuffer lastKey = new DataOutputBuffer();
+        private DataOutputBuffer currentKey = new DataOutputBuffer();
+
+        /**
+         * Create the named map for keys of the named class.
+         */
+        public Writer(Configuration conf, FileSystem fs, String dirName,
+                      Class<? extends WritableComparable> keyClass, Class<?> valClass) throws IOException {
+            this(conf, fs, dirName, keyClass, valClass, SequenceFile.CompressionType.NONE, null);
+        }
+
+        /**
+         * Create the named map for keys of the named class, compressing the data file.
+         */
+        public Writer(Configuration conf, FileSystem fs, String dirName,
+                      Class<? extends WritableComparable> keyClass, Class<?> valClass,
+                      SequenceFile.CompressionType compress, CompressionCodec codec) throws IOException {
+            this.indexInterval = conf.getInt(INDEX_INTERVAL_KEY, INDEX_INTERVAL_DEFAULT);
+            if (indexInterval <= 0) {
+                throw new IllegalArgumentException(INDEX_INTERVAL_KEY + " must be positive: " + indexInterval);
+            }
+            this.comparator = WritableComparator.get(keyClass);
+
+            Path dir = new Path(dirName);
+            if (!fs.mkdirs(dir)) {
+                throw new IOException("Mkdirs failed to create directory " + dir);
+            }
+            Path dataFile = new Path(dir, DATA_FILE_NAME);
+            Path indexFile = new Path(dir, INDEX_FILE_NAME);
+
+            this.data = SequenceFile.createWriter(fs, conf, dataFile, keyClass, valClass, compress, codec);
+            this.index = SequenceFile.createWriter(fs, conf, indexFile, keyClass, LongWritable.class);
+        }
+
+        /**
+         * Append a key/value pair to the map.  The key must be greater or equal
+         * to the previous key added to the map.
+         */
+        public synchronized void append(WritableComparable key, Writable val) throws IOException {
+            checkKey(key);
+
+            if (size % indexInterval == 0) {            // add an index entry
+                position.set(data.getLength());         // point to current eof
+                index.append(key, position);
+            }
+
+            data.append(key, val);                      // append key/value to data
+            size++;
+        }
+
+        private void checkKey(WritableComparable key) throws IOException {
+            currentKey.reset();
+            key.write(currentKey);
+
+            // check that keys are well-ordered
+            if (size != 0 && comparator.compare(lastKey.getData(), 0, lastKey.getLength(),
+                    currentKey.getData(), 0, currentKey.getLength()) > 0) {
+                throw new IOException("key out of order: " + key + " after the previous key");
+            }
+
+            // 交换两个buffer，不需要复制
+            DataOutputBuffer tmp = lastKey;
+            lastKey = currentKey;
+            currentKey = tmp;
+        }
+
+        /**
+         * Returns the number of records appended so far.
+         */
+        public synchronized long getSize() {
+            return size;
+        }
+
+        /**
+         * Close the map.
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            data.close();
+            index.close();
+        }
+    }
+
+    /**
+     * Provide access to an existing map.
+     */
+    public static class Reader implements Closeable {
+        private final SequenceFile.Reader data;
+        private final WritableComparator comparator;
+
+        // 索引：第i个key的字节是indexKeys[keyOffsets[i], keyOffsets[i + 1])，对应的记录在data文件的positions[i]
+        private byte[] indexKeys;
+        private int[] keyOffsets;
+        private long[] positions;
+        private int count;
+
+        private final DataOutputBuffer searchKey = new DataOutputBuffer();
+        private final DataOutputBuffer rawKey = new DataOutputBuffer();
+
+        /**
+         * Construct a map reader for the named map.
+         */
+        public Reader(FileSystem fs, String dirName, Configuration conf) throws IOException {
+            Path dir = new Path(dirName);
+            Path dataFile = new Path(dir, DATA_FILE_NAME);
+            Path indexFile = new Path(dir, INDEX_FILE_NAME);
+
+            this.data = new SequenceFile.Reader(fs, dataFile, conf);
+            try {
+                this.comparator = WritableComparator.get(data.getKeyClass().asSubclass(WritableComparable.class));
+                readIndex(fs, indexFile, conf);
+            } catch (IOException | RuntimeException e) {
+                data.close();
+                throw e;
+            }
+        }
+
+        /**
+         * 把整个index读入数组
+         */
+        private void readIndex(FileSystem fs, Path indexFile, Configuration conf) throws IOException {
+            SequenceFile.Reader index = new SequenceFile.Reader(fs, indexFile, conf);
+            try {
+                DataOutputBuffer keys = new DataOutputBuffer();
+                DataOutputBuffer value = new DataOutputBuffer();
+                int[] offsets = new int[1024];
+                long[] pos = new long[1024];
+                int n = 0;
+                while (index.nextRawKey(keys) != -1) {
+                    value.reset();
+                    index.nextRawValue(value);
+                    if (n + 1 == offsets.length) {             // expand arrays
+                        offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                        pos = Arrays.copyOf(pos, pos.length * 2);
+                    }
+                    pos[n] = WritableComparator.readLong(value.getData(), 0);
+                    offsets[++n] = keys.getLength();
+                }
+                this.indexKeys = Arrays.copyOf(keys.getData(), keys.getLength());
+                this.keyOffsets = Arrays.copyOf(offsets, n + 1);
+                this.positions = Arrays.copyOf(pos, n);
+                this.count = n;
+            } finally {
+                index.close();
+            }
+        }
+
+        /**
+         * Returns the class of keys in this file.
+         */
+        public Class<?> getKeyClass() {
+            return data.getKeyClass();
+        }
+
+        /**
+         * Returns the class of values in this file.
+         */
+        public Class<?> getValueClass() {
+            return data.getValueClass();
+        }
+
+        /**
+         * Returns the number of entries in the in-memory index.
+         */
+        public int getIndexSize() {
+            return count;
+        }
+
+        /**
+         * Re-positions the reader before its first key.
+         */
+        public synchronized void reset() throws IOException {
+            if (count > 0) {
+                data.seek(positions[0]);
+            }
+        }
+
+        /**
+         * 在index上二分查找序列化后的key
+         *
+         * @return the index of the key, or (-(insertion point) - 1) if it is absent
+         */
+        private int binarySearch(byte[] key, int length) {
+            int low = 0;
+            int high = count - 1;
+
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int start = keyOffsets[mid];
+                int cmp = comparator.compare(indexKeys, start, keyOffsets[mid + 1] - start, key, 0, length);
+
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return mid;                         // key found
+                }
+            }
+            return -(low + 1);                          // key not found.
+        }
+
+        /**
+         * 定位到第一个大于等于key的记录，并把这条记录的key读到rawKey中，之后可以读取它的value
+         *
+         * @return 0 if the key was found, a positive number if the reader is at a greater key,
+         * or -1 if every key in the map is less than key
+         */
+        private int seekInternal(WritableComparable key) throws IOException {
+            if (count == 0) {
+                return -1;
+            }
+            searchKey.reset();
+            key.write(searchKey);
+
+            int i = binarySearch(searchKey.getData(), searchKey.getLength());
+            if (i < 0) {
+                // 从小于key的最后一个索引开始扫描
+                i = Math.max(-i - 2, 0);
+            }
+            data.seek(positions[i]);
+
+            // 最多扫描到下一个索引位置
+            while (true) {
+                rawKey.reset();
+                if (data.nextRawKey(rawKey) == -1) {
+                    return -1;
+                }
+                int c = comparator.compare(rawKey.getData(), 0, rawKey.getLength(),
+                        searchKey.getData(), 0, searchKey.getLength());
+                if (c >= 0) {
+                    return c == 0 ? 0 : 1;
+                }
+            }
+        }
+
+        /**
+         * Read the next key/value pair in the map into <code>key</code> and
+         * <code>val</code>.  Returns true if such a pair exists and false when at
+         * the end of the map
+         * <p>
+         * 从{@link #reset()}或者上一次{@link #get(WritableComparable, Writable)}之后的记录开始读
+         */
+        public synchronized boolean next(WritableComparable key, Writable val) throws IOException {
+            return data.next(key, val);
+        }
+
+        /**
+         * Return the value for the named key, or null if none exists.
+         */
+        public synchronized Writable get(WritableComparable key, Writable val) throws IOException {
+            if (seekInternal(key) == 0) {
+                data.getCurrentValue(val);
+                return val;
+            }
+            return null;
+        }
+
+        /**
+         * Close the map.
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            data.close();
+        }
+    }
+}
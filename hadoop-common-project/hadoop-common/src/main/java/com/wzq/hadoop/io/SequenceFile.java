@@ -0,0 +1,1260 @@
+package com.wzq.hadoop.io;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.FSDataInputStream;
+import com.wzq.hadoop.fs.FSDataOutputStream;
+import com.wzq.hadoop.fs.FileSystem;
+import com.wzq.hadoop.fs.Path;
+import com.wzq.hadoop.io.basic.Text;
+import com.wzq.hadoop.io.compress.CodecPool;
+import com.wzq.hadoop.io.compress.CompressionCodec;
+import com.wzq.hadoop.io.compress.CompressionInputStream;
+import com.wzq.hadoop.io.compress.CompressionOutputStream;
+import com.wzq.hadoop.io.compress.Compressor;
+import com.wzq.hadoop.io.compress.Decompressor;
+import com.wzq.hadoop.util.ReflectionUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * 由二进制key/value记录组成的文件
+ * <p>
+ * 文件格式：
+ * <ul>
+ *     <li>Header
+ *     <ul>
+ *         <li>version - 3 bytes of magic header <b>SEQ</b>, followed by 1 byte of actual version number (e.g. SEQ4 or SEQ6)</li>
+ *         <li>keyClassName - key class</li>
+ *         <li>valueClassName - value class</li>
+ *         <li>compression - A boolean which specifies if compression is turned on for keys/values in this file.</li>
+ *         <li>blockCompression - A boolean which specifies if block-compression is turned on for keys/values in this file.</li>
+ *         <li>compression codec - <code>CompressionCodec</code> class which is used for compression of keys and/or values (if compression is enabled).</li>
+ *         <li>metadata - {@link Metadata} for this file.</li>
+ *         <li>sync - A sync marker to denote end of the header.</li>
+ *     </ul>
+ *     </li>
+ *     <li>Record
+ *     <ul>
+ *         <li>Record length</li>
+ *         <li>Key length</li>
+ *         <li>Key</li>
+ *         <li>Value</li>
+ *     </ul>
+ *     </li>
+ *     <li>A sync-marker every few <code>100</code> bytes or so.</li>
+ * </ul>
+ * <p>
+ * 压缩方式见{@link CompressionType}：RECORD只压缩value，记录格式不变；
+ * BLOCK把多条记录缓存成一个块，块格式为sync标记、记录数、压缩后的key长度、key、value长度、value四段，
+ * 每段前面是压缩后的字节数，因此{@link Reader#skipBlock()}可以不解压地跳过整个块
+ * <p>
+ * 每隔{@link #SYNC_INTERVAL}字节写一个sync标记（-1加上header中的16字节sync），
+ * Reader可以从任意位置{@link Reader#sync(long)}到下一个标记开始读，因此一个大文件可以按字节范围切分后并行读取
+ * <p>
+ * <code>SequenceFile</code>s are flat files consisting of binary key/value pairs.
+ */
+public class SequenceFile {
+
+    private static final byte VERSION_WITH_METADATA = (byte) 6;
+    private static byte[] VERSION = new byte[]{
+            (byte) 'S', (byte) 'E', (byte) 'Q', VERSION_WITH_METADATA
+    };
+
+    private static final int SYNC_ESCAPE = -1;      // "length" of sync entries
+    private static final int SYNC_HASH_SIZE = 16;   // number of bytes in hash
+    private static final int SYNC_SIZE = 4 + SYNC_HASH_SIZE; // escape + hash
+
+    /**
+     * The number of bytes between sync points.
+     */
+    public static final int SYNC_INTERVAL = 100 * SYNC_SIZE;
+
+    private SequenceFile() {
+    }   // no public ctor
+
+    /**
+     * Construct the preferred type of SequenceFile Writer.
+     *
+     * @param fs       The configured filesystem.
+     * @param conf     The configuration.
+     * @param name     The name of the file.
+     * @param keyClass The 'key' type.
+     * @param valClass The 'value' type.
+     * @return Returns the handle to the constructed SequenceFile Writer.
+     */
+    public static Writer createWriter(FileSystem fs, Configuration conf, Path name,
+                                      Class<?> keyClass, Class<?> valClass) throws IOException {
+        return new Writer(fs, conf, name, keyClass, valClass, new Metadata());
+    }
+
+    /**
+     * Construct the preferred type of SequenceFile Writer.
+     *
+     * @param fs              The configured filesystem.
+     * @param conf            The configuration.
+     * @param name            The name of the file.
+     * @param keyClass        The 'key' type.
+     * @param valClass        The 'value' type.
+     * @param compressionType The compression type.
+     * @param codec           The compression codec, ignored for {@link CompressionType#NONE}.
+     * @return Returns the handle to the constructed SequenceFile Writer.
+     */
+    public static Writer createWriter(FileSystem fs, Configuration conf, Path name,
+                                      Class<?> keyClass, Class<?> valClass,
+                                      CompressionType compressionType,
+                                      CompressionCodec codec) throws IOException {
+        if (compressionType != CompressionType.NONE && codec == null) {
+            throw new IllegalArgumentException("compression type " + compressionType + " requires a codec");
+        }
+        FSDataOutputStream out = fs.create(name);
+        switch (compressionType) {
+            case RECORD:
+                return new RecordCompressWriter(conf, out, true, keyClass, valClass, codec, new Metadata());
+            case BLOCK:
+                return new BlockCompressWriter(conf, out, true, keyClass, valClass, codec, new Metadata());
+            default:
+                return new Writer(conf, out, true, keyClass, valClass, null, new Metadata());
+        }
+    }
+
+    /**
+     * 压缩方式
+     * <p>
+     * The compression type used to compress key/value pairs in the {@link SequenceFile}.
+     */
+    public enum CompressionType {
+        /**
+         * Do not compress records.
+         */
+        NONE,
+        /**
+         * Compress values only, each separately.
+         */
+        RECORD,
+        /**
+         * Compress sequences of records together in blocks.
+         */
+        BLOCK
+    }
+
+    /**
+     * 文件的元数据，key与value都是Text
+     * <p>
+     * The class encapsulating with the metadata of a file. The metadata of a file is a list of
+     * attribute name/value pairs of Text type.
+     */
+    public static class Metadata implements Writable {
+
+        private final TreeMap<Text, Text> theMetadata;
+
+        public Metadata() {
+            this(new TreeMap<Text, Text>());
+        }
+
+        public Metadata(TreeMap<Text, Text> arg) {
+            this.theMetadata = arg == null ? new TreeMap<Text, Text>() : arg;
+        }
+
+        public Text get(Text name) {
+            return this.theMetadata.get(name);
+        }
+
+        public void set(Text name, Text value) {
+            this.theMetadata.put(name, value);
+        }
+
+        public TreeMap<Text, Text> getMetadata() {
+            return new TreeMap<Text, Text>(this.theMetadata);
+        }
+
+        @Override
+        public void write(DataOutput out) throws IOException {
+            out.writeInt(this.theMetadata.size());
+            for (Map.Entry<Text, Text> en : this.theMetadata.entrySet()) {
+                en.getKey().write(out);
+                en.getValue().write(out);
+            }
+        }
+
+        @Override
+        public void readFields(DataInput in) throws IOException {
+            int sz = in.readInt();
+            if (sz < 0) {
+                throw new IOException("Invalid size: " + sz + " for file metadata object");
+            }
+            this.theMetadata.clear();
+            for (int i = 0; i < sz; i++) {
+                Text key = new Text();
+                Text val = new Text();
+                key.readFields(in);
+                val.readFields(in);
+                this.theMetadata.put(key, val);
+            }
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Metadata && theMetadata.equals(((Metadata) other).theMetadata);
+        }
+
+        @Override
+        public int hashCode() {
+            return theMetadata.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return "size: " + this.theMetadata.size() + "\n" + theMetadata;
+        }
+    }
+
+    /**
+     * Write key/value pairs to a sequence-format file.
+     */
+    public static class Writer implements Closeable {
+        final Configuration conf;
+        final FSDataOutputStream out;
+        private final boolean ownOutputStream;
+        final DataOutputBuffer buffer = new DataOutputBuffer();
+
+        private final Class<?> keyClass;
+        private final Class<?> valClass;
+        final CompressionCodec codec;
+        Compressor compressor = null;   // 从CodecPool借出，close时归还
+        private final Metadata metadata;
+
+        // 16字节的sync，每个文件随机生成
+        private final byte[] sync;
+        private long lastSyncPos;   // position of last sync
+
+        /**
+         * Create the named file.
+         */
+        public Writer(FileSystem fs, Configuration conf, Path name,
+                      Class<?> keyClass, Class<?> valClass, Metadata metadata) throws IOException {
+            this(conf, fs.create(name), true, keyClass, valClass, null, metadata);
+        }
+
+        /**
+         * Write to an arbitrary stream using a specified buffer size.
+         */
+        Writer(Configuration conf, FSDataOutputStream out, boolean ownOutputStream,
+               Class<?> keyClass, Class<?> valClass, CompressionCodec codec,
+               Metadata metadata) throws IOException {
+            this.conf = conf;
+            this.out = out;
+            this.ownOutputStream = ownOutputStream;
+            this.keyClass = keyClass;
+            this.valClass = valClass;
+            this.codec = codec;
+            this.metadata = metadata;
+            this.sync = generateSync();
+            writeFileHeader();
+        }
+
+        private static byte[] generateSync() {
+            UUID uuid = UUID.randomUUID();
+            return ByteBuffer.allocate(SYNC_HASH_SIZE)
+                    .putLong(uuid.getMostSignificantBits())
+                    .putLong(uuid.getLeastSignificantBits())
+                    .array();
+        }
+
+        /**
+         * Returns the class of keys in this file.
+         */
+        public Class<?> getKeyClass() {
+            return keyClass;
+        }
+
+        /**
+         * Returns the class of values in this file.
+         */
+        public Class<?> getValueClass() {
+            return valClass;
+        }
+
+        /**
+         * Returns the compression codec of data in this file.
+         */
+        public CompressionCodec getCompressionCodec() {
+            return codec;
+        }
+
+        /**
+         * Returns true if values are compressed.
+         */
+        boolean isCompressed() {
+            return false;
+        }
+
+        /**
+         * Returns true if records are block-compressed.
+         */
+        boolean isBlockCompressed() {
+            return false;
+        }
+
+        /**
+         * Write and flush the file header.
+         */
+        private void writeFileHeader() throws IOException {
+            out.write(VERSION);
+            Text.writeString(out, keyClass.getName());
+            Text.writeString(out, valClass.getName());
+
+            out.writeBoolean(this.isCompressed());
+            out.writeBoolean(this.isBlockCompressed());
+
+            if (this.isCompressed()) {
+                Text.writeString(out, codec.getClass().getName()); // write codec class
+            }
+            this.metadata.write(out);
+            out.write(sync);                // write the sync bytes
+            out.flush();                    // flush header
+            lastSyncPos = out.getPos();
+        }
+
+        /**
+         * 写一个sync标记，{@link Reader#sync(long)}可以定位到这里
+         * <p>
+         * create a sync point
+         */
+        public void sync() throws IOException {
+            if (sync != null && lastSyncPos != out.getPos()) {
+                writeSync();
+            }
+        }
+
+        void writeSync() throws IOException {
+            out.writeInt(SYNC_ESCAPE);  // mark the start of the sync
+            out.write(sync);            // write sync
+            lastSyncPos = out.getPos(); // update lastSyncPos
+        }
+
+        void checkAndWriteSync() throws IOException {
+            if (sync != null && out.getPos() >= lastSyncPos + SYNC_INTERVAL) {
+                sync();
+            }
+        }
+
+        void checkClasses(Writable key, Writable val) throws IOException {
+            if (key.getClass() != keyClass) {
+                throw new IOException("wrong key class: " + key.getClass().getName() + " is not " + keyClass);
+            }
+            if (val.getClass() != valClass) {
+                throw new IOException("wrong value class: " + val.getClass().getName() + " is not " + valClass);
+            }
+        }
+
+        /**
+         * Append a key/value pair.
+         */
+        public synchronized void append(Writable key, Writable val) throws IOException {
+            checkClasses(key, val);
+
+            buffer.reset();
+
+            // Append the 'key'
+            key.write(buffer);
+            int keyLength = buffer.getLength();
+            if (keyLength < 0) {
+                throw new IOException("negative length keys not allowed: " + key);
+            }
+
+            // Append the 'value'
+            val.write(buffer);
+
+            // Write the record out
+            checkAndWriteSync();                            // sync
+            out.writeInt(buffer.getLength());               // total record length
+            out.writeInt(keyLength);                        // key portion length
+            out.write(buffer.getData(), 0, buffer.getLength()); // data
+        }
+
+        /**
+         * 追加一条已经序列化好的记录，value是文件中存储的形式（RECORD压缩时是压缩后的字节）
+         */
+        public synchronized void appendRaw(byte[] keyData, int keyOffset, int keyLength,
+                                           byte[] valData, int valOffset, int valLength) throws IOException {
+            if (keyLength < 0) {
+                throw new IOException("negative length keys not allowed: " + keyLength);
+            }
+
+            checkAndWriteSync();
+
+            out.writeInt(keyLength + valLength);            // total record length
+            out.writeInt(keyLength);                        // key portion length
+            out.write(keyData, keyOffset, keyLength);       // key
+            out.write(valData, valOffset, valLength);       // value
+        }
+
+        /**
+         * 返回当前写入的位置，可以作为{@link Reader#seek(long)}的参数
+         * <p>
+         * Returns the current length of the output file.
+         *
+         * <p>This always returns a synchronized position.  In other words,
+         * immediately after calling {@link Reader#seek(long)} with a position
+         * returned by this method, {@link Reader#next(Writable)} may be called.  However
+         * the key may be earlier in the file than key last written when this
+         * method was called (e.g., with block-compression, it may be the first key
+         * in the block that was being written when this method was called).
+         */
+        public synchronized long getLength() throws IOException {
+            return out.getPos();
+        }
+
+        /**
+         * Close the file.
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            try {
+                out.flush();
+                if (ownOutputStream) {
+                    out.close();
+                }
+            } finally {
+                CodecPool.returnCompressor(compressor);
+                compressor = null;
+            }
+        }
+    }
+
+    /**
+     * 每条记录的value单独压缩
+     * <p>
+     * Write key/compressed-value pairs to a sequence-format file.
+     */
+    static class RecordCompressWriter extends Writer {
+        private final CompressionOutputStream deflateFilter;
+        private final DataOutputStream deflateOut;
+
+        RecordCompressWriter(Configuration conf, FSDataOutputStream out, boolean ownOutputStream,
+                             Class<?> keyClass, Class<?> valClass, CompressionCodec codec,
+                             Metadata metadata) throws IOException {
+            super(conf, out, ownOutputStream, keyClass, valClass, codec, metadata);
+            this.compressor = CodecPool.getCompressor(codec, conf);
+            this.deflateFilter = codec.createOutputStream(buffer, compressor);
+            this.deflateOut = new DataOutputStream(new BufferedOutputStream(deflateFilter));
+        }
+
+        @Override
+        boolean isCompressed() {
+            return true;
+        }
+
+        /**
+         * Append a key/value pair.
+         */
+        @Override
+        public synchronized void append(Writable key, Writable val) throws IOException {
+            checkClasses(key, val);
+
+            buffer.reset();
+
+            // Append the 'key'
+            key.write(buffer);
+            int keyLength = buffer.getLength();
+            if (keyLength < 0) {
+                throw new IOException("negative length keys not allowed: " + key);
+            }
+
+            // Compress 'value' and append it
+            deflateFilter.resetState();
+            val.write(deflateOut);
+            deflateOut.flush();
+            deflateFilter.finish();
+
+            // Write the record out
+            checkAndWriteSync();                            // sync
+            out.writeInt(buffer.getLength());               // total record length
+            out.writeInt(keyLength);                        // key portion length
+            out.write(buffer.getData(), 0, buffer.getLength()); // data
+        }
+    }
+
+    /**
+     * 按块压缩：记录先缓存在内存中，key长度、key、value长度、value分别放在四个buffer里，
+     * 缓存的记录达到{@code io.seqfile.compress.blocksize}字节时，每个buffer压缩一次写出
+     * <p>
+     * 每个块的格式：sync标记、记录数(VInt)、四段(压缩后长度VInt、压缩后的数据)。
+     * Reader读取块时只需要读出记录数和四个长度，就可以不解压地跳过整个块。
+     * <p>
+     * Write compressed key/value blocks to a sequence-format file.
+     */
+    static class BlockCompressWriter extends Writer {
+        private int noBufferedRecords = 0;
+
+        private final DataOutputBuffer keyLenBuffer = new DataOutputBuffer();
+        private final DataOutputBuffer keyBuffer = new DataOutputBuffer();
+        private final DataOutputBuffer valLenBuffer = new DataOutputBuffer();
+        private final DataOutputBuffer valBuffer = new DataOutputBuffer();
+
+        private final int compressionBlockSize;
+        private final CompressionOutputStream deflateFilter;
+        private final DataOutputStream deflateOut;
+
+        BlockCompressWriter(Configuration conf, FSDataOutputStream out, boolean ownOutputStream,
+                            Class<?> keyClass, Class<?> valClass, CompressionCodec codec,
+                            Metadata metadata) throws IOException {
+            super(conf, out, ownOutputStream, keyClass, valClass, codec, metadata);
+            this.compressionBlockSize = conf.getInt("io.seqfile.compress.blocksize", 1000000);
+            this.compressor = CodecPool.getCompressor(codec, conf);
+            this.deflateFilter = codec.createOutputStream(buffer, compressor);
+            this.deflateOut = new DataOutputStream(new BufferedOutputStream(deflateFilter));
+        }
+
+        @Override
+        boolean isCompressed() {
+            return true;
+        }
+
+        @Override
+        boolean isBlockCompressed() {
+            return true;
+        }
+
+        /**
+         * Workhorse to check and write out compressed data/lengths
+         */
+        private synchronized void writeBuffer(DataOutputBuffer uncompressedDataBuffer) throws IOException {
+            deflateFilter.resetState();
+            buffer.reset();
+            deflateOut.write(uncompressedDataBuffer.getData(), 0, uncompressedDataBuffer.getLength());
+            deflateOut.flush();
+            deflateFilter.finish();
+
+            WritableUtils.writeVInt(out, buffer.getLength());
+            out.write(buffer.getData(), 0, buffer.getLength());
+        }
+
+        /**
+         * 写出缓存的记录，块以sync标记开头
+         * <p>
+         * Compress and flush contents to dfs
+         */
+        @Override
+        public synchronized void sync() throws IOException {
+            if (noBufferedRecords > 0) {
+                writeSync();
+
+                // No. of records
+                WritableUtils.writeVInt(out, noBufferedRecords);
+
+                // Write 'keys' and lengths
+                writeBuffer(keyLenBuffer);
+                writeBuffer(keyBuffer);
+
+                // Write 'values' and lengths
+                writeBuffer(valLenBuffer);
+                writeBuffer(valBuffer);
+
+                // Flush the file-stream
+                out.flush();
+
+                // Reset internal states
+                keyLenBuffer.reset();
+                keyBuffer.reset();
+                valLenBuffer.reset();
+                valBuffer.reset();
+                noBufferedRecords = 0;
+            }
+        }
+
+        /**
+         * Append a key/value pair.
+         */
+        @Override
+        public synchronized void append(Writable key, Writable val) throws IOException {
+            checkClasses(key, val);
+
+            // Save key/value into respective buffers
+            int oldKeyLength = keyBuffer.getLength();
+            key.write(keyBuffer);
+            int keyLength = keyBuffer.getLength() - oldKeyLength;
+            if (keyLength < 0) {
+                throw new IOException("negative length keys not allowed: " + key);
+            }
+            WritableUtils.writeVInt(keyLenBuffer, keyLength);
+
+            int oldValLength = valBuffer.getLength();
+            val.write(valBuffer);
+            int valLength = valBuffer.getLength() - oldValLength;
+            WritableUtils.writeVInt(valLenBuffer, valLength);
+
+            // Added another key/value pair
+            ++noBufferedRecords;
+
+            // Compress and flush?
+            int currentBlockSize = keyBuffer.getLength() + valBuffer.getLength();
+            if (currentBlockSize >= compressionBlockSize) {
+                sync();
+            }
+        }
+
+        /**
+         * 追加一条未压缩的记录
+         */
+        @Override
+        public synchronized void appendRaw(byte[] keyData, int keyOffset, int keyLength,
+                                           byte[] valData, int valOffset, int valLength) throws IOException {
+            if (keyLength < 0) {
+                throw new IOException("negative length keys not allowed");
+            }
+
+            // Save key/value data in relevant buffers
+            WritableUtils.writeVInt(keyLenBuffer, keyLength);
+            keyBuffer.write(keyData, keyOffset, keyLength);
+            WritableUtils.writeVInt(valLenBuffer, valLength);
+            valBuffer.write(valData, valOffset, valLength);
+
+            // Added another key/value pair
+            ++noBufferedRecords;
+
+            // Compress and flush?
+            int currentBlockSize = keyBuffer.getLength() + valBuffer.getLength();
+            if (currentBlockSize >= compressionBlockSize) {
+                sync();
+            }
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            sync();
+            super.close();
+        }
+    }
+
+    /**
+     * Reads key/value pairs from a sequence-format file.
+     */
+    public static class Reader implements Closeable {
+        private final Path file;
+        private final Configuration conf;
+        private final FSDataInputStream in;
+        private final long end;
+        private long headerEnd;
+
+        private byte version;
+        private String keyClassName;
+        private String valClassName;
+        private Class<?> keyClass;
+        private Class<?> valClass;
+
+        private CompressionCodec codec = null;
+        private Metadata metadata = null;
+
+        private final byte[] sync = new byte[SYNC_HASH_SIZE];
+        private final byte[] syncCheck = new byte[SYNC_HASH_SIZE];
+        private boolean syncSeen;
+
+        private boolean decompress;
+        private boolean blockCompressed;
+
+        // 当前记录：key在outBuf的[0, keyLength)，value在valBuffer中
+        private final DataOutputBuffer outBuf = new DataOutputBuffer();
+        private final DataInputBuffer keyBuffer = new DataInputBuffer();
+        private final DataInputBuffer valBuffer = new DataInputBuffer();
+        private int keyLength;
+        private int recordLength;
+
+        // RECORD压缩：value的解压流
+        private Decompressor valDecompressor = null;
+        private CompressionInputStream valInFilter = null;
+        private DataInputStream valIn = null;
+
+        // BLOCK压缩：当前块中还没有读取的key与value的个数，以及四段数据
+        private int noBufferedKeys = 0;
+        private int noBufferedValues = 0;
+        private CompressedSection keyLenSection;
+        private CompressedSection keySection;
+        private CompressedSection valLenSection;
+        private CompressedSection valSection;
+        private int lastBlockRecords = 0;
+
+        /**
+         * Open the named file.
+         */
+        public Reader(FileSystem fs, Path file, Configuration conf) throws IOException {
+            this(fs, file, conf.getInt("io.file.buffer.size", 4096), conf);
+        }
+
+        private Reader(FileSystem fs, Path file, int bufferSize, Configuration conf) throws IOException {
+            this.file = file;
+            this.conf = conf;
+            this.in = fs.open(file, bufferSize);
+            this.end = fs.getLength(file);
+            try {
+                init();
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        /**
+         * 读取并校验文件头
+         */
+        @SuppressWarnings("unchecked")
+        private void init() throws IOException {
+            byte[] versionBlock = new byte[VERSION.length];
+            in.readFully(versionBlock);
+
+            if ((versionBlock[0] != VERSION[0]) ||
+                    (versionBlock[1] != VERSION[1]) ||
+                    (versionBlock[2] != VERSION[2])) {
+                throw new IOException(file + " not a SequenceFile");
+            }
+
+            // Set 'version'
+            version = versionBlock[3];
+            if (version != VERSION[3]) {
+                throw new IOException(file + " is SequenceFile version " + version
+                        + ", only version " + VERSION[3] + " is supported");
+            }
+
+            keyClassName = Text.readString(in);
+            valClassName = Text.readString(in);
+
+            this.decompress = in.readBoolean();         // is compressed?
+            this.blockCompressed = in.readBoolean();    // is block-compressed?
+
+            // if it is compressed, read the codec class
+            if (decompress) {
+                String codecClassname = Text.readString(in);
+                try {
+                    Class<? extends CompressionCodec> codecClass =
+                            (Class<? extends CompressionCodec>) conf.getClassByName(codecClassname);
+                    this.codec = ReflectionUtils.newInstance(codecClass, conf);
+                } catch (ClassNotFoundException cnfe) {
+                    throw new IllegalArgumentException("Unknown codec: " + codecClassname, cnfe);
+                }
+            }
+
+            metadata = new Metadata();
+            metadata.readFields(in);
+
+            in.readFully(sync);                       // read sync bytes
+            headerEnd = in.getPos();
+
+            if (decompress) {
+                if (blockCompressed) {
+                    keyLenSection = new CompressedSection(codec);
+                    keySection = new CompressedSection(codec);
+                    valLenSection = new CompressedSection(codec);
+                    valSection = new CompressedSection(codec);
+                } else {
+                    valDecompressor = CodecPool.getDecompressor(codec);
+                    valInFilter = codec.createInputStream(valBuffer, valDecompressor);
+                    valIn = new DataInputStream(valInFilter);
+                }
+            }
+        }
+
+        /**
+         * Returns the name of the key class.
+         */
+        public String getKeyClassName() {
+            return keyClassName;
+        }
+
+        /**
+         * Returns the class of keys in this file.
+         */
+        public synchronized Class<?> getKeyClass() {
+            if (null == keyClass) {
+                try {
+                    keyClass = conf.getClassByName(getKeyClassName());
+                } catch (ClassNotFoundException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return keyClass;
+        }
+
+        /**
+         * Returns the name of the value class.
+         */
+        public String getValueClassName() {
+            return valClassName;
+        }
+
+        /**
+         * Returns the class of values in this file.
+         */
+        public synchronized Class<?> getValueClass() {
+            if (null == valClass) {
+                try {
+                    valClass = conf.getClassByName(getValueClassName());
+                } catch (ClassNotFoundException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+            return valClass;
+        }
+
+        /**
+         * Returns true if values are compressed.
+         */
+        public boolean isCompressed() {
+            return decompress;
+        }
+
+        /**
+         * Returns true if records are block-compressed.
+         */
+        public boolean isBlockCompressed() {
+            return blockCompressed;
+        }
+
+        /**
+         * Returns the compression codec of data in this file.
+         */
+        public CompressionCodec getCompressionCodec() {
+            return codec;
+        }
+
+        /**
+         * Returns the metadata object of the file
+         */
+        public Metadata getMetadata() {
+            return this.metadata;
+        }
+
+        /**
+         * 读取下一条记录的长度，遇到sync标记时跳过并设置syncSeen
+         * <p>
+         * Read and return the next record length, potentially skipping over
+         * a sync block.
+         *
+         * @return the length of the next record or -1 if there is no next record
+         */
+        private synchronized int readRecordLength() throws IOException {
+            if (in.getPos() >= end) {
+                return -1;
+            }
+            int length = in.readInt();
+            if (length == SYNC_ESCAPE) {            // process a sync entry
+                checkSync();
+                syncSeen = true;
+                if (in.getPos() >= end) {
+                    return -1;
+                }
+                length = in.readInt();              // re-read length
+            } else {
+                syncSeen = false;
+            }
+            return length;
+        }
+
+        private void checkSync() throws IOException {
+            in.readFully(syncCheck);                // read syncCheck
+            if (!Arrays.equals(sync, syncCheck)) {  // check it
+                throw new IOException("File is corrupt!");
+            }
+        }
+
+        /**
+         * 读入下一条记录，BLOCK压缩时key读到keyBuffer，value留在块中直到被读取
+         *
+         * @return false at the end of file
+         */
+        private synchronized boolean readRecord() throws IOException {
+            if (blockCompressed) {
+                return readBlockRecord();
+            }
+            recordLength = readRecordLength();
+            if (recordLength == -1) {
+                return false;
+            }
+            keyLength = in.readInt();
+            if (keyLength < 0 || keyLength > recordLength) {
+                throw new IOException("Invalid key length " + keyLength + " in record of length "
+                        + recordLength + " at " + in.getPos());
+            }
+            outBuf.reset();
+            outBuf.write(in, recordLength);
+            keyBuffer.reset(outBuf.getData(), 0, keyLength);
+            valBuffer.reset(outBuf.getData(), keyLength, recordLength - keyLength);
+            return true;
+        }
+
+        private boolean readBlockRecord() throws IOException {
+            syncSeen = false;
+            if (noBufferedKeys == 0) {
+                if (!readBlock(false)) {
+                    return false;
+                }
+            }
+            DataInputStream keyLenIn = keyLenSection.open();
+            keyLength = WritableUtils.readVInt(keyLenIn);
+            if (keyLength < 0) {
+                throw new IOException("zero length key found!");
+            }
+            outBuf.reset();
+            outBuf.write(keySection.open(), keyLength);
+            keyBuffer.reset(outBuf.getData(), 0, keyLength);
+            --noBufferedKeys;
+            return true;
+        }
+
+        /**
+         * 读入块开头的sync标记与记录数
+         *
+         * @return the number of records in the block, or -1 at the end of file
+         */
+        private synchronized int readBlockHeader() throws IOException {
+            if (in.getPos() >= end) {
+                return -1;
+            }
+            // Every block starts with a sync marker
+            if (in.readInt() != SYNC_ESCAPE) {
+                throw new IOException("Missing block sync marker at " + (in.getPos() - 4) + " in " + file);
+            }
+            checkSync();
+            syncSeen = true;
+            return WritableUtils.readVInt(in);
+        }
+
+        /**
+         * 读入下一个块的四段压缩数据，skip为true时只读长度，跳过数据
+         *
+         * @return false at the end of file
+         */
+        private synchronized boolean readBlock(boolean skip) throws IOException {
+            int records = readBlockHeader();
+            if (records < 0) {
+                noBufferedKeys = 0;
+                noBufferedValues = 0;
+                return false;
+            }
+            if (skip) {
+                keyLenSection.skip(in);
+                keySection.skip(in);
+                valLenSection.skip(in);
+                valSection.skip(in);
+                noBufferedKeys = 0;
+                noBufferedValues = 0;
+            } else {
+                keyLenSection.read(in);
+                keySection.read(in);
+                valLenSection.read(in);
+                valSection.read(in);
+                noBufferedKeys = records;
+                noBufferedValues = records;
+            }
+            lastBlockRecords = records;
+            return true;
+        }
+
+        /**
+         * 跳过当前块中剩余的记录；如果当前块已经读完，则不解压地跳过下一个块
+         * <p>
+         * Skip the rest of the current block, or the whole next block when the current one is
+         * exhausted, without decompressing it. Only valid for block-compressed files.
+         *
+         * @return the number of records skipped, or -1 at the end of file
+         */
+        public synchronized int skipBlock() throws IOException {
+            if (!blockCompressed) {
+                throw new IOException(file + " is not block-compressed");
+            }
+            if (noBufferedKeys > 0) {
+                int skipped = noBufferedKeys;
+                noBufferedKeys = 0;
+                noBufferedValues = 0;
+                return skipped;
+            }
+            return readBlock(true) ? lastBlockRecords : -1;
+        }
+
+        /**
+         * BLOCK压缩时，value长度与value流定位到当前key对应的value
+         * <p>
+         * Position valLenIn/valIn to the 'value' corresponding to the 'current' key
+         *
+         * @return the length of the current value
+         */
+        private int seekToCurrentValue() throws IOException {
+            int currentKey = noBufferedKeys + 1;
+            if (noBufferedValues < currentKey) {
+                throw new IOException("value of the current record has already been read");
+            }
+            DataInputStream valLenIn = valLenSection.open();
+            DataInputStream blockValIn = valSection.open();
+
+            // 跳过只读了key的记录的value
+            long skipValBytes = 0;
+            for (int i = noBufferedValues; i > currentKey; --i) {
+                skipValBytes += WritableUtils.readVInt(valLenIn);
+                --noBufferedValues;
+            }
+            while (skipValBytes > 0) {
+                int skipped = blockValIn.skipBytes((int) Math.min(skipValBytes, Integer.MAX_VALUE));
+                if (skipped <= 0) {
+                    throw new EOFException("Premature EOF while skipping values in " + file);
+                }
+                skipValBytes -= skipped;
+            }
+            --noBufferedValues;
+            return WritableUtils.readVInt(valLenIn);
+        }
+
+        /**
+         * Read the next key in the file into <code>key</code>, skipping its
+         * value.  True if another entry exists, and false at end of file.
+         */
+        public synchronized boolean next(Writable key) throws IOException {
+            if (key.getClass() != getKeyClass()) {
+                throw new IOException("wrong key class: " + key.getClass().getName() + " is not " + keyClass);
+            }
+            if (!readRecord()) {
+                return false;
+            }
+            key.readFields(keyBuffer);
+            if (keyBuffer.getPosition() != keyLength) {
+                throw new IOException(key + " read " + keyBuffer.getPosition() + " bytes, should read " + keyLength);
+            }
+            return true;
+        }
+
+        /**
+         * Read the next key/value pair in the file into <code>key</code> and
+         * <code>val</code>.  Returns true if such a pair exists and false when at
+         * end of file
+         */
+        public synchronized boolean next(Writable key, Writable val) throws IOException {
+            if (val.getClass() != getValueClass()) {
+                throw new IOException("wrong value class: " + val + " is not " + valClass);
+            }
+            boolean more = next(key);
+            if (more) {
+                getCurrentValue(val);
+            }
+            return more;
+        }
+
+        /**
+         * Get the 'value' corresponding to the last read 'key'.
+         *
+         * @param val : The 'value' to be read.
+         */
+        public synchronized void getCurrentValue(Writable val) throws IOException {
+            if (blockCompressed) {
+                seekToCurrentValue();
+                val.readFields(valSection.open());
+            } else if (decompress) {
+                valInFilter.resetState();
+                val.readFields(valIn);
+            } else {
+                val.readFields(valBuffer);
+                if (valBuffer.getPosition() != recordLength) {
+                    throw new IOException(val + " read " + (valBuffer.getPosition() - keyLength)
+                            + " bytes, should read " + (recordLength - keyLength));
+                }
+            }
+        }
+
+        /**
+         * 读下一条记录的key字节到key中，不反序列化
+         * <p>
+         * Read 'raw' keys.
+         *
+         * @param key - The buffer into which the key is read
+         * @return Returns the key length or -1 for end of file
+         */
+        public synchronized int nextRawKey(DataOutputBuffer key) throws IOException {
+            if (!readRecord()) {
+                return -1;
+            }
+            key.write(outBuf.getData(), 0, keyLength);
+            return keyLength;
+        }
+
+        /**
+         * 读当前记录的value字节到val中，必须在{@link #nextRawKey(DataOutputBuffer)}之后调用。
+         * RECORD压缩时是压缩后的字节，可以直接传给{@link Writer#appendRaw}；BLOCK压缩时是解压后的字节
+         * <p>
+         * Read 'raw' values.
+         *
+         * @param val - The 'raw' value
+         * @return Returns the value length
+         */
+        public synchronized int nextRawValue(DataOutputBuffer val) throws IOException {
+            if (blockCompressed) {
+                int valLength = seekToCurrentValue();
+                val.write(valSection.open(), valLength);
+                return valLength;
+            }
+            int valLength = recordLength - keyLength;
+            val.write(outBuf.getData(), keyLength, valLength);
+            return valLength;
+        }
+
+        /**
+         * 定位到指定位置，这个位置必须是记录的边界，比如{@link Writer#getLength()}的返回值
+         * <p>
+         * Set the current byte position in the input file.
+         *
+         * <p>The position passed must be a position returned by {@link
+         * Writer#getLength()} when writing this file.  To seek to an arbitrary
+         * position, use {@link Reader#sync(long)}.
+         */
+        public synchronized void seek(long position) throws IOException {
+            in.seek(position);
+            if (blockCompressed) {                      // trigger block read
+                noBufferedKeys = 0;
+                noBufferedValues = 0;
+            }
+        }
+
+        /**
+         * 定位到position之后的下一个sync标记，如果之后没有标记则定位到文件末尾
+         * <p>
+         * Seek to the next sync mark past a given position.
+         */
+        public synchronized void sync(long position) throws IOException {
+            if (position + SYNC_SIZE >= end) {
+                seek(end);
+                return;
+            }
+            if (position < headerEnd) {
+                // header之后就是第一条记录
+                seek(headerEnd);
+                return;
+            }
+
+            seek(position + 4);                         // skip escape
+            in.readFully(syncCheck);
+            int syncLen = sync.length;
+            for (int i = 0; in.getPos() < end; i++) {
+                int j = 0;
+                for (; j < syncLen; j++) {
+                    if (sync[j] != syncCheck[(i + j) % syncLen]) {
+                        break;
+                    }
+                }
+                if (j == syncLen) {
+                    in.seek(in.getPos() - SYNC_SIZE);   // position before sync
+                    return;
+                }
+                syncCheck[i % syncLen] = in.readByte();
+            }
+        }
+
+        /**
+         * Returns true iff the previous call to next passed a sync mark.
+         */
+        public boolean syncSeen() {
+            return syncSeen;
+        }
+
+        /**
+         * Return the current byte position in the input file.
+         */
+        public synchronized long getPosition() throws IOException {
+            return in.getPos();
+        }
+
+        /**
+         * Close the file.
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            // 把解压缩器还给CodecPool
+            CodecPool.returnDecompressor(valDecompressor);
+            valDecompressor = null;
+            for (CompressedSection section : new CompressedSection[]{
+                    keyLenSection, keySection, valLenSection, valSection}) {
+                if (section != null) {
+                    section.close();
+                }
+            }
+            in.close();
+        }
+
+        /**
+         * Returns the name of the file.
+         */
+        @Override
+        public String toString() {
+            return file.toString();
+        }
+    }
+
+    /**
+     * 块中的一段压缩数据，第一次读取时才解压
+     */
+    private static class CompressedSection {
+        private final DataOutputBuffer compressed = new DataOutputBuffer();
+        private final DataInputBuffer compressedIn = new DataInputBuffer();
+        private Decompressor decompressor;
+        private final CompressionInputStream filter;
+        private DataInputStream data;
+        private boolean needsReset = false;
+
+        CompressedSection(CompressionCodec codec) throws IOException {
+            this.decompressor = CodecPool.getDecompressor(codec);
+            this.filter = codec.createInputStream(compressedIn, decompressor);
+        }
+
+        /**
+         * 读入下一段压缩数据
+         */
+        void read(DataInputStream in) throws IOException {
+            int length = WritableUtils.readVInt(in);
+            compressed.reset();
+            compressed.write(in, length);
+            compressedIn.reset(compressed.getData(), 0, length);
+            needsReset = true;
+        }
+
+        /**
+         * 跳过下一段压缩数据
+         */
+        void skip(DataInputStream in) throws IOException {
+            int length = WritableUtils.readVInt(in);
+            while (length > 0) {
+                int skipped = in.skipBytes(length);
+                if (skipped <= 0) {
+                    throw new EOFException("Premature EOF while skipping a block");
+                }
+                length -= skipped;
+            }
+            compressedIn.reset(compressed.getData(), 0, 0);
+        }
+
+        /**
+         * 返回解压后的数据流
+         */
+        DataInputStream open() throws IOException {
+            if (needsReset) {
+                filter.resetState();
+                // 每个块重新建缓冲，跳过的块不会在缓冲里留下旧数据
+                data = new DataInputStream(new BufferedInputStream(filter));
+                needsReset = false;
+            }
+            return data;
+        }
+
+        void close() {
+            CodecPool.returnDecompressor(decompressor);
+            decompressor = null;
+        }
+    }
+}
@@ -3,30 +3,77 @@ package com.wzq.hadoop.io;
 import com.wzq.hadoop.util.ReflectionUtils;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- *
+ * A Comparator for {@link WritableComparable}s.
+ * <p>
+ * 注册的比较器保存在一个{@link ConcurrentHashMap}中，{@link #get(Class)}和{@link #define(Class, WritableComparator)}
+ * 都不需要加锁。比较时需要反序列化的比较器(key1/key2/buffer)不可重入，因此每次{@link #get(Class)}都返回一个新的实例。
  */
 public class WritableComparator implements RawComparator {
 
     // ########################################################################################
     // 工厂
     // registry
-    private static HashMap<Class, WritableComparator> comparators = new HashMap<>();
+    private static final ConcurrentHashMap<Class, WritableComparator> comparators =
+            new ConcurrentHashMap<Class, WritableComparator>();
 
     /**
      * 获取一个实现了WritableComparable的比较器
+     * <p>
+     * Registered comparators that compare the raw bytes are shared by all callers. A comparator that
+     * deserializes its keys (the default one, or a registered one created with instances) is not
+     * reentrant, so every call returns a new instance that the caller owns.
      *
      * @param c
      * @return
      */
-    public static synchronized WritableComparator get(Class<? extends WritableComparable> c) {
-        WritableComparator comparator = comparators.get(c);
-        if (comparator == null) {
-            comparator = new WritableComparator(c, true);
+    public static WritableComparator get(Class<? extends WritableComparable> c) {
+        WritableComparator registered = comparators.get(c);
+        if (registered == null) {
+            // 比较器是在类的静态代码块中注册的，类还没有初始化时需要先强制初始化
+            forceInit(c);
+            registered = comparators.get(c);
+        }
+
+        if (registered == null) {
+            return new WritableComparator(c, true);
+        }
+        if (registered.isStateless()) {
+            return registered;
+        }
+        return newInstance(registered);
+    }
+
+    /**
+     * Create a copy of a stateful registered comparator for one caller.
+     *
+     * @throws IllegalStateException if the comparator has no no-arg constructor; sharing the
+     *                               registered instance would let callers race on its buffers
+     */
+    private static WritableComparator newInstance(WritableComparator registered) {
+        try {
+            return ReflectionUtils.newInstance(registered.getClass(), null);
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("Stateful comparator " + registered.getClass().getName()
+                    + " needs a no-arg constructor so that every caller gets its own instance", e);
+        }
+    }
+
+    /**
+     * Force initialization of the static members. As of Java 5, referencing a class doesn't force
+     * it to initialize. Since this class requires that the classes be initialized to declare their
+     * comparators, we force that initialization to happen.
+     *
+     * @param cls the class to initialize
+     */
+    private static void forceInit(Class<?> cls) {
+        try {
+            Class.forName(cls.getName(), true, cls.getClassLoader());
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Can't initialize class " + cls, e);
         }
-        return comparator;
     }
 
     /**
@@ -35,7 +82,7 @@ public class WritableComparator implements RawComparator {
      * @param c
      * @param comparator
      */
-    public static synchronized void define(Class c, WritableComparator comparator) {
+    public static void define(Class c, WritableComparator comparator) {
         comparators.put(c, comparator);
     }
 
@@ -63,6 +110,13 @@ public class WritableComparator implements RawComparator {
         }
     }
 
+    /**
+     * 只比较字节、不反序列化到key1/key2的比较器可以被多个线程共享
+     */
+    private boolean isStateless() {
+        return buffer == null;
+    }
+
     /**
      * Returns the {@link WritableComparable} implementation class
      *
@@ -108,20 +162,14 @@ public class WritableComparator implements RawComparator {
         return compare((WritableComparable) a, (WritableComparable) b);
     }
 
+    /**
+     * Lexicographic order of binary data.
+     * <p>
+     * 按无符号字节的字典序比较，一次比较8个字节(见{@link FastByteComparisons})
+     */
     public static int compareBytes(byte[] b1, int s1, int l1,
                                    byte[] b2, int s2, int l2) {
-        int end1 = s1 + l1;
-        int end2 = s2 + l2;
-
-        for (int i = s1, j = s2; i < end1 && j < end2; i++, j++) {
-            int a = (b1[i] & 0xff);
-            int b = (b2[j] & 0xff);
-            if (a != b) {
-                return a - b;
-            }
-        }
-
-        return l1 - l2;
+        return FastByteComparisons.compareTo(b1, s1, l1, b2, s2, l2);
     }
 
     /**
@@ -66,8 +66,9 @@ public class BooleanWritable implements WritableComparable {
         @Override
         public int compare(byte[] b1, int s1, int l1,
                            byte[] b2, int s2, int l2) {
-            boolean a = (readInt(b1, s1) == 1) ? true : false;
-            boolean b = (readInt(b2, s2) == 1) ? true : false;
+            // writeBoolean只写入一个字节: 0 => false, 1 => true
+            boolean a = b1[s1] != 0;
+            boolean b = b2[s2] != 0;
             return ((a == b) ? 0 : (a == false) ? -1 : 1);
         }
     }
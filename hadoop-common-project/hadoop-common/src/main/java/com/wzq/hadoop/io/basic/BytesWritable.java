@@ -1,14 +1,192 @@
 package com.wzq.hadoop.io.basic;
 
 import com.wzq.hadoop.io.WritableComparable;
+import com.wzq.hadoop.io.WritableComparator;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
 /**
- * TODO A {@link com.wzq.hadoop.io.WritableComparable} for bytes
+ * A {@link com.wzq.hadoop.io.WritableComparable} for bytes
+ * <p>
+ * 一个字节序列。序列化格式为一个4字节的整数表示长度，后面跟着对应长度的字节
+ * <p>
+ * It is resizable and distinguishes between the size of the sequence and the current capacity.
  */
-public class BytesWritable {
+public class BytesWritable extends BinaryComparable implements WritableComparable<BinaryComparable> {
 
+    private static final int LENGTH_BYTES = 4;
+    private static final byte[] EMPTY_BYTES = {};
+
+    private int size;
+    private byte[] bytes;
+
+    /**
+     * Create a zero-size sequence.
+     */
+    public BytesWritable() {
+        this(EMPTY_BYTES);
+    }
+
+    /**
+     * Create a BytesWritable using the byte array as the initial value.
+     *
+     * @param bytes This array becomes the backing storage for the object.
+     */
+    public BytesWritable(byte[] bytes) {
+        this.bytes = bytes;
+        this.size = bytes.length;
+    }
+
+    /**
+     * Get the data from the BytesWritable. Only the first {@link #getLength()} bytes are valid.
+     *
+     * @return The data is only valid between 0 and getLength() - 1.
+     */
+    @Override
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get the current size of the buffer.
+     */
+    @Override
+    public int getLength() {
+        return size;
+    }
+
+    /**
+     * Change the size of the buffer. The values in the old range are preserved and any new values
+     * are undefined. The capacity is changed if it is necessary.
+     *
+     * @param size The new number of bytes
+     */
+    public void setSize(int size) {
+        if (size > getCapacity()) {
+            setCapacity(size * 3 / 2);
+        }
+        this.size = size;
+    }
+
+    /**
+     * Get the capacity, which is the maximum size that could handled without resizing the backing
+     * storage.
+     *
+     * @return The number of bytes
+     */
+    public int getCapacity() {
+        return bytes.length;
+    }
+
+    /**
+     * Change the capacity of the backing storage. The data is preserved.
+     *
+     * @param newCap The new capacity in bytes.
+     */
+    public void setCapacity(int newCap) {
+        if (newCap != getCapacity()) {
+            byte[] newData = new byte[newCap];
+            if (newCap < size) {
+                size = newCap;
+            }
+            if (size != 0) {
+                System.arraycopy(bytes, 0, newData, 0, size);
+            }
+            bytes = newData;
+        }
+    }
+
+    /**
+     * Set the BytesWritable to the contents of the given newData.
+     *
+     * @param newData the value to set this BytesWritable to.
+     */
+    public void set(BytesWritable newData) {
+        set(newData.bytes, 0, newData.size);
+    }
+
+    /**
+     * Set the value to a copy of the given byte range
+     *
+     * @param newData the new values to copy in
+     * @param offset  the offset in newData to start at
+     * @param length  the number of bytes to copy
+     */
+    public void set(byte[] newData, int offset, int length) {
+        setSize(0);
+        setSize(length);
+        System.arraycopy(newData, offset, bytes, 0, size);
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        setSize(0); // clear the old data
+        setSize(in.readInt());
+        in.readFully(bytes, 0, size);
+    }
+
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(size);
+        out.write(bytes, 0, size);
+    }
+
+    public int hashCode() {
+        return super.hashCode();
+    }
+
+    /**
+     * Are the two byte sequences equal?
+     */
+    public boolean equals(Object right_obj) {
+        if (right_obj instanceof BytesWritable) {
+            return super.equals(right_obj);
+        }
+        return false;
+    }
+
+    /**
+     * Generate the stream of bytes as hex pairs separated by ' '.
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder(3 * size);
+        for (int idx = 0; idx < size; idx++) {
+            // if not the first, put a blank separator in
+            if (idx != 0) {
+                sb.append(' ');
+            }
+            String num = Integer.toHexString(0xff & bytes[idx]);
+            // if it is only one digit, add a leading 0.
+            if (num.length() < 2) {
+                sb.append('0');
+            }
+            sb.append(num);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * A Comparator optimized for BytesWritable.
+     * <p>
+     * 跳过4字节的长度，直接比较序列化后的字节
+     */
+    public static class Comparator extends WritableComparator {
+        public Comparator() {
+            super(BytesWritable.class);
+        }
+
+        /**
+         * Compare the buffers in serialized form.
+         */
+        public int compare(byte[] b1, int s1, int l1,
+                           byte[] b2, int s2, int l2) {
+            return compareBytes(b1, s1 + LENGTH_BYTES, l1 - LENGTH_BYTES,
+                    b2, s2 + LENGTH_BYTES, l2 - LENGTH_BYTES);
+        }
+    }
+
+    static {
+        // register this comparator
+        WritableComparator.define(BytesWritable.class, new Comparator());
+    }
 }
@@ -1,8 +1,118 @@
 package com.wzq.hadoop.io.basic;
 
+import com.wzq.hadoop.io.WritableComparable;
+import com.wzq.hadoop.io.WritableComparator;
+import com.wzq.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
+ * 可变长Int
+ * <p>
+ * A WritableComparable for integer values stored in variable-length format. Such values take
+ * between one and five bytes. Smaller values take fewer bytes.
  *
- * TODO 可变长Int
+ * @see com.wzq.hadoop.io.WritableUtils#writeVInt(DataOutput, int)
  */
-public class VIntWritable {
+public class VIntWritable implements WritableComparable {
+
+    private int value;
+
+    public VIntWritable() {
+    }
+
+    public VIntWritable(int value) {
+        set(value);
+    }
+
+    /**
+     * Set the value of this VIntWritable
+     *
+     * @param value
+     */
+    public void set(int value) {
+        this.value = value;
+    }
+
+    /**
+     * Return the value of this VIntWritable
+     *
+     * @return
+     */
+    public int get() {
+        return value;
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        value = WritableUtils.readVInt(in);
+    }
+
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVInt(out, value);
+    }
+
+    /**
+     * Return true if Object o is a VIntWritable with the same value.
+     *
+     * @param o
+     * @return
+     */
+    public boolean equals(Object o) {
+        if (!(o instanceof VIntWritable)) {
+            return false;
+        }
+        VIntWritable other = (VIntWritable) o;
+        return this.value == other.value;
+    }
+
+    public int hashCode() {
+        return value;
+    }
+
+    /**
+     * Compares two VIntWritables.
+     *
+     * @param o
+     * @return
+     */
+    public int compareTo(Object o) {
+        int thisValue = this.value;
+        int thatValue = ((VIntWritable) o).value;
+        return (thisValue < thatValue ? -1 : (thisValue == thatValue ? 0 : 1));
+    }
+
+    public String toString() {
+        return Integer.toString(value);
+    }
+
+    /**
+     * A Comparator optimized for VIntWritable.
+     * <p>
+     * 直接从字节数组中解码可变长的int，无需反序列化
+     */
+    public static class Comparator extends WritableComparator {
+        public Comparator() {
+            super(VIntWritable.class);
+        }
+
+        public int compare(byte[] b1, int s1, int l1,
+                           byte[] b2, int s2, int l2) {
+            int thisValue;
+            int thatValue;
+            try {
+                thisValue = readVInt(b1, s1);
+                thatValue = readVInt(b2, s2);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return (thisValue < thatValue ? -1 : (thisValue == thatValue ? 0 : 1));
+        }
+    }
+
+    static {
+        // register this comparator
+        WritableComparator.define(VIntWritable.class, new Comparator());
+    }
 }
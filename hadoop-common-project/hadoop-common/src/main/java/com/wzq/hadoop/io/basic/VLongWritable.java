@@ -1,7 +1,96 @@
 package com.wzq.hadoop.io.basic;
 
+import com.wzq.hadoop.io.WritableComparable;
+import com.wzq.hadoop.io.WritableComparator;
+import com.wzq.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
- * TODO 可变长Long
+ * 可变长Long
+ * <p>
+ * A WritableComparable for longs in a variable-length format. Such values take between one and
+ * nine bytes. Smaller values take fewer bytes.
+ *
+ * @see com.wzq.hadoop.io.WritableUtils#writeVLong(DataOutput, long)
  */
-public class VLongWritable {
+public class VLongWritable implements WritableComparable {
+
+    private long value;
+
+    public VLongWritable() {
+    }
+
+    public VLongWritable(long value) {
+        set(value);
+    }
+
+    public void set(long value) {
+        this.value = value;
+    }
+
+    public long get() {
+        return value;
+    }
+
+    public void readFields(DataInput in) throws IOException {
+        value = WritableUtils.readVLong(in);
+    }
+
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVLong(out, value);
+    }
+
+    public boolean equals(Object o) {
+        if (!(o instanceof VLongWritable)) {
+            return false;
+        }
+        VLongWritable other = (VLongWritable) o;
+        return this.value == other.value;
+    }
+
+    public int hashCode() {
+        return (int) value;
+    }
+
+    public int compareTo(Object o) {
+        long thisValue = this.value;
+        long thatValue = ((VLongWritable) o).value;
+        return (thisValue < thatValue ? -1 : (thisValue == thatValue ? 0 : 1));
+    }
+
+    public String toString() {
+        return Long.toString(value);
+    }
+
+    /**
+     * A Comparator optimized for VLongWritable.
+     * <p>
+     * 直接从字节数组中解码可变长的long，无需反序列化
+     */
+    public static class Comparator extends WritableComparator {
+        public Comparator() {
+            super(VLongWritable.class);
+        }
+
+        public int compare(byte[] b1, int s1, int l1,
+                           byte[] b2, int s2, int l2) {
+            long thisValue;
+            long thatValue;
+            try {
+                thisValue = readVLong(b1, s1);
+                thatValue = readVLong(b2, s2);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return (thisValue < thatValue ? -1 : (thisValue == thatValue ? 0 : 1));
+        }
+    }
+
+    static {
+        // register this comparator
+        WritableComparator.define(VLongWritable.class, new Comparator());
+    }
 }
@@ -0,0 +1,150 @@
+package com.wzq.hadoop.io.compress;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 分块压缩的输出流，用于LZ4这类一次压缩一整块的压缩器
+ * <p>
+ * The output is a sequence of blocks. Each block starts with its uncompressed length followed
+ * by one or more compressed chunks, each prefixed with its compressed length; all lengths are
+ * 4-byte big-endian ints:
+ * <pre>
+ *   block := rawLength (chunkLength chunk)+
+ * </pre>
+ * A block holds at most {@code bufferSize - compressionOverhead} bytes of input, so that one
+ * compressed chunk always fits into the stream buffer. With a block compressor such as LZ4 or
+ * Snappy every block holds exactly one chunk and is compressed independently of the others, so a
+ * reader can start at any block boundary, see {@link BlockIndex}. Only an empty stream is written as a block whose raw
+ * length is 0.
+ */
+public class BlockCompressorStream extends CompressorStream {
+
+    /**
+     * 一个块中未压缩数据的最大长度
+     */
+    private final int MAX_INPUT_SIZE;
+
+    /**
+     * 是否已经写出过块，空的流才需要写一个长度为0的块
+     */
+    private boolean wroteBlock = false;
+
+    /**
+     * Create a {@link BlockCompressorStream}.
+     *
+     * @param out                 stream
+     * @param compressor          compressor to be used
+     * @param bufferSize          size of buffer
+     * @param compressionOverhead maximum 'overhead' of the compression algorithm with given
+     *                            bufferSize
+     */
+    public BlockCompressorStream(OutputStream out, Compressor compressor,
+                                 int bufferSize, int compressionOverhead) {
+        super(out, compressor, bufferSize);
+        MAX_INPUT_SIZE = bufferSize - compressionOverhead;
+    }
+
+    /**
+     * Create a {@link BlockCompressorStream} with given output-stream and compressor.
+     * Use default of 512 as bufferSize and compressionOverhead of (1% of bufferSize + 12 bytes) =
+     * 18 bytes (zlib algorithm).
+     */
+    public BlockCompressorStream(OutputStream out, Compressor compressor) {
+        this(out, compressor, 512, 18);
+    }
+
+    /**
+     * Write the data provided to the compression codec, compressing no more than the buffer size
+     * less the compression overhead as specified during construction for each block.
+     * <p>
+     * Each block contains the uncompressed length for the block, followed by one or more length-
+     * prefixed blocks of compressed data.
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // Sanity checks
+        if (compressor.finished()) {
+            throw new IOException("write beyond end of stream");
+        }
+        if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+            throw new IndexOutOfBoundsException();
+        } else if (len == 0) {
+            return;
+        }
+
+        long limlen = compressor.getBytesRead();
+        if (len + limlen > MAX_INPUT_SIZE && limlen > 0) {
+            // 加上这次的数据会超过一个块，先把已有的数据写成一个块
+            finish();
+            compressor.reset();
+        }
+
+        if (len > MAX_INPUT_SIZE) {
+            // 比一个块还大的数据：分段压缩，每段一个块
+            do {
+                int bufLen = Math.min(len, MAX_INPUT_SIZE);
+
+                rawWriteBlockLength(bufLen);
+                compressor.setInput(b, off, bufLen);
+                compressor.finish();
+                while (!compressor.finished()) {
+                    compress();
+                }
+                compressor.reset();
+                off += bufLen;
+                len -= bufLen;
+            } while (len > 0);
+            return;
+        }
+
+        // Give data to the compressor
+        compressor.setInput(b, off, len);
+        if (!compressor.needsInput()) {
+            // compressor buffer size might be smaller than the maximum size, so we permit it to
+            // flush if required.
+            rawWriteBlockLength((int) compressor.getBytesRead());
+            do {
+                compress();
+            } while (!compressor.needsInput());
+            // 缓冲区里的数据都已经写成了这个块，下一次write开始一个新块
+            compressor.reset();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (!compressor.finished()) {
+            long rawLength = compressor.getBytesRead();
+            if (rawLength > 0 || !wroteBlock) {
+                rawWriteBlockLength((int) rawLength);
+            }
+            compressor.finish();
+            while (!compressor.finished()) {
+                compress();
+            }
+        }
+    }
+
+    @Override
+    protected void compress() throws IOException {
+        int len = compressor.compress(buffer, 0, buffer.length);
+        if (len > 0) {
+            // Write out the compressed chunk
+            rawWriteInt(len);
+            out.write(buffer, 0, len);
+        }
+    }
+
+    private void rawWriteBlockLength(int rawLength) throws IOException {
+        rawWriteInt(rawLength);
+        wroteBlock = true;
+    }
+
+    private void rawWriteInt(int v) throws IOException {
+        out.write((v >>> 24) & 0xFF);
+        out.write((v >>> 16) & 0xFF);
+        out.write((v >>> 8) & 0xFF);
+        out.write((v >>> 0) & 0xFF);
+    }
+}
@@ -0,0 +1,120 @@
+package com.wzq.hadoop.io.compress;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 读取{@link BlockCompressorStream}写出的分块数据
+ * <p>
+ * Reads the uncompressed length of each block, then hands the decompressor one whole
+ * length-prefixed chunk at a time until the block is complete.
+ */
+public class BlockDecompressorStream extends DecompressorStream {
+
+    private int originalBlockSize = 0;
+    private int noUncompressedBytes = 0;
+
+    /**
+     * Create a {@link BlockDecompressorStream}.
+     *
+     * @param in           input stream
+     * @param decompressor decompressor to use
+     * @param bufferSize   size of buffer
+     */
+    public BlockDecompressorStream(InputStream in, Decompressor decompressor, int bufferSize) {
+        super(in, decompressor, bufferSize);
+    }
+
+    public BlockDecompressorStream(InputStream in, Decompressor decompressor) {
+        super(in, decompressor);
+    }
+
+    @Override
+    protected int decompress(byte[] b, int off, int len) throws IOException {
+        // Check if we are the beginning of a block
+        if (noUncompressedBytes == originalBlockSize) {
+            // Get original data size
+            try {
+                originalBlockSize = rawReadInt();
+            } catch (EOFException e) {
+                eof = true;
+                return -1;
+            }
+            noUncompressedBytes = 0;
+            // EOF if originalBlockSize is 0
+            // This will occur only when decompressing previous compressed empty file
+            if (originalBlockSize == 0) {
+                eof = true;
+                return -1;
+            }
+        }
+
+        int n;
+        while ((n = decompressor.decompress(b, off, len)) == 0) {
+            if (decompressor.finished() || decompressor.needsDictionary()) {
+                if (noUncompressedBytes >= originalBlockSize) {
+                    eof = true;
+                    return -1;
+                }
+            }
+            if (decompressor.needsInput()) {
+                int m = getCompressedData();
+                // Send the read data to the decompressor
+                decompressor.setInput(buffer, 0, m);
+            }
+        }
+
+        // Note the no. of decompressed bytes read from 'current' block
+        noUncompressedBytes += n;
+
+        // Check if we are the end of the block
+        if (noUncompressedBytes == originalBlockSize) {
+            decompressor.reset();
+        }
+        return n;
+    }
+
+    /**
+     * 读取一个完整的chunk到buffer中，buffer不够大时扩大它
+     */
+    @Override
+    protected int getCompressedData() throws IOException {
+        checkStream();
+
+        // Get the size of the compressed chunk (always non-negative)
+        int len = rawReadInt();
+
+        // Read len bytes from underlying stream
+        if (len > buffer.length) {
+            buffer = new byte[len];
+        }
+        int n = 0;
+        while (n < len) {
+            int count = in.read(buffer, n, len - n);
+            if (count < 0) {
+                throw new EOFException("Unexpected end of block in input stream");
+            }
+            n += count;
+        }
+        return len;
+    }
+
+    @Override
+    public void resetState() throws IOException {
+        originalBlockSize = 0;
+        noUncompressedBytes = 0;
+        super.resetState();
+    }
+
+    private int rawReadInt() throws IOException {
+        int b1 = in.read();
+        int b2 = in.read();
+        int b3 = in.read();
+        int b4 = in.read();
+        if ((b1 | b2 | b3 | b4) < 0) {
+            throw new EOFException();
+        }
+        return ((b1 << 24) + (b2 << 16) + (b3 << 8) + (b4 << 0));
+    }
+}
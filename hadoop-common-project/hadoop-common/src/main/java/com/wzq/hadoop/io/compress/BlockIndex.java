@@ -0,0 +1,214 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.fs.Seekable;
+import com.wzq.hadoop.io.Writable;
+import com.wzq.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 分块压缩文件中每个块的起始位置（压缩后的偏移量与解压后的偏移量）
+ * <p>
+ * {@link BlockCompressorStream}写出的每个块都是独立压缩的，从任意一个块的开头都可以开始解压。
+ * {@link #scan(InputStream, long)}只读取块头中的长度并seek跳过压缩数据，不需要解压，
+ * 得到的索引可以用{@link #write(DataOutput)}保存下来，由多个读取同一个文件的线程共用
+ * <p>
+ * Offsets of the blocks in a file written by {@link BlockCompressorStream}, used to open the file
+ * at a block boundary. A block {@code i} covers the compressed bytes
+ * {@code [getOffset(i), getOffset(i + 1))} and decompresses to the bytes
+ * {@code [getRawOffset(i), getRawOffset(i + 1))} of the original data. The index covers the
+ * compressed bytes {@code [0, getLength())}.
+ */
+public class BlockIndex implements Writable {
+
+    private long[] offsets = new long[16];
+    private long[] rawOffsets = new long[16];
+    private int size = 0;
+
+    // 最后一个块之后的位置
+    private long length = 0L;
+    private long rawLength = 0L;
+
+    public BlockIndex() {
+    }
+
+    /**
+     * 从文件开头扫描块头，直到第一个起始位置不小于{@code limit}的块，或者文件结束
+     *
+     * @param seekableIn a {@link Seekable} stream over the whole compressed file
+     * @param limit      scan stops at the first block boundary at or after this offset; use
+     *                   {@link Long#MAX_VALUE} to index the whole file
+     * @return the index of the blocks starting before {@code limit}
+     * @throws IOException if a block header is truncated or corrupt
+     */
+    public static BlockIndex scan(InputStream seekableIn, long limit) throws IOException {
+        if (!(seekableIn instanceof Seekable)) {
+            throw new IllegalArgumentException("Input stream is not Seekable: " + seekableIn);
+        }
+        Seekable seekable = (Seekable) seekableIn;
+        BlockIndex index = new BlockIndex();
+        byte[] header = new byte[8];
+
+        long pos = 0L;
+        while (pos < limit) {
+            seekable.seek(pos);
+            int n = readHeader(seekableIn, header, 0, 4);
+            if (n == 0) {
+                break;
+            }
+            int rawLength = n < 4 ? -1 : readInt(header, 0);
+            if (rawLength == 0) {
+                // 空的流，后面不会再有数据
+                break;
+            }
+            if (readHeader(seekableIn, header, 4, 4) < 4) {
+                throw new EOFException("Truncated block header at offset " + pos);
+            }
+            int chunkLength = readInt(header, 4);
+            if (rawLength < 0 || chunkLength < 0) {
+                throw new IOException("Corrupt block header at offset " + pos);
+            }
+            index.add(pos, rawLength);
+            pos += header.length + chunkLength;
+        }
+        index.length = pos;
+        return index;
+    }
+
+    private static int readHeader(InputStream in, byte[] b, int off, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            int count = in.read(b, off + n, len - n);
+            if (count < 0) {
+                break;
+            }
+            n += count;
+        }
+        return n;
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return ((b[off] & 0xff) << 24) | ((b[off + 1] & 0xff) << 16)
+                | ((b[off + 2] & 0xff) << 8) | (b[off + 3] & 0xff);
+    }
+
+    private void add(long offset, int blockRawLength) {
+        if (size == offsets.length) {
+            offsets = Arrays.copyOf(offsets, size * 2);
+            rawOffsets = Arrays.copyOf(rawOffsets, size * 2);
+        }
+        offsets[size] = offset;
+        rawOffsets[size] = rawLength;
+        size++;
+        rawLength += blockRawLength;
+    }
+
+    /**
+     * @return the number of blocks
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the compressed offset of block {@code i}, or {@link #getLength()} if {@code i == size()}
+     */
+    public long getOffset(int i) {
+        checkIndex(i);
+        return i == size ? length : offsets[i];
+    }
+
+    /**
+     * @return the uncompressed offset of block {@code i}, or {@link #getRawLength()} if
+     * {@code i == size()}
+     */
+    public long getRawOffset(int i) {
+        checkIndex(i);
+        return i == size ? rawLength : rawOffsets[i];
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i > size) {
+            throw new IndexOutOfBoundsException("block " + i + " of " + size);
+        }
+    }
+
+    /**
+     * @return the compressed offset just past the last block
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return the number of uncompressed bytes in the indexed blocks
+     */
+    public long getRawLength() {
+        return rawLength;
+    }
+
+    /**
+     * 第一个起始位置不小于{@code pos}的块，二分查找
+     *
+     * @return the first block starting at or after {@code pos}, or {@link #size()} if there is none
+     */
+    public int blockAtOrAfter(long pos) {
+        int i = Arrays.binarySearch(offsets, 0, size, pos);
+        return i >= 0 ? i : -(i + 1);
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVInt(out, size);
+        // 位置是递增的，只写差值
+        long lastOffset = 0L;
+        long lastRawOffset = 0L;
+        for (int i = 0; i <= size; i++) {
+            long offset = getOffset(i);
+            long rawOffset = getRawOffset(i);
+            WritableUtils.writeVLong(out, offset - lastOffset);
+            WritableUtils.writeVLong(out, rawOffset - lastRawOffset);
+            lastOffset = offset;
+            lastRawOffset = rawOffset;
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        int n = WritableUtils.readVInt(in);
+        if (n < 0) {
+            throw new IOException("Invalid block count: " + n);
+        }
+        offsets = new long[Math.max(n, 16)];
+        rawOffsets = new long[Math.max(n, 16)];
+        size = n;
+        long offset = 0L;
+        long rawOffset = 0L;
+        for (int i = 0; i <= n; i++) {
+            offset += WritableUtils.readVLong(in);
+            rawOffset += WritableUtils.readVLong(in);
+            if (i < n) {
+                offsets[i] = offset;
+                rawOffsets[i] = rawOffset;
+            }
+        }
+        length = offset;
+        rawLength = rawOffset;
+    }
+
+    public static BlockIndex read(DataInput in) throws IOException {
+        BlockIndex index = new BlockIndex();
+        index.readFields(in);
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        return "BlockIndex[blocks=" + size + ", length=" + length + ", rawLength=" + rawLength + "]";
+    }
+}
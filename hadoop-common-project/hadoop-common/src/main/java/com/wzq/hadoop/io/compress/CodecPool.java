@@ -0,0 +1,305 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configurable;
+import com.wzq.hadoop.conf.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 压缩器/解压缩器的对象池，按codec声明的{@link CompressionCodec#getCompressorType()}/
+ * {@link CompressionCodec#getDecompressorType()}分类。codec创建的实例可能是声明类型的子类，
+ * 所以每个实例记下自己属于哪个池，借出、归还和计数都落在同一个池上
+ * <p>
+ * 创建一个zlib压缩器要分配几百KB的本地内存，短小的流如果每次都新建压缩器，分配的时间比压缩还长。
+ * 借出时调用{@link Compressor#reinit(Configuration)}按新的配置重新初始化，
+ * 归还时调用reset()；每种类型最多保留{@value #CODEC_POOL_MAX_SIZE_DEFAULT}个
+ * （{@link #CODEC_POOL_MAX_SIZE_KEY}），多出来的直接end()释放
+ * <p>
+ * A global compressor/decompressor pool used to save and reuse (possibly native)
+ * compression/decompression codecs.
+ */
+public class CodecPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CodecPool.class);
+
+    /**
+     * 每种类型最多保留多少个空闲的压缩器/解压缩器
+     */
+    public static final String CODEC_POOL_MAX_SIZE_KEY = "io.compress.codec.pool.max.size";
+    public static final int CODEC_POOL_MAX_SIZE_DEFAULT = 32;
+
+    /**
+     * A global compressor pool used to save the expensive
+     * construction/destruction of (possibly native) compression codecs.
+     */
+    private static final ConcurrentMap<Class<? extends Compressor>, Pool<Compressor>> COMPRESSOR_POOL =
+            new ConcurrentHashMap<>();
+
+    /**
+     * A global decompressor pool used to save the expensive
+     * construction/destruction of (possibly native) decompression codecs.
+     */
+    private static final ConcurrentMap<Class<? extends Decompressor>, Pool<Decompressor>> DECOMPRESSOR_POOL =
+            new ConcurrentHashMap<>();
+
+    /**
+     * 池创建的每个实例属于哪个池。用WeakHashMap是为了借出后没有归还的实例仍然可以被回收；
+     * 压缩器/解压缩器都没有重写equals/hashCode，按引用查找
+     */
+    private static final Map<Object, Pool<?>> OWNERS = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private CodecPool() {
+    }
+
+    /**
+     * 一种类型的空闲对象，以及借出/归还的计数
+     */
+    private static final class Pool<T> {
+        private final ArrayDeque<T> idle = new ArrayDeque<>();
+        private volatile int maxSize = CODEC_POOL_MAX_SIZE_DEFAULT;
+
+        private final AtomicLong leased = new AtomicLong();     // 借出的总次数
+        private final AtomicLong created = new AtomicLong();    // 池中没有可用对象而新建的次数
+        private final AtomicLong returned = new AtomicLong();   // 归还的总次数
+        private final AtomicLong discarded = new AtomicLong();  // 池满而丢弃的次数
+
+        synchronized T poll() {
+            return idle.pollLast();
+        }
+
+        /**
+         * 按引用检查实例是否已经在池中，要在reset()/end()之前调用，否则重复归还会改动别人借走的实例
+         *
+         * @throws IllegalStateException if the pool already holds the instance
+         */
+        synchronized void checkNotPooled(T t) {
+            for (T pooled : idle) {
+                if (pooled == t) {
+                    throw new IllegalStateException("returned twice to the codec pool: " + t);
+                }
+            }
+        }
+
+        /**
+         * @return false if the pool is full
+         * @throws IllegalStateException if the pool already holds the instance
+         */
+        synchronized boolean offer(T t) {
+            checkNotPooled(t);
+            if (idle.size() >= maxSize) {
+                return false;
+            }
+            idle.addLast(t);
+            return true;
+        }
+
+        synchronized int size() {
+            return idle.size();
+        }
+    }
+
+    private static <T> Pool<T> pool(ConcurrentMap<Class<? extends T>, Pool<T>> pools, Class<? extends T> type) {
+        Pool<T> pool = pools.get(type);
+        if (pool == null) {
+            Pool<T> newPool = new Pool<>();
+            pool = pools.putIfAbsent(type, newPool);
+            if (pool == null) {
+                pool = newPool;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * 实例所属的池；不是从池中借出的实例（比如直接用codec创建的）按实际类型归还
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Pool<T> owner(ConcurrentMap<Class<? extends T>, Pool<T>> pools, T t) {
+        synchronized (OWNERS) {
+            Pool<T> pool = (Pool<T>) OWNERS.get(t);
+            if (pool == null) {
+                pool = pool(pools, (Class<? extends T>) t.getClass());
+                OWNERS.put(t, pool);
+            }
+            return pool;
+        }
+    }
+
+    private static void setMaxSize(Pool<?> pool, Configuration conf) {
+        if (conf != null) {
+            pool.maxSize = conf.getInt(CODEC_POOL_MAX_SIZE_KEY, CODEC_POOL_MAX_SIZE_DEFAULT);
+        }
+    }
+
+    /**
+     * Get a {@link Compressor} for the given {@link CompressionCodec} from the
+     * pool or a new one.
+     *
+     * @param codec the <code>CompressionCodec</code> for which to get the <code>Compressor</code>
+     * @param conf  the <code>Configuration</code> object which contains confs for creating or
+     *              reinit the compressor
+     * @return <code>Compressor</code> for the given <code>CompressionCodec</code> from the pool or
+     * a new one
+     */
+    public static Compressor getCompressor(CompressionCodec codec, Configuration conf) {
+        Class<? extends Compressor> type = codec.getCompressorType();
+        if (type == null) {
+            return codec.createCompressor();
+        }
+        Pool<Compressor> pool = pool(COMPRESSOR_POOL, type);
+        setMaxSize(pool, conf);
+
+        Compressor compressor = pool.poll();
+        if (compressor == null) {
+            compressor = codec.createCompressor();
+            OWNERS.put(compressor, pool);
+            pool.created.incrementAndGet();
+            LOG.debug("Got brand-new compressor [{}]", codec.getDefaultExtension());
+        } else {
+            compressor.reinit(conf);
+            LOG.debug("Got recycled compressor");
+        }
+        pool.leased.incrementAndGet();
+        return compressor;
+    }
+
+    /**
+     * 使用codec自己的配置重新初始化借出的压缩器
+     */
+    public static Compressor getCompressor(CompressionCodec codec) {
+        Configuration conf = codec instanceof Configurable ? ((Configurable) codec).getConf() : null;
+        return getCompressor(codec, conf);
+    }
+
+    /**
+     * Get a {@link Decompressor} for the given {@link CompressionCodec} from the
+     * pool or a new one. The pool size is read from the codec's configuration when the codec is
+     * {@link Configurable}.
+     *
+     * @param codec the <code>CompressionCodec</code> for which to get the <code>Decompressor</code>
+     * @return <code>Decompressor</code> for the given <code>CompressionCodec</code> the pool or a
+     * new one
+     */
+    public static Decompressor getDecompressor(CompressionCodec codec) {
+        Class<? extends Decompressor> type = codec.getDecompressorType();
+        if (type == null) {
+            return codec.createDecompressor();
+        }
+        Configuration conf = codec instanceof Configurable ? ((Configurable) codec).getConf() : null;
+        Pool<Decompressor> pool = pool(DECOMPRESSOR_POOL, type);
+        setMaxSize(pool, conf);
+
+        Decompressor decompressor = pool.poll();
+        if (decompressor == null) {
+            decompressor = codec.createDecompressor();
+            OWNERS.put(decompressor, pool);
+            pool.created.incrementAndGet();
+            LOG.debug("Got brand-new decompressor [{}]", codec.getDefaultExtension());
+        } else {
+            LOG.debug("Got recycled decompressor");
+        }
+        pool.leased.incrementAndGet();
+        return decompressor;
+    }
+
+    /**
+     * Return the {@link Compressor} to the pool.
+     *
+     * @param compressor the <code>Compressor</code> to be returned to the pool
+     */
+    public static void returnCompressor(Compressor compressor) {
+        if (compressor == null) {
+            return;
+        }
+        Pool<Compressor> pool = owner(COMPRESSOR_POOL, compressor);
+        pool.checkNotPooled(compressor);
+        compressor.reset();
+        boolean pooled = pool.offer(compressor);
+        pool.returned.incrementAndGet();
+        if (!pooled) {
+            pool.discarded.incrementAndGet();
+            compressor.end();
+        }
+    }
+
+    /**
+     * Return the {@link Decompressor} to the pool.
+     *
+     * @param decompressor the <code>Decompressor</code> to be returned to the pool
+     */
+    public static void returnDecompressor(Decompressor decompressor) {
+        if (decompressor == null) {
+            return;
+        }
+        Pool<Decompressor> pool = owner(DECOMPRESSOR_POOL, decompressor);
+        pool.checkNotPooled(decompressor);
+        decompressor.reset();
+        boolean pooled = pool.offer(decompressor);
+        pool.returned.incrementAndGet();
+        if (!pooled) {
+            pool.discarded.incrementAndGet();
+            decompressor.end();
+        }
+    }
+
+    /**
+     * Return the number of leased {@link Compressor}s for this {@link CompressionCodec}
+     */
+    public static int getLeasedCompressorsCount(CompressionCodec codec) {
+        Pool<Compressor> pool = codec == null ? null : COMPRESSOR_POOL.get(codec.getCompressorType());
+        return pool == null ? 0 : (int) (pool.leased.get() - pool.returned.get());
+    }
+
+    /**
+     * Return the number of leased {@link Decompressor}s for this {@link CompressionCodec}
+     */
+    public static int getLeasedDecompressorsCount(CompressionCodec codec) {
+        Pool<Decompressor> pool = codec == null ? null : DECOMPRESSOR_POOL.get(codec.getDecompressorType());
+        return pool == null ? 0 : (int) (pool.leased.get() - pool.returned.get());
+    }
+
+    /**
+     * 当前池中空闲的压缩器个数
+     */
+    public static int getIdleCompressorsCount(CompressionCodec codec) {
+        Pool<Compressor> pool = codec == null ? null : COMPRESSOR_POOL.get(codec.getCompressorType());
+        return pool == null ? 0 : pool.size();
+    }
+
+    /**
+     * 当前池中空闲的解压缩器个数
+     */
+    public static int getIdleDecompressorsCount(CompressionCodec codec) {
+        Pool<Decompressor> pool = codec == null ? null : DECOMPRESSOR_POOL.get(codec.getDecompressorType());
+        return pool == null ? 0 : pool.size();
+    }
+
+    /**
+     * 所有类型借出、新建、归还、丢弃的次数，格式为 type: leased/created/returned/discarded
+     */
+    public static String getStatistics() {
+        StringBuilder sb = new StringBuilder();
+        appendStatistics(sb, COMPRESSOR_POOL);
+        appendStatistics(sb, DECOMPRESSOR_POOL);
+        return sb.toString();
+    }
+
+    private static void appendStatistics(StringBuilder sb, ConcurrentMap<? extends Class<?>, ? extends Pool<?>> pools) {
+        for (Map.Entry<? extends Class<?>, ? extends Pool<?>> e : pools.entrySet()) {
+            Pool<?> pool = e.getValue();
+            sb.append(e.getKey().getSimpleName()).append(": ")
+                    .append(pool.leased.get()).append('/')
+                    .append(pool.created.get()).append('/')
+                    .append(pool.returned.get()).append('/')
+                    .append(pool.discarded.get()).append('\n');
+        }
+    }
+}
@@ -30,8 +30,8 @@ public interface CompressionCodec {
      * @return a stream the user can write uncompressed data to have it compressed
      * @throws IOException
      */
-    CompressionInputStream createOutputStream(OutputStream out,
-                                              Compressor compressor) throws IOException;
+    CompressionOutputStream createOutputStream(OutputStream out,
+                                               Compressor compressor) throws IOException;
 
     /**
      * Get the type of {@link Compressor} needed by this {@link CompressionCodec}
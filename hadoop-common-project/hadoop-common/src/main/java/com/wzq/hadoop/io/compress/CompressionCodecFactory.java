@@ -2,6 +2,7 @@ package com.wzq.hadoop.io.compress;
 
 
 import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.Path;
 import com.wzq.hadoop.util.ReflectionUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,45 +10,68 @@ import org.slf4j.LoggerFactory;
 import java.util.*;
 
 /**
- * A factory that will find the correct codec for a given filename
+ * 按文件名后缀、类名或者别名查找编解码器
+ * <p>
+ * 后缀与编解码器的对应关系在构造时放进HashMap，查找时只看路径的最后一个组件，
+ * 从左到右依次尝试从每个'.'开始的后缀，第一个命中的就是最长的后缀，不用反转字符串
+ * <p>
+ * A factory that will find the correct codec for a given filename. The factory is immutable once
+ * constructed, so one instance can be shared by threads listing large directories.
  */
 public class CompressionCodecFactory {
 
     private static final Logger LOG = LoggerFactory.getLogger(CompressionCodecFactory.class);
 
+    public static final String CODECS_KEY = "io.compression.codecs";
+
+    /**
+     * 后缀（包括'.'）到编解码器
+     */
+    private final Map<String, CompressionCodec> codecsByExtension = new HashMap<>();
+
+    /**
+     * 全类名到编解码器
+     */
+    private final Map<String, CompressionCodec> codecsByClassName = new HashMap<>();
+
     /**
-     * A map from the reversed filenames suffixes to the codecs. This is probably overkill, because
-     * the maps should be small, but it automatically supports finding the longest matching suffix.
+     * 小写的简单类名，以及去掉"Codec"后的小写名字（如gzip、lz4）到编解码器
      */
-    private SortedMap<String, CompressionCodec> codecs = null;
+    private final Map<String, CompressionCodec> codecsByName = new HashMap<>();
 
     private void addCodec(CompressionCodec codec) {
         String suffix = codec.getDefaultExtension();
-        codecs.put(new StringBuffer(suffix).reverse().toString(), codec);
+        if (suffix != null && suffix.startsWith(".")) {
+            codecsByExtension.put(suffix, codec);
+        } else {
+            LOG.warn("Extension of {} does not start with '.', files will not be matched to it: {}",
+                    codec.getClass().getName(), suffix);
+        }
+
+        Class<? extends CompressionCodec> cls = codec.getClass();
+        codecsByClassName.put(cls.getName(), codec);
+        String simpleName = cls.getSimpleName().toLowerCase(Locale.ROOT);
+        codecsByName.put(simpleName, codec);
+        if (simpleName.endsWith("codec") && simpleName.length() > "codec".length()) {
+            codecsByName.put(simpleName.substring(0, simpleName.length() - "codec".length()), codec);
+        }
     }
 
     @Override
     public String toString() {
-        StringBuffer buf = new StringBuffer();
-        Iterator<Map.Entry<String, CompressionCodec>> itr = codecs.entrySet().iterator();
-
+        StringBuilder buf = new StringBuilder();
         buf.append("{ ");
-        if (itr.hasNext()) {
-            Map.Entry<String, CompressionCodec> entry = itr.next();
+        boolean first = true;
+        for (Map.Entry<String, CompressionCodec> entry : new TreeMap<>(codecsByExtension).entrySet()) {
+            if (!first) {
+                buf.append(", ");
+            }
             buf.append(entry.getKey());
             buf.append(": ");
             buf.append(entry.getValue().getClass().getName());
-
-            while (itr.hasNext()) {
-                entry = itr.next();
-                buf.append(", ");
-                buf.append(entry.getKey());
-                buf.append(": ");
-                buf.append(entry.getValue().getClass().getName());
-            }
+            first = false;
         }
         buf.append(" }");
-
         return buf.toString();
     }
 
@@ -58,7 +82,7 @@ public class CompressionCodecFactory {
      * @return a list of the Configuration classes or null if the attribute was not set
      */
     public static List<Class<? extends CompressionCodec>> getCodecClasses(Configuration conf) {
-        String codecsString = conf.get("io.compression.codecs");
+        String codecsString = conf.get(CODECS_KEY);
         if (codecsString != null) {
             List<Class<? extends CompressionCodec>> result = new ArrayList<>();
 
@@ -106,23 +130,21 @@ public class CompressionCodecFactory {
                 buf.append(itr.next().getName());
             }
         }
-        conf.set("io.compression.codecs", buf.toString());
+        conf.set(CODECS_KEY, buf.toString());
     }
 
     /**
-     * Find the codecs specified in the config value {@code io.compression.codecs} and register them.
+     * Find the codecs specified in the config value {@value #CODECS_KEY} and register them.
      * Defaults to gzip and zip
      *
      * @param conf the configuration
      */
     public CompressionCodecFactory(Configuration conf) {
-        codecs = new TreeMap<String, CompressionCodec>();
         List<Class<? extends CompressionCodec>> codecClasses = getCodecClasses(conf);
 
         if (codecClasses == null) {
-            // TODO 添加默认的编解码压缩器
-//            addCodec(new GzipCodec());
-//            addCodec(new DefaultCodec());
+            addCodec(new GzipCodec());
+            addCodec(new DefaultCodec());
         } else {
             Iterator<Class<? extends CompressionCodec>> itr = codecClasses.iterator();
             while (itr.hasNext()) {
@@ -133,31 +155,71 @@ public class CompressionCodecFactory {
     }
 
     /**
-     * TODO Get {@link CompressionCodec} using fs.Path
+     * Find the relevant compression codec for the given file based on its filename suffix.
      *
-     * @param file
-     * @return
+     * @param file the filename to check
+     * @return the codec object, or null if the suffix matches no codec
+     */
+    public CompressionCodec getCodec(Path file) {
+        return getCodecByExtension(file.getName());
+    }
+
+    /**
+     * @param filename 文件名，可以带有目录
+     * @return the codec for the longest matching suffix, or null if there is none
      */
-    public CompressionCodec getCodec(Object file) {
+    public CompressionCodec getCodec(String filename) {
+        return getCodecByExtension(filename.substring(filename.lastIndexOf(Path.SEPARATOR_CHAR) + 1));
+    }
+
+    private CompressionCodec getCodecByExtension(String name) {
+        for (int dot = name.indexOf('.'); dot >= 0; dot = name.indexOf('.', dot + 1)) {
+            CompressionCodec codec = codecsByExtension.get(name.substring(dot));
+            if (codec != null) {
+                return codec;
+            }
+        }
         return null;
     }
 
     /**
-     * @param name 编解码器全类名
-     * @return
+     * Find the relevant compression codec for the codec's canonical class name.
+     *
+     * @param classname the canonical class name of the codec
+     * @return the codec object, or null if no codec of this class is registered
      */
-    public CompressionCodec getCodec(String name) {
-        CompressionCodec result = null;
+    public CompressionCodec getCodecByClassName(String classname) {
+        return codecsByClassName.get(classname);
+    }
 
-        String reversedFilename = new StringBuffer(name).reverse().toString();
-        SortedMap<String, CompressionCodec> subMap = codecs.headMap(reversedFilename);
+    /**
+     * 按类名或别名查找，别名不区分大小写：gzip、GzipCodec、default都可以
+     * <p>
+     * Find the relevant compression codec for the codec's canonical class name or by codec alias.
+     * The alias is the short class name, with or without the 'Codec' ending.
+     *
+     * @param codecName the canonical class name or alias of the codec
+     * @return the codec object, or null if there is none
+     */
+    public CompressionCodec getCodecByName(String codecName) {
+        CompressionCodec codec = codecsByClassName.get(codecName);
+        if (codec == null) {
+            codec = codecsByName.get(codecName.toLowerCase(Locale.ROOT));
+        }
+        return codec;
+    }
 
-        if (!subMap.isEmpty()) {
-            String potentialSuffix = subMap.lastKey();
-            if (reversedFilename.startsWith(potentialSuffix)) {
-                result = codecs.get(potentialSuffix);
-            }
+    /**
+     * Removes a suffix from a filename, if it has it.
+     *
+     * @param filename the filename to strip
+     * @param suffix   the suffix to remove
+     * @return the shortened filename
+     */
+    public static String removeSuffix(String filename, String suffix) {
+        if (filename.endsWith(suffix)) {
+            return filename.substring(0, filename.length() - suffix.length());
         }
-        return result;
+        return filename;
     }
 }
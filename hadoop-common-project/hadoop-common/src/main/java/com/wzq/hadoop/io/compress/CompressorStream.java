@@ -64,8 +64,8 @@ public class CompressorStream extends CompressionOutputStream {
             return;
         }
 
-        // 执行压缩操作
-        compressor.compress(b, off, len);
+        // 设置输入，直到compressor需要更多输入前，把压缩后的数据写到out
+        compressor.setInput(b, off, len);
         while (!compressor.needsInput()) {
             compress();
         }
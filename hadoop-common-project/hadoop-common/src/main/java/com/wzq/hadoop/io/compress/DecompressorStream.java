@@ -60,8 +60,9 @@ public class DecompressorStream extends CompressionInputStream {
 
         while ((n = decompressor.decompress(b, off, len)) == 0) {
             if (decompressor.needsDictionary()) {
-                eof = true;
-                return -1;
+                // 不是流的结束：数据是用预设字典压缩的，而解压缩器没有这个字典
+                throw new IOException("Stream was compressed with a preset dictionary, which "
+                        + decompressor.getClass().getSimpleName() + " does not have");
             }
 
             if (decompressor.finished()) {
@@ -0,0 +1,84 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configurable;
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.io.compress.zlib.ZlibFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * zlib格式的编解码器，压缩器/解压缩器基于{@link java.util.zip.Deflater}/{@link java.util.zip.Inflater}
+ * <p>
+ * The default codec: zlib-wrapped deflate, compression level and strategy from
+ * {@link ZlibFactory#ZLIB_COMPRESS_LEVEL_KEY} / {@link ZlibFactory#ZLIB_COMPRESS_STRATEGY_KEY}.
+ */
+public class DefaultCodec implements Configurable, CompressionCodec {
+
+    Configuration conf;
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
+    /**
+     * 压缩流/解压缩流的缓冲区大小
+     */
+    int getBufferSize() {
+        return conf == null ? 4096 : conf.getInt("io.file.buffer.size", 4096);
+    }
+
+    @Override
+    public CompressionOutputStream createOutputStream(OutputStream out) throws IOException {
+        return new CompressorStream(out, createCompressor(), getBufferSize());
+    }
+
+    @Override
+    public CompressionOutputStream createOutputStream(OutputStream out,
+                                                      Compressor compressor) throws IOException {
+        return new CompressorStream(out, compressor, getBufferSize());
+    }
+
+    @Override
+    public Class<? extends Compressor> getCompressorType() {
+        return ZlibFactory.getZlibCompressorType(conf);
+    }
+
+    @Override
+    public Compressor createCompressor() {
+        return ZlibFactory.getZlibCompressor(conf);
+    }
+
+    @Override
+    public CompressionInputStream createInputStream(InputStream in) throws IOException {
+        return new DecompressorStream(in, createDecompressor(), getBufferSize());
+    }
+
+    @Override
+    public CompressionInputStream createInputStream(InputStream in,
+                                                    Decompressor decompressor) throws IOException {
+        return new DecompressorStream(in, decompressor, getBufferSize());
+    }
+
+    @Override
+    public Class<? extends Decompressor> getDecompressorType() {
+        return ZlibFactory.getZlibDecompressorType(conf);
+    }
+
+    @Override
+    public Decompressor createDecompressor() {
+        return ZlibFactory.getZlibDecompressor(conf);
+    }
+
+    @Override
+    public String getDefaultExtension() {
+        return ".deflate";
+    }
+}
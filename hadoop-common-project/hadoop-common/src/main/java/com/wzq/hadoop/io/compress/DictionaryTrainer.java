@@ -0,0 +1,198 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.io.compress.zlib.ZlibFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 从样本记录中训练压缩用的预设字典
+ * <p>
+ * A simplified version of zstd's COVER algorithm. Every {@value #DMER_LENGTH}-byte substring
+ * ("dmer") is counted once per sample it occurs in. The samples are cut into epochs, one per
+ * segment the dictionary can hold, and from each epoch the {@code segmentLength}-byte window
+ * whose distinct dmers have the highest total count is selected; the counts of the selected
+ * dmers are then cleared so later segments cover different content. Segments are laid out with
+ * the highest scores last, because deflate encodes nearer matches more cheaply.
+ * <pre>
+ *   byte[] dictionary = DictionaryTrainer.train(samples, DictionaryTrainer.DEFAULT_DICTIONARY_SIZE);
+ *   DictionaryTrainer.store(conf, dictionary);
+ * </pre>
+ */
+public class DictionaryTrainer {
+
+    /**
+     * deflate的窗口是32KB，更大的字典没有意义
+     */
+    public static final int DEFAULT_DICTIONARY_SIZE = 32 * 1024;
+
+    public static final int DEFAULT_SEGMENT_LENGTH = 32;
+
+    private static final int DMER_LENGTH = 6;
+    private static final int TABLE_BITS = 20;
+
+    private DictionaryTrainer() {
+    }
+
+    /**
+     * 把字典保存到配置中，{@link ZlibDictionaryCodec}从这里读取
+     */
+    public static void store(Configuration conf, byte[] dictionary) {
+        ZlibFactory.setDictionary(conf, dictionary);
+    }
+
+    public static byte[] train(List<byte[]> samples, int dictionarySize) {
+        return train(samples, dictionarySize, DEFAULT_SEGMENT_LENGTH);
+    }
+
+    /**
+     * @param samples        sample records, ideally a few hundred times the dictionary size in total
+     * @param dictionarySize maximum size of the dictionary
+     * @param segmentLength  length of the segments the dictionary is built from
+     * @return the dictionary, at most {@code dictionarySize} bytes
+     */
+    public static byte[] train(List<byte[]> samples, int dictionarySize, int segmentLength) {
+        if (samples.isEmpty()) {
+            throw new IllegalArgumentException("no samples to train a dictionary from");
+        }
+        if (dictionarySize <= 0 || segmentLength < DMER_LENGTH) {
+            throw new IllegalArgumentException("dictionarySize " + dictionarySize
+                    + ", segmentLength " + segmentLength);
+        }
+
+        // 把样本拼在一起
+        int total = 0;
+        for (byte[] sample : samples) {
+            total += sample.length;
+        }
+        byte[] data = new byte[total];
+        int[] sampleEnds = new int[samples.size()];
+        int pos = 0;
+        for (int i = 0; i < samples.size(); i++) {
+            byte[] sample = samples.get(i);
+            System.arraycopy(sample, 0, data, pos, sample.length);
+            pos += sample.length;
+            sampleEnds[i] = pos;
+        }
+        if (total <= dictionarySize) {
+            return data;
+        }
+
+        // 每个dmer出现在多少个样本中
+        int[] freqs = new int[1 << TABLE_BITS];
+        int[] lastSample = new int[1 << TABLE_BITS];
+        int start = 0;
+        for (int i = 0; i < sampleEnds.length; i++) {
+            for (int p = start; p + DMER_LENGTH <= sampleEnds[i]; p++) {
+                int h = hash(data, p);
+                if (lastSample[h] != i + 1) {
+                    lastSample[h] = i + 1;
+                    freqs[h]++;
+                }
+            }
+            start = sampleEnds[i];
+        }
+        // 只出现在一个样本中的dmer对压缩没有帮助
+        for (int h = 0; h < freqs.length; h++) {
+            if (freqs[h] < 2) {
+                freqs[h] = 0;
+            }
+        }
+
+        int nbSegments = Math.max(1, dictionarySize / segmentLength);
+        int epochSize = Math.max(segmentLength, total / nbSegments);
+        int[] active = new int[1 << TABLE_BITS];
+        List<Segment> segments = new ArrayList<>();
+        int size = 0;
+        for (int epoch = 0; epoch + segmentLength <= total && size < dictionarySize; epoch += epochSize) {
+            Segment best = bestSegment(data, Math.min(epoch + epochSize, total), epoch, segmentLength, freqs, active);
+            if (best.score == 0) {
+                continue;
+            }
+            for (int p = best.begin; p + DMER_LENGTH <= best.begin + segmentLength; p++) {
+                freqs[hash(data, p)] = 0;
+            }
+            segments.add(best);
+            size += segmentLength;
+        }
+
+        // 分数高的放在最后
+        Collections.sort(segments, new Comparator<Segment>() {
+            @Override
+            public int compare(Segment a, Segment b) {
+                return Long.compare(a.score, b.score);
+            }
+        });
+        int skip = Math.max(0, size - dictionarySize);
+        byte[] dictionary = new byte[size - skip];
+        int off = 0;
+        for (Segment segment : segments) {
+            int from = segment.begin;
+            int len = segmentLength;
+            if (skip > 0) {
+                int n = Math.min(skip, len);
+                from += n;
+                len -= n;
+                skip -= n;
+            }
+            System.arraycopy(data, from, dictionary, off, len);
+            off += len;
+        }
+        return dictionary;
+    }
+
+    private static final class Segment {
+        final int begin;
+        final long score;
+
+        Segment(int begin, long score) {
+            this.begin = begin;
+            this.score = score;
+        }
+    }
+
+    /**
+     * 在[begin, end)中滑动长度为segmentLength的窗口，找出不同dmer的出现次数之和最大的窗口
+     */
+    private static Segment bestSegment(byte[] data, int end, int begin, int segmentLength,
+                                       int[] freqs, int[] active) {
+        int dmers = segmentLength - DMER_LENGTH + 1;
+        long score = 0;
+        long bestScore = 0;
+        int bestBegin = begin;
+        int tail = begin;
+        int head = begin;
+        for (; head + DMER_LENGTH <= end; head++) {
+            int h = hash(data, head);
+            if (active[h]++ == 0) {
+                score += freqs[h];
+            }
+            if (head - tail + 1 > dmers) {
+                int t = hash(data, tail++);
+                if (--active[t] == 0) {
+                    score -= freqs[t];
+                }
+            }
+            if (score > bestScore && head - tail + 1 == dmers) {
+                bestScore = score;
+                bestBegin = tail;
+            }
+        }
+        // 清空窗口
+        for (; tail < head; tail++) {
+            active[hash(data, tail)]--;
+        }
+        return new Segment(bestBegin, bestScore);
+    }
+
+    private static int hash(byte[] b, int p) {
+        long v = 0;
+        for (int i = 0; i < DMER_LENGTH; i++) {
+            v = (v << 8) | (b[p + i] & 0xff);
+        }
+        return (int) ((v * 0x9E3779B97F4A7C15L) >>> (64 - TABLE_BITS));
+    }
+}
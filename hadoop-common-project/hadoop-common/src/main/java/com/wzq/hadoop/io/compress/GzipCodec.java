@@ -0,0 +1,38 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.io.compress.zlib.BuiltInGzipCompressor;
+import com.wzq.hadoop.io.compress.zlib.BuiltInGzipDecompressor;
+
+/**
+ * gzip格式的编解码器
+ * <p>
+ * This class creates gzip compressors/decompressors. Written streams are standard gzip files;
+ * reading accepts concatenated gzip members, such as files appended to with {@code cat a.gz b.gz}.
+ */
+public class GzipCodec extends DefaultCodec {
+
+    @Override
+    public Class<? extends Compressor> getCompressorType() {
+        return BuiltInGzipCompressor.class;
+    }
+
+    @Override
+    public Compressor createCompressor() {
+        return new BuiltInGzipCompressor(conf);
+    }
+
+    @Override
+    public Class<? extends Decompressor> getDecompressorType() {
+        return BuiltInGzipDecompressor.class;
+    }
+
+    @Override
+    public Decompressor createDecompressor() {
+        return new BuiltInGzipDecompressor();
+    }
+
+    @Override
+    public String getDefaultExtension() {
+        return ".gz";
+    }
+}
@@ -0,0 +1,277 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.io.DataOutputBuffer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 并行压缩的输出流：把输入切成固定大小的块，在线程池中并发压缩，再按顺序写出
+ * <p>
+ * Each block is compressed into a complete, independent stream of the codec's format (a gzip
+ * member, a zlib stream, a run of lz4/snappy blocks), and the blocks are written in input order.
+ * Every codec's input stream reads such concatenated streams, so the output stays readable by
+ * {@link DecompressorStream} and {@link BlockDecompressorStream}. Compared to a single stream
+ * each block starts with an empty history, which costs a little ratio at the default 1MB
+ * blocks.
+ * <p>
+ * At most {@code 2 * threads} blocks are in flight; {@link #write(byte[], int, int)} blocks on
+ * the oldest one beyond that, which bounds the memory to roughly {@code 4 * threads} blocks.
+ * Compressors are leased from {@link CodecPool}.
+ */
+public class ParallelCompressorStream extends CompressionOutputStream {
+
+    /**
+     * 压缩线程数，默认为CPU核数
+     */
+    public static final String PARALLEL_THREADS_KEY = "io.compress.parallel.threads";
+
+    /**
+     * 每个块的未压缩长度
+     */
+    public static final String PARALLEL_BLOCK_SIZE_KEY = "io.compress.parallel.block.size";
+    public static final int PARALLEL_BLOCK_SIZE_DEFAULT = 1024 * 1024;
+
+    private static final AtomicInteger STREAM_ID = new AtomicInteger();
+
+    private final CompressionCodec codec;
+    private final Configuration conf;
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final int blockSize;
+    private final int maxPending;
+
+    // 按提交顺序排列的压缩结果
+    private final ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+    // 用完的块，避免反复分配
+    private final ConcurrentLinkedQueue<Block> freeBlocks = new ConcurrentLinkedQueue<>();
+
+    private Block current;
+    private boolean wroteBlock = false;
+    private boolean closed = false;
+
+    /**
+     * 一个块的输入与压缩后的输出
+     */
+    private static final class Block {
+        final byte[] data;
+        int length;
+        final DataOutputBuffer compressed = new DataOutputBuffer();
+
+        Block(int size) {
+            data = new byte[size];
+        }
+    }
+
+    /**
+     * 使用自己的线程池，线程数与块大小从配置中读取，close时关闭线程池
+     */
+    public ParallelCompressorStream(OutputStream out, CompressionCodec codec, Configuration conf) {
+        this(out, codec, conf, checkArguments(out, codec, conf)
+                .getInt(PARALLEL_THREADS_KEY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    private ParallelCompressorStream(OutputStream out, CompressionCodec codec, Configuration conf, int threads) {
+        this(out, codec, conf, newExecutor(threads), true,
+                conf.getInt(PARALLEL_BLOCK_SIZE_KEY, PARALLEL_BLOCK_SIZE_DEFAULT), threads);
+    }
+
+    /**
+     * @param out       the stream to write the compressed blocks to
+     * @param codec     codec to compress every block with
+     * @param conf      configuration the compressors are leased with
+     * @param executor  executor running the compression tasks, not shut down by this stream
+     * @param blockSize uncompressed length of a block
+     * @param threads   the parallelism of the executor; twice as many blocks may be in flight
+     */
+    public ParallelCompressorStream(OutputStream out, CompressionCodec codec, Configuration conf,
+                                    ExecutorService executor, int blockSize, int threads) {
+        this(out, codec, conf, executor, false, blockSize, threads);
+    }
+
+    private ParallelCompressorStream(OutputStream out, CompressionCodec codec, Configuration conf,
+                                     ExecutorService executor, boolean ownExecutor, int blockSize, int threads) {
+        super(out);
+        checkArguments(out, codec, conf);
+        if (blockSize <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Illegal blockSize " + blockSize + " or threads " + threads);
+        }
+        this.codec = codec;
+        this.conf = conf;
+        this.executor = executor;
+        this.ownExecutor = ownExecutor;
+        this.blockSize = blockSize;
+        this.maxPending = 2 * threads;
+        this.current = new Block(blockSize);
+    }
+
+    /**
+     * 在读取配置、创建线程池之前检查参数
+     */
+    private static Configuration checkArguments(OutputStream out, CompressionCodec codec, Configuration conf) {
+        if (out == null || codec == null || conf == null) {
+            throw new NullPointerException();
+        }
+        return conf;
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        final int id = STREAM_ID.incrementAndGet();
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "ParallelCompressor-" + id + "-" + count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checkStream();
+        current.data[current.length++] = (byte) b;
+        if (current.length == blockSize) {
+            submit();
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkStream();
+        if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+            throw new IndexOutOfBoundsException();
+        }
+        while (len > 0) {
+            int n = Math.min(len, blockSize - current.length);
+            System.arraycopy(b, off, current.data, current.length, n);
+            current.length += n;
+            off += n;
+            len -= n;
+            if (current.length == blockSize) {
+                submit();
+            }
+        }
+    }
+
+    /**
+     * 提交当前块，在途的块太多时先写出最早的块
+     */
+    private void submit() throws IOException {
+        final Block block = current;
+        pending.add(executor.submit(new Callable<Block>() {
+            @Override
+            public Block call() throws IOException {
+                return compress(block);
+            }
+        }));
+        wroteBlock = true;
+
+        Block next = freeBlocks.poll();
+        current = next == null ? new Block(blockSize) : next;
+        current.length = 0;
+
+        while (pending.size() > maxPending) {
+            writeOldest();
+        }
+    }
+
+    private Block compress(Block block) throws IOException {
+        Compressor compressor = CodecPool.getCompressor(codec, conf);
+        try {
+            block.compressed.reset();
+            CompressionOutputStream out = codec.createOutputStream(block.compressed, compressor);
+            out.write(block.data, 0, block.length);
+            out.finish();
+            return block;
+        } finally {
+            CodecPool.returnCompressor(compressor);
+        }
+    }
+
+    private void writeOldest() throws IOException {
+        Future<Block> future = pending.poll();
+        Block block;
+        try {
+            block = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for a compressed block");
+        } catch (ExecutionException e) {
+            cancelPending();
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("block compression failed", cause);
+        }
+        out.write(block.compressed.getData(), 0, block.compressed.getLength());
+        freeBlocks.add(block);
+    }
+
+    private void cancelPending() {
+        for (Future<Block> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+    }
+
+    /**
+     * 压缩剩下的数据并按顺序写出所有的块；空的流也写出一个压缩后的空块
+     */
+    @Override
+    public void finish() throws IOException {
+        checkStream();
+        if (current.length > 0 || !wroteBlock) {
+            submit();
+        }
+        while (!pending.isEmpty()) {
+            writeOldest();
+        }
+    }
+
+    /**
+     * 每个块都是独立的流，没有需要重置的状态
+     */
+    @Override
+    public void resetState() throws IOException {
+        checkStream();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            finish();
+        } finally {
+            // finish()失败时也要关闭底层的流
+            closed = true;
+            cancelPending();
+            if (ownExecutor) {
+                executor.shutdownNow();
+            }
+            out.close();
+        }
+    }
+
+    private void checkStream() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+}
@@ -0,0 +1,350 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configuration;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 预读的解压缩流：后台线程读取并解压后面的数据，放进一个小的缓冲区环中
+ * <p>
+ * Wraps any {@link CompressionInputStream}. A daemon thread reads the compressed input and
+ * decompresses it ahead of the caller into {@code depth} buffers of {@code bufferSize} bytes,
+ * so I/O and decompression overlap with whatever the caller does with the data. The thread is
+ * started by the first read.
+ * <p>
+ * Metrics: {@link #getStalls()} counts the buffers the caller had to wait for and
+ * {@link #getStallTimeNanos()} the time it waited; {@link #getQueueDepth()} is the number of
+ * decompressed buffers ready right now and {@link #getAverageQueueDepth()} its average when the
+ * caller takes a buffer. A depth near zero with many stalls means the producer is the
+ * bottleneck; a full queue means the consumer is.
+ * <p>
+ * To reposition the underlying stream, call {@link #resetState()} first: it stops the
+ * background thread, which would otherwise keep reading the stream, and discards what was read
+ * ahead.
+ */
+public class ReadAheadDecompressorStream extends CompressionInputStream {
+
+    /**
+     * 每个预读缓冲区的大小
+     */
+    public static final String READAHEAD_BUFFER_SIZE_KEY = "io.compress.readahead.buffer.size";
+    public static final int READAHEAD_BUFFER_SIZE_DEFAULT = 256 * 1024;
+
+    /**
+     * 预读缓冲区的个数
+     */
+    public static final String READAHEAD_DEPTH_KEY = "io.compress.readahead.depth";
+    public static final int READAHEAD_DEPTH_DEFAULT = 4;
+
+    private static final AtomicInteger STREAM_ID = new AtomicInteger();
+
+    /**
+     * 一个预读缓冲区；length为-1表示流结束，error不为null表示后台线程出错
+     */
+    private static final class Chunk {
+        final byte[] data;
+        int length;
+        int pos;
+        IOException error;
+
+        Chunk(int size) {
+            data = new byte[size];
+        }
+    }
+
+    private final CompressionInputStream decompressor;
+    private final int bufferSize;
+    private final int depth;
+
+    private BlockingQueue<Chunk> free;
+    private volatile BlockingQueue<Chunk> filled;
+    private Thread prefetcher;
+    private volatile boolean stopped;
+
+    private Chunk current;
+    private boolean eof = false;
+    private boolean closed = false;
+
+    // metrics：只有读取的线程会修改，volatile让别的线程（比如监控）能读到最新的值
+    private volatile long stalls = 0;
+    private volatile long stallTimeNanos = 0;
+    private volatile long chunksTaken = 0;
+    private volatile long queueDepthSum = 0;
+
+    public ReadAheadDecompressorStream(CompressionInputStream in, Configuration conf) {
+        this(in, conf.getInt(READAHEAD_BUFFER_SIZE_KEY, READAHEAD_BUFFER_SIZE_DEFAULT),
+                conf.getInt(READAHEAD_DEPTH_KEY, READAHEAD_DEPTH_DEFAULT));
+    }
+
+    /**
+     * @param in         the stream to read ahead
+     * @param bufferSize size of each read-ahead buffer
+     * @param depth      number of buffers the background thread may fill ahead of the caller
+     */
+    public ReadAheadDecompressorStream(CompressionInputStream in, int bufferSize, int depth) {
+        super(in);
+        if (bufferSize <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Illegal bufferSize " + bufferSize + " or depth " + depth);
+        }
+        this.decompressor = in;
+        this.bufferSize = bufferSize;
+        this.depth = depth;
+    }
+
+    private void start() {
+        // 多一个缓冲区给调用方正在读的那个；filled再多留一个位置给读取之外出错时的缓冲区
+        free = new ArrayBlockingQueue<>(depth + 1);
+        filled = new ArrayBlockingQueue<>(depth + 2);
+        for (int i = 0; i <= depth; i++) {
+            free.add(new Chunk(bufferSize));
+        }
+        stopped = false;
+        prefetcher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                prefetch();
+            }
+        }, "ReadAheadDecompressor-" + STREAM_ID.incrementAndGet());
+        prefetcher.setDaemon(true);
+        prefetcher.start();
+    }
+
+    /**
+     * 后台线程：取一个空的缓冲区，填满后放入filled，直到流结束或出错
+     * <p>
+     * When the read fails part-way through a buffer, the bytes decompressed before the failure
+     * are handed over first and the error follows in a buffer of its own, so the caller sees the
+     * error at the same position as it would without read-ahead. Any {@link Throwable} is
+     * reported to the caller as an {@link IOException}: the thread never exits without queuing
+     * an error or the end of the stream, so the caller cannot wait forever.
+     */
+    private void prefetch() {
+        try {
+            while (true) {
+                Chunk chunk = takeFree();
+                if (chunk == null) {
+                    return;
+                }
+                IOException error = null;
+                try {
+                    int n = 0;
+                    while (chunk.length < chunk.data.length
+                            && (n = decompressor.read(chunk.data, chunk.length, chunk.data.length - chunk.length)) != -1) {
+                        chunk.length += n;
+                    }
+                    if (n == -1 && chunk.length == 0) {
+                        chunk.length = -1;
+                    }
+                } catch (Throwable t) {
+                    error = asIOException(t);
+                }
+                if (error != null && chunk.length > 0) {
+                    filled.put(chunk);
+                    chunk = takeFree();
+                    if (chunk == null) {
+                        return;
+                    }
+                }
+                chunk.error = error;
+                filled.put(chunk);
+                if (chunk.length == -1 || chunk.error != null) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // stopped
+        } catch (Throwable t) {
+            // 读取之外出错也要放一个出错的缓冲区，否则调用方会一直等在filled.take()
+            Chunk chunk = new Chunk(0);
+            chunk.error = asIOException(t);
+            filled.offer(chunk);
+        }
+    }
+
+    private static IOException asIOException(Throwable t) {
+        return t instanceof IOException ? (IOException) t : new IOException("read-ahead failed: " + t, t);
+    }
+
+    /**
+     * @return an emptied free buffer, or null if the stream is being stopped
+     */
+    private Chunk takeFree() throws InterruptedException {
+        Chunk chunk = free.take();
+        if (stopped) {
+            return null;
+        }
+        chunk.pos = 0;
+        chunk.length = 0;
+        chunk.error = null;
+        return chunk;
+    }
+
+    private void stop() throws IOException {
+        if (prefetcher == null) {
+            return;
+        }
+        // 不中断后台线程：中断会关闭正在读取的InterruptibleChannel。filled能放下所有的缓冲区，
+        // 后台线程只可能阻塞在free.take()，放一个空的缓冲区进去唤醒它
+        stopped = true;
+        free.offer(new Chunk(0));
+        try {
+            prefetcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while stopping the read-ahead thread");
+        }
+        prefetcher = null;
+        current = null;
+    }
+
+    /**
+     * @return the current chunk with data left, or null at the end of the stream
+     */
+    private Chunk nextChunk() throws IOException {
+        if (current != null && current.pos < current.length) {
+            return current;
+        }
+        if (eof) {
+            return null;
+        }
+        if (prefetcher == null) {
+            start();
+        }
+        if (current != null) {
+            free.add(current);
+            current = null;
+        }
+
+        queueDepthSum += filled.size();
+        chunksTaken++;
+        Chunk chunk = filled.poll();
+        if (chunk == null) {
+            stalls++;
+            long start = System.nanoTime();
+            try {
+                chunk = filled.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for read-ahead data");
+            } finally {
+                stallTimeNanos += System.nanoTime() - start;
+            }
+        }
+
+        if (chunk.error != null) {
+            eof = true;
+            throw chunk.error;
+        }
+        if (chunk.length == -1) {
+            eof = true;
+            return null;
+        }
+        current = chunk;
+        return chunk;
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkStream();
+        Chunk chunk = nextChunk();
+        return chunk == null ? -1 : chunk.data[chunk.pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkStream();
+        if ((off | len | (off + len) | (b.length - (off + len))) < 0) {
+            throw new IndexOutOfBoundsException();
+        } else if (len == 0) {
+            return 0;
+        }
+        Chunk chunk = nextChunk();
+        if (chunk == null) {
+            return -1;
+        }
+        int n = Math.min(len, chunk.length - chunk.pos);
+        System.arraycopy(chunk.data, chunk.pos, b, off, n);
+        chunk.pos += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        checkStream();
+        long skipped = 0;
+        while (skipped < n) {
+            Chunk chunk = nextChunk();
+            if (chunk == null) {
+                break;
+            }
+            int m = (int) Math.min(n - skipped, chunk.length - chunk.pos);
+            chunk.pos += m;
+            skipped += m;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        checkStream();
+        return current == null ? 0 : current.length - current.pos;
+    }
+
+    /**
+     * 停止预读线程，丢弃预读的数据并重置被包装的流；下一次读取时重新开始预读
+     */
+    @Override
+    public void resetState() throws IOException {
+        checkStream();
+        stop();
+        eof = false;
+        decompressor.resetState();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            stop();
+            decompressor.close();
+        }
+    }
+
+    private void checkStream() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+    }
+
+    /**
+     * @return how many times the caller had to wait for the background thread
+     */
+    public long getStalls() {
+        return stalls;
+    }
+
+    /**
+     * @return total time the caller waited for the background thread, in nanoseconds
+     */
+    public long getStallTimeNanos() {
+        return stallTimeNanos;
+    }
+
+    /**
+     * @return number of decompressed buffers ready to be read
+     */
+    public int getQueueDepth() {
+        return filled == null ? 0 : filled.size();
+    }
+
+    /**
+     * @return average number of ready buffers each time the caller moved on to the next buffer
+     */
+    public double getAverageQueueDepth() {
+        return chunksTaken == 0 ? 0 : (double) queueDepthSum / chunksTaken;
+    }
+}
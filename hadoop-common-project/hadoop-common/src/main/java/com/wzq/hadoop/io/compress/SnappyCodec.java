@@ -0,0 +1,122 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configurable;
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.io.compress.snappy.SnappyBlock;
+import com.wzq.hadoop.io.compress.snappy.SnappyCompressor;
+import com.wzq.hadoop.io.compress.snappy.SnappyDecompressor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Snappy格式的编解码器，纯Java实现，不依赖native库
+ * <p>
+ * Data is written by {@link BlockCompressorStream} in blocks of at most
+ * {@link #SNAPPY_BUFFER_SIZE_KEY} bytes, each chunk being a snappy raw block. This is the same
+ * layout as Hadoop's native SnappyCodec, so {@code .snappy} files written by Hadoop tooling can be
+ * read here and vice versa; the decompressor only ever holds one block in memory.
+ * <p>
+ * Files written here are splittable: every block is compressed on its own, and {@link BlockIndex}
+ * finds the block boundaries by reading the block headers only. Hadoop may put several chunks into
+ * one block, so its files have to be read from the start.
+ */
+public class SnappyCodec implements Configurable, SplittableCompressionCodec {
+
+    /**
+     * 一个块的大小；解压时块的长度记录在数据中，不要求与写入时一致
+     */
+    public static final String SNAPPY_BUFFER_SIZE_KEY = "io.compression.codec.snappy.buffersize";
+    public static final int SNAPPY_BUFFER_SIZE_DEFAULT = 256 * 1024;
+
+    private Configuration conf;
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+
+    private int getBufferSize() {
+        return conf == null ? SNAPPY_BUFFER_SIZE_DEFAULT : conf.getInt(SNAPPY_BUFFER_SIZE_KEY, SNAPPY_BUFFER_SIZE_DEFAULT);
+    }
+
+    @Override
+    public CompressionOutputStream createOutputStream(OutputStream out) throws IOException {
+        return createOutputStream(out, createCompressor());
+    }
+
+    @Override
+    public CompressionOutputStream createOutputStream(OutputStream out,
+                                                      Compressor compressor) throws IOException {
+        int bufferSize = getBufferSize();
+        int compressionOverhead = SnappyBlock.maxCompressedLength(bufferSize) - bufferSize;
+        return new BlockCompressorStream(out, compressor, bufferSize + compressionOverhead, compressionOverhead);
+    }
+
+    @Override
+    public Class<? extends Compressor> getCompressorType() {
+        return SnappyCompressor.class;
+    }
+
+    @Override
+    public Compressor createCompressor() {
+        return new SnappyCompressor(getBufferSize());
+    }
+
+    @Override
+    public CompressionInputStream createInputStream(InputStream in) throws IOException {
+        return createInputStream(in, createDecompressor());
+    }
+
+    @Override
+    public CompressionInputStream createInputStream(InputStream in,
+                                                    Decompressor decompressor) throws IOException {
+        return new BlockDecompressorStream(in, decompressor, getBufferSize());
+    }
+
+    @Override
+    public Class<? extends Decompressor> getDecompressorType() {
+        return SnappyDecompressor.class;
+    }
+
+    @Override
+    public Decompressor createDecompressor() {
+        return new SnappyDecompressor(getBufferSize());
+    }
+
+    /**
+     * 从文件开头扫描块头找到{@code [start, end)}中的块，然后只解压这些块
+     * <p>
+     * Every call scans the headers from offset 0 up to {@code end}. When a file is read as many
+     * splits, build the index once and pass it to
+     * {@link #createInputStream(InputStream, Decompressor, BlockIndex, long, long)} instead.
+     */
+    @Override
+    public SplitCompressionInputStream createInputStream(InputStream seekableIn, Decompressor decompressor,
+                                                         long start, long end) throws IOException {
+        return createInputStream(seekableIn, decompressor, BlockIndex.scan(seekableIn, end), start, end);
+    }
+
+    /**
+     * 使用事先建好的索引，读取同一个文件的多个split共用一个索引，不需要每次都从文件开头扫描
+     *
+     * @param index block index of the file covering at least {@code [0, end)}, e.g. from one
+     *              {@link BlockIndex#scan(InputStream, long)} of the whole file or a saved copy
+     *              read with {@link BlockIndex#read(java.io.DataInput)}
+     */
+    public SplitCompressionInputStream createInputStream(InputStream seekableIn, Decompressor decompressor,
+                                                         BlockIndex index, long start, long end) throws IOException {
+        return new SplitBlockDecompressorStream(seekableIn, this, decompressor, index, start, end);
+    }
+
+    @Override
+    public String getDefaultExtension() {
+        return ".snappy";
+    }
+}
@@ -0,0 +1,154 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.fs.Seekable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 读取{@link BlockCompressorStream}写出的文件中的一段：seek到段内第一个块的开头，
+ * 只解压从这一段中开始的块
+ * <p>
+ * The requested range {@code [start, end)} is aligned to the block boundaries found in a
+ * {@link BlockIndex}. The compressed bytes of the aligned range are handed to a regular
+ * {@link BlockDecompressorStream}, which sees the end of the range as the end of the file. Threads
+ * reading the splits of one file can share a single index instead of each scanning the block
+ * headers again.
+ */
+public class SplitBlockDecompressorStream extends SplitCompressionInputStream {
+
+    private final CompressionInputStream decompressed;
+    private final BoundedInputStream compressed;
+    private final long rawStart;
+
+    /**
+     * @param seekableIn   a {@link Seekable} stream over the whole compressed file
+     * @param codec        the codec the file was written with
+     * @param decompressor the decompressor to use
+     * @param index        block index of the file, covering at least {@code [0, end)}
+     * @param start        the requested start offset in the compressed file
+     * @param end          the requested end offset in the compressed file
+     * @throws IOException
+     */
+    public SplitBlockDecompressorStream(InputStream seekableIn, CompressionCodec codec, Decompressor decompressor,
+                                        BlockIndex index, long start, long end) throws IOException {
+        super(seekableIn, start, end);
+        if (!(seekableIn instanceof Seekable)) {
+            throw new IllegalArgumentException("Input stream is not Seekable: " + seekableIn);
+        }
+        if (start < 0 || end < start) {
+            throw new IllegalArgumentException("Invalid split [" + start + ", " + end + ")");
+        }
+        int first = index.blockAtOrAfter(start);
+        int last = index.blockAtOrAfter(end);
+        long adjustedStart = index.getOffset(first);
+        long adjustedEnd = index.getOffset(last);
+        setStart(adjustedStart);
+        setEnd(adjustedEnd);
+        this.rawStart = index.getRawOffset(first);
+
+        ((Seekable) seekableIn).seek(adjustedStart);
+        this.compressed = new BoundedInputStream(seekableIn, adjustedEnd - adjustedStart);
+        this.decompressed = codec.createInputStream(compressed, decompressor);
+    }
+
+    /**
+     * 这一段数据在解压后的文件中的起始位置
+     *
+     * @return the offset of the first uncompressed byte of this split in the original data
+     */
+    public long getRawStart() {
+        return rawStart;
+    }
+
+    /**
+     * @return the position in the compressed file up to which blocks have been read
+     */
+    public long getPos() {
+        return getAdjustedEnd() - compressed.remaining;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return decompressed.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        return decompressed.read(b, off, len);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        return decompressed.skip(n);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return decompressed.available();
+    }
+
+    @Override
+    public void resetState() throws IOException {
+        decompressed.resetState();
+    }
+
+    @Override
+    public void close() throws IOException {
+        decompressed.close();
+    }
+
+    /**
+     * 最多读取{@code remaining}个字节，之后返回EOF
+     */
+    private static final class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b >= 0) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = in.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = in.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.wzq.hadoop.io.compress;
+
+import java.io.InputStream;
+
+/**
+ * 只读取压缩文件中一段字节范围的解压缩流
+ * <p>
+ * An InputStream covering a range of compressed data. The start and end offsets requested by a
+ * client may be modified by the codec to fit block boundaries or other algorithm-dependent
+ * requirements; {@link #getAdjustedStart()} and {@link #getAdjustedEnd()} report the range that
+ * is actually read. Splits that share their boundaries never overlap: every block belongs to the
+ * split in which it starts.
+ */
+public abstract class SplitCompressionInputStream extends CompressionInputStream {
+
+    private long start;
+    private long end;
+
+    public SplitCompressionInputStream(InputStream in, long start, long end) {
+        super(in);
+        this.start = start;
+        this.end = end;
+    }
+
+    protected void setStart(long start) {
+        this.start = start;
+    }
+
+    protected void setEnd(long end) {
+        this.end = end;
+    }
+
+    /**
+     * After calling createInputStream, the values of start or end might change. So this method
+     * can be used to get the new value of start.
+     *
+     * @return the changed value of start
+     */
+    public long getAdjustedStart() {
+        return start;
+    }
+
+    /**
+     * After calling createInputStream, the values of start or end might change. So this method
+     * can be used to get the new value of end.
+     *
+     * @return the changed value of end
+     */
+    public long getAdjustedEnd() {
+        return end;
+    }
+}
@@ -0,0 +1,31 @@
+package com.wzq.hadoop.io.compress;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 可以从文件中间开始解压的编解码器，一个大的压缩文件可以切成多段由多个线程同时处理
+ * <p>
+ * This interface is meant to be implemented by those compression codecs which are capable of
+ * compressing / decompressing a stream starting at any arbitrary position.
+ */
+public interface SplittableCompressionCodec extends CompressionCodec {
+
+    /**
+     * Create a stream as dictated by the range {@code [start, end)} of the compressed file. The
+     * stream starts at the first block boundary at or after {@code start}, and reads every block
+     * that starts before {@code end}; the actual range is available through
+     * {@link SplitCompressionInputStream#getAdjustedStart()} and
+     * {@link SplitCompressionInputStream#getAdjustedEnd()}.
+     *
+     * @param seekableIn   the input stream over the whole compressed file, must be
+     *                     {@link com.wzq.hadoop.fs.Seekable}
+     * @param decompressor the decompressor to use
+     * @param start        the requested start offset in the compressed file
+     * @param end          the requested end offset in the compressed file
+     * @return a stream to read the uncompressed bytes of this split from
+     * @throws IOException
+     */
+    SplitCompressionInputStream createInputStream(InputStream seekableIn, Decompressor decompressor,
+                                                  long start, long end) throws IOException;
+}
@@ -0,0 +1,58 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.io.compress.zlib.ZlibDictionaryCompressor;
+import com.wzq.hadoop.io.compress.zlib.ZlibDictionaryDecompressor;
+import com.wzq.hadoop.io.compress.zlib.ZlibFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 使用预设字典的zlib编解码器，适合压缩大量短小而相似的记录
+ * <p>
+ * Small records give deflate too little history to find matches in; a dictionary trained on
+ * sample records ({@link DictionaryTrainer}) and stored under
+ * {@link ZlibFactory#ZLIB_DICTIONARY_KEY} provides that history up front. Readers and writers
+ * must be configured with the same dictionary: the stream header carries its Adler-32 and a
+ * mismatch is reported as an {@link IOException}. Without a dictionary the codec writes plain
+ * zlib streams, readable by {@link DefaultCodec}.
+ */
+public class ZlibDictionaryCodec extends DefaultCodec {
+
+    @Override
+    public Class<? extends Compressor> getCompressorType() {
+        return ZlibDictionaryCompressor.class;
+    }
+
+    @Override
+    public Compressor createCompressor() {
+        return new ZlibDictionaryCompressor(conf);
+    }
+
+    /**
+     * 从池中借出的解压缩器可能用的是别的字典，这里换成当前配置的字典
+     */
+    @Override
+    public CompressionInputStream createInputStream(InputStream in,
+                                                    Decompressor decompressor) throws IOException {
+        if (decompressor instanceof ZlibDictionaryDecompressor) {
+            ((ZlibDictionaryDecompressor) decompressor).useDictionary(conf);
+        }
+        return super.createInputStream(in, decompressor);
+    }
+
+    @Override
+    public Class<? extends Decompressor> getDecompressorType() {
+        return ZlibDictionaryDecompressor.class;
+    }
+
+    @Override
+    public Decompressor createDecompressor() {
+        return new ZlibDictionaryDecompressor(conf);
+    }
+
+    @Override
+    public String getDefaultExtension() {
+        return ".zdict";
+    }
+}
@@ -0,0 +1,325 @@
+package com.wzq.hadoop.io.compress.lz4;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * LZ4块格式的纯Java实现，与liblz4的{@code LZ4_compress_default}/{@code LZ4_decompress_safe}互通
+ * <p>
+ * A block is a list of sequences. Each sequence is a token byte (high nibble: literal length,
+ * low nibble: match length - 4, 15 meaning "more length bytes follow"), the literals, a 2-byte
+ * little-endian offset back into the output and the extra match length bytes. The last sequence
+ * has literals only; as the format requires, the last 5 bytes are always literals and no match
+ * starts within the last 12 bytes.
+ */
+public final class Lz4Block {
+
+    static final int MIN_MATCH = 4;
+    static final int MAX_DISTANCE = 65535;
+    static final int LAST_LITERALS = 5;
+    static final int MF_LIMIT = 12;
+    static final int ML_BITS = 4;
+    static final int ML_MASK = (1 << ML_BITS) - 1;
+    static final int RUN_MASK = 15;
+
+    static final int HASH_LOG = 12;
+    static final int HASH_TABLE_SIZE = 1 << HASH_LOG;
+
+    /**
+     * 找不到匹配时，每尝试2^SKIP_STRENGTH次步长加1，不可压缩的数据很快被跳过
+     */
+    private static final int SKIP_STRENGTH = 6;
+
+    private Lz4Block() {
+    }
+
+    /**
+     * 压缩{@code len}个字节最多需要的输出空间
+     */
+    public static int maxCompressedLength(int len) {
+        return len + len / 255 + 16;
+    }
+
+    /**
+     * 压缩src[srcOff, srcOff + srcLen)到dest中
+     *
+     * @param hashTable {@link #HASH_TABLE_SIZE}个元素的哈希表，调用方复用它避免每次分配
+     * @return the number of bytes written to dest
+     */
+    static int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int[] hashTable) {
+        if (dest.length - destOff < maxCompressedLength(srcLen)) {
+            throw new ArrayIndexOutOfBoundsException("destination buffer too small");
+        }
+        final int srcEnd = srcOff + srcLen;
+        final int mfLimit = srcEnd - MF_LIMIT;
+        final int matchLimit = srcEnd - LAST_LITERALS;
+
+        int dp = destOff;
+        int anchor = srcOff;
+
+        if (srcLen >= MF_LIMIT + 1) {
+            Arrays.fill(hashTable, -1);
+            hashTable[hash(readInt(src, srcOff))] = srcOff;
+            int ip = srcOff + 1;
+
+            search:
+            while (true) {
+                // 寻找一个4字节的匹配
+                int ref;
+                int attempts = 1 << SKIP_STRENGTH;
+                while (true) {
+                    if (ip > mfLimit) {
+                        break search;
+                    }
+                    int h = hash(readInt(src, ip));
+                    ref = hashTable[h];
+                    hashTable[h] = ip;
+                    if (ref >= 0 && ip - ref <= MAX_DISTANCE && readInt(src, ref) == readInt(src, ip)) {
+                        break;
+                    }
+                    ip += attempts++ >>> SKIP_STRENGTH;
+                }
+
+                // 向前扩展匹配
+                while (ip > anchor && ref > srcOff && src[ip - 1] == src[ref - 1]) {
+                    ip--;
+                    ref--;
+                }
+
+                int token = dp++;
+                dp = writeLiterals(src, anchor, ip - anchor, dest, token, dp);
+
+                while (true) {
+                    // offset
+                    int offset = ip - ref;
+                    dest[dp++] = (byte) offset;
+                    dest[dp++] = (byte) (offset >>> 8);
+
+                    ip += MIN_MATCH;
+                    ref += MIN_MATCH;
+                    int matchLen = 0;
+                    while (ip < matchLimit && src[ip] == src[ref]) {
+                        ip++;
+                        ref++;
+                        matchLen++;
+                    }
+                    dp = writeMatchLength(matchLen, dest, token, dp);
+                    anchor = ip;
+
+                    if (ip > mfLimit) {
+                        break search;
+                    }
+                    hashTable[hash(readInt(src, ip - 2))] = ip - 2;
+
+                    // 紧接着的位置如果也匹配，输出一个没有literal的sequence
+                    int h = hash(readInt(src, ip));
+                    ref = hashTable[h];
+                    hashTable[h] = ip;
+                    if (ref >= 0 && ip - ref <= MAX_DISTANCE && readInt(src, ref) == readInt(src, ip)) {
+                        token = dp++;
+                        dest[token] = 0;
+                        continue;
+                    }
+                    ip++;
+                    continue search;
+                }
+            }
+        }
+
+        // 最后的literal
+        int token = dp++;
+        dp = writeLiterals(src, anchor, srcEnd - anchor, dest, token, dp);
+        return dp - destOff;
+    }
+
+    private static int writeLiterals(byte[] src, int off, int len, byte[] dest, int token, int dp) {
+        if (len >= RUN_MASK) {
+            dest[token] = (byte) (RUN_MASK << ML_BITS);
+            dp = writeLength(len - RUN_MASK, dest, dp);
+        } else {
+            dest[token] = (byte) (len << ML_BITS);
+        }
+        System.arraycopy(src, off, dest, dp, len);
+        return dp + len;
+    }
+
+    private static int writeMatchLength(int matchLen, byte[] dest, int token, int dp) {
+        if (matchLen >= ML_MASK) {
+            dest[token] |= ML_MASK;
+            return writeLength(matchLen - ML_MASK, dest, dp);
+        }
+        dest[token] |= matchLen;
+        return dp;
+    }
+
+    private static int writeLength(int len, byte[] dest, int dp) {
+        while (len >= 255) {
+            dest[dp++] = (byte) 255;
+            len -= 255;
+        }
+        dest[dp++] = (byte) len;
+        return dp;
+    }
+
+    /**
+     * 只读取每个sequence的长度字段，算出整块解压后的长度
+     * <p>
+     * An lz4 block does not record its uncompressed length, so this walks the tokens without
+     * copying anything. It does not validate match offsets; {@link #decompress} still does.
+     */
+    public static int getUncompressedLength(byte[] src, int off, int len) throws IOException {
+        final int end = off + len;
+        int sp = off;
+        long result = 0;
+        while (true) {
+            if (sp >= end) {
+                throw new IOException("Malformed LZ4 block: truncated at " + (sp - off));
+            }
+            int token = src[sp++] & 0xff;
+            int literalLen = token >>> ML_BITS;
+            if (literalLen == RUN_MASK) {
+                int b;
+                do {
+                    if (sp >= end) {
+                        throw new IOException("Malformed LZ4 block: truncated literal length");
+                    }
+                    b = src[sp++] & 0xff;
+                    literalLen += b;
+                } while (b == 255);
+            }
+            if (literalLen > end - sp) {
+                throw new IOException("Malformed LZ4 block: literals past end of input");
+            }
+            sp += literalLen;
+            result += literalLen;
+            if (sp == end) {
+                if (result > Integer.MAX_VALUE) {
+                    throw new IOException("Malformed LZ4 block: uncompressed length " + result);
+                }
+                return (int) result;
+            }
+            if (end - sp < 2) {
+                throw new IOException("Malformed LZ4 block: truncated offset");
+            }
+            sp += 2;
+            int matchLen = token & ML_MASK;
+            if (matchLen == ML_MASK) {
+                int b;
+                do {
+                    if (sp >= end) {
+                        throw new IOException("Malformed LZ4 block: truncated match length");
+                    }
+                    b = src[sp++] & 0xff;
+                    matchLen += b;
+                } while (b == 255);
+            }
+            result += matchLen + MIN_MATCH;
+        }
+    }
+
+    /**
+     * 解压src[srcOff, srcOff + srcLen)这一个完整的块，对损坏的输入抛出IOException而不会越界
+     *
+     * @return the number of bytes written to dest
+     */
+    static int decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int destLen)
+            throws IOException {
+        final int srcEnd = srcOff + srcLen;
+        final int destEnd = destOff + destLen;
+        int sp = srcOff;
+        int dp = destOff;
+
+        while (true) {
+            if (sp >= srcEnd) {
+                throw new IOException("Malformed LZ4 block: truncated at " + (sp - srcOff));
+            }
+            int token = src[sp++] & 0xff;
+
+            // literals
+            int literalLen = token >>> ML_BITS;
+            if (literalLen == RUN_MASK) {
+                int b;
+                do {
+                    if (sp >= srcEnd) {
+                        throw new IOException("Malformed LZ4 block: truncated literal length");
+                    }
+                    b = src[sp++] & 0xff;
+                    literalLen += b;
+                } while (b == 255);
+            }
+            if (literalLen > srcEnd - sp) {
+                throw new IOException("Malformed LZ4 block: literals past end of input");
+            }
+            if (literalLen > destEnd - dp) {
+                throw new IOException("LZ4 output buffer too small");
+            }
+            copy(src, sp, dest, dp, literalLen);
+            sp += literalLen;
+            dp += literalLen;
+            if (sp == srcEnd) {
+                // 最后一个sequence只有literal
+                return dp - destOff;
+            }
+
+            // match
+            if (srcEnd - sp < 2) {
+                throw new IOException("Malformed LZ4 block: truncated offset");
+            }
+            int offset = (src[sp] & 0xff) | ((src[sp + 1] & 0xff) << 8);
+            sp += 2;
+            int ref = dp - offset;
+            if (offset == 0 || ref < destOff) {
+                throw new IOException("Malformed LZ4 block: offset " + offset + " out of range");
+            }
+            int matchLen = token & ML_MASK;
+            if (matchLen == ML_MASK) {
+                int b;
+                do {
+                    if (sp >= srcEnd) {
+                        throw new IOException("Malformed LZ4 block: truncated match length");
+                    }
+                    b = src[sp++] & 0xff;
+                    matchLen += b;
+                } while (b == 255);
+            }
+            matchLen += MIN_MATCH;
+            if (matchLen > destEnd - dp) {
+                throw new IOException("LZ4 output buffer too small");
+            }
+
+            if (offset >= matchLen) {
+                copy(dest, ref, dest, dp, matchLen);
+                dp += matchLen;
+            } else {
+                // 重叠的复制：每次复制已经输出的部分，复制的长度逐次翻倍
+                int end = dp + matchLen;
+                while (dp < end) {
+                    int n = Math.min(dp - ref, end - dp);
+                    System.arraycopy(dest, ref, dest, dp, n);
+                    dp += n;
+                }
+            }
+        }
+    }
+
+    /**
+     * 大部分literal与match只有几个字节，这时逐字节复制比调用System.arraycopy快
+     */
+    private static void copy(byte[] src, int srcOff, byte[] dest, int destOff, int len) {
+        if (len > 32) {
+            System.arraycopy(src, srcOff, dest, destOff, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                dest[destOff + i] = src[srcOff + i];
+            }
+        }
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xff) | ((b[i + 1] & 0xff) << 8) | ((b[i + 2] & 0xff) << 16) | ((b[i + 3] & 0xff) << 24);
+    }
+
+    private static int hash(int i) {
+        return (i * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
@@ -0,0 +1,201 @@
+package com.wzq.hadoop.io.compress.lz4;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.io.compress.Compressor;
+import com.wzq.hadoop.io.compress.Lz4Codec;
+
+import java.io.IOException;
+
+/**
+ * LZ4压缩器：把输入攒到缓冲区里，缓冲区满了或者finish()之后整块压缩
+ * <p>
+ * A {@link Compressor} based on the lz4 block format. It is meant to be used through
+ * {@link com.wzq.hadoop.io.compress.BlockCompressorStream}, which writes each buffered block as
+ * one compressed chunk together with its lengths.
+ */
+public class Lz4Compressor implements Compressor {
+
+    private int directBufferSize;
+    private final int[] hashTable = new int[Lz4Block.HASH_TABLE_SIZE];
+
+    // 待压缩的数据
+    private byte[] uncompressedBuf;
+    private int uncompressedLen = 0;
+
+    // 压缩后还没有被取走的数据
+    private byte[] compressedBuf;
+    private int compressedOff = 0;
+    private int compressedLen = 0;
+
+    // setInput给的数据中没有放进缓冲区的部分
+    private byte[] userBuf = null;
+    private int userBufOff = 0;
+    private int userBufLen = 0;
+
+    private boolean finish, finished;
+
+    private long bytesRead = 0L;
+    private long bytesWritten = 0L;
+
+    /**
+     * Creates a new compressor.
+     *
+     * @param directBufferSize size of the buffer, i.e. the largest block compressed at once
+     */
+    public Lz4Compressor(int directBufferSize) {
+        this.directBufferSize = directBufferSize;
+        this.uncompressedBuf = new byte[directBufferSize];
+        this.compressedBuf = new byte[Lz4Block.maxCompressedLength(directBufferSize)];
+    }
+
+    @Override
+    public synchronized void setInput(byte[] b, int off, int len) {
+        if (b == null) {
+            throw new NullPointerException();
+        }
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        finished = false;
+
+        if (len > directBufferSize - uncompressedLen) {
+            // 放不下的部分留到下次compress时再放进缓冲区
+            userBuf = b;
+            userBufOff = off;
+            userBufLen = len;
+        } else {
+            System.arraycopy(b, off, uncompressedBuf, uncompressedLen, len);
+            uncompressedLen += len;
+        }
+        bytesRead += len;
+    }
+
+    /**
+     * 把userBuf中能放下的部分复制到缓冲区
+     */
+    private void setInputFromSavedData() {
+        if (userBufLen <= 0) {
+            return;
+        }
+        int len = Math.min(userBufLen, directBufferSize - uncompressedLen);
+        System.arraycopy(userBuf, userBufOff, uncompressedBuf, uncompressedLen, len);
+        uncompressedLen += len;
+        userBufOff += len;
+        userBufLen -= len;
+    }
+
+    /**
+     * 缓冲区满了、有没取走的压缩数据或者还有没放进缓冲区的输入时返回false
+     */
+    @Override
+    public synchronized boolean needsInput() {
+        return compressedLen - compressedOff <= 0
+                && uncompressedLen < directBufferSize
+                && userBufLen <= 0;
+    }
+
+    @Override
+    public synchronized void setDictionary(byte[] b, int off, int len) {
+        // do nothing
+    }
+
+    @Override
+    public synchronized long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return the total number of compressed bytes output so far
+     */
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public synchronized void finish() {
+        finish = true;
+    }
+
+    @Override
+    public synchronized boolean finished() {
+        // Check if all uncompressed data has been consumed
+        return finish && finished && compressedLen - compressedOff <= 0;
+    }
+
+    @Override
+    public synchronized int compress(byte[] b, int off, int len) throws IOException {
+        if (b == null) {
+            throw new NullPointerException();
+        }
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+
+        // 先取走上次压缩的数据
+        int n = compressedLen - compressedOff;
+        if (n > 0) {
+            return drain(b, off, len);
+        }
+
+        if (uncompressedLen == 0) {
+            setInputFromSavedData();
+            if (uncompressedLen == 0) {
+                // Called without data; write nothing
+                finished = true;
+                return 0;
+            }
+        }
+
+        compressedLen = Lz4Block.compress(uncompressedBuf, 0, uncompressedLen, compressedBuf, 0, hashTable);
+        compressedOff = 0;
+        uncompressedLen = 0;
+        bytesWritten += compressedLen;
+
+        // Set 'finished' if lz4 has consumed all user-data
+        if (userBufLen == 0) {
+            finished = true;
+        }
+        return drain(b, off, len);
+    }
+
+    private int drain(byte[] b, int off, int len) {
+        int n = Math.min(len, compressedLen - compressedOff);
+        System.arraycopy(compressedBuf, compressedOff, b, off, n);
+        compressedOff += n;
+        return n;
+    }
+
+    @Override
+    public synchronized void reset() {
+        finish = false;
+        finished = false;
+        uncompressedLen = 0;
+        compressedOff = 0;
+        compressedLen = 0;
+        userBuf = null;
+        userBufLen = 0;
+        bytesRead = bytesWritten = 0L;
+    }
+
+    @Override
+    public synchronized void end() {
+        // nothing to release, the buffers are on the heap
+    }
+
+    /**
+     * 重新读取{@link Lz4Codec#LZ4_BUFFER_SIZE_KEY}，池中的压缩器可能是按另一个配置创建的
+     */
+    @Override
+    public synchronized void reinit(Configuration conf) {
+        reset();
+        if (conf == null) {
+            return;
+        }
+        int size = conf.getInt(Lz4Codec.LZ4_BUFFER_SIZE_KEY, Lz4Codec.LZ4_BUFFER_SIZE_DEFAULT);
+        if (size != directBufferSize) {
+            directBufferSize = size;
+            uncompressedBuf = new byte[size];
+            compressedBuf = new byte[Lz4Block.maxCompressedLength(size)];
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.wzq.hadoop.io.compress.snappy;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Snappy raw格式的纯Java实现，与libsnappy的{@code RawCompress}/{@code RawUncompress}互通
+ * <p>
+ * A raw block starts with the uncompressed length as a little-endian varint, followed by
+ * elements whose low two tag bits select the type:
+ * <ul>
+ * <li>00: literal, length - 1 in the upper 6 bits, or in the next 1-4 bytes for values 60-63</li>
+ * <li>01: copy of 4-11 bytes with an 11-bit offset</li>
+ * <li>10: copy of 1-64 bytes with a 2-byte little-endian offset</li>
+ * <li>11: copy of 1-64 bytes with a 4-byte little-endian offset</li>
+ * </ul>
+ * Like libsnappy the compressor works on 64KB fragments, each with its own hash table, so every
+ * copy it emits has a 1- or 2-byte offset.
+ */
+public final class SnappyBlock {
+
+    private static final int LITERAL = 0;
+    private static final int COPY_1_BYTE_OFFSET = 1;
+    private static final int COPY_2_BYTE_OFFSET = 2;
+    private static final int COPY_4_BYTE_OFFSET = 3;
+
+    static final int BLOCK_SIZE = 1 << 16;
+    static final int MAX_HASH_TABLE_BITS = 14;
+    static final int MAX_HASH_TABLE_SIZE = 1 << MAX_HASH_TABLE_BITS;
+
+    /**
+     * 每个fragment最后的这些字节不再寻找匹配，作为literal输出
+     */
+    private static final int INPUT_MARGIN_BYTES = 15;
+
+    private static final int SKIP_STRENGTH = 5;
+
+    private SnappyBlock() {
+    }
+
+    /**
+     * 压缩{@code len}个字节最多需要的输出空间
+     */
+    public static int maxCompressedLength(int len) {
+        return 32 + len + len / 6;
+    }
+
+    /**
+     * 读取压缩块开头记录的未压缩长度
+     */
+    public static int getUncompressedLength(byte[] src, int off, int len) throws IOException {
+        int result = 0;
+        int end = off + len;
+        for (int shift = 0; shift < 32; shift += 7) {
+            if (off >= end) {
+                throw new IOException("Malformed snappy block: truncated length");
+            }
+            int b = src[off++] & 0xff;
+            result |= (b & 0x7f) << shift;
+            if (b < 0x80) {
+                if (result < 0) {
+                    break;
+                }
+                return result;
+            }
+        }
+        throw new IOException("Malformed snappy block: invalid length");
+    }
+
+    /**
+     * 压缩src[srcOff, srcOff + srcLen)到dest中
+     *
+     * @param hashTable {@link #MAX_HASH_TABLE_SIZE}个元素的哈希表，调用方复用它避免每次分配
+     * @return the number of bytes written to dest
+     */
+    static int compress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int[] hashTable) {
+        if (dest.length - destOff < maxCompressedLength(srcLen)) {
+            throw new ArrayIndexOutOfBoundsException("destination buffer too small");
+        }
+        int dp = writeVarInt(srcLen, dest, destOff);
+        for (int fragment = srcOff; fragment < srcOff + srcLen; fragment += BLOCK_SIZE) {
+            int fragmentLen = Math.min(BLOCK_SIZE, srcOff + srcLen - fragment);
+            dp = compressFragment(src, fragment, fragmentLen, dest, dp, hashTable);
+        }
+        return dp - destOff;
+    }
+
+    private static int compressFragment(byte[] src, int srcOff, int srcLen, byte[] dest, int dp, int[] hashTable) {
+        final int srcEnd = srcOff + srcLen;
+        int nextEmit = srcOff;
+
+        if (srcLen >= INPUT_MARGIN_BYTES) {
+            // 小的fragment用小一点的哈希表，清空的代价也小
+            int tableBits = 8;
+            while (tableBits < MAX_HASH_TABLE_BITS && (1 << tableBits) < srcLen) {
+                tableBits++;
+            }
+            final int shift = 32 - tableBits;
+            Arrays.fill(hashTable, 0, 1 << tableBits, -1);
+
+            final int ipLimit = srcEnd - INPUT_MARGIN_BYTES;
+            int ip = srcOff + 1;
+            int nextHash = hash(readInt(src, ip), shift);
+
+            outer:
+            while (true) {
+                // 寻找一个4字节的匹配
+                int skip = 32;
+                int nextIp = ip;
+                int candidate;
+                do {
+                    ip = nextIp;
+                    int h = nextHash;
+                    nextIp = ip + (skip++ >>> SKIP_STRENGTH);
+                    if (nextIp > ipLimit) {
+                        break outer;
+                    }
+                    nextHash = hash(readInt(src, nextIp), shift);
+                    candidate = hashTable[h];
+                    hashTable[h] = ip;
+                } while (candidate < 0 || readInt(src, ip) != readInt(src, candidate));
+
+                dp = emitLiteral(src, nextEmit, ip - nextEmit, dest, dp);
+
+                // 输出copy，如果紧接着的位置也匹配就继续输出copy
+                do {
+                    int base = ip;
+                    int matched = 4;
+                    while (ip + matched < srcEnd && src[candidate + matched] == src[ip + matched]) {
+                        matched++;
+                    }
+                    ip += matched;
+                    dp = emitCopy(base - candidate, matched, dest, dp);
+                    nextEmit = ip;
+                    if (ip >= ipLimit) {
+                        break outer;
+                    }
+                    hashTable[hash(readInt(src, ip - 1), shift)] = ip - 1;
+                    int h = hash(readInt(src, ip), shift);
+                    candidate = hashTable[h];
+                    hashTable[h] = ip;
+                } while (candidate >= 0 && readInt(src, ip) == readInt(src, candidate));
+
+                nextHash = hash(readInt(src, ++ip), shift);
+            }
+        }
+
+        if (nextEmit < srcEnd) {
+            dp = emitLiteral(src, nextEmit, srcEnd - nextEmit, dest, dp);
+        }
+        return dp;
+    }
+
+    private static int emitLiteral(byte[] src, int off, int len, byte[] dest, int dp) {
+        if (len == 0) {
+            return dp;
+        }
+        int n = len - 1;
+        if (n < 60) {
+            dest[dp++] = (byte) (LITERAL | (n << 2));
+        } else {
+            int count = n < (1 << 8) ? 1 : n < (1 << 16) ? 2 : n < (1 << 24) ? 3 : 4;
+            dest[dp++] = (byte) (LITERAL | ((59 + count) << 2));
+            for (int i = 0; i < count; i++) {
+                dest[dp++] = (byte) (n >>> (8 * i));
+            }
+        }
+        System.arraycopy(src, off, dest, dp, len);
+        return dp + len;
+    }
+
+    private static int emitCopy(int offset, int len, byte[] dest, int dp) {
+        // 先输出长度为64的copy，剩下的至少留4个字节，这样可以用1字节offset的格式
+        while (len >= 68) {
+            dp = emitCopyLessThan64(offset, 64, dest, dp);
+            len -= 64;
+        }
+        if (len > 64) {
+            dp = emitCopyLessThan64(offset, 60, dest, dp);
+            len -= 60;
+        }
+        return emitCopyLessThan64(offset, len, dest, dp);
+    }
+
+    private static int emitCopyLessThan64(int offset, int len, byte[] dest, int dp) {
+        if (len < 12 && offset < 2048) {
+            dest[dp++] = (byte) (COPY_1_BYTE_OFFSET | ((len - 4) << 2) | ((offset >>> 8) << 5));
+            dest[dp++] = (byte) offset;
+        } else {
+            dest[dp++] = (byte) (COPY_2_BYTE_OFFSET | ((len - 1) << 2));
+            dest[dp++] = (byte) offset;
+            dest[dp++] = (byte) (offset >>> 8);
+        }
+        return dp;
+    }
+
+    private static int writeVarInt(int v, byte[] dest, int dp) {
+        while ((v & ~0x7f) != 0) {
+            dest[dp++] = (byte) ((v & 0x7f) | 0x80);
+            v >>>= 7;
+        }
+        dest[dp++] = (byte) v;
+        return dp;
+    }
+
+    /**
+     * 解压src[srcOff, srcOff + srcLen)这一个完整的块，对损坏的输入抛出IOException而不会越界
+     *
+     * @return the number of bytes written to dest
+     */
+    static int decompress(byte[] src, int srcOff, int srcLen, byte[] dest, int destOff, int destLen)
+            throws IOException {
+        final int srcEnd = srcOff + srcLen;
+        int uncompressedLength = getUncompressedLength(src, srcOff, srcLen);
+        if (uncompressedLength > destLen) {
+            throw new IOException("Snappy output buffer too small: " + uncompressedLength + " > " + destLen);
+        }
+        int sp = srcOff;
+        while ((src[sp++] & 0x80) != 0) {
+            // skip the varint
+        }
+        final int destEnd = destOff + uncompressedLength;
+        int dp = destOff;
+
+        while (sp < srcEnd) {
+            int tag = src[sp++] & 0xff;
+            int type = tag & 3;
+            if (type == LITERAL) {
+                int len = (tag >>> 2) + 1;
+                if (len > 60) {
+                    int count = len - 60;
+                    if (srcEnd - sp < count) {
+                        throw new IOException("Malformed snappy block: truncated literal length");
+                    }
+                    len = 0;
+                    for (int i = 0; i < count; i++) {
+                        len |= (src[sp++] & 0xff) << (8 * i);
+                    }
+                    len += 1;
+                    if (len <= 0) {
+                        throw new IOException("Malformed snappy block: invalid literal length");
+                    }
+                }
+                if (len > srcEnd - sp || len > destEnd - dp) {
+                    throw new IOException("Malformed snappy block: literal past end of block");
+                }
+                copy(src, sp, dest, dp, len);
+                sp += len;
+                dp += len;
+                continue;
+            }
+
+            int len;
+            int offset;
+            if (type == COPY_1_BYTE_OFFSET) {
+                if (sp >= srcEnd) {
+                    throw new IOException("Malformed snappy block: truncated copy");
+                }
+                len = 4 + ((tag >>> 2) & 7);
+                offset = ((tag >>> 5) << 8) | (src[sp++] & 0xff);
+            } else if (type == COPY_2_BYTE_OFFSET) {
+                if (srcEnd - sp < 2) {
+                    throw new IOException("Malformed snappy block: truncated copy");
+                }
+                len = (tag >>> 2) + 1;
+                offset = (src[sp] & 0xff) | ((src[sp + 1] & 0xff) << 8);
+                sp += 2;
+            } else {
+                if (srcEnd - sp < 4) {
+                    throw new IOException("Malformed snappy block: truncated copy");
+                }
+                len = (tag >>> 2) + 1;
+                offset = (src[sp] & 0xff) | ((src[sp + 1] & 0xff) << 8)
+                        | ((src[sp + 2] & 0xff) << 16) | ((src[sp + 3] & 0xff) << 24);
+                sp += 4;
+            }
+            if (offset <= 0 || offset > dp - destOff) {
+                throw new IOException("Malformed snappy block: offset " + offset + " out of range");
+            }
+            if (len > destEnd - dp) {
+                throw new IOException("Malformed snappy block: copy past end of block");
+            }
+            int ref = dp - offset;
+            if (offset >= len) {
+                copy(dest, ref, dest, dp, len);
+                dp += len;
+            } else {
+                // 重叠的复制：每次复制已经输出的部分，复制的长度逐次翻倍
+                int end = dp + len;
+                while (dp < end) {
+                    int n = Math.min(dp - ref, end - dp);
+                    System.arraycopy(dest, ref, dest, dp, n);
+                    dp += n;
+                }
+            }
+        }
+
+        if (dp != destEnd) {
+            throw new IOException("Malformed snappy block: expected " + uncompressedLength
+                    + " bytes, got " + (dp - destOff));
+        }
+        return uncompressedLength;
+    }
+
+    /**
+     * 大部分literal与copy只有几个字节，这时逐字节复制比调用System.arraycopy快
+     */
+    private static void copy(byte[] src, int srcOff, byte[] dest, int destOff, int len) {
+        if (len > 32) {
+            System.arraycopy(src, srcOff, dest, destOff, len);
+        } else {
+            for (int i = 0; i < len; i++) {
+                dest[destOff + i] = src[srcOff + i];
+            }
+        }
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xff) | ((b[i + 1] & 0xff) << 8) | ((b[i + 2] & 0xff) << 16) | ((b[i + 3] & 0xff) << 24);
+    }
+
+    private static int hash(int i, int shift) {
+        return (i * 0x1e35a7bd) >>> shift;
+    }
+}
@@ -0,0 +1,135 @@
+package com.wzq.hadoop.io.compress.snappy;
+
+import com.wzq.hadoop.io.compress.Decompressor;
+
+import java.io.IOException;
+
+/**
+ * Snappy解压缩器：每次setInput给的是一个完整的压缩块，第一次decompress时整块解压
+ * <p>
+ * A {@link Decompressor} based on the snappy compression algorithm, used through
+ * {@link com.wzq.hadoop.io.compress.BlockDecompressorStream} which hands over exactly one
+ * compressed chunk per {@link #setInput(byte[], int, int)}. A snappy chunk records its
+ * uncompressed length, so the data is decompressed straight into the caller's buffer whenever
+ * it fits, and the internal buffer grows for chunks written with a larger buffer size.
+ */
+public class SnappyDecompressor implements Decompressor {
+
+    // 压缩块，直接引用调用方的数组
+    private byte[] compressedBuf = null;
+    private int compressedOff = 0;
+    private int compressedLen = 0;
+
+    // 解压后还没有被取走的数据
+    private byte[] uncompressedBuf;
+    private int uncompressedOff = 0;
+    private int uncompressedLen = 0;
+
+    private boolean finished;
+
+    /**
+     * Creates a new decompressor.
+     *
+     * @param directBufferSize initial size of the buffer
+     */
+    public SnappyDecompressor(int directBufferSize) {
+        this.uncompressedBuf = new byte[directBufferSize];
+    }
+
+    @Override
+    public synchronized void setInput(byte[] b, int off, int len) {
+        if (b == null) {
+            throw new NullPointerException();
+        }
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        compressedBuf = b;
+        compressedOff = off;
+        compressedLen = len;
+        uncompressedOff = 0;
+        uncompressedLen = 0;
+        finished = false;
+    }
+
+    @Override
+    public synchronized boolean needsInput() {
+        // Consume remaining decompressed data
+        if (uncompressedLen - uncompressedOff > 0) {
+            return false;
+        }
+        return compressedLen <= 0;
+    }
+
+    @Override
+    public synchronized void setDictionary(byte[] b, int off, int len) {
+        // do nothing
+    }
+
+    @Override
+    public synchronized boolean needsDictionary() {
+        return false;
+    }
+
+    @Override
+    public synchronized boolean finished() {
+        return finished && uncompressedLen - uncompressedOff <= 0;
+    }
+
+    @Override
+    public synchronized int decompress(byte[] b, int off, int len) throws IOException {
+        if (b == null) {
+            throw new NullPointerException();
+        }
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+
+        if (uncompressedLen - uncompressedOff <= 0) {
+            if (compressedLen <= 0) {
+                return 0;
+            }
+            int size = SnappyBlock.getUncompressedLength(compressedBuf, compressedOff, compressedLen);
+            if (size <= len) {
+                // 整块直接解压到调用方的数组
+                int n = SnappyBlock.decompress(compressedBuf, compressedOff, compressedLen, b, off, len);
+                compressedLen = 0;
+                finished = true;
+                return n;
+            }
+            if (size > uncompressedBuf.length) {
+                uncompressedBuf = new byte[size];
+            }
+            uncompressedLen = SnappyBlock.decompress(compressedBuf, compressedOff, compressedLen,
+                    uncompressedBuf, 0, uncompressedBuf.length);
+            uncompressedOff = 0;
+            compressedLen = 0;
+            finished = true;
+        }
+
+        int n = Math.min(len, uncompressedLen - uncompressedOff);
+        System.arraycopy(uncompressedBuf, uncompressedOff, b, off, n);
+        uncompressedOff += n;
+        return n;
+    }
+
+    @Override
+    public synchronized int getRemaining() {
+        // snappy consumes the whole chunk at once
+        return 0;
+    }
+
+    @Override
+    public synchronized void reset() {
+        finished = false;
+        compressedBuf = null;
+        compressedLen = 0;
+        uncompressedOff = 0;
+        uncompressedLen = 0;
+    }
+
+    @Override
+    public synchronized void end() {
+        // nothing to release, the buffers are on the heap
+    }
+}
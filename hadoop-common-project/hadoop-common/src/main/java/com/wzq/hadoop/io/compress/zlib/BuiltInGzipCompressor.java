@@ -0,0 +1,146 @@
+package com.wzq.hadoop.io.compress.zlib;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.io.compress.Compressor;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * gzip压缩器：10字节的header，不带zlib包装的deflate数据，最后是8字节的CRC32与原始长度
+ * <p>
+ * A {@link Compressor} based on the popular gzip compressed file format, built on a raw
+ * (nowrap) {@link Deflater}. Each {@link #reset()} starts a new gzip member, so a stream written
+ * after {@link com.wzq.hadoop.io.compress.CompressionOutputStream#resetState()} is a valid
+ * concatenated gzip file.
+ */
+public class BuiltInGzipCompressor implements Compressor {
+
+    /**
+     * Fixed ten-byte gzip header. See {@link java.util.zip.GZIPOutputStream}'s source for
+     * details.
+     */
+    private static final byte[] GZIP_HEADER = new byte[]{
+            0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+
+    private static final int GZIP_HEADER_LEN = GZIP_HEADER.length;
+    private static final int GZIP_TRAILER_LEN = 8;
+
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private final byte[] trailer = new byte[GZIP_TRAILER_LEN];
+
+    // header/trailer中已经输出的字节数
+    private int headerOff = 0;
+    private int trailerOff = 0;
+
+    public BuiltInGzipCompressor(Configuration conf) {
+        this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        reinit(conf);
+    }
+
+    @Override
+    public void setInput(byte[] b, int off, int len) {
+        deflater.setInput(b, off, len);
+        crc.update(b, off, len);
+    }
+
+    @Override
+    public boolean needsInput() {
+        return deflater.needsInput();
+    }
+
+    /**
+     * gzip格式不支持预设字典
+     */
+    @Override
+    public void setDictionary(byte[] b, int off, int len) {
+        throw new UnsupportedOperationException("gzip does not support a preset dictionary");
+    }
+
+    @Override
+    public long getBytesRead() {
+        return deflater.getBytesRead();
+    }
+
+    @Override
+    public void finish() {
+        deflater.finish();
+    }
+
+    @Override
+    public boolean finished() {
+        return deflater.finished() && trailerOff == GZIP_TRAILER_LEN;
+    }
+
+    @Override
+    public int compress(byte[] b, int off, int len) throws IOException {
+        int n = 0;
+
+        // 先输出header
+        if (headerOff < GZIP_HEADER_LEN) {
+            int count = Math.min(len, GZIP_HEADER_LEN - headerOff);
+            System.arraycopy(GZIP_HEADER, headerOff, b, off, count);
+            headerOff += count;
+            off += count;
+            len -= count;
+            n += count;
+        }
+
+        if (!deflater.finished()) {
+            n += deflater.deflate(b, off, len);
+            if (deflater.finished()) {
+                fillTrailer();
+            }
+            return n;
+        }
+
+        // deflate数据输出完之后输出trailer
+        if (trailerOff < GZIP_TRAILER_LEN) {
+            int count = Math.min(len, GZIP_TRAILER_LEN - trailerOff);
+            System.arraycopy(trailer, trailerOff, b, off, count);
+            trailerOff += count;
+            n += count;
+        }
+        return n;
+    }
+
+    private void fillTrailer() {
+        writeIntLE((int) crc.getValue(), trailer, 0);
+        writeIntLE((int) deflater.getBytesRead(), trailer, 4);   // ISIZE is the length mod 2^32
+    }
+
+    private static void writeIntLE(int i, byte[] b, int off) {
+        b[off] = (byte) i;
+        b[off + 1] = (byte) (i >> 8);
+        b[off + 2] = (byte) (i >> 16);
+        b[off + 3] = (byte) (i >> 24);
+    }
+
+    @Override
+    public void reset() {
+        deflater.reset();
+        crc.reset();
+        headerOff = 0;
+        trailerOff = 0;
+    }
+
+    @Override
+    public void end() {
+        deflater.end();
+    }
+
+    /**
+     * 重新读取配置中的压缩级别与策略，并开始一个新的gzip member
+     */
+    @Override
+    public void reinit(Configuration conf) {
+        reset();
+        if (conf == null) {
+            return;
+        }
+        deflater.setLevel(ZlibFactory.getCompressionLevel(conf).compressionLevel());
+        deflater.setStrategy(ZlibFactory.getCompressionStrategy(conf).compressionStrategy());
+    }
+}
@@ -0,0 +1,326 @@
+package com.wzq.hadoop.io.compress.zlib;
+
+import com.wzq.hadoop.io.compress.Decompressor;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * gzip解压缩器：解析header，用不带zlib包装的{@link Inflater}解压，最后校验trailer中的CRC32与长度
+ * <p>
+ * A {@link Decompressor} based on the popular gzip compressed file format. One instance decodes one
+ * gzip member; when the member ends {@link #finished()} returns true and {@link #getRemaining()}
+ * reports the bytes of the next member, which
+ * {@link com.wzq.hadoop.io.compress.DecompressorStream} feeds back after a {@link #reset()} to read
+ * concatenated gzip files.
+ */
+public class BuiltInGzipDecompressor implements Decompressor {
+
+    private static final int GZIP_MAGIC_ID = 0x8b1f;  // if read as LE short int
+    private static final int GZIP_DEFLATE_METHOD = 8;
+    private static final int GZIP_FLAGBIT_HEADER_CRC = 0x02;
+    private static final int GZIP_FLAGBIT_EXTRA_FIELD = 0x04;
+    private static final int GZIP_FLAGBIT_FILENAME = 0x08;
+    private static final int GZIP_FLAGBIT_COMMENT = 0x10;
+    private static final int GZIP_FLAGBITS_RESERVED = 0xe0;
+
+    /**
+     * The current state of the gzip decoder, external to the Inflater context.
+     */
+    private enum GzipStateLabel {
+        /**
+         * Immediately prior to or (strictly) within the 10-byte basic gzip header.
+         */
+        HEADER_BASIC,
+        /**
+         * Immediately prior to or within the optional "extra field."
+         */
+        HEADER_EXTRA_FIELD,
+        /**
+         * Immediately prior to or within the optional filename field.
+         */
+        HEADER_FILENAME,
+        /**
+         * Immediately prior to or within the optional comment field.
+         */
+        HEADER_COMMENT,
+        /**
+         * Immediately prior to or within the optional 2-byte header CRC value.
+         */
+        HEADER_CRC,
+        /**
+         * Immediately prior to or within the main compressed (deflate) data stream.
+         */
+        DEFLATE_STREAM,
+        /**
+         * Immediately prior to or (strictly) within the 4-byte uncompressed CRC.
+         */
+        TRAILER_CRC,
+        /**
+         * Immediately prior to or (strictly) within the 4-byte uncompressed size.
+         */
+        TRAILER_SIZE,
+        /**
+         * Immediately after the trailer (and potentially prior to the next gzip
+         * member/substream header).
+         */
+        FINISHED
+    }
+
+    private final Inflater inflater = new Inflater(true);
+    private final CRC32 crc = new CRC32();
+
+    // 用来拼接跨setInput的header/trailer字段
+    private final byte[] localBuf = new byte[10];
+    private int localBufOff = 0;
+
+    private byte[] userBuf = null;
+    private int userBufOff = 0;
+    private int userBufLen = 0;
+
+    private GzipStateLabel state = GzipStateLabel.HEADER_BASIC;
+    private int flags;
+    private int extraFieldRemaining = -1;
+    private boolean hasExtraField;
+    private boolean hasFilename;
+    private boolean hasComment;
+    private boolean hasHeaderCRC;
+
+    public BuiltInGzipDecompressor() {
+    }
+
+    @Override
+    public synchronized void setInput(byte[] b, int off, int len) {
+        if (b == null) {
+            throw new NullPointerException();
+        }
+        if (off < 0 || len < 0 || off > b.length - len) {
+            throw new ArrayIndexOutOfBoundsException();
+        }
+        userBuf = b;
+        userBufOff = off;
+        userBufLen = len;
+    }
+
+    /**
+     * 在解压deflate数据时，以inflater为准；在header/trailer中时，以本地输入是否用完为准
+     */
+    @Override
+    public synchronized boolean needsInput() {
+        if (state == GzipStateLabel.DEFLATE_STREAM) {
+            return inflater.needsInput() && userBufLen <= 0;
+        }
+        if (state == GzipStateLabel.FINISHED) {
+            return false;
+        }
+        return userBufLen <= 0;
+    }
+
+    @Override
+    public synchronized void setDictionary(byte[] b, int off, int len) {
+        throw new UnsupportedOperationException("gzip does not support a preset dictionary");
+    }
+
+    @Override
+    public synchronized boolean needsDictionary() {
+        return inflater.needsDictionary();
+    }
+
+    @Override
+    public synchronized boolean finished() {
+        return state == GzipStateLabel.FINISHED;
+    }
+
+    @Override
+    public synchronized int decompress(byte[] b, int off, int len) throws IOException {
+        while (true) {
+            switch (state) {
+                case HEADER_BASIC:
+                    if (!fill(10)) {
+                        return 0;
+                    }
+                    processBasicHeader();
+                    break;
+                case HEADER_EXTRA_FIELD:
+                    if (!hasExtraField) {
+                        state = GzipStateLabel.HEADER_FILENAME;
+                    } else if (extraFieldRemaining < 0) {
+                        if (!fill(2)) {
+                            return 0;
+                        }
+                        extraFieldRemaining = readUShortLE(localBuf, 0);
+                    } else {
+                        int n = Math.min(extraFieldRemaining, userBufLen);
+                        skip(n);
+                        extraFieldRemaining -= n;
+                        if (extraFieldRemaining > 0) {
+                            return 0;
+                        }
+                        state = GzipStateLabel.HEADER_FILENAME;
+                    }
+                    break;
+                case HEADER_FILENAME:
+                    if (hasFilename && !skipZeroTerminated()) {
+                        return 0;
+                    }
+                    state = GzipStateLabel.HEADER_COMMENT;
+                    break;
+                case HEADER_COMMENT:
+                    if (hasComment && !skipZeroTerminated()) {
+                        return 0;
+                    }
+                    state = GzipStateLabel.HEADER_CRC;
+                    break;
+                case HEADER_CRC:
+                    if (hasHeaderCRC && !fill(2)) {
+                        return 0;
+                    }
+                    state = GzipStateLabel.DEFLATE_STREAM;
+                    break;
+                case DEFLATE_STREAM:
+                    int n = inflate(b, off, len);
+                    if (n > 0 || state == GzipStateLabel.DEFLATE_STREAM) {
+                        return n;
+                    }
+                    break;
+                case TRAILER_CRC:
+                    if (!fill(4)) {
+                        return 0;
+                    }
+                    if (readIntLE(localBuf, 0) != (int) crc.getValue()) {
+                        throw new IOException("gzip stream CRC failure");
+                    }
+                    state = GzipStateLabel.TRAILER_SIZE;
+                    break;
+                case TRAILER_SIZE:
+                    if (!fill(4)) {
+                        return 0;
+                    }
+                    if (readIntLE(localBuf, 0) != (int) inflater.getBytesWritten()) {
+                        throw new IOException("stored gzip size doesn't match decompressed size");
+                    }
+                    state = GzipStateLabel.FINISHED;
+                    break;
+                case FINISHED:
+                default:
+                    return 0;
+            }
+        }
+    }
+
+    private int inflate(byte[] b, int off, int len) throws IOException {
+        if (inflater.needsInput() && userBufLen > 0) {
+            inflater.setInput(userBuf, userBufOff, userBufLen);
+            userBufOff += userBufLen;
+            userBufLen = 0;
+        }
+        int n;
+        try {
+            n = inflater.inflate(b, off, len);
+        } catch (DataFormatException dfe) {
+            throw new IOException(dfe.getMessage(), dfe);
+        }
+        crc.update(b, off, n);
+        if (inflater.finished()) {
+            // 把inflater没有用到的输入还回来，后面是trailer
+            int remaining = inflater.getRemaining();
+            userBufOff -= remaining;
+            userBufLen += remaining;
+            state = GzipStateLabel.TRAILER_CRC;
+        }
+        return n;
+    }
+
+    private void processBasicHeader() throws IOException {
+        if (readUShortLE(localBuf, 0) != GZIP_MAGIC_ID) {
+            throw new IOException("not a gzip file");
+        }
+        if ((localBuf[2] & 0xff) != GZIP_DEFLATE_METHOD) {
+            throw new IOException("gzip data not compressed with deflate method");
+        }
+        flags = localBuf[3] & 0xff;
+        if ((flags & GZIP_FLAGBITS_RESERVED) != 0) {
+            throw new IOException("unknown gzip format (reserved flagbits set)");
+        }
+        hasExtraField = (flags & GZIP_FLAGBIT_EXTRA_FIELD) != 0;
+        hasFilename = (flags & GZIP_FLAGBIT_FILENAME) != 0;
+        hasComment = (flags & GZIP_FLAGBIT_COMMENT) != 0;
+        hasHeaderCRC = (flags & GZIP_FLAGBIT_HEADER_CRC) != 0;
+        extraFieldRemaining = -1;
+        state = GzipStateLabel.HEADER_EXTRA_FIELD;
+    }
+
+    /**
+     * 从输入中攒够{@code n}个字节到localBuf，攒够之后下一次从头开始攒
+     *
+     * @return true if localBuf[0, n) is complete
+     */
+    private boolean fill(int n) {
+        int count = Math.min(n - localBufOff, userBufLen);
+        if (count > 0) {
+            System.arraycopy(userBuf, userBufOff, localBuf, localBufOff, count);
+            localBufOff += count;
+            skip(count);
+        }
+        if (localBufOff < n) {
+            return false;
+        }
+        localBufOff = 0;
+        return true;
+    }
+
+    private void skip(int n) {
+        userBufOff += n;
+        userBufLen -= n;
+    }
+
+    /**
+     * 跳过以0结尾的字符串
+     *
+     * @return true if the terminating zero was found
+     */
+    private boolean skipZeroTerminated() {
+        while (userBufLen > 0) {
+            byte c = userBuf[userBufOff];
+            skip(1);
+            if (c == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int readUShortLE(byte[] b, int off) {
+        return ((b[off + 1] & 0xff) << 8) | (b[off] & 0xff);
+    }
+
+    private static int readIntLE(byte[] b, int off) {
+        return ((b[off + 3] & 0xff) << 24) | ((b[off + 2] & 0xff) << 16)
+                | ((b[off + 1] & 0xff) << 8) | (b[off] & 0xff);
+    }
+
+    /**
+     * 当前member结束之后，输入中剩下的字节数（下一个member的开始）
+     */
+    @Override
+    public synchronized int getRemaining() {
+        return userBufLen;
+    }
+
+    @Override
+    public synchronized void reset() {
+        inflater.reset();
+        crc.reset();
+        state = GzipStateLabel.HEADER_BASIC;
+        localBufOff = 0;
+        userBufLen = 0;
+        extraFieldRemaining = -1;
+    }
+
+    @Override
+    public synchronized void end() {
+        inflater.end();
+    }
+}
@@ -0,0 +1,60 @@
+package com.wzq.hadoop.io.compress.zlib;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.io.compress.Compressor;
+
+import java.io.IOException;
+
+/**
+ * 基于{@link java.util.zip.Deflater}的zlib压缩器
+ * <p>
+ * A wrapper around java.util.zip.Deflater to make it conform
+ * to {@link Compressor} interface.
+ */
+public class BuiltInZlibDeflater extends java.util.zip.Deflater implements Compressor {
+
+    public BuiltInZlibDeflater(int level, boolean nowrap) {
+        super(level, nowrap);
+    }
+
+    public BuiltInZlibDeflater(int level) {
+        super(level);
+    }
+
+    public BuiltInZlibDeflater() {
+        super();
+    }
+
+    /**
+     * 按配置中的级别与策略创建
+     */
+    public BuiltInZlibDeflater(Configuration conf) {
+        this();
+        reinit(conf);
+    }
+
+    @Override
+    public synchronized int compress(byte[] b, int off, int len) throws IOException {
+        return super.deflate(b, off, len);
+    }
+
+    /**
+     * 重新读取配置中的压缩级别与策略，并重置压缩器，这样从池中取出的压缩器可以按新的配置使用
+     * <p>
+     * reinit the compressor with the given configuration. It will reset the
+     * compressor's compression level and compression strategy. Different from
+     * <tt>ZlibCompressor</tt>, <tt>BuiltInZlibDeflater</tt> only support three
+     * kind of compression strategy: FILTERED, HUFFMAN_ONLY and DEFAULT_STRATEGY.
+     * It will use DEFAULT_STRATEGY as default if the configured compression
+     * strategy is not supported.
+     */
+    @Override
+    public void reinit(Configuration conf) {
+        reset();
+        if (conf == null) {
+            return;
+        }
+        setLevel(ZlibFactory.getCompressionLevel(conf).compressionLevel());
+        setStrategy(ZlibFactory.getCompressionStrategy(conf).compressionStrategy());
+    }
+}
@@ -0,0 +1,33 @@
+package com.wzq.hadoop.io.compress.zlib;
+
+import com.wzq.hadoop.io.compress.Decompressor;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 基于{@link java.util.zip.Inflater}的zlib解压缩器
+ * <p>
+ * A wrapper around java.util.zip.Inflater to make it conform
+ * to {@link Decompressor} interface.
+ */
+public class BuiltInZlibInflater extends Inflater implements Decompressor {
+
+    public BuiltInZlibInflater(boolean nowrap) {
+        super(nowrap);
+    }
+
+    public BuiltInZlibInflater() {
+        super();
+    }
+
+    @Override
+    public synchronized int decompress(byte[] b, int off, int len) throws IOException {
+        try {
+            return super.inflate(b, off, len);
+        } catch (DataFormatException dfe) {
+            throw new IOException(dfe.getMessage(), dfe);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.wzq.hadoop.io.compress.zlib;
+
+import com.wzq.hadoop.conf.Configuration;
+
+/**
+ * 使用预设字典的zlib压缩器，每次reset之后重新设置字典
+ * <p>
+ * {@link java.util.zip.Deflater#reset()} drops the dictionary, so this compressor re-applies it
+ * on every reset; each stream written after {@link #reset()} therefore starts with the same
+ * history. The dictionary comes from {@link ZlibFactory#ZLIB_DICTIONARY_KEY}, and
+ * {@link #reinit(Configuration)} picks up a different one when the compressor is leased from
+ * the codec pool. Without a dictionary it writes plain zlib streams.
+ */
+public class ZlibDictionaryCompressor extends BuiltInZlibDeflater {
+
+    private byte[] dictionary;
+
+    public ZlibDictionaryCompressor(Configuration conf) {
+        super();
+        reinit(conf);
+    }
+
+    /**
+     * @return a copy of the dictionary in use, or null
+     */
+    public synchronized byte[] getDictionary() {
+        return dictionary == null ? null : dictionary.clone();
+    }
+
+    @Override
+    public synchronized void reset() {
+        super.reset();
+        if (dictionary != null) {
+            setDictionary(dictionary, 0, dictionary.length);
+        }
+    }
+
+    @Override
+    public synchronized void reinit(Configuration conf) {
+        if (conf != null) {
+            dictionary = ZlibFactory.sharedDictionary(conf);
+        }
+        super.reinit(conf);
+    }
+}
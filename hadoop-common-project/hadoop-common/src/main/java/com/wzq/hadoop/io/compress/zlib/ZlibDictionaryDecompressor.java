@@ -0,0 +1,71 @@
+package com.wzq.hadoop.io.compress.zlib;
+
+import com.wzq.hadoop.conf.Configuration;
+
+import java.io.IOException;
+import java.util.zip.Adler32;
+
+/**
+ * 使用预设字典的zlib解压缩器，在流需要字典时自动设置
+ * <p>
+ * A zlib stream compressed with a preset dictionary stores the dictionary's Adler-32 in its
+ * header and the inflater stops with {@link #needsDictionary()} until it is supplied. This
+ * decompressor supplies it itself after checking the checksum, so it works behind a plain
+ * {@link com.wzq.hadoop.io.compress.DecompressorStream}; streams without a dictionary are read
+ * as usual.
+ */
+public class ZlibDictionaryDecompressor extends BuiltInZlibInflater {
+
+    private byte[] dictionary;
+    private int dictionaryId;
+
+    public ZlibDictionaryDecompressor(byte[] dictionary) {
+        super();
+        useDictionary(dictionary);
+    }
+
+    /**
+     * 使用{@link ZlibFactory#ZLIB_DICTIONARY_KEY}中配置的字典
+     */
+    public ZlibDictionaryDecompressor(Configuration conf) {
+        this(ZlibFactory.sharedDictionary(conf));
+    }
+
+    /**
+     * 换成{@link ZlibFactory#ZLIB_DICTIONARY_KEY}中配置的字典，conf为null时不使用字典
+     */
+    public void useDictionary(Configuration conf) {
+        useDictionary(ZlibFactory.sharedDictionary(conf));
+    }
+
+    /**
+     * 设置解压时使用的字典，可以为null
+     */
+    public synchronized void useDictionary(byte[] dictionary) {
+        this.dictionary = dictionary;
+        if (dictionary != null) {
+            Adler32 adler = new Adler32();
+            adler.update(dictionary, 0, dictionary.length);
+            this.dictionaryId = (int) adler.getValue();
+        }
+    }
+
+    @Override
+    public synchronized int decompress(byte[] b, int off, int len) throws IOException {
+        int n = super.decompress(b, off, len);
+        if (n == 0 && needsDictionary()) {
+            if (dictionary == null) {
+                throw new IOException("zlib stream needs a preset dictionary but none is configured in "
+                        + ZlibFactory.ZLIB_DICTIONARY_KEY);
+            }
+            if ((int) getAdler() != dictionaryId) {
+                throw new IOException("zlib stream was compressed with a different dictionary (id "
+                        + Integer.toHexString((int) getAdler()) + ", configured "
+                        + Integer.toHexString(dictionaryId) + ")");
+            }
+            setDictionary(dictionary, 0, dictionary.length);
+            n = super.decompress(b, off, len);
+        }
+        return n;
+    }
+}
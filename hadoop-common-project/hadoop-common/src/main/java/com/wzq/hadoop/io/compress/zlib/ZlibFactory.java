@@ -0,0 +1,206 @@
+package com.wzq.hadoop.io.compress.zlib;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.io.compress.Compressor;
+import com.wzq.hadoop.io.compress.Decompressor;
+
+import java.util.Base64;
+import java.util.zip.Deflater;
+
+/**
+ * 创建zlib压缩器/解压缩器，压缩级别与策略从配置中读取
+ * <p>
+ * A collection of factories to create the right zlib/gzip compressor/decompressor instances.
+ * Everything is built on {@link java.util.zip.Deflater} / {@link java.util.zip.Inflater}, so no
+ * native library is needed.
+ */
+public class ZlibFactory {
+
+    /**
+     * 压缩级别，取值为{@link CompressionLevel}的名字
+     */
+    public static final String ZLIB_COMPRESS_LEVEL_KEY = "zlib.compress.level";
+
+    /**
+     * 压缩策略，取值为{@link CompressionStrategy}的名字
+     */
+    public static final String ZLIB_COMPRESS_STRATEGY_KEY = "zlib.compress.strategy";
+
+    /**
+     * 预设字典，Base64编码，见{@link com.wzq.hadoop.io.compress.DictionaryTrainer}
+     */
+    public static final String ZLIB_DICTIONARY_KEY = "zlib.compress.dictionary";
+
+    /**
+     * 最近一次解码的字典，避免每次借出压缩器都重新解码Base64。这个数组被多个压缩器/解压缩器共用，
+     * 只在本包内使用，对外返回副本
+     */
+    private static volatile Object[] lastDictionary = {null, null};
+
+    private ZlibFactory() {
+    }
+
+    /**
+     * The compression level for zlib library.
+     */
+    public enum CompressionLevel {
+        /**
+         * Compression level for no compression.
+         */
+        NO_COMPRESSION(Deflater.NO_COMPRESSION),
+        /**
+         * Compression level for fastest compression.
+         */
+        BEST_SPEED(Deflater.BEST_SPEED),
+        TWO(2),
+        THREE(3),
+        FOUR(4),
+        FIVE(5),
+        SIX(6),
+        SEVEN(7),
+        EIGHT(8),
+        /**
+         * Compression level for best compression.
+         */
+        BEST_COMPRESSION(Deflater.BEST_COMPRESSION),
+        /**
+         * Default compression level.
+         */
+        DEFAULT_COMPRESSION(Deflater.DEFAULT_COMPRESSION);
+
+        private final int compressionLevel;
+
+        CompressionLevel(int level) {
+            compressionLevel = level;
+        }
+
+        public int compressionLevel() {
+            return compressionLevel;
+        }
+    }
+
+    /**
+     * The compression strategy for zlib library.
+     */
+    public enum CompressionStrategy {
+        /**
+         * Compression strategy best used for data consisting mostly of small
+         * values with a somewhat random distribution. Forces more Huffman coding
+         * and less string matching.
+         */
+        FILTERED(Deflater.FILTERED),
+        /**
+         * Compression strategy for Huffman coding only.
+         */
+        HUFFMAN_ONLY(Deflater.HUFFMAN_ONLY),
+        /**
+         * Default compression strategy.
+         */
+        DEFAULT_STRATEGY(Deflater.DEFAULT_STRATEGY);
+
+        private final int compressionStrategy;
+
+        CompressionStrategy(int strategy) {
+            compressionStrategy = strategy;
+        }
+
+        public int compressionStrategy() {
+            return compressionStrategy;
+        }
+    }
+
+    public static CompressionLevel getCompressionLevel(Configuration conf) {
+        return getEnum(conf, ZLIB_COMPRESS_LEVEL_KEY, CompressionLevel.DEFAULT_COMPRESSION);
+    }
+
+    public static void setCompressionLevel(Configuration conf, CompressionLevel level) {
+        conf.set(ZLIB_COMPRESS_LEVEL_KEY, level.name());
+    }
+
+    public static CompressionStrategy getCompressionStrategy(Configuration conf) {
+        return getEnum(conf, ZLIB_COMPRESS_STRATEGY_KEY, CompressionStrategy.DEFAULT_STRATEGY);
+    }
+
+    public static void setCompressionStrategy(Configuration conf, CompressionStrategy strategy) {
+        conf.set(ZLIB_COMPRESS_STRATEGY_KEY, strategy.name());
+    }
+
+    /**
+     * @return a copy of the preset dictionary stored in the configuration, or null if there is
+     * none
+     */
+    public static byte[] getDictionary(Configuration conf) {
+        byte[] dictionary = sharedDictionary(conf);
+        return dictionary == null ? null : dictionary.clone();
+    }
+
+    /**
+     * 返回缓存的字典本身，调用方不能修改
+     */
+    static byte[] sharedDictionary(Configuration conf) {
+        if (conf == null) {
+            return null;
+        }
+        String val = conf.get(ZLIB_DICTIONARY_KEY);
+        if (val == null || val.trim().isEmpty()) {
+            return null;
+        }
+        val = val.trim();
+        Object[] last = lastDictionary;
+        if (val.equals(last[0])) {
+            return (byte[]) last[1];
+        }
+        byte[] dictionary;
+        try {
+            dictionary = Base64.getDecoder().decode(val);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value for " + ZLIB_DICTIONARY_KEY + ": " + e.getMessage(), e);
+        }
+        lastDictionary = new Object[]{val, dictionary};
+        return dictionary;
+    }
+
+    public static void setDictionary(Configuration conf, byte[] dictionary) {
+        conf.set(ZLIB_DICTIONARY_KEY, Base64.getEncoder().encodeToString(dictionary));
+    }
+
+    private static <T extends Enum<T>> T getEnum(Configuration conf, String name, T defaultValue) {
+        String val = conf.get(name);
+        if (val == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(defaultValue.getDeclaringClass(), val.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid value for " + name + ": " + val, e);
+        }
+    }
+
+    /**
+     * Return the appropriate type of the zlib compressor.
+     */
+    public static Class<? extends Compressor> getZlibCompressorType(Configuration conf) {
+        return BuiltInZlibDeflater.class;
+    }
+
+    /**
+     * Return the appropriate implementation of the zlib compressor.
+     */
+    public static Compressor getZlibCompressor(Configuration conf) {
+        return new BuiltInZlibDeflater(conf);
+    }
+
+    /**
+     * Return the appropriate type of the zlib decompressor.
+     */
+    public static Class<? extends Decompressor> getZlibDecompressorType(Configuration conf) {
+        return BuiltInZlibInflater.class;
+    }
+
+    /**
+     * Return the appropriate implementation of the zlib decompressor.
+     */
+    public static Decompressor getZlibDecompressor(Configuration conf) {
+        return new BuiltInZlibInflater();
+    }
+}
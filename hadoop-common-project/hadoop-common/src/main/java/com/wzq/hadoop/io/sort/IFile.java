@@ -0,0 +1,236 @@
+package com.wzq.hadoop.io.sort;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.FSDataInputStream;
+import com.wzq.hadoop.fs.FSDataOutputStream;
+import com.wzq.hadoop.fs.FileSystem;
+import com.wzq.hadoop.fs.Path;
+import com.wzq.hadoop.io.DataInputBuffer;
+import com.wzq.hadoop.io.WritableUtils;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * 溢写文件的格式：一串(key长度, value长度, key字节, value字节)记录，长度都是VInt，
+ * 文件以两个-1结尾。记录以序列化后的字节读写，不需要反序列化key和value
+ * <p>
+ * <code>IFile</code> is the simple &lt;key-len, value-len, key, value&gt; format
+ * for the intermediate sorted runs written by {@link SortBuffer}.
+ */
+public class IFile {
+
+    /**
+     * 文件结束标记，key长度与value长度都为-1
+     */
+    public static final int EOF_MARKER = -1;
+
+    /**
+     * <code>IFile.Writer</code> to write out sorted runs.
+     */
+    public static class Writer implements Closeable {
+        private final FSDataOutputStream out;
+        private final boolean ownOutputStream;
+        private final long start;
+
+        // 写入的记录数与key/value的原始字节数
+        private long numRecordsWritten = 0;
+        private long rawBytesWritten = 0;
+
+        public Writer(Configuration conf, FileSystem fs, Path file) throws IOException {
+            this(fs.create(file), true);
+        }
+
+        public Writer(FSDataOutputStream out) throws IOException {
+            this(out, false);
+        }
+
+        private Writer(FSDataOutputStream out, boolean ownOutputStream) throws IOException {
+            this.out = out;
+            this.ownOutputStream = ownOutputStream;
+            this.start = out.getPos();
+        }
+
+        /**
+         * 追加一条已经序列化好的记录
+         */
+        public void append(byte[] kvbuffer, int keyStart, int keyLength,
+                           int valueStart, int valueLength) throws IOException {
+            append(kvbuffer, keyStart, keyLength, kvbuffer, valueStart, valueLength);
+        }
+
+        public void append(byte[] key, int keyStart, int keyLength,
+                           byte[] value, int valueStart, int valueLength) throws IOException {
+            if (keyLength < 0) {
+                throw new IOException("Negative key-length not allowed: " + keyLength);
+            }
+            if (valueLength < 0) {
+                throw new IOException("Negative value-length not allowed: " + valueLength);
+            }
+            WritableUtils.writeVInt(out, keyLength);
+            WritableUtils.writeVInt(out, valueLength);
+            out.write(key, keyStart, keyLength);
+            out.write(value, valueStart, valueLength);
+
+            rawBytesWritten += keyLength + valueLength
+                    + WritableUtils.getVIntSize(keyLength) + WritableUtils.getVIntSize(valueLength);
+            ++numRecordsWritten;
+        }
+
+        /**
+         * 追加一条记录，key与value为DataInputBuffer中从当前位置到结尾的字节
+         */
+        public void append(DataInputBuffer key, DataInputBuffer value) throws IOException {
+            int keyStart = key.getPosition();
+            int valueStart = value.getPosition();
+            append(key.getData(), keyStart, key.getLength() - keyStart,
+                    value.getData(), valueStart, value.getLength() - valueStart);
+        }
+
+        @Override
+        public void close() throws IOException {
+            // Write EOF_MARKER for key/value length
+            WritableUtils.writeVInt(out, EOF_MARKER);
+            WritableUtils.writeVInt(out, EOF_MARKER);
+            rawBytesWritten += 2 * WritableUtils.getVIntSize(EOF_MARKER);
+            out.flush();
+            if (ownOutputStream) {
+                out.close();
+            }
+        }
+
+        /**
+         * 写入的字节数，包括结束标记
+         */
+        public long getCompressedLength() throws IOException {
+            return out.getPos() - start;
+        }
+
+        public long getRawLength() {
+            return rawBytesWritten;
+        }
+
+        public long getNumRecords() {
+            return numRecordsWritten;
+        }
+    }
+
+    /**
+     * <code>IFile.Reader</code> to read intermediate sorted runs. Keys and values are
+     * returned as raw bytes, the buffers handed out stay valid until the next call.
+     */
+    public static class Reader implements Closeable {
+        private static final int DEFAULT_BUFFER_SIZE = 128;
+
+        private final DataInputStream in;
+        private final boolean ownInputStream;
+        private byte[] keyBytes = new byte[DEFAULT_BUFFER_SIZE];
+        private byte[] valueBytes = new byte[DEFAULT_BUFFER_SIZE];
+
+        private int currentValueLength = -1;
+        private long bytesRead = 0;
+        private long recordsRead = 0;
+        private boolean eof = false;
+
+        public Reader(Configuration conf, FileSystem fs, Path file) throws IOException {
+            this(fs.open(file), true);
+        }
+
+        public Reader(FSDataInputStream in) {
+            this(in, false);
+        }
+
+        private Reader(DataInputStream in, boolean ownInputStream) {
+            this.in = in;
+            this.ownInputStream = ownInputStream;
+        }
+
+        /**
+         * 读下一条记录的key，读到文件结尾返回false
+         *
+         * @param key 指向key字节的buffer
+         * @return true if a key was read, false at the end of the run
+         */
+        public boolean nextRawKey(DataInputBuffer key) throws IOException {
+            if (eof) {
+                return false;
+            }
+            if (currentValueLength >= 0) {
+                // 上一条记录的value没有被读取，跳过
+                skipFully(currentValueLength);
+            }
+            int keyLength = WritableUtils.readVInt(in);
+            int valueLength = WritableUtils.readVInt(in);
+            bytesRead += WritableUtils.getVIntSize(keyLength) + WritableUtils.getVIntSize(valueLength);
+
+            if (keyLength == EOF_MARKER && valueLength == EOF_MARKER) {
+                eof = true;
+                currentValueLength = -1;
+                return false;
+            }
+            if (keyLength < 0) {
+                throw new IOException("Rec# " + recordsRead + ": Negative key-length: " + keyLength);
+            }
+            if (valueLength < 0) {
+                throw new IOException("Rec# " + recordsRead + ": Negative value-length: " + valueLength);
+            }
+
+            if (keyBytes.length < keyLength) {
+                keyBytes = new byte[Math.max(keyLength, keyBytes.length << 1)];
+            }
+            in.readFully(keyBytes, 0, keyLength);
+            key.reset(keyBytes, keyLength);
+            bytesRead += keyLength;
+            currentValueLength = valueLength;
+            ++recordsRead;
+            return true;
+        }
+
+        /**
+         * 读当前记录的value，必须在{@link #nextRawKey(DataInputBuffer)}返回true之后调用
+         */
+        public void nextRawValue(DataInputBuffer value) throws IOException {
+            if (currentValueLength < 0) {
+                throw new IOException("nextRawValue() called without a current key");
+            }
+            if (valueBytes.length < currentValueLength) {
+                valueBytes = new byte[Math.max(currentValueLength, valueBytes.length << 1)];
+            }
+            in.readFully(valueBytes, 0, currentValueLength);
+            value.reset(valueBytes, currentValueLength);
+            bytesRead += currentValueLength;
+            currentValueLength = -1;
+        }
+
+        private void skipFully(int len) throws IOException {
+            while (len > 0) {
+                int skipped = in.skipBytes(len);
+                if (skipped <= 0) {
+                    throw new EOFException("Premature EOF while skipping value");
+                }
+                len -= skipped;
+                bytesRead += skipped;
+            }
+        }
+
+        /**
+         * 已读取的字节数
+         */
+        public long getPosition() {
+            return bytesRead;
+        }
+
+        public long getRecordsRead() {
+            return recordsRead;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (ownInputStream) {
+                in.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.wzq.hadoop.io.sort;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.FileSystem;
+import com.wzq.hadoop.fs.Path;
+import com.wzq.hadoop.io.DataInputBuffer;
+import com.wzq.hadoop.io.RawComparator;
+import com.wzq.hadoop.util.PriorityQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 将多个有序的{@link IFile}归并成一个有序的记录流
+ * <p>
+ * 每个文件是一个Segment，用一个按当前key排序的最小堆做K路归并，key只按字节用{@link RawComparator}比较，
+ * 不反序列化。一次最多同时打开{@value #IO_SORT_FACTOR_KEY}个文件，文件数超过它时先把最小的几个文件
+ * 归并成临时文件，直到剩下的文件数不超过它，最后一趟归并的结果以{@link RawKeyValueIterator}返回。
+ * <p>
+ * Merges sorted runs by raw key bytes. Besides the merged iterator, a Merger keeps counters of the
+ * records and bytes it has merged, including the intermediate passes.
+ */
+public class Merger {
+
+    private static final Logger LOG = LoggerFactory.getLogger(Merger.class);
+
+    /**
+     * 一趟归并同时打开的文件数
+     */
+    public static final String IO_SORT_FACTOR_KEY = "io.sort.factor";
+    public static final int IO_SORT_FACTOR_DEFAULT = 10;
+
+    private final Configuration conf;
+    private final FileSystem fs;
+    private final RawComparator<?> comparator;
+    private final Path tmpDir;
+    private final int factor;
+
+    // 计数器
+    private long recordsMerged = 0;
+    private long bytesMerged = 0;
+    private long bytesWritten = 0;
+    private int intermediateMerges = 0;
+
+    /**
+     * @param comparator compares the raw keys of the segments
+     * @param tmpDir     where intermediate merge passes are written
+     */
+    public Merger(Configuration conf, FileSystem fs, RawComparator<?> comparator,
+                  Path tmpDir) throws IOException {
+        this.conf = conf;
+        this.fs = fs;
+        this.comparator = comparator;
+        this.tmpDir = tmpDir;
+        this.factor = conf.getInt(IO_SORT_FACTOR_KEY, IO_SORT_FACTOR_DEFAULT);
+        if (factor < 2) {
+            throw new IOException("Invalid \"" + IO_SORT_FACTOR_KEY + "\": " + factor);
+        }
+    }
+
+    /**
+     * 归并有序文件
+     *
+     * @param inputs       sorted IFiles
+     * @param deleteInputs delete each input once it has been merged
+     * @return an iterator over all records of the inputs in key order
+     */
+    public RawKeyValueIterator merge(List<Path> inputs, boolean deleteInputs) throws IOException {
+        List<Segment> segments = new ArrayList<>(inputs.size());
+        for (Path file : inputs) {
+            segments.add(new Segment(file, fs.getLength(file), !deleteInputs));
+        }
+        // 先归并小文件
+        segments.sort(SEGMENT_LENGTH_ORDER);
+
+        int passNo = 1;
+        while (true) {
+            int passFactor = getPassFactor(passNo, segments.size());
+            List<Segment> toMerge = new ArrayList<>(segments.subList(0, Math.min(passFactor, segments.size())));
+            segments.subList(0, toMerge.size()).clear();
+
+            MergeQueue queue = new MergeQueue(toMerge);
+            if (segments.isEmpty()) {
+                // 最后一趟，由调用方读取
+                LOG.info("Down to the last merge-pass, with {} segments", toMerge.size());
+                return queue;
+            }
+
+            Path output = new Path(tmpDir, "intermediate." + intermediateMerges++);
+            IFile.Writer writer = new IFile.Writer(conf, fs, output);
+            try {
+                writeFile(queue, writer);
+            } finally {
+                queue.close();
+                writer.close();
+            }
+            bytesWritten += writer.getCompressedLength();
+            LOG.info("Merged {} segments into {} ({} bytes), {} segments left",
+                    toMerge.size(), output, writer.getCompressedLength(), segments.size());
+
+            // 临时文件放回按大小排序的位置，读完后删除
+            Segment merged = new Segment(output, fs.getLength(output), false);
+            int pos = 0;
+            while (pos < segments.size() && SEGMENT_LENGTH_ORDER.compare(segments.get(pos), merged) <= 0) {
+                pos++;
+            }
+            segments.add(pos, merged);
+            passNo++;
+        }
+    }
+
+    /**
+     * 第一趟只归并一部分文件，使之后的每一趟都正好归并factor个文件
+     * <p>
+     * Determine the number of segments to merge in a given pass. Assuming more than factor
+     * segments, the first pass should attempt to bring the total number of segments - 1 to be
+     * divisible by the factor - 1 (each pass takes X segments and produces 1) to minimize the
+     * number of merges.
+     */
+    private int getPassFactor(int passNo, int numSegments) {
+        if (passNo > 1 || numSegments <= factor) {
+            return factor;
+        }
+        int mod = (numSegments - 1) % (factor - 1);
+        if (mod == 0) {
+            return factor;
+        }
+        return mod + 1;
+    }
+
+    /**
+     * 将迭代器中剩余的记录全部写入writer
+     *
+     * @return the number of records written
+     */
+    public static long writeFile(RawKeyValueIterator records, IFile.Writer writer) throws IOException {
+        long count = 0;
+        while (records.next()) {
+            writer.append(records.getKey(), records.getValue());
+            count++;
+        }
+        return count;
+    }
+
+    // #######################################################################################
+    // 计数器
+
+    /**
+     * 所有归并趟次（包括最后一趟）读出的记录数
+     */
+    public long getRecordsMerged() {
+        return recordsMerged;
+    }
+
+    /**
+     * 所有归并趟次从Segment中读取的字节数
+     */
+    public long getBytesMerged() {
+        return bytesMerged;
+    }
+
+    /**
+     * 中间归并写入临时文件的字节数
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public int getIntermediateMerges() {
+        return intermediateMerges;
+    }
+
+    // #######################################################################################
+    // Segment & MergeQueue
+
+    private static final Comparator<Segment> SEGMENT_LENGTH_ORDER =
+            (a, b) -> Long.compare(a.length, b.length);
+
+    /**
+     * 一个有序文件，第一次读取时才打开
+     */
+    private class Segment {
+        private final Path file;
+        private final long length;
+        private final boolean preserve;
+        private IFile.Reader reader = null;
+        private final DataInputBuffer key = new DataInputBuffer();
+        private final DataInputBuffer value = new DataInputBuffer();
+
+        Segment(Path file, long length, boolean preserve) {
+            this.file = file;
+            this.length = length;
+            this.preserve = preserve;
+        }
+
+        /**
+         * 读下一条记录到key/value
+         */
+        boolean next() throws IOException {
+            if (reader == null) {
+                reader = new IFile.Reader(conf, fs, file);
+            }
+            if (!reader.nextRawKey(key)) {
+                return false;
+            }
+            reader.nextRawValue(value);
+            return true;
+        }
+
+        void close() throws IOException {
+            if (reader != null) {
+                bytesMerged += reader.getPosition();
+                reader.close();
+                reader = null;
+            }
+            if (!preserve) {
+                fs.delete(file, false);
+            }
+        }
+    }
+
+    private class MergeQueue extends PriorityQueue<Segment> implements RawKeyValueIterator {
+        private Segment minSegment = null;
+        private DataInputBuffer key;
+        private DataInputBuffer value;
+
+        MergeQueue(List<Segment> segments) throws IOException {
+            initialize(segments.size());
+            for (Segment segment : segments) {
+                if (segment.next()) {
+                    put(segment);
+                } else {
+                    segment.close();
+                }
+            }
+        }
+
+        @Override
+        protected boolean lessThan(Object a, Object b) {
+            DataInputBuffer key1 = ((Segment) a).key;
+            DataInputBuffer key2 = ((Segment) b).key;
+            int s1 = key1.getPosition();
+            int l1 = key1.getLength() - s1;
+            int s2 = key2.getPosition();
+            int l2 = key2.getLength() - s2;
+            return comparator.compare(key1.getData(), s1, l1, key2.getData(), s2, l2) < 0;
+        }
+
+        @Override
+        public boolean next() throws IOException {
+            if (size() == 0) {
+                return false;
+            }
+            if (minSegment != null) {
+                // 上一条记录所在的Segment前进一条，调整堆
+                if (minSegment.next()) {
+                    adjustTop();
+                } else {
+                    pop();
+                    minSegment.close();
+                    if (size() == 0) {
+                        minSegment = null;
+                        return false;
+                    }
+                }
+            }
+            minSegment = top();
+            key = minSegment.key;
+            value = minSegment.value;
+            ++recordsMerged;
+            return true;
+        }
+
+        @Override
+        public DataInputBuffer getKey() {
+            return key;
+        }
+
+        @Override
+        public DataInputBuffer getValue() {
+            return value;
+        }
+
+        @Override
+        public void close() throws IOException {
+            Segment segment;
+            while ((segment = pop()) != null) {
+                segment.close();
+            }
+            minSegment = null;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.wzq.hadoop.io.sort;
+
+import com.wzq.hadoop.io.DataInputBuffer;
+
+import java.io.IOException;
+
+/**
+ * 按序遍历序列化后的key/value，key与value都以字节的形式返回
+ * <p>
+ * <code>RawKeyValueIterator</code> is an iterator used to iterate over
+ * the raw keys and values during sort/merge of intermediate data.
+ */
+public interface RawKeyValueIterator {
+
+    /**
+     * Gets the current raw key.
+     *
+     * @return Gets the current raw key as a DataInputBuffer
+     */
+    DataInputBuffer getKey() throws IOException;
+
+    /**
+     * Gets the current raw value.
+     *
+     * @return Gets the current raw value as a DataInputBuffer
+     */
+    DataInputBuffer getValue() throws IOException;
+
+    /**
+     * Sets up the current key and value (for getKey and getValue).
+     *
+     * @return <code>true</code> if there exists a key/value, <code>false</code> otherwise.
+     */
+    boolean next() throws IOException;
+
+    /**
+     * Closes the iterator so that the underlying streams can be closed.
+     */
+    void close() throws IOException;
+}
@@ -0,0 +1,363 @@
+package com.wzq.hadoop.io.sort;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.FileSystem;
+import com.wzq.hadoop.fs.Path;
+import com.wzq.hadoop.io.DataOutputBuffer;
+import com.wzq.hadoop.io.RawComparator;
+import com.wzq.hadoop.io.WritableComparable;
+import com.wzq.hadoop.io.WritableComparator;
+import com.wzq.hadoop.io.serializer.SerializationFactory;
+import com.wzq.hadoop.io.serializer.Serializer;
+import com.wzq.hadoop.util.IndexedSortable;
+import com.wzq.hadoop.util.IndexedSorter;
+import com.wzq.hadoop.util.QuickSort;
+import com.wzq.hadoop.util.ReflectionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Map端的排序缓冲区
+ * <p>
+ * key和value通过{@link SerializationFactory}得到的序列化器直接写入一块大的字节数组kvbuffer，
+ * 每条记录在kvindices中占用三个int：(keyStart, keyLen, valStart)，value的长度由下一条记录的
+ * keyStart推出。排序时只交换kvoffsets中记录的下标，用RawComparator比较kvbuffer中key的字节，
+ * 不反序列化key。当kvbuffer或记录索引用完时，排好序的记录溢写到spillDir下的一个{@link IFile}。
+ * <p>
+ * Collects serialized key/value records into a single byte arena, sorts them in place with the
+ * key's {@link RawComparator} and spills sorted runs to local files when the memory limit
+ * configured by {@value #IO_SORT_MB_KEY} is reached.
+ */
+public class SortBuffer<K, V> implements IndexedSortable, Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SortBuffer.class);
+
+    /**
+     * 排序缓冲区的总大小，单位MB
+     */
+    public static final String IO_SORT_MB_KEY = "io.sort.mb";
+    public static final int IO_SORT_MB_DEFAULT = 100;
+
+    /**
+     * 总内存中用于记录索引的比例，剩下的用于存放序列化的记录
+     */
+    public static final String IO_SORT_RECORD_PERCENT_KEY = "io.sort.record.percent";
+    public static final float IO_SORT_RECORD_PERCENT_DEFAULT = 0.05f;
+
+    /**
+     * 排序算法，{@link IndexedSorter}的实现类
+     */
+    public static final String MAP_SORT_CLASS_KEY = "map.sort.class";
+
+    /**
+     * key的RawComparator，不设置时使用注册在{@link WritableComparator}中的比较器
+     */
+    public static final String KEY_COMPARATOR_CLASS_KEY = "mapred.output.key.comparator.class";
+
+    // kvindices中每条记录的字段
+    private static final int KEYSTART = 0;     // key offset in kvbuffer
+    private static final int KEYLEN = 1;       // length of key
+    private static final int VALSTART = 2;     // val offset in kvbuffer
+    private static final int ACCTSIZE = 3;     // total #fields in acct
+    private static final int RECSIZE = (ACCTSIZE + 1) * 4;   // acct bytes per record
+
+    private final FileSystem fs;
+    private final Configuration conf;
+    private final Path spillDir;
+    private final Class<K> keyClass;
+    private final Class<V> valClass;
+    private final RawComparator<K> comparator;
+    private final IndexedSorter sorter;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valSerializer;
+
+    // 记录索引：kvoffsets是排序的对象，保存记录在kvindices中的偏移
+    private final int[] kvoffsets;
+    private final int[] kvindices;
+    private int kvindex = 0;           // number of records collected
+
+    // 序列化记录的存储区
+    private final byte[] kvbuffer;
+    private int bufindex = 0;          // marks end of collected bytes
+
+    private final List<Path> spills = new ArrayList<>();
+    private long recordsCollected = 0;
+    private long bytesSpilled = 0;
+
+    @SuppressWarnings("unchecked")
+    public SortBuffer(Configuration conf, Class<K> keyClass, Class<V> valClass,
+                      Path spillDir) throws IOException {
+        this.conf = conf;
+        this.fs = FileSystem.getLocal(conf).getRawFileSystem();
+        this.spillDir = spillDir;
+        this.keyClass = keyClass;
+        this.valClass = valClass;
+
+        // sanity checks
+        final float recper = conf.getFloat(IO_SORT_RECORD_PERCENT_KEY, IO_SORT_RECORD_PERCENT_DEFAULT);
+        final int sortmb = conf.getInt(IO_SORT_MB_KEY, IO_SORT_MB_DEFAULT);
+        if (recper > (float) 1.0 || recper < (float) 0.01) {
+            throw new IOException("Invalid \"" + IO_SORT_RECORD_PERCENT_KEY + "\": " + recper);
+        }
+        if (sortmb <= 0 || (sortmb & 0x7FF) != sortmb) {
+            throw new IOException("Invalid \"" + IO_SORT_MB_KEY + "\": " + sortmb);
+        }
+
+        // buffers and accounting
+        int maxMemUsage = sortmb << 20;
+        int recordCapacity = (int) (maxMemUsage * recper);
+        recordCapacity -= recordCapacity % RECSIZE;
+        kvbuffer = new byte[maxMemUsage - recordCapacity];
+        recordCapacity /= RECSIZE;
+        kvoffsets = new int[recordCapacity];
+        kvindices = new int[recordCapacity * ACCTSIZE];
+        LOG.debug("{}: data buffer = {}, record buffer = {}",
+                IO_SORT_MB_KEY, kvbuffer.length, kvoffsets.length);
+
+        // k/v serialization and sorting
+        sorter = ReflectionUtils.newInstance(
+                (Class<? extends IndexedSorter>) conf.getClass(MAP_SORT_CLASS_KEY, QuickSort.class), conf);
+        Class<?> comparatorClass = conf.getClass(KEY_COMPARATOR_CLASS_KEY, null);
+        if (comparatorClass != null) {
+            comparator = (RawComparator<K>) ReflectionUtils.newInstance(comparatorClass, conf);
+        } else {
+            comparator = WritableComparator.get(keyClass.asSubclass(WritableComparable.class));
+        }
+        SerializationFactory serializationFactory = new SerializationFactory(conf);
+        keySerializer = serializationFactory.getSerializer(keyClass);
+        valSerializer = serializationFactory.getSerializer(valClass);
+        if (keySerializer == null || valSerializer == null) {
+            throw new IOException("No serialization found for " + keyClass.getName()
+                    + " or " + valClass.getName());
+        }
+        DataOutputStream arena = new DataOutputStream(new ArenaOutputStream());
+        keySerializer.open(arena);
+        valSerializer.open(arena);
+    }
+
+    /**
+     * 序列化一条记录到缓冲区，缓冲区满时先溢写
+     */
+    public void collect(K key, V value) throws IOException {
+        if (key.getClass() != keyClass) {
+            throw new IOException("Type mismatch in key: expected "
+                    + keyClass.getName() + ", received " + key.getClass().getName());
+        }
+        if (value.getClass() != valClass) {
+            throw new IOException("Type mismatch in value: expected "
+                    + valClass.getName() + ", received " + value.getClass().getName());
+        }
+        if (kvindex == kvoffsets.length) {
+            sortAndSpill();
+        }
+        if (!serialize(key, value)) {
+            // 缓冲区剩余空间放不下这条记录
+            if (kvindex > 0) {
+                sortAndSpill();
+                if (serialize(key, value)) {
+                    ++recordsCollected;
+                    return;
+                }
+            }
+            // 空缓冲区也放不下，单独溢写这一条记录
+            spillSingleRecord(key, value);
+        }
+        ++recordsCollected;
+    }
+
+    /**
+     * 将key/value序列化到kvbuffer的末尾并记录索引
+     *
+     * @return false if the record did not fit, in which case the buffer is left unchanged
+     */
+    private boolean serialize(K key, V value) throws IOException {
+        final int keystart = bufindex;
+        try {
+            keySerializer.serialize(key);
+            final int valstart = bufindex;
+            valSerializer.serialize(value);
+
+            int ind = kvindex * ACCTSIZE;
+            kvoffsets[kvindex] = ind;
+            kvindices[ind + KEYSTART] = keystart;
+            kvindices[ind + KEYLEN] = valstart - keystart;
+            kvindices[ind + VALSTART] = valstart;
+            ++kvindex;
+            return true;
+        } catch (ArenaFullException e) {
+            bufindex = keystart;
+            return false;
+        }
+    }
+
+    /**
+     * 溢写剩下的记录，返回所有溢写文件
+     *
+     * @return the sorted runs written so far, in spill order
+     */
+    public List<Path> flush() throws IOException {
+        if (kvindex > 0) {
+            sortAndSpill();
+        }
+        return getSpills();
+    }
+
+    private void sortAndSpill() throws IOException {
+        sorter.sort(this, 0, kvindex);
+
+        Path file = nextSpillFile();
+        IFile.Writer writer = new IFile.Writer(conf, fs, file);
+        try {
+            for (int i = 0; i < kvindex; ++i) {
+                final int ind = kvoffsets[i];
+                final int valstart = kvindices[ind + VALSTART];
+                writer.append(kvbuffer, kvindices[ind + KEYSTART], kvindices[ind + KEYLEN],
+                        valstart, valueEnd(ind) - valstart);
+            }
+        } finally {
+            writer.close();
+        }
+        finishSpill(file, writer);
+
+        kvindex = 0;
+        bufindex = 0;
+    }
+
+    /**
+     * value的结束位置是下一条记录的开始，最后一条记录的value结束于bufindex
+     */
+    private int valueEnd(int ind) {
+        int next = ind + ACCTSIZE;
+        return next < kvindex * ACCTSIZE ? kvindices[next + KEYSTART] : bufindex;
+    }
+
+    /**
+     * 处理一条大于整个缓冲区的记录，直接写入一个单独的溢写文件
+     */
+    private void spillSingleRecord(K key, V value) throws IOException {
+        DataOutputBuffer buffer = new DataOutputBuffer();
+        SerializationFactory serializationFactory = new SerializationFactory(conf);
+        Serializer<K> keySer = serializationFactory.getSerializer(keyClass);
+        Serializer<V> valSer = serializationFactory.getSerializer(valClass);
+        keySer.open(buffer);
+        valSer.open(buffer);
+        keySer.serialize(key);
+        int keyLength = buffer.getLength();
+        valSer.serialize(value);
+
+        Path file = nextSpillFile();
+        IFile.Writer writer = new IFile.Writer(conf, fs, file);
+        try {
+            writer.append(buffer.getData(), 0, keyLength, keyLength, buffer.getLength() - keyLength);
+        } finally {
+            writer.close();
+        }
+        finishSpill(file, writer);
+    }
+
+    private Path nextSpillFile() {
+        return new Path(spillDir, "spill" + spills.size() + ".out");
+    }
+
+    private void finishSpill(Path file, IFile.Writer writer) throws IOException {
+        spills.add(file);
+        bytesSpilled += writer.getCompressedLength();
+        LOG.info("Finished spill {}: {} records, {} bytes", spills.size() - 1,
+                writer.getNumRecords(), writer.getCompressedLength());
+    }
+
+    // #######################################################################################
+    // IndexedSortable
+
+    /**
+     * Compare logical range, st i, j MOD offset capacity.
+     * Compare by key using the raw comparator.
+     */
+    @Override
+    public int compare(int i, int j) {
+        final int ii = kvoffsets[i];
+        final int ij = kvoffsets[j];
+        return comparator.compare(kvbuffer, kvindices[ii + KEYSTART], kvindices[ii + KEYLEN],
+                kvbuffer, kvindices[ij + KEYSTART], kvindices[ij + KEYLEN]);
+    }
+
+    /**
+     * Swap logical indices st i, j MOD offset capacity.
+     */
+    @Override
+    public void swap(int i, int j) {
+        int tmp = kvoffsets[i];
+        kvoffsets[i] = kvoffsets[j];
+        kvoffsets[j] = tmp;
+    }
+
+    // #######################################################################################
+    // 统计信息
+
+    public List<Path> getSpills() {
+        return Collections.unmodifiableList(spills);
+    }
+
+    public int getSpillCount() {
+        return spills.size();
+    }
+
+    public long getRecordsCollected() {
+        return recordsCollected;
+    }
+
+    public long getBytesSpilled() {
+        return bytesSpilled;
+    }
+
+    public RawComparator<K> getComparator() {
+        return comparator;
+    }
+
+    @Override
+    public void close() throws IOException {
+        keySerializer.close();
+        valSerializer.close();
+    }
+
+    /**
+     * kvbuffer剩余空间不足时由{@link ArenaOutputStream}抛出
+     */
+    private static class ArenaFullException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ArenaFullException() {
+            super("sort buffer is full");
+        }
+    }
+
+    /**
+     * 序列化器的输出，直接写入kvbuffer
+     */
+    private class ArenaOutputStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            if (bufindex == kvbuffer.length) {
+                throw new ArenaFullException();
+            }
+            kvbuffer[bufindex++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (len > kvbuffer.length - bufindex) {
+                throw new ArenaFullException();
+            }
+            System.arraycopy(b, off, kvbuffer, bufindex, len);
+            bufindex += len;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.wzq.hadoop.util;
+
+import com.wzq.hadoop.fs.ChecksumException;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * 把数据按固定大小的chunk（默认512字节）分段计算校验和，每个chunk一个4字节的校验和
+ * <p>
+ * This class provides an interface and utilities for processing checksums for DFS data
+ * transfers. {@link #calculateChunkedSums} and {@link #verifyChunkedSums} work on a whole buffer
+ * of chunks at once: each chunk is one {@link Checksum#update(byte[], int, int)} call, and the
+ * sums are stored as 4-byte big-endian ints, back to back.
+ * <p>
+ * CRC32C uses {@code java.util.zip.CRC32C} when running on Java 9 or later (which is
+ * hardware-accelerated), and {@link PureJavaCrc32C} otherwise; both produce the same values.
+ */
+public class DataChecksum implements Checksum {
+
+    /**
+     * 校验和的类型
+     */
+    public enum Type {
+        NULL(0, 0),
+        CRC32(1, 4),
+        CRC32C(2, 4);
+
+        public final int id;
+        public final int size;
+
+        Type(int id, int size) {
+            this.id = id;
+            this.size = size;
+        }
+
+        /**
+         * @return the type corresponding to the id.
+         */
+        public static Type valueOf(int id) {
+            for (Type type : values()) {
+                if (type.id == id) {
+                    return type;
+                }
+            }
+            throw new IllegalArgumentException("id=" + id + " out of range");
+        }
+    }
+
+    /**
+     * The size of the header: type id (1 byte) and bytesPerChecksum (4 bytes).
+     */
+    public static final int HEADER_LEN = 5;
+
+    /**
+     * Java 9+中的java.util.zip.CRC32C，没有时为null
+     */
+    private static final Constructor<? extends Checksum> JAVA_CRC32C = findJavaCrc32C();
+
+    private static Constructor<? extends Checksum> findJavaCrc32C() {
+        try {
+            return Class.forName("java.util.zip.CRC32C").asSubclass(Checksum.class).getConstructor();
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return a new CRC32C checksum, using the JDK implementation when there is one
+     */
+    public static Checksum newCrc32C() {
+        if (JAVA_CRC32C != null) {
+            try {
+                return JAVA_CRC32C.newInstance();
+            } catch (ReflectiveOperationException e) {
+                // fall through to the pure Java implementation
+            }
+        }
+        return new PureJavaCrc32C();
+    }
+
+    /**
+     * Create a DataChecksum of the given type and chunk size.
+     */
+    public static DataChecksum newDataChecksum(Type type, int bytesPerChecksum) {
+        if (bytesPerChecksum <= 0) {
+            throw new IllegalArgumentException("bytesPerChecksum must be positive: " + bytesPerChecksum);
+        }
+        switch (type) {
+            case NULL:
+                return new DataChecksum(type, null, bytesPerChecksum);
+            case CRC32:
+                return new DataChecksum(type, new CRC32(), bytesPerChecksum);
+            case CRC32C:
+                return new DataChecksum(type, newCrc32C(), bytesPerChecksum);
+            default:
+                throw new IllegalArgumentException("Unknown checksum type " + type);
+        }
+    }
+
+    /**
+     * 读取{@link #writeHeader(DataOutput)}写出的header
+     */
+    public static DataChecksum newDataChecksum(DataInput in) throws IOException {
+        int id = in.readByte();
+        int bytesPerChecksum = in.readInt();
+        try {
+            return newDataChecksum(Type.valueOf(id), bytesPerChecksum);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Could not create DataChecksum of type " + id
+                    + " with bytesPerChecksum " + bytesPerChecksum, e);
+        }
+    }
+
+    private final Type type;
+    private final Checksum summer;
+    private final int bytesPerChecksum;
+
+    private DataChecksum(Type type, Checksum summer, int bytesPerChecksum) {
+        this.type = type;
+        this.summer = summer;
+        this.bytesPerChecksum = bytesPerChecksum;
+    }
+
+    /**
+     * Writes the checksum header to the output stream.
+     */
+    public void writeHeader(DataOutput out) throws IOException {
+        out.writeByte(type.id);
+        out.writeInt(bytesPerChecksum);
+    }
+
+    public Type getChecksumType() {
+        return type;
+    }
+
+    public int getChecksumSize() {
+        return type.size;
+    }
+
+    public int getBytesPerChecksum() {
+        return bytesPerChecksum;
+    }
+
+    /**
+     * @return the number of bytes of checksum for {@code dataLength} bytes of data
+     */
+    public int getChecksumSize(int dataLength) {
+        return ((dataLength - 1) / bytesPerChecksum + 1) * type.size;
+    }
+
+    /**
+     * 为{@code data[off, off + len)}中的每个chunk计算校验和，写到sums中；最后一个chunk可以不满
+     * <p>
+     * Calculate checksums for the given data, one per chunk of {@link #getBytesPerChecksum()} bytes.
+     *
+     * @param sums    destination of the checksums, must have room for
+     *                {@link #getChecksumSize(int) getChecksumSize(len)} bytes
+     * @param sumsOff offset in sums of the first checksum
+     */
+    public void calculateChunkedSums(byte[] data, int off, int len, byte[] sums, int sumsOff) {
+        if (type.size == 0) {
+            return;
+        }
+        while (len > 0) {
+            int n = Math.min(len, bytesPerChecksum);
+            summer.reset();
+            summer.update(data, off, n);
+            writeInt(sums, sumsOff, (int) summer.getValue());
+            off += n;
+            len -= n;
+            sumsOff += type.size;
+        }
+    }
+
+    /**
+     * 校验{@code data[off, off + len)}中的每个chunk
+     * <p>
+     * Verify that the given checksums match the given data.
+     *
+     * @param fileName the name of the file, for the exception message
+     * @param basePos  the position of {@code data[off]} in the file, for the exception message
+     * @throws ChecksumException if a chunk doesn't match its checksum; its position is the start of
+     *                           the first corrupt chunk
+     */
+    public void verifyChunkedSums(byte[] data, int off, int len, byte[] sums, int sumsOff,
+                                  String fileName, long basePos) throws ChecksumException {
+        if (type.size == 0) {
+            return;
+        }
+        int start = off;
+        while (len > 0) {
+            int n = Math.min(len, bytesPerChecksum);
+            summer.reset();
+            summer.update(data, off, n);
+            int expected = readInt(sums, sumsOff);
+            int calculated = (int) summer.getValue();
+            if (expected != calculated) {
+                long errPos = basePos + (off - start);
+                throw new ChecksumException("Checksum error: " + fileName + " at " + errPos
+                        + " exp: " + expected + " got: " + calculated, errPos);
+            }
+            off += n;
+            len -= n;
+            sumsOff += type.size;
+        }
+    }
+
+    private static void writeInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return ((b[off] & 0xff) << 24) | ((b[off + 1] & 0xff) << 16)
+                | ((b[off + 2] & 0xff) << 8) | (b[off + 3] & 0xff);
+    }
+
+    // Checksum Interface. Just a wrapper around member summer.
+
+    @Override
+    public void update(int b) {
+        if (summer != null) {
+            summer.update(b);
+        }
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        if (summer != null) {
+            summer.update(b, off, len);
+        }
+    }
+
+    @Override
+    public long getValue() {
+        return summer == null ? 0 : summer.getValue();
+    }
+
+    @Override
+    public void reset() {
+        if (summer != null) {
+            summer.reset();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "DataChecksum(type=" + type + ", chunkSize=" + bytesPerChecksum + ")";
+    }
+}
@@ -0,0 +1,20 @@
+package com.wzq.hadoop.util;
+
+/**
+ * 可以按下标排序的数据集合，排序器只通过compare与swap访问数据
+ * <p>
+ * Interface for collections capable of being sorted by {@link IndexedSorter} algorithms.
+ */
+public interface IndexedSortable {
+
+    /**
+     * Compare items at the given addresses consistent with the semantics of
+     * {@link java.util.Comparator#compare(Object, Object)}.
+     */
+    int compare(int i, int j);
+
+    /**
+     * Swap items at the given addresses.
+     */
+    void swap(int i, int j);
+}
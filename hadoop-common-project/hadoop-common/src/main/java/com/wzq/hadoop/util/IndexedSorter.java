@@ -0,0 +1,22 @@
+package com.wzq.hadoop.util;
+
+/**
+ * 对{@link IndexedSortable}排序的算法
+ * <p>
+ * Interface for sort algorithms accepting {@link IndexedSortable} items.
+ * <p>
+ * A sort algorithm implementing this interface may only {@link IndexedSortable#compare} and
+ * {@link IndexedSortable#swap} items for a range of indices to effect a sort across that range.
+ */
+public interface IndexedSorter {
+
+    /**
+     * Sort the items accessed through the given IndexedSortable over the given range of
+     * logical indices. From the perspective of the sort algorithm, each index between l
+     * (inclusive) and r (exclusive) is an addressable entry.
+     *
+     * @see IndexedSortable#compare
+     * @see IndexedSortable#swap
+     */
+    void sort(IndexedSortable s, int l, int r);
+}
@@ -0,0 +1,113 @@
+package com.wzq.hadoop.util;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC32C（Castagnoli多项式）的纯Java实现，Java 8中没有{@code java.util.zip.CRC32C}
+ * <p>
+ * A pure-java implementation of the CRC32 checksum that uses the CRC32-C polynomial, the same
+ * polynomial used by iSCSI and implemented on many Intel chipsets supporting SSE4.2. It uses the
+ * "slicing-by-8" algorithm: eight lookup tables let the inner loop consume 8 bytes per iteration,
+ * so one {@link #update(byte[], int, int)} call over a whole chunk is several times faster than
+ * updating byte by byte.
+ * <p>
+ * This class is not thread-safe.
+ */
+public class PureJavaCrc32C implements Checksum {
+
+    /**
+     * 反转后的Castagnoli多项式
+     */
+    private static final int CRC32C_POLY = 0x82F63B78;
+
+    /**
+     * 8个256项的表，第k个表从T[k * 256]开始；T8_0是普通的逐字节查找表，
+     * T8_k[i]是字节i后面再跟k个0字节的CRC
+     */
+    private static final int[] T = new int[8 * 256];
+
+    private static final int T8_0_START = 0 * 256;
+    private static final int T8_1_START = 1 * 256;
+    private static final int T8_2_START = 2 * 256;
+    private static final int T8_3_START = 3 * 256;
+    private static final int T8_4_START = 4 * 256;
+    private static final int T8_5_START = 5 * 256;
+    private static final int T8_6_START = 6 * 256;
+    private static final int T8_7_START = 7 * 256;
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = (crc >>> 1) ^ ((crc & 1) != 0 ? CRC32C_POLY : 0);
+            }
+            T[i] = crc;
+        }
+        for (int k = 1; k < 8; k++) {
+            for (int i = 0; i < 256; i++) {
+                int prev = T[(k - 1) * 256 + i];
+                T[k * 256 + i] = (prev >>> 8) ^ T[prev & 0xff];
+            }
+        }
+    }
+
+    /**
+     * the current CRC value, bit-flipped
+     */
+    private int crc;
+
+    /**
+     * Create a new PureJavaCrc32C object.
+     */
+    public PureJavaCrc32C() {
+        reset();
+    }
+
+    @Override
+    public long getValue() {
+        long ret = crc;
+        return (~ret) & 0xffffffffL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xffffffff;
+    }
+
+    @Override
+    public void update(byte[] b, int off, int len) {
+        int localCrc = crc;
+
+        while (len > 7) {
+            final int c0 = (b[off] ^ localCrc) & 0xff;
+            final int c1 = (b[off + 1] ^ (localCrc >>>= 8)) & 0xff;
+            final int c2 = (b[off + 2] ^ (localCrc >>>= 8)) & 0xff;
+            final int c3 = (b[off + 3] ^ (localCrc >>>= 8)) & 0xff;
+            localCrc = (T[T8_7_START + c0] ^ T[T8_6_START + c1])
+                    ^ (T[T8_5_START + c2] ^ T[T8_4_START + c3]);
+
+            final int c4 = b[off + 4] & 0xff;
+            final int c5 = b[off + 5] & 0xff;
+            final int c6 = b[off + 6] & 0xff;
+            final int c7 = b[off + 7] & 0xff;
+            localCrc ^= (T[T8_3_START + c4] ^ T[T8_2_START + c5])
+                    ^ (T[T8_1_START + c6] ^ T[T8_0_START + c7]);
+
+            off += 8;
+            len -= 8;
+        }
+
+        // 剩下不到8个字节，逐字节处理
+        while (len-- > 0) {
+            localCrc = (localCrc >>> 8) ^ T[T8_0_START + ((localCrc ^ b[off++]) & 0xff)];
+        }
+
+        // Publish crc out to object
+        crc = localCrc;
+    }
+
+    @Override
+    public final void update(int b) {
+        crc = (crc >>> 8) ^ T[T8_0_START + ((crc ^ b) & 0xff)];
+    }
+}
@@ -0,0 +1,110 @@
+package com.wzq.hadoop.util;
+
+/**
+ * 快速排序，递归深度超过2*log(n)时改用{@link HeapSort}，短区间使用插入排序
+ * <p>
+ * An implementation of the core algorithm of QuickSort.
+ */
+public final class QuickSort implements IndexedSorter {
+
+    private static final IndexedSorter alt = new HeapSort();
+
+    public QuickSort() {
+    }
+
+    private static void fix(IndexedSortable s, int p, int r) {
+        if (s.compare(p, r) > 0) {
+            s.swap(p, r);
+        }
+    }
+
+    /**
+     * Deepest recursion before giving up and doing a heapsort.
+     * Returns 2 * ceil(log(n)).
+     */
+    protected static int getMaxDepth(int x) {
+        if (x <= 0) {
+            throw new IllegalArgumentException("Undefined for " + x);
+        }
+        return (32 - Integer.numberOfLeadingZeros(x - 1)) << 2;
+    }
+
+    /**
+     * Sort the given range of items using quick sort.
+     * If the recursion depth falls below {@link #getMaxDepth},
+     * then switch to {@link HeapSort}.
+     */
+    @Override
+    public void sort(final IndexedSortable s, int p, int r) {
+        if (r - p < 2) {
+            return;
+        }
+        sortInternal(s, p, r, getMaxDepth(r - p));
+    }
+
+    private static void sortInternal(final IndexedSortable s, int p, int r, int depth) {
+        while (true) {
+            if (r - p < 13) {
+                // 插入排序
+                for (int i = p; i < r; ++i) {
+                    for (int j = i; j > p && s.compare(j - 1, j) > 0; --j) {
+                        s.swap(j, j - 1);
+                    }
+                }
+                return;
+            }
+            if (--depth < 0) {
+                // give up
+                alt.sort(s, p, r);
+                return;
+            }
+
+            // select, move pivot into first position
+            fix(s, (p + r) >>> 1, p);
+            fix(s, (p + r) >>> 1, r - 1);
+            fix(s, p, r - 1);
+
+            // Divide
+            int i = p;
+            int j = r;
+            int ll = p;
+            int rr = r;
+            int cr;
+            while (true) {
+                while (++i < j) {
+                    if ((cr = s.compare(i, p)) > 0) break;
+                    if (0 == cr && ++ll != i) {
+                        s.swap(ll, i);
+                    }
+                }
+                while (--j > i) {
+                    if ((cr = s.compare(p, j)) > 0) break;
+                    if (0 == cr && --rr != j) {
+                        s.swap(rr, j);
+                    }
+                }
+                if (i < j) s.swap(i, j);
+                else break;
+            }
+            j = i;
+            // swap pivot- and all eq values- into position
+            while (ll >= p) {
+                s.swap(ll--, --i);
+            }
+            while (rr < r) {
+                s.swap(rr++, j++);
+            }
+
+            // Conquer
+            // Recurse on smaller interval first to keep stack shallow
+            assert i != j;
+            if (i - p < r - j) {
+                sortInternal(s, p, i, depth);
+                p = j;
+            } else {
+                sortInternal(s, j, r, depth);
+                r = i;
+            }
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.wzq.hadoop.util.bloom;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 布隆过滤器：位数组放在long[]里，每个key置{@code nbHash}位
+ * <p>
+ * Implements a <i>Bloom filter</i>, as defined by Bloom in 1970.
+ * <p>
+ * A Bloom filter is a data structure that offers a compact probabilistic way to represent a set of
+ * keys. False positives are possible, false negatives are not, which makes it a cheap prefilter for
+ * point lookups and joins where most probes miss.
+ */
+public class BloomFilter extends Filter {
+
+    private long[] bits;
+
+    /**
+     * Default constructor - use with readFields
+     */
+    public BloomFilter() {
+        super();
+    }
+
+    /**
+     * Constructor
+     *
+     * @param vectorSize The vector size of <i>this</i> filter.
+     * @param nbHash     The number of hash function to consider.
+     */
+    public BloomFilter(int vectorSize, int nbHash) {
+        super(vectorSize, nbHash);
+        this.bits = new long[words(vectorSize)];
+    }
+
+    /**
+     * 按期望的元素个数与误判率创建
+     */
+    public static BloomFilter create(long expectedEntries, double falsePositiveRate) {
+        int vectorSize = optimalVectorSize(expectedEntries, falsePositiveRate);
+        return new BloomFilter(vectorSize, optimalNbHash(expectedEntries, vectorSize));
+    }
+
+    private static int words(int vectorSize) {
+        return (vectorSize + 63) >>> 6;
+    }
+
+    @Override
+    public void add(byte[] key, int offset, int length) {
+        long hash = hash(key, offset, length);
+        for (int i = 0; i < nbHash; i++) {
+            setBit(position(hash, i));
+        }
+    }
+
+    void setBit(int pos) {
+        bits[pos >>> 6] |= 1L << pos;
+    }
+
+    @Override
+    public boolean membershipTest(byte[] key, int offset, int length) {
+        long hash = hash(key, offset, length);
+        for (int i = 0; i < nbHash; i++) {
+            int pos = position(hash, i);
+            if ((bits[pos >>> 6] & (1L << pos)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void or(Filter filter) {
+        checkCompatible(filter);
+        long[] other = ((BloomFilter) filter).bits;
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] |= other[i];
+        }
+    }
+
+    /**
+     * 置位的个数，可以用来估计误判率
+     */
+    public int cardinality() {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        super.write(out);
+        writeLongs(out, bits);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        super.readFields(in);
+        bits = new long[words(vectorSize)];
+        readLongs(in, bits);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof BloomFilter)) {
+            return false;
+        }
+        BloomFilter other = (BloomFilter) o;
+        return vectorSize == other.vectorSize && nbHash == other.nbHash && Arrays.equals(bits, other.bits);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(bits) * 31 + vectorSize * 7 + nbHash;
+    }
+}
@@ -0,0 +1,188 @@
+package com.wzq.hadoop.util.bloom;
+
+import com.wzq.hadoop.io.DataOutputBuffer;
+import com.wzq.hadoop.io.WritableComparable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 计数布隆过滤器：每个位置是一个4位计数器，一个long放16个，因此支持删除
+ * <p>
+ * Implements a <i>counting Bloom filter</i>, as defined by Fan et al. in a ToN 2000 paper.
+ * <p>
+ * A counter that reaches 15 sticks there: it is never decremented again, because the true count is
+ * no longer known.
+ */
+public class CountingBloomFilter extends Filter {
+
+    private static final long BUCKET_MAX_VALUE = 15;
+
+    /**
+     * Storage for the counting buckets
+     */
+    private long[] buckets;
+
+    /**
+     * Default constructor - use with readFields
+     */
+    public CountingBloomFilter() {
+        super();
+    }
+
+    /**
+     * Constructor
+     *
+     * @param vectorSize The vector size of <i>this</i> filter.
+     * @param nbHash     The number of hash function to consider.
+     */
+    public CountingBloomFilter(int vectorSize, int nbHash) {
+        super(vectorSize, nbHash);
+        this.buckets = new long[buckets2words(vectorSize)];
+    }
+
+    /**
+     * returns the number of 64 bit words it would take to hold vectorSize buckets
+     */
+    private static int buckets2words(int vectorSize) {
+        return ((vectorSize - 1) >>> 4) + 1;
+    }
+
+    private long get(int pos) {
+        return (buckets[pos >>> 4] >>> ((pos & 0xf) << 2)) & 0xf;
+    }
+
+    private void set(int pos, long value) {
+        int word = pos >>> 4;
+        int shift = (pos & 0xf) << 2;
+        buckets[word] = (buckets[word] & ~(0xfL << shift)) | (value << shift);
+    }
+
+    @Override
+    public void add(byte[] key, int offset, int length) {
+        long hash = hash(key, offset, length);
+        for (int i = 0; i < nbHash; i++) {
+            int pos = position(hash, i);
+            long value = get(pos);
+            if (value < BUCKET_MAX_VALUE) {
+                set(pos, value + 1);
+            }
+        }
+    }
+
+    /**
+     * 删除一个key，调用者要保证这个key之前加入过，否则会产生漏判
+     * <p>
+     * Removes a specified key from <i>this</i> counting Bloom filter.
+     */
+    public void delete(WritableComparable key) {
+        DataOutputBuffer buffer = serialize(key);
+        delete(buffer.getData(), 0, buffer.getLength());
+    }
+
+    /**
+     * Removes the serialized bytes of a key from <i>this</i> filter.
+     */
+    public void delete(byte[] key, int offset, int length) {
+        if (!membershipTest(key, offset, length)) {
+            throw new IllegalArgumentException("Key is not a member");
+        }
+        long hash = hash(key, offset, length);
+        for (int i = 0; i < nbHash; i++) {
+            int pos = position(hash, i);
+            long value = get(pos);
+            if (value < BUCKET_MAX_VALUE) {
+                set(pos, value - 1);
+            }
+        }
+    }
+
+    @Override
+    public boolean membershipTest(byte[] key, int offset, int length) {
+        long hash = hash(key, offset, length);
+        for (int i = 0; i < nbHash; i++) {
+            if (get(position(hash, i)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 估计key被加入的次数，即它的{@code nbHash}个计数器中的最小值
+     * <p>
+     * This method calculates an approximate count of the key, i.e. how many
+     * times the key was added to the filter.
+     */
+    public int approximateCount(WritableComparable key) {
+        DataOutputBuffer buffer = serialize(key);
+        return approximateCount(buffer.getData(), 0, buffer.getLength());
+    }
+
+    /**
+     * Calculates an approximate count of the serialized bytes of a key.
+     */
+    public int approximateCount(byte[] key, int offset, int length) {
+        long hash = hash(key, offset, length);
+        long res = Long.MAX_VALUE;
+        for (int i = 0; i < nbHash; i++) {
+            res = Math.min(res, get(position(hash, i)));
+        }
+        return (int) res;
+    }
+
+    /**
+     * 合并时对应计数器相加（到15为止），结果与把两边的key加入同一个过滤器相同
+     */
+    @Override
+    public void or(Filter filter) {
+        checkCompatible(filter);
+        CountingBloomFilter other = (CountingBloomFilter) filter;
+        for (int pos = 0; pos < vectorSize; pos++) {
+            long sum = get(pos) + other.get(pos);
+            set(pos, Math.min(sum, BUCKET_MAX_VALUE));
+        }
+    }
+
+    /**
+     * 转成只有位信息的{@link BloomFilter}
+     */
+    public BloomFilter toBloomFilter() {
+        BloomFilter filter = new BloomFilter(vectorSize, nbHash);
+        for (int pos = 0; pos < vectorSize; pos++) {
+            if (get(pos) > 0) {
+                filter.setBit(pos);
+            }
+        }
+        return filter;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        super.write(out);
+        writeLongs(out, buckets);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        super.readFields(in);
+        buckets = new long[buckets2words(vectorSize)];
+        readLongs(in, buckets);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof CountingBloomFilter)) {
+            return false;
+        }
+        CountingBloomFilter other = (CountingBloomFilter) o;
+        return vectorSize == other.vectorSize && nbHash == other.nbHash && Arrays.equals(buckets, other.buckets);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(buckets) * 31 + vectorSize * 7 + nbHash;
+    }
+}
@@ -0,0 +1,209 @@
+package com.wzq.hadoop.util.bloom;
+
+import com.wzq.hadoop.io.DataOutputBuffer;
+import com.wzq.hadoop.io.Writable;
+import com.wzq.hadoop.io.WritableComparable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 过滤器的抽象：判断一个key是否<b>可能</b>在集合中
+ * <p>
+ * key是{@link WritableComparable}序列化后的字节（通过{@link DataOutputBuffer}），
+ * 所以同一个key在写入端和查询端得到的哈希值相同，不依赖对象的hashCode。
+ * 每个key只计算一次64位哈希（{@link HashFunction}），再用double hashing得到{@code nbHash}个位置
+ * <p>
+ * Defines the general behavior of a filter. A filter built in one task can be merged with filters
+ * of the same type and shape built in parallel, see {@link #or(Filter)}.
+ * <p>
+ * Filters are not thread-safe: they reuse a serialization buffer.
+ */
+public abstract class Filter implements Writable {
+
+    /**
+     * The vector size of <i>this</i> filter.
+     */
+    protected int vectorSize;
+
+    /**
+     * The number of hash function to consider.
+     */
+    protected int nbHash;
+
+    private final DataOutputBuffer keyBuffer = new DataOutputBuffer();
+
+    protected Filter() {
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param vectorSize The vector size of <i>this</i> filter.
+     * @param nbHash     The number of hash functions to consider.
+     */
+    protected Filter(int vectorSize, int nbHash) {
+        if (vectorSize <= 0) {
+            throw new IllegalArgumentException("vectorSize must be positive: " + vectorSize);
+        }
+        if (nbHash <= 0) {
+            throw new IllegalArgumentException("nbHash must be positive: " + nbHash);
+        }
+        this.vectorSize = vectorSize;
+        this.nbHash = nbHash;
+    }
+
+    /**
+     * 对于n个元素和期望的误判率p，最优的位数组大小 m = -n * ln(p) / (ln 2)^2
+     */
+    public static int optimalVectorSize(long expectedEntries, double falsePositiveRate) {
+        if (expectedEntries <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("expectedEntries=" + expectedEntries
+                    + ", falsePositiveRate=" + falsePositiveRate);
+        }
+        double m = -expectedEntries * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2));
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(64, Math.ceil(m)));
+    }
+
+    /**
+     * 最优的哈希函数个数 k = m / n * ln 2
+     */
+    public static int optimalNbHash(long expectedEntries, int vectorSize) {
+        return Math.max(1, (int) Math.round((double) vectorSize / expectedEntries * Math.log(2)));
+    }
+
+    /**
+     * Adds a key to <i>this</i> filter.
+     */
+    public void add(WritableComparable key) {
+        DataOutputBuffer buffer = serialize(key);
+        add(buffer.getData(), 0, buffer.getLength());
+    }
+
+    /**
+     * Adds the serialized bytes of a key to <i>this</i> filter.
+     */
+    public abstract void add(byte[] key, int offset, int length);
+
+    /**
+     * Determines whether a specified key belongs to <i>this</i> filter.
+     *
+     * @return false if the key is definitely absent; true if it may be present
+     */
+    public boolean membershipTest(WritableComparable key) {
+        DataOutputBuffer buffer = serialize(key);
+        return membershipTest(buffer.getData(), 0, buffer.getLength());
+    }
+
+    /**
+     * Determines whether the serialized bytes of a key belong to <i>this</i> filter.
+     */
+    public abstract boolean membershipTest(byte[] key, int offset, int length);
+
+    /**
+     * 合并另一个过滤器，两者必须类型相同、大小与哈希函数个数相同
+     * <p>
+     * Peforms a logical OR between <i>this</i> filter and a specified filter.
+     * <p>
+     * <b>Invariant</b>: The result is assigned to <i>this</i> filter.
+     */
+    public abstract void or(Filter filter);
+
+    /**
+     * 检查另一个过滤器能否与当前过滤器合并
+     */
+    protected void checkCompatible(Filter filter) {
+        if (filter == null || filter.getClass() != getClass()
+                || filter.vectorSize != vectorSize || filter.nbHash != nbHash) {
+            throw new IllegalArgumentException("filters cannot be merged: " + this + " and " + filter);
+        }
+    }
+
+    /**
+     * 把key序列化到复用的buffer中
+     */
+    protected DataOutputBuffer serialize(WritableComparable key) {
+        if (key == null) {
+            throw new NullPointerException("key cannot be null");
+        }
+        keyBuffer.reset();
+        try {
+            key.write(keyBuffer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return keyBuffer;
+    }
+
+    /**
+     * 计算key的64位哈希
+     */
+    protected static long hash(byte[] key, int offset, int length) {
+        return HashFunction.hash64(key, offset, length, 0);
+    }
+
+    /**
+     * 由64位哈希得到第i个位置：低32位加上i倍的高32位
+     *
+     * @param hash the 64-bit hash of the key
+     * @param i    the hash function index, {@code 0 <= i < nbHash}
+     * @return a position in {@code [0, vectorSize)}
+     */
+    protected final int position(long hash, int i) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        int combined = h1 + (i + 1) * h2;
+        if (combined < 0) {
+            combined = ~combined;
+        }
+        return combined % vectorSize;
+    }
+
+    public int getVectorSize() {
+        return vectorSize;
+    }
+
+    public int getNbHash() {
+        return nbHash;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(vectorSize);
+        out.writeInt(nbHash);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        vectorSize = in.readInt();
+        nbHash = in.readInt();
+        if (vectorSize <= 0 || nbHash <= 0) {
+            throw new IOException("Invalid filter: vectorSize=" + vectorSize + ", nbHash=" + nbHash);
+        }
+    }
+
+    /**
+     * 把long数组按8字节一次整块写出
+     */
+    protected static void writeLongs(DataOutput out, long[] longs) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(longs.length * 8);
+        bytes.asLongBuffer().put(longs);
+        out.write(bytes.array());
+    }
+
+    /**
+     * 整块读入long数组
+     */
+    protected static void readLongs(DataInput in, long[] longs) throws IOException {
+        byte[] bytes = new byte[longs.length * 8];
+        in.readFully(bytes);
+        ByteBuffer.wrap(bytes).asLongBuffer().get(longs);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(vectorSize=" + vectorSize + ", nbHash=" + nbHash + ")";
+    }
+}
@@ -0,0 +1,69 @@
+package com.wzq.hadoop.util.bloom;
+
+/**
+ * 布隆过滤器使用的64位哈希函数
+ * <p>
+ * MurmurHash64A: consumes the input 8 bytes per round (little-endian) and mixes the full 64-bit
+ * state, which is both faster and better distributed than the 31-multiplier
+ * {@link com.wzq.hadoop.io.WritableComparator#hashBytes(byte[], int)}. A filter derives its
+ * {@code nbHash} bit positions from one 64-bit hash by double hashing (Kirsch and Mitzenmacher),
+ * so every key is hashed exactly once.
+ */
+public final class HashFunction {
+
+    private static final long M = 0xc6a4a7935bd1e995L;
+    private static final int R = 47;
+
+    private HashFunction() {
+    }
+
+    /**
+     * Hash {@code length} bytes of {@code data} starting at {@code offset}.
+     */
+    public static long hash64(byte[] data, int offset, int length, long seed) {
+        long h = seed ^ (length * M);
+
+        int end = offset + (length & ~7);
+        for (int i = offset; i < end; i += 8) {
+            long k = (data[i] & 0xffL)
+                    | (data[i + 1] & 0xffL) << 8
+                    | (data[i + 2] & 0xffL) << 16
+                    | (data[i + 3] & 0xffL) << 24
+                    | (data[i + 4] & 0xffL) << 32
+                    | (data[i + 5] & 0xffL) << 40
+                    | (data[i + 6] & 0xffL) << 48
+                    | (data[i + 7] & 0xffL) << 56;
+            k *= M;
+            k ^= k >>> R;
+            k *= M;
+
+            h ^= k;
+            h *= M;
+        }
+
+        switch (length & 7) {
+            case 7:
+                h ^= (data[end + 6] & 0xffL) << 48;
+            case 6:
+                h ^= (data[end + 5] & 0xffL) << 40;
+            case 5:
+                h ^= (data[end + 4] & 0xffL) << 32;
+            case 4:
+                h ^= (data[end + 3] & 0xffL) << 24;
+            case 3:
+                h ^= (data[end + 2] & 0xffL) << 16;
+            case 2:
+                h ^= (data[end + 1] & 0xffL) << 8;
+            case 1:
+                h ^= data[end] & 0xffL;
+                h *= M;
+            default:
+                break;
+        }
+
+        h ^= h >>> R;
+        h *= M;
+        h ^= h >>> R;
+        return h;
+    }
+}
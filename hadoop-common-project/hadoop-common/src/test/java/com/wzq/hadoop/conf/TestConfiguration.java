@@ -1,11 +1,20 @@
 package com.wzq.hadoop.conf;
 
+import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Properties;
 
 /**
@@ -21,6 +30,9 @@ public class TestConfiguration {
 
     private static Configuration configuration;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     // 测试配置的属性
     private static String rawProp;
     private static String prop;
@@ -81,4 +93,324 @@ public class TestConfiguration {
         LOG.debug("hexDigits : [{}]", hexDigits);
     }
 
+    private static String property(String name, String value) {
+        return "<property><name>" + name + "</name><value>" + value + "</value></property>";
+    }
+
+    private static String configuration(String... body) {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\"?>\n");
+        sb.append("<configuration xmlns:xi=\"http://www.w3.org/2001/XInclude\">\n");
+        for (String line : body) {
+            sb.append(line).append('\n');
+        }
+        return sb.append("</configuration>\n").toString();
+    }
+
+    private File write(String fileName, String content) throws IOException {
+        File file = new File(folder.getRoot(), fileName);
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testResourceKinds() throws Exception {
+        File urlFile = write("url.xml", configuration(property("test.url", "u")));
+        File pathFile = write("path.xml", configuration(property("test.path", "p")));
+        byte[] stream = configuration(property("test.stream", "s"),
+                "<property><name> test.cdata </name><value><![CDATA[<a&b>]]></value></property>")
+                .getBytes(StandardCharsets.UTF_8);
+
+        Configuration conf = new Configuration(false);
+        conf.addResource(urlFile.toURI().toURL());
+        conf.addResource(pathFile.toPath());
+        conf.addResource(new ByteArrayInputStream(stream));
+
+        Assert.assertEquals("u", conf.get("test.url"));
+        Assert.assertEquals("p", conf.get("test.path"));
+        Assert.assertEquals("s", conf.get("test.stream"));
+        Assert.assertEquals("<a&b>", conf.get("test.cdata"));
+        Assert.assertEquals(4, conf.size());
+
+        // the classpath resource parses the same as before
+        Assert.assertEquals("10", configuration.get(intProp));
+        Assert.assertEquals("/tmp/hadoop-" + System.getProperty("user.name"), configuration.get(prop));
+    }
+
+    /**
+     * 输入流资源只读一次，重新加载和复制时使用第一次解析的结果，final也保持不变
+     */
+    @Test
+    public void testStreamResourceReload() throws Exception {
+        byte[] stream = configuration(property("test.stream", "s"),
+                "<property><name>test.final</name><value>1</value><final>true</final></property>")
+                .getBytes(StandardCharsets.UTF_8);
+        File later = write("later.xml", configuration(property("test.final", "2")));
+
+        Configuration conf = new Configuration(false);
+        conf.addResource(new ByteArrayInputStream(stream));
+        // 还没有加载时复制，需要记录属性来源的副本会重新加载
+        Configuration copy = new Configuration(conf, true);
+        Assert.assertEquals("s", conf.get("test.stream"));
+        Assert.assertEquals("s", copy.get("test.stream"));
+
+        conf.reloadConfiguration();
+        Assert.assertEquals("s", conf.get("test.stream"));
+
+        conf.addResource(later.toPath());
+        Assert.assertEquals("s", conf.get("test.stream"));
+        Assert.assertEquals("1", conf.get("test.final"));
+
+        copy = new Configuration(conf, true);
+        Assert.assertEquals("s", copy.get("test.stream"));
+        Assert.assertEquals("1", copy.get("test.final"));
+    }
+
+    @Test
+    public void testFinalParameter() throws Exception {
+        File first = write("first.xml", configuration(
+                "<property><name>test.final</name><value>1</value><final>true</final></property>",
+                property("test.other", "1")));
+        File second = write("second.xml", configuration(
+                property("test.final", "2"),
+                property("test.other", "2"),
+                "<property><name>test.empty</name><value></value></property>"));
+
+        Configuration conf = new Configuration(false);
+        conf.addResource(first.toPath());
+        conf.addResource(second.toPath());
+
+        Assert.assertEquals("1", conf.get("test.final"));
+        Assert.assertEquals("2", conf.get("test.other"));
+        Assert.assertNull(conf.get("test.empty"));
+    }
+
+    @Test
+    public void testXInclude() throws Exception {
+        write("included.xml", configuration(property("test.included", "i")));
+        File main = write("main.xml", configuration(
+                "<xi:include href=\"included.xml\"><xi:fallback>"
+                        + property("test.included", "fallback") + "</xi:fallback></xi:include>",
+                "<xi:include href=\"missing.xml\"><xi:fallback>"
+                        + property("test.fallback", "f") + "</xi:fallback></xi:include>",
+                "<xi:include href=\"also-missing.xml\"><xi:fallback/></xi:include>",
+                property("test.main", "m")));
+
+        Configuration conf = new Configuration(false);
+        conf.addResource(main.toPath());
+
+        Assert.assertEquals("i", conf.get("test.included"));
+        Assert.assertEquals("f", conf.get("test.fallback"));
+        Assert.assertEquals("m", conf.get("test.main"));
+        Assert.assertEquals(3, conf.size());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testXIncludeWithoutFallback() throws Exception {
+        File main = write("main.xml", configuration("<xi:include href=\"missing.xml\"/>"));
+
+        Configuration conf = new Configuration(false);
+        conf.addResource(main.toPath());
+        conf.get("test.main");
+    }
+
+    @Test
+    public void testVariableSubstitution() {
+        Configuration conf = new Configuration(false);
+        conf.set("test.base", "/data");
+        conf.set("test.dir", "${test.base}/dir");
+        conf.set("test.file", "${test.dir}/${test.name}.${test.ext}");
+        conf.set("test.name", "part");
+        conf.set("test.user", "${user.name}-${test.missing}-$-${}-${a b}");
+
+        Assert.assertEquals("/data/dir", conf.get("test.dir"));
+        Assert.assertEquals("/data/dir/part.${test.ext}", conf.get("test.file"));
+        Assert.assertEquals(System.getProperty("user.name") + "-${test.missing}-$-${}-${a b}",
+                conf.get("test.user"));
+        Assert.assertEquals("${test.base}/dir", conf.getRaw("test.dir"));
+        Assert.assertEquals("/data/default", conf.get("test.none", "${test.base}/default"));
+
+        // a change is visible to the values that refer to it
+        conf.set("test.base", "/other");
+        conf.set("test.ext", "txt");
+        Assert.assertEquals("/other/dir/part.txt", conf.get("test.file"));
+
+        // system properties win over other keys
+        System.setProperty("test.sys", "${test.name}-sys");
+        try {
+            conf.set("test.sys", "conf");
+            conf.set("test.from.sys", "${test.sys}");
+            Assert.assertEquals("part-sys", conf.get("test.from.sys"));
+        } finally {
+            System.clearProperty("test.sys");
+        }
+    }
+
+    /**
+     * 不断set新的值：模板缓存满了之后被清空，展开的结果不受影响
+     */
+    @Test
+    public void testManyDistinctValues() {
+        Configuration conf = new Configuration(false);
+        conf.set("test.base", "/data");
+        for (int i = 0; i < 5000; i++) {
+            conf.set("test.path", "${test.base}/" + i);
+            Assert.assertEquals("/data/" + i, conf.get("test.path"));
+        }
+        Configuration copy = new Configuration(conf);
+        copy.set("test.base", "/copy");
+        Assert.assertEquals("/copy/4999", copy.get("test.path"));
+        Assert.assertEquals("/data/4999", conf.get("test.path"));
+    }
+
+    /**
+     * 通过getProperties()修改已经读过的值，之后的get不会返回缓存的旧值
+     */
+    @Test
+    public void testChangeThroughProperties() {
+        Configuration conf = new Configuration(false);
+        conf.set("test.base", "/data");
+        conf.set("test.dir", "${test.base}/dir");
+        Assert.assertEquals("/data/dir", conf.get("test.dir"));
+
+        Properties props = conf.getProperties();
+        props.setProperty("test.base", "/other");
+        Assert.assertEquals("/other/dir", conf.get("test.dir"));
+
+        // 拿着同一个Properties，在读过之后再修改
+        props.setProperty("test.dir", "${test.base}/changed");
+        Assert.assertEquals("/other/changed", conf.get("test.dir"));
+        props.remove("test.base");
+        Assert.assertEquals("${test.base}/changed", conf.get("test.dir"));
+        props.putIfAbsent("test.base", "/again");
+        Assert.assertEquals("/again/changed", conf.get("test.dir"));
+
+        // 与copy共享之后再取出的properties
+        Configuration copy = new Configuration(conf);
+        Assert.assertEquals("/again/changed", copy.get("test.dir"));
+        copy.getProperties().setProperty("test.base", "/copy");
+        Assert.assertEquals("/copy/changed", copy.get("test.dir"));
+        Assert.assertEquals("/again/changed", conf.get("test.dir"));
+    }
+
+    @Test
+    public void testVariableCycle() {
+        Configuration conf = new Configuration(false);
+        conf.set("test.a", "${test.b}");
+        conf.set("test.b", "x${test.c}");
+        conf.set("test.c", "${test.a}");
+        conf.set("test.self", "${test.self}");
+
+        for (String name : new String[]{"test.a", "test.c", "test.self"}) {
+            try {
+                conf.get(name);
+                Assert.fail("expected a cycle for " + name);
+            } catch (IllegalStateException e) {
+                LOG.info("{}: {}", name, e.getMessage());
+                Assert.assertTrue(e.getMessage().contains("cycle"));
+            }
+        }
+
+        conf.set("test.c", "c");
+        Assert.assertEquals("xc", conf.get("test.a"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testVariableDepth() {
+        Configuration conf = new Configuration(false);
+        for (int i = 0; i < 30; i++) {
+            conf.set("test.depth." + i, "${test.depth." + (i + 1) + "}");
+        }
+        conf.get("test.depth.0");
+    }
+
+    @Test
+    public void testCopy() {
+        configuration.set("test.a", "a");
+        int size = configuration.size();
+
+        Configuration copy = new Configuration(configuration);
+        Assert.assertEquals(size, copy.size());
+        Assert.assertEquals("a", copy.get("test.a"));
+        Assert.assertEquals(configuration.get(prop), copy.get(prop));
+        Assert.assertEquals(configuration.getInt(intProp, 1), copy.getInt(intProp, 1));
+
+        // changes on either side stay on that side
+        copy.set("test.a", "copy");
+        copy.set("test.b", "b");
+        configuration.set("test.c", "c");
+        Assert.assertEquals("a", configuration.get("test.a"));
+        Assert.assertNull(configuration.get("test.b"));
+        Assert.assertEquals("copy", copy.get("test.a"));
+        Assert.assertNull(copy.get("test.c"));
+        Assert.assertEquals(size + 1, configuration.size());
+        Assert.assertEquals(size + 1, copy.size());
+
+        // a copy of a copy sees its source's overrides
+        Configuration copy2 = new Configuration(copy);
+        Assert.assertEquals("copy", copy2.get("test.a"));
+        Assert.assertEquals("b", copy2.get("test.b"));
+        Assert.assertEquals(size + 1, copy2.size());
+
+        // getProperties() gives the complete, modifiable properties
+        Properties props = copy2.getProperties();
+        Assert.assertEquals(size + 1, props.size());
+        props.setProperty("test.d", "d");
+        Assert.assertEquals("d", copy2.get("test.d"));
+        Assert.assertNull(copy.get("test.d"));
+
+        // clear() and reloading only affect one configuration
+        copy2.clear();
+        Assert.assertEquals(0, copy2.size());
+        Assert.assertEquals("b", copy.get("test.b"));
+        copy.reloadConfiguration();
+        Assert.assertEquals("copy", copy.get("test.a"));
+        Assert.assertEquals(configuration.get(prop), copy.get(prop));
+        Assert.assertEquals(size + 1, copy.size());
+    }
+
+    @Test
+    public void testCopyBeforeLoading() {
+        Configuration conf = new Configuration(false);
+        conf.set("test.a", "a");
+        conf.reloadConfiguration();
+
+        Configuration copy = new Configuration(conf);
+        Assert.assertEquals("a", copy.get("test.a"));
+        Assert.assertEquals(1, copy.size());
+
+        Configuration stored = new Configuration(conf, true);
+        Assert.assertEquals("a", stored.get("test.a"));
+        Assert.assertEquals(1, stored.size());
+    }
+
+    /**
+     * 从还没有加载、会加载默认资源的配置复制：other先加载一次，副本共享这次加载的结果
+     */
+    @Test
+    public void testCopyFromUnloaded() throws Exception {
+        File file = write("unloaded.xml", configuration(property("test.file", "1"),
+                "<property><name>test.final</name><value>1</value><final>true</final></property>"));
+        Configuration conf = new Configuration();
+        conf.addResource(file.toPath());
+
+        Configuration copy = new Configuration(conf);
+        Configuration copy2 = new Configuration(conf);
+
+        // 复制之后改动文件，已经共享的结果不受影响
+        write("unloaded.xml", configuration(property("test.file", "22"), property("test.final", "22")));
+        Assert.assertTrue(file.setLastModified(file.lastModified() + 2000));
+        for (Configuration c : Arrays.asList(conf, copy, copy2)) {
+            Assert.assertEquals("1", c.get("test.file"));
+            Assert.assertEquals("1", c.get("test.final"));
+            Assert.assertEquals(configuration.get(prop), c.get(prop));
+            Assert.assertEquals(conf.size(), c.size());
+        }
+        Assert.assertTrue(conf.size() > 2);
+
+        // 重新加载时才读到新的文件
+        copy.reloadConfiguration();
+        Assert.assertEquals("22", copy.get("test.file"));
+        Assert.assertEquals("1", conf.get("test.file"));
+    }
+
 }
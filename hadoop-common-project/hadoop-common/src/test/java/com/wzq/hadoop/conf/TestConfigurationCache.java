@@ -0,0 +1,160 @@
+package com.wzq.hadoop.conf;
+
+import com.wzq.hadoop.io.DataInputBuffer;
+import com.wzq.hadoop.io.DataOutputBuffer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * ConfigurationCache测试类
+ */
+public class TestConfigurationCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestConfigurationCache.class);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File cacheDir;
+
+    @Before
+    public void setUp() {
+        cacheDir = new File(folder.getRoot(), "cache");
+        System.setProperty(ConfigurationCache.CACHE_DIR_PROPERTY, cacheDir.getPath());
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(ConfigurationCache.CACHE_DIR_PROPERTY);
+    }
+
+    private static ConfigurationCache newCache(String fingerprint) {
+        Properties props = new Properties();
+        props.setProperty("test.a", "a");
+        props.setProperty("test.final", "f");
+        props.setProperty("test.unicode", "中文");
+        Set<String> finals = new HashSet<String>();
+        finals.add("test.final");
+        finals.add("test.final.unset");
+        return new ConfigurationCache(fingerprint, props, finals);
+    }
+
+    @Test
+    public void testWritable() throws Exception {
+        ConfigurationCache cache = newCache("fingerprint");
+        DataOutputBuffer out = new DataOutputBuffer();
+        cache.write(out);
+        LOG.info("{} entries in {} bytes", cache.size(), out.getLength());
+
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        ConfigurationCache read = new ConfigurationCache();
+        read.readFields(in);
+
+        Properties props = new Properties();
+        Set<String> finals = new HashSet<String>();
+        read.apply(props, finals);
+        Assert.assertEquals("fingerprint", read.getFingerprint());
+        Assert.assertEquals(4, read.size());
+        Assert.assertEquals(3, props.size());
+        Assert.assertEquals("中文", props.getProperty("test.unicode"));
+        Assert.assertEquals(2, finals.size());
+        Assert.assertTrue(finals.contains("test.final.unset"));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        ConfigurationCache.save(cacheDir, newCache("one"));
+
+        Assert.assertNull(ConfigurationCache.load(cacheDir, "two"));
+        ConfigurationCache loaded = ConfigurationCache.load(cacheDir, "one");
+        Assert.assertNotNull(loaded);
+        Assert.assertEquals(4, loaded.size());
+
+        // a truncated file is ignored
+        File file = ConfigurationCache.getCacheFile(cacheDir, "one");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() / 2);
+        }
+        Assert.assertNull(ConfigurationCache.load(cacheDir, "one"));
+    }
+
+    @Test
+    public void testConfigurationUsesCache() {
+        // resources are loaded on first access
+        Configuration parsed = new Configuration();
+        Assert.assertTrue(parsed.size() > 0);
+        Assert.assertEquals(1, cacheDir.listFiles().length);
+        Configuration cached = new Configuration();
+        cached.set("test.overlay", "o");
+
+        Assert.assertEquals(parsed.size() + 1, cached.size());
+        for (String name : parsed.getProperties().stringPropertyNames()) {
+            Assert.assertEquals(name, parsed.getRaw(name), cached.getRaw(name));
+        }
+        Assert.assertEquals(parsed.get("hadoop.tmp.dir"), cached.get("hadoop.tmp.dir"));
+        Assert.assertEquals(1, cacheDir.listFiles().length);
+
+        // 换成只有一个标记值的缓存文件，读到标记值说明确实使用了缓存
+        Properties sentinel = new Properties();
+        sentinel.setProperty("test.sentinel", "from cache");
+        String fingerprint = parsed.getDefaultResourcesFingerprint();
+        ConfigurationCache.save(cacheDir, new ConfigurationCache(fingerprint, sentinel, new HashSet<String>()));
+        Configuration planted = new Configuration();
+        Assert.assertEquals("from cache", planted.get("test.sentinel"));
+        Assert.assertEquals(1, planted.size());
+
+        // without defaults the cache is not involved
+        Assert.assertEquals(0, new Configuration(false).size());
+    }
+
+    /**
+     * 默认资源通过{@code <xi:include>}引入的文件改变时不使用缓存
+     */
+    @Test
+    public void testIncludedResourceChanges() throws Exception {
+        File classpath = folder.newFolder("classpath");
+        File included = new File(classpath, "included.xml");
+        write(included, "<configuration><property><name>test.included</name><value>1</value></property>"
+                + "</configuration>");
+        write(new File(classpath, "core-site.xml"), "<configuration xmlns:xi=\"http://www.w3.org/2001/XInclude\">"
+                + "<xi:include href=\"included.xml\"/></configuration>");
+
+        Thread thread = Thread.currentThread();
+        ClassLoader original = thread.getContextClassLoader();
+        thread.setContextClassLoader(new URLClassLoader(new URL[]{classpath.toURI().toURL()}, original));
+        try {
+            Assert.assertEquals("1", new Configuration().get("test.included"));
+            Assert.assertEquals("1", new Configuration().get("test.included"));
+
+            write(included, "<configuration><property><name>test.included</name><value>22</value></property>"
+                    + "</configuration>");
+            Assert.assertTrue(included.setLastModified(included.lastModified() + 10000));
+            Assert.assertEquals("22", new Configuration().get("test.included"));
+            Assert.assertEquals("22", new Configuration().get("test.included"));
+        } finally {
+            thread.setContextClassLoader(original);
+        }
+    }
+
+    private static void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,88 @@
+package com.wzq.hadoop.conf;
+
+import com.wzq.hadoop.io.basic.Text;
+import com.wzq.hadoop.io.Writable;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ConfigurationSnapshot测试类
+ */
+public class TestConfigurationSnapshot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestConfigurationSnapshot.class);
+
+    private Configuration conf;
+
+    @Before
+    public void create() {
+        conf = new Configuration();
+        conf.setInt("test.int", 42);
+        conf.set("test.hex", "0x7b");
+        conf.setLong("test.long", 1L << 40);
+        conf.setFloat("test.float", 0.25f);
+        conf.setBoolean("test.boolean", true);
+        conf.set("test.bad", "not-a-number");
+        conf.setClass("test.class", Text.class, Writable.class);
+    }
+
+    @Test
+    public void testSameValuesAsConfiguration() {
+        ConfigurationSnapshot snapshot = conf.snapshot();
+        LOG.info("snapshot of {} properties", snapshot.size());
+
+        Assert.assertEquals(conf.size(), snapshot.size());
+        Assert.assertEquals(conf.get("hadoop.tmp.dir"), snapshot.get("hadoop.tmp.dir"));
+        Assert.assertEquals(conf.getInt("hadoop.logfile.count", 1), snapshot.getInt("hadoop.logfile.count", 1));
+        Assert.assertEquals(42, snapshot.getInt("test.int", 0));
+        Assert.assertEquals(123, snapshot.getInt("test.hex", 0));
+        Assert.assertEquals(123L, snapshot.getLong("test.hex", 0L));
+        Assert.assertEquals(1L << 40, snapshot.getLong("test.long", 0L));
+        Assert.assertEquals(0.25f, snapshot.getFloat("test.float", 0f), 0f);
+        Assert.assertTrue(snapshot.getBoolean("test.boolean", false));
+        Assert.assertSame(Text.class, snapshot.getClass("test.class", null));
+
+        // the same value parsed as different types
+        Assert.assertEquals(42L, snapshot.getLong("test.int", 0L));
+        Assert.assertEquals(42f, snapshot.getFloat("test.int", 0f), 0f);
+    }
+
+    @Test
+    public void testDefaults() {
+        ConfigurationSnapshot snapshot = conf.snapshot();
+
+        Assert.assertNull(snapshot.get("test.missing"));
+        Assert.assertEquals("default", snapshot.get("test.missing", "default"));
+        Assert.assertEquals(7, snapshot.getInt("test.missing", 7));
+        Assert.assertSame(Writable.class, snapshot.getClass("test.missing", Writable.class));
+
+        // unparsable values give the default, every time, whatever the default is
+        Assert.assertEquals(7, snapshot.getInt("test.bad", 7));
+        Assert.assertEquals(8, snapshot.getInt("test.bad", 8));
+        Assert.assertEquals(9L, snapshot.getLong("test.bad", 9L));
+        Assert.assertFalse(snapshot.getBoolean("test.bad", false));
+        Assert.assertTrue(snapshot.getBoolean("test.bad", true));
+        Assert.assertEquals(conf.getInt("test.bad", 7), snapshot.getInt("test.bad", 7));
+    }
+
+    @Test
+    public void testFrozen() {
+        ConfigurationSnapshot snapshot = conf.snapshot();
+        conf.setInt("test.int", 43);
+        conf.set("test.added", "value");
+
+        Assert.assertEquals(42, snapshot.getInt("test.int", 0));
+        Assert.assertNull(snapshot.get("test.added"));
+        Assert.assertEquals(43, conf.snapshot().getInt("test.int", 0));
+        Assert.assertEquals("value", conf.snapshot().get("test.added"));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testClassNotFound() {
+        conf.set("test.class", "com.wzq.hadoop.NoSuchClass");
+        conf.snapshot().getClass("test.class", null);
+    }
+}
@@ -0,0 +1,189 @@
+package com.wzq.hadoop.fs;
+
+import com.wzq.hadoop.conf.Configuration;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 测试带校验和的本地文件系统：写入、顺序读、seek、定位读，以及发现损坏的数据
+ */
+public class TestChecksumFileSystem {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestChecksumFileSystem.class);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Configuration conf;
+    private LocalFileSystem fs;
+    private Path file;
+    private byte[] data;
+
+    @Before
+    public void setUp() throws IOException {
+        conf = new Configuration();
+        fs = FileSystem.getLocal(conf);
+        file = new Path(folder.getRoot().getAbsolutePath(), "data");
+        data = new byte[100000];
+        new Random(0).nextBytes(data);
+    }
+
+    private byte[] readFully(FSDataInputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buf = new byte[3333];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            bytes.write(buf, 0, n);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        byte[] expected = Arrays.copyOf(data, data.length);
+        FSDataOutputStream out = fs.create(file);
+        out.write(expected[0]);
+        out.write(expected, 1, 1000);
+        out.flush();
+        out.write(expected, 1001, 50000);
+        out.write(expected, 51001, expected.length - 51001);
+        Assert.assertEquals(expected.length, out.getPos());
+        out.close();
+
+        Assert.assertTrue(fs.getRawFileSystem().exists(ChecksumFileSystem.getChecksumFile(file)));
+        Assert.assertEquals(expected.length, fs.getLength(file));
+        try (FSDataInputStream in = fs.open(file)) {
+            Assert.assertArrayEquals(expected, readFully(in));
+        }
+
+        // 单个字节的read与seek
+        try (FSDataInputStream in = fs.open(file)) {
+            Assert.assertEquals(expected[0] & 0xff, in.read());
+            in.seek(70000);
+            Assert.assertEquals(70000, in.getPos());
+            Assert.assertEquals(expected[70000] & 0xff, in.read());
+            in.seek(5);
+            byte[] buf = new byte[1000];
+            in.readFully(buf);
+            Assert.assertArrayEquals(Arrays.copyOfRange(expected, 5, 1005), buf);
+            Assert.assertEquals(10, in.skip(10));
+            Assert.assertEquals(expected[1015] & 0xff, in.read());
+            in.seek(expected.length);
+            Assert.assertEquals(-1, in.read());
+        }
+
+        // 定位读不改变当前位置
+        try (FSDataInputStream in = fs.open(file)) {
+            in.seek(100);
+            for (int position : new int[]{0, 1, 511, 512, 513, 40000, expected.length - 10}) {
+                byte[] buf = new byte[Math.min(3000, expected.length - position)];
+                in.readFully(position, buf);
+                Assert.assertArrayEquals(Arrays.copyOfRange(expected, position, position + buf.length), buf);
+            }
+            Assert.assertEquals(-1, in.read(expected.length, new byte[10], 0, 10));
+            Assert.assertEquals(100, in.getPos());
+            Assert.assertEquals(expected[100] & 0xff, in.read());
+        }
+
+        Assert.assertTrue(fs.delete(file, false));
+        Assert.assertFalse(fs.getRawFileSystem().exists(ChecksumFileSystem.getChecksumFile(file)));
+    }
+
+    @Test
+    public void testDataOutput() throws IOException {
+        FSDataOutputStream out = fs.create(file);
+        for (int i = 0; i < 10000; i++) {
+            out.writeInt(i);
+            out.writeUTF("record" + i);
+        }
+        out.close();
+        try (FSDataInputStream in = fs.open(file)) {
+            for (int i = 0; i < 10000; i++) {
+                Assert.assertEquals(i, in.readInt());
+                Assert.assertEquals("record" + i, in.readUTF());
+            }
+            Assert.assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testCorruption() throws IOException {
+        FSDataOutputStream out = fs.create(file);
+        out.write(data);
+        out.close();
+
+        // 直接修改数据文件中的一个字节
+        RandomAccessFile raf = new RandomAccessFile(fs.pathToFile(file), "rw");
+        raf.seek(60000);
+        int b = raf.read();
+        raf.seek(60000);
+        raf.write(b ^ 0x10);
+        raf.close();
+
+        try (FSDataInputStream in = fs.open(file)) {
+            readFully(in);
+            Assert.fail("corrupt data should be detected");
+        } catch (ChecksumException e) {
+            LOG.info("expected: {}", e.getMessage());
+            Assert.assertEquals(60000 - 60000 % 512, e.getPos());
+        }
+
+        // 定位读只校验读到的chunk
+        try (FSDataInputStream in = fs.open(file)) {
+            byte[] buf = new byte[1000];
+            in.readFully(0, buf);
+            try {
+                in.readFully(59990, buf);
+                Assert.fail("corrupt data should be detected");
+            } catch (ChecksumException e) {
+                LOG.info("expected: {}", e.getMessage());
+            }
+        }
+
+        // 不校验时可以读出原始数据
+        fs.setVerifyChecksum(false);
+        try (FSDataInputStream in = fs.open(file)) {
+            Assert.assertEquals(data.length, readFully(in).length);
+        }
+    }
+
+    @Test
+    public void testWithoutChecksumFile() throws IOException {
+        // 用原始文件系统写的文件没有校验和文件，读取时不校验
+        FSDataOutputStream out = fs.getRawFileSystem().create(file);
+        out.write(data);
+        out.close();
+        try (FSDataInputStream in = fs.open(file)) {
+            Assert.assertArrayEquals(data, readFully(in));
+        }
+
+        conf.set(ChecksumFileSystem.CHECKSUM_TYPE_KEY, "NULL");
+        LocalFileSystem noChecksum = FileSystem.getLocal(conf);
+        out = noChecksum.create(file);
+        out.write(data);
+        out.close();
+        Assert.assertFalse(fs.exists(ChecksumFileSystem.getChecksumFile(file)));
+
+        conf.set(ChecksumFileSystem.CHECKSUM_TYPE_KEY, "CRC32");
+        conf.setInt(ChecksumFileSystem.BYTES_PER_CHECKSUM_KEY, 100);
+        LocalFileSystem crc32 = FileSystem.getLocal(conf);
+        out = crc32.create(file);
+        out.write(data);
+        out.close();
+        // 读取时使用校验和文件中记录的类型与chunk大小
+        try (FSDataInputStream in = fs.open(file)) {
+            Assert.assertArrayEquals(data, readFully(in));
+        }
+    }
+}
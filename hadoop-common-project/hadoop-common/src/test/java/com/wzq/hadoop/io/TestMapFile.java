@@ -0,0 +1,147 @@
+package com.wzq.hadoop.io;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.FileSystem;
+import com.wzq.hadoop.fs.Path;
+import com.wzq.hadoop.io.basic.IntWritable;
+import com.wzq.hadoop.io.basic.Text;
+import com.wzq.hadoop.io.compress.DefaultCodec;
+import com.wzq.hadoop.util.ReflectionUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * 测试MapFile的有序写入与按key查找
+ */
+public class TestMapFile {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestMapFile.class);
+
+    private static final int RECORDS = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Configuration conf;
+    private FileSystem fs;
+    private String dir;
+
+    @Before
+    public void setUp() throws IOException {
+        conf = new Configuration();
+        fs = FileSystem.getLocal(conf);
+        dir = folder.getRoot().getAbsolutePath() + "/test.map";
+    }
+
+    /**
+     * 写入0, 2, 4, ...这些偶数key
+     */
+    private void writeTest(SequenceFile.CompressionType type) throws IOException {
+        MapFile.Writer writer = new MapFile.Writer(conf, fs, dir, IntWritable.class, Text.class,
+                type, ReflectionUtils.newInstance(DefaultCodec.class, conf));
+        IntWritable key = new IntWritable();
+        Text value = new Text();
+        for (int i = 0; i < RECORDS; i++) {
+            key.set(i * 2);
+            value.set("value-" + i * 2);
+            writer.append(key, value);
+        }
+        Assert.assertEquals(RECORDS, writer.getSize());
+        writer.close();
+    }
+
+    private void readTest() throws IOException {
+        MapFile.Reader reader = new MapFile.Reader(fs, dir, conf);
+        int interval = conf.getInt(MapFile.INDEX_INTERVAL_KEY, MapFile.INDEX_INTERVAL_DEFAULT);
+        Assert.assertEquals((RECORDS + interval - 1) / interval, reader.getIndexSize());
+
+        IntWritable key = new IntWritable();
+        Text value = new Text();
+        Random random = new Random(42);
+        for (int i = 0; i < 5000; i++) {
+            int k = random.nextInt(RECORDS * 2 + 10) - 5;
+            Writable found = reader.get(key(k), value);
+            if (k >= 0 && k < RECORDS * 2 && k % 2 == 0) {
+                Assert.assertSame(value, found);
+                Assert.assertEquals("value-" + k, value.toString());
+            } else {
+                Assert.assertNull("key " + k + " should be absent", found);
+            }
+        }
+
+        // get之后可以继续顺序读
+        Assert.assertNotNull(reader.get(key(100), value));
+        Assert.assertTrue(reader.next(key, value));
+        Assert.assertEquals(102, key.get());
+
+        reader.reset();
+        int count = 0;
+        while (reader.next(key, value)) {
+            Assert.assertEquals(count * 2, key.get());
+            count++;
+        }
+        Assert.assertEquals(RECORDS, count);
+        reader.close();
+    }
+
+    private static IntWritable key(int k) {
+        return new IntWritable(k);
+    }
+
+    @Test
+    public void testGet() throws IOException {
+        writeTest(SequenceFile.CompressionType.NONE);
+        readTest();
+    }
+
+    @Test
+    public void testSmallIndexInterval() throws IOException {
+        conf.setInt(MapFile.INDEX_INTERVAL_KEY, 3);
+        writeTest(SequenceFile.CompressionType.NONE);
+        readTest();
+    }
+
+    @Test
+    public void testCompressed() throws IOException {
+        conf.setInt("io.seqfile.compress.blocksize", 4096);
+        for (SequenceFile.CompressionType type : new SequenceFile.CompressionType[]{
+                SequenceFile.CompressionType.RECORD, SequenceFile.CompressionType.BLOCK}) {
+            LOG.info("compression type {}", type);
+            fs.delete(new Path(dir), true);
+            writeTest(type);
+            readTest();
+        }
+    }
+
+    @Test
+    public void testKeyOutOfOrder() throws IOException {
+        MapFile.Writer writer = new MapFile.Writer(conf, fs, dir, IntWritable.class, Text.class);
+        writer.append(key(1), new Text("a"));
+        writer.append(key(1), new Text("b"));
+        try {
+            writer.append(key(0), new Text("c"));
+            Assert.fail("out of order key should be rejected");
+        } catch (IOException e) {
+            LOG.info("expected: {}", e.getMessage());
+        } finally {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        new MapFile.Writer(conf, fs, dir, IntWritable.class, Text.class).close();
+        MapFile.Reader reader = new MapFile.Reader(fs, dir, conf);
+        Assert.assertEquals(0, reader.getIndexSize());
+        Assert.assertNull(reader.get(key(0), new Text()));
+        reader.close();
+    }
+}
@@ -0,0 +1,319 @@
+package com.wzq.hadoop.io;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.FileSystem;
+import com.wzq.hadoop.fs.Path;
+import com.wzq.hadoop.io.basic.IntWritable;
+import com.wzq.hadoop.io.basic.Text;
+import com.wzq.hadoop.io.compress.DefaultCodec;
+import com.wzq.hadoop.util.ReflectionUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 测试SequenceFile的读写、sync、按字节范围切分读取，以及RECORD/BLOCK压缩
+ */
+public class TestSequenceFile {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestSequenceFile.class);
+
+    private static final int RECORDS = 20000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Configuration conf;
+    private FileSystem fs;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        conf = new Configuration();
+        fs = FileSystem.getLocal(conf);
+        file = new Path(folder.getRoot().getAbsolutePath(), "test.seq");
+    }
+
+    private List<Long> writeTest() throws IOException {
+        return writeTest(SequenceFile.CompressionType.NONE);
+    }
+
+    private List<Long> writeTest(SequenceFile.CompressionType type) throws IOException {
+        List<Long> positions = new ArrayList<>();
+        SequenceFile.Writer writer = SequenceFile.createWriter(fs, conf, file, IntWritable.class, Text.class,
+                type, ReflectionUtils.newInstance(DefaultCodec.class, conf));
+        IntWritable key = new IntWritable();
+        Text value = new Text();
+        for (int i = 0; i < RECORDS; i++) {
+            positions.add(writer.getLength());
+            key.set(i);
+            value.set(valueOf(i));
+            writer.append(key, value);
+        }
+        writer.close();
+        return positions;
+    }
+
+    private static String valueOf(int i) {
+        return "value-" + i + "-" + Integer.toHexString(i * 31);
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        writeTest();
+        SequenceFile.Reader reader = new SequenceFile.Reader(fs, file, conf);
+        Assert.assertEquals(IntWritable.class, reader.getKeyClass());
+        Assert.assertEquals(Text.class, reader.getValueClass());
+        IntWritable key = new IntWritable();
+        Text value = new Text();
+        int count = 0;
+        while (reader.next(key, value)) {
+            Assert.assertEquals(count, key.get());
+            Assert.assertEquals(valueOf(count), value.toString());
+            count++;
+        }
+        reader.close();
+        Assert.assertEquals(RECORDS, count);
+    }
+
+    private int readAll() throws IOException {
+        SequenceFile.Reader reader = new SequenceFile.Reader(fs, file, conf);
+        IntWritable key = new IntWritable();
+        Text value = new Text();
+        int count = 0;
+        while (reader.next(key, value)) {
+            Assert.assertEquals(count, key.get());
+            Assert.assertEquals(valueOf(count), value.toString());
+            count++;
+        }
+        reader.close();
+        return count;
+    }
+
+    @Test
+    public void testRecordCompressed() throws IOException {
+        List<Long> positions = writeTest(SequenceFile.CompressionType.RECORD);
+        Assert.assertEquals(RECORDS, readAll());
+
+        SequenceFile.Reader reader = new SequenceFile.Reader(fs, file, conf);
+        Assert.assertTrue(reader.isCompressed());
+        Assert.assertFalse(reader.isBlockCompressed());
+        Assert.assertEquals(DefaultCodec.class, reader.getCompressionCodec().getClass());
+        IntWritable key = new IntWritable();
+        Text value = new Text();
+        for (int i : new int[]{RECORDS - 1, 0, 4711}) {
+            reader.seek(positions.get(i));
+            Assert.assertTrue(reader.next(key, value));
+            Assert.assertEquals(i, key.get());
+            Assert.assertEquals(valueOf(i), value.toString());
+        }
+        reader.close();
+    }
+
+    @Test
+    public void testBlockCompressed() throws IOException {
+        writeTest();
+        long uncompressed = fs.getLength(file);
+        writeTest(SequenceFile.CompressionType.BLOCK);
+        long compressed = fs.getLength(file);
+        LOG.info("uncompressed {} bytes, block-compressed {} bytes", uncompressed, compressed);
+        Assert.assertTrue(compressed < uncompressed);
+
+        Assert.assertEquals(RECORDS, readAll());
+
+        // 只读key，跳过部分value
+        SequenceFile.Reader reader = new SequenceFile.Reader(fs, file, conf);
+        Assert.assertTrue(reader.isBlockCompressed());
+        IntWritable key = new IntWritable();
+        Text value = new Text();
+        DataOutputBuffer rawKey = new DataOutputBuffer();
+        DataOutputBuffer rawValue = new DataOutputBuffer();
+        DataInputBuffer in = new DataInputBuffer();
+        for (int i = 0; i < RECORDS; i++) {
+            if (i % 3 == 0) {
+                Assert.assertTrue(reader.next(key));
+            } else if (i % 3 == 1) {
+                Assert.assertTrue(reader.next(key, value));
+                Assert.assertEquals(valueOf(i), value.toString());
+            } else {
+                // 块中的raw key/value是解压后的字节
+                rawKey.reset();
+                rawValue.reset();
+                Assert.assertEquals(4, reader.nextRawKey(rawKey));
+                reader.nextRawValue(rawValue);
+                in.reset(rawKey.getData(), rawKey.getLength());
+                key.readFields(in);
+                in.reset(rawValue.getData(), rawValue.getLength());
+                value.readFields(in);
+                Assert.assertEquals(valueOf(i), value.toString());
+            }
+            Assert.assertEquals(i, key.get());
+        }
+        Assert.assertFalse(reader.next(key));
+        reader.close();
+    }
+
+    @Test
+    public void testSkipBlock() throws IOException {
+        conf.setInt("io.seqfile.compress.blocksize", 4096);
+        writeTest(SequenceFile.CompressionType.BLOCK);
+
+        SequenceFile.Reader reader = new SequenceFile.Reader(fs, file, conf);
+        IntWritable key = new IntWritable();
+        Text value = new Text();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(reader.next(key));
+        }
+        // 跳过第一个块中剩下的记录
+        int skipped = reader.skipBlock();
+        Assert.assertTrue(skipped > 0);
+        int expected = 10 + skipped;
+
+        // 读下一个块的第一条记录
+        Assert.assertTrue(reader.next(key, value));
+        Assert.assertTrue(reader.syncSeen());
+        Assert.assertEquals(expected, key.get());
+        Assert.assertEquals(valueOf(expected), value.toString());
+        expected++;
+
+        int blocks = 0;
+        while ((skipped = reader.skipBlock()) != -1) {
+            expected += skipped;
+            blocks++;
+        }
+        reader.close();
+        LOG.info("skipped {} blocks", blocks);
+        Assert.assertTrue(blocks > 1);
+        Assert.assertEquals(RECORDS, expected);
+    }
+
+    @Test
+    public void testBlockSplits() throws Exception {
+        conf.setInt("io.seqfile.compress.blocksize", 4096);
+        writeTest(SequenceFile.CompressionType.BLOCK);
+        testSplits(false);
+    }
+
+    @Test
+    public void testRawAndSeek() throws IOException {
+        List<Long> positions = writeTest();
+        SequenceFile.Reader reader = new SequenceFile.Reader(fs, file, conf);
+        DataOutputBuffer rawKey = new DataOutputBuffer();
+        DataOutputBuffer rawValue = new DataOutputBuffer();
+        DataInputBuffer in = new DataInputBuffer();
+        IntWritable key = new IntWritable();
+        Text value = new Text();
+        for (int i : new int[]{RECORDS - 1, 0, 4711, 123}) {
+            // Writer.getLength()返回的位置可以直接seek
+            reader.seek(positions.get(i));
+            rawKey.reset();
+            rawValue.reset();
+            Assert.assertEquals(4, reader.nextRawKey(rawKey));
+            reader.nextRawValue(rawValue);
+            in.reset(rawKey.getData(), rawKey.getLength());
+            key.readFields(in);
+            in.reset(rawValue.getData(), rawValue.getLength());
+            value.readFields(in);
+            Assert.assertEquals(i, key.get());
+            Assert.assertEquals(valueOf(i), value.toString());
+        }
+        reader.close();
+    }
+
+    @Test
+    public void testSync() throws IOException {
+        writeTest();
+        long length = fs.getLength(file);
+        SequenceFile.Reader reader = new SequenceFile.Reader(fs, file, conf);
+        IntWritable key = new IntWritable();
+        for (long position = 997; position < length; position += 997) {
+            reader.sync(position);
+            long synced = reader.getPosition();
+            Assert.assertTrue(synced >= position);
+            if (reader.next(key)) {
+                // 两个sync之间最多SYNC_INTERVAL字节加一条记录
+                Assert.assertTrue(synced - position < SequenceFile.SYNC_INTERVAL + 64);
+                Assert.assertTrue(reader.syncSeen());
+            }
+        }
+        reader.sync(length);
+        Assert.assertFalse(reader.next(key));
+        reader.close();
+    }
+
+    @Test
+    public void testSplits() throws Exception {
+        testSplits(true);
+    }
+
+    private void testSplits(boolean write) throws Exception {
+        if (write) {
+            writeTest();
+        }
+        final long length = fs.getLength(file);
+        final int splits = 7;
+        final long splitSize = length / splits + 1;
+
+        ExecutorService executor = Executors.newFixedThreadPool(splits);
+        List<Future<List<Integer>>> results = new ArrayList<>();
+        try {
+            for (int s = 0; s < splits; s++) {
+                final long start = s * splitSize;
+                final long end = Math.min(start + splitSize, length);
+                results.add(executor.submit(() -> readSplit(start, end)));
+            }
+            // 每条记录恰好被一个split读到
+            BitSet seen = new BitSet(RECORDS);
+            for (Future<List<Integer>> result : results) {
+                List<Integer> keys = result.get();
+                LOG.debug("split read {} records", keys.size());
+                for (int k : keys) {
+                    Assert.assertFalse("record " + k + " read twice", seen.get(k));
+                    seen.set(k);
+                }
+            }
+            Assert.assertEquals(RECORDS, seen.cardinality());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 读取[start, end)范围的记录：从start之后的第一个sync开始，读到end之后的第一个sync为止
+     */
+    private List<Integer> readSplit(long start, long end) throws IOException {
+        List<Integer> keys = new ArrayList<>();
+        SequenceFile.Reader reader = new SequenceFile.Reader(fs, file, conf);
+        if (start > reader.getPosition()) {
+            reader.sync(start);
+        }
+        IntWritable key = new IntWritable();
+        Text value = new Text();
+        boolean more = start < end;
+        while (more) {
+            long pos = reader.getPosition();
+            more = reader.next(key, value);
+            if (pos >= end && reader.syncSeen()) {
+                more = false;
+            }
+            if (more) {
+                Assert.assertEquals(valueOf(key.get()), value.toString());
+                keys.add(key.get());
+            }
+        }
+        reader.close();
+        return keys;
+    }
+}
@@ -0,0 +1,263 @@
+package com.wzq.hadoop.io;
+
+import com.wzq.hadoop.io.basic.*;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.*;
+
+/**
+ * 测试io.basic中注册的RawComparator: 字节比较的结果必须与compareTo()一致
+ */
+public class TestWritableComparator {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestWritableComparator.class);
+
+    private static final int ROUNDS = 1000;
+
+    private final Random random = new Random(20230520L);
+
+    @Test
+    public void testRegisteredComparators() {
+        Class[] classes = {IntWritable.class, LongWritable.class, FloatWritable.class,
+                DoubleWritable.class, BooleanWritable.class, ByteWritable.class,
+                VIntWritable.class, VLongWritable.class, BytesWritable.class, Text.class};
+        for (Class c : classes) {
+            WritableComparator comparator = WritableComparator.get(c);
+            LOG.info("[{}] => [{}]", c.getSimpleName(), comparator.getClass().getName());
+            Assert.assertNotEquals("no raw comparator registered for " + c,
+                    WritableComparator.class, comparator.getClass());
+        }
+    }
+
+    @Test
+    public void testIntWritable() throws IOException {
+        for (int i = 0; i < ROUNDS; i++) {
+            check(new IntWritable(random.nextInt()), new IntWritable(random.nextInt()));
+        }
+        check(new IntWritable(Integer.MIN_VALUE), new IntWritable(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testLongWritable() throws IOException {
+        for (int i = 0; i < ROUNDS; i++) {
+            check(new LongWritable(random.nextLong()), new LongWritable(random.nextLong()));
+        }
+        check(new LongWritable(Long.MIN_VALUE), new LongWritable(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testFloatAndDoubleWritable() throws IOException {
+        for (int i = 0; i < ROUNDS; i++) {
+            check(new FloatWritable(random.nextFloat() - 0.5f), new FloatWritable(random.nextFloat() - 0.5f));
+            check(new DoubleWritable(random.nextGaussian()), new DoubleWritable(random.nextGaussian()));
+        }
+        check(new FloatWritable(-0.0f), new FloatWritable(0.0f));
+        check(new DoubleWritable(-1e300), new DoubleWritable(1e300));
+    }
+
+    @Test
+    public void testBooleanAndByteWritable() throws IOException {
+        check(new BooleanWritable(false), new BooleanWritable(true));
+        check(new BooleanWritable(true), new BooleanWritable(true));
+        for (int i = 0; i < ROUNDS; i++) {
+            check(new ByteWritable((byte) random.nextInt()), new ByteWritable((byte) random.nextInt()));
+        }
+    }
+
+    @Test
+    public void testVIntAndVLongWritable() throws IOException {
+        for (int i = 0; i < ROUNDS; i++) {
+            // 覆盖1到9字节的各种编码长度
+            int shift = random.nextInt(32);
+            check(new VIntWritable(random.nextInt() >> shift), new VIntWritable(random.nextInt() >> shift));
+            check(new VLongWritable(random.nextLong() >> (shift * 2)),
+                    new VLongWritable(random.nextLong() >> (shift * 2)));
+        }
+        check(new VIntWritable(-112), new VIntWritable(-113));
+        check(new VLongWritable(127), new VLongWritable(128));
+    }
+
+    @Test
+    public void testBytesWritable() throws IOException {
+        for (int i = 0; i < ROUNDS; i++) {
+            byte[] a = new byte[random.nextInt(16)];
+            byte[] b = new byte[random.nextInt(16)];
+            random.nextBytes(a);
+            random.nextBytes(b);
+            check(new BytesWritable(a), new BytesWritable(b));
+            check(new BytesWritable(a), new BytesWritable(a.clone()));
+        }
+    }
+
+    @Test
+    public void testCompareBytes() {
+        FastByteComparisons.Comparer<byte[]> pureJava = FastByteComparisons.lexicographicalComparerJavaImpl();
+        LOG.info("best comparer => [{}]", FastByteComparisons.bestComparer());
+        for (int i = 0; i < ROUNDS; i++) {
+            // 相同的前缀，只在随机位置上有一个字节不同，覆盖8字节步长与尾部的逐字节比较
+            int length = random.nextInt(64);
+            byte[] b1 = new byte[length + 7];
+            random.nextBytes(b1);
+            byte[] b2 = new byte[length + 7];
+            int s1 = random.nextInt(8);
+            int s2 = random.nextInt(8);
+            System.arraycopy(b1, s1, b2, s2, length);
+            if (length > 0 && random.nextBoolean()) {
+                b2[s2 + random.nextInt(length)] = (byte) random.nextInt();
+            }
+            int l1 = length - (length > 0 ? random.nextInt(2) : 0);
+            int l2 = length;
+
+            int expected = pureJava.compareTo(b1, s1, l1, b2, s2, l2);
+            Assert.assertEquals(Integer.signum(expected),
+                    Integer.signum(WritableComparator.compareBytes(b1, s1, l1, b2, s2, l2)));
+            Assert.assertEquals(-Integer.signum(expected),
+                    Integer.signum(WritableComparator.compareBytes(b2, s2, l2, b1, s1, l1)));
+        }
+        // 无符号比较: 0x80 > 0x7f
+        byte[] high = {0, 0, 0, 0, 0, 0, 0, (byte) 0x80};
+        byte[] low = {0, 0, 0, 0, 0, 0, 0, 0x7f};
+        Assert.assertTrue(WritableComparator.compareBytes(high, 0, 8, low, 0, 8) > 0);
+    }
+
+    @Test
+    public void testComparatorInstances() throws Exception {
+        // 只比较字节的比较器被所有线程共享
+        WritableComparator shared = WritableComparator.get(IntWritable.class);
+        // 反序列化的默认比较器不可重入，每次都返回新的实例
+        WritableComparator local = WritableComparator.get(UnregisteredKey.class);
+        Assert.assertNotSame(local, WritableComparator.get(UnregisteredKey.class));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Assert.assertSame(shared, executor.submit(() -> WritableComparator.get(IntWritable.class)).get());
+            Assert.assertNotSame(local, executor.submit(() -> WritableComparator.get(UnregisteredKey.class)).get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 有状态的比较器不能每次创建新实例时抛出异常，而不是返回共享的实例
+     */
+    @Test
+    public void testStatefulComparatorWithoutNoArgConstructor() {
+        WritableComparator.define(NoArgLessKey.class, new NoArgLessComparator(0));
+        try {
+            WritableComparator.get(NoArgLessKey.class);
+            Assert.fail("a stateful comparator without a no-arg constructor should be rejected");
+        } catch (IllegalStateException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+    }
+
+    public static class NoArgLessKey extends UnregisteredKey {
+    }
+
+    static class NoArgLessComparator extends WritableComparator {
+        NoArgLessComparator(int unused) {
+            super(NoArgLessKey.class, true);
+        }
+    }
+
+    @Test
+    public void testConcurrentCompare() throws Exception {
+        final int threads = 8;
+        final int[] values = new int[ROUNDS];
+        DataOutputBuffer out = new DataOutputBuffer();
+        final int[] offsets = new int[ROUNDS + 1];
+        for (int i = 0; i < ROUNDS; i++) {
+            values[i] = random.nextInt();
+            offsets[i] = out.getLength();
+            new UnregisteredKey(values[i]).write(out);
+        }
+        offsets[ROUNDS] = out.getLength();
+        final byte[] data = out.getData();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int seed = t;
+                results.add(executor.submit(() -> {
+                    Random r = new Random(seed);
+                    int mismatches = 0;
+                    start.await();
+                    for (int n = 0; n < 20000; n++) {
+                        int i = r.nextInt(ROUNDS);
+                        int j = r.nextInt(ROUNDS);
+                        WritableComparator comparator = WritableComparator.get(UnregisteredKey.class);
+                        int raw = comparator.compare(data, offsets[i], offsets[i + 1] - offsets[i],
+                                data, offsets[j], offsets[j + 1] - offsets[j]);
+                        if (Integer.signum(raw) != Integer.signum(Integer.compare(values[i], values[j]))) {
+                            mismatches++;
+                        }
+                    }
+                    return mismatches;
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> result : results) {
+                Assert.assertEquals(0, result.get().intValue());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 没有注册RawComparator的key，WritableComparator.get()返回反序列化比较的默认比较器
+     */
+    public static class UnregisteredKey implements WritableComparable<UnregisteredKey> {
+        private int value;
+
+        public UnregisteredKey() {
+        }
+
+        public UnregisteredKey(int value) {
+            this.value = value;
+        }
+
+        public void write(DataOutput out) throws IOException {
+            out.writeInt(value);
+        }
+
+        public void readFields(DataInput in) throws IOException {
+            value = in.readInt();
+        }
+
+        public int compareTo(UnregisteredKey o) {
+            return Integer.compare(value, o.value);
+        }
+    }
+
+    /**
+     * 序列化两个key，比较raw compare与compareTo的符号
+     */
+    @SuppressWarnings("unchecked")
+    private void check(WritableComparable a, WritableComparable b) throws IOException {
+        DataOutputBuffer out = new DataOutputBuffer();
+        a.write(out);
+        int lengthA = out.getLength();
+        b.write(out);
+        int lengthB = out.getLength() - lengthA;
+
+        WritableComparator comparator = WritableComparator.get(a.getClass());
+        int raw = comparator.compare(out.getData(), 0, lengthA, out.getData(), lengthA, lengthB);
+        int reversed = comparator.compare(out.getData(), lengthA, lengthB, out.getData(), 0, lengthA);
+        int expected = a.compareTo(b);
+
+        Assert.assertEquals(a + " vs " + b, Integer.signum(expected), Integer.signum(raw));
+        Assert.assertEquals(b + " vs " + a, -Integer.signum(expected), Integer.signum(reversed));
+    }
+}
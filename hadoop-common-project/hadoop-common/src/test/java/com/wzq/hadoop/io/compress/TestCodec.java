@@ -0,0 +1,372 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.Path;
+import com.wzq.hadoop.io.compress.zlib.BuiltInZlibDeflater;
+import com.wzq.hadoop.io.compress.zlib.BuiltInZlibInflater;
+import com.wzq.hadoop.io.compress.zlib.ZlibFactory;
+import com.wzq.hadoop.util.ReflectionUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 测试DefaultCodec、GzipCodec、Lz4Codec与SnappyCodec的压缩、解压缩，以及与java.util.zip的互通
+ */
+public class TestCodec {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestCodec.class);
+
+    private Configuration conf;
+
+    @Before
+    public void setUp() {
+        conf = new Configuration();
+    }
+
+    /**
+     * 生成可以压缩的数据：随机选取一些单词
+     */
+    static byte[] generate(int length, long seed) {
+        String[] words = {"hadoop", "sequence", "file", "codec", "block", "record", "key", "value"};
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < length) {
+            sb.append(words[random.nextInt(words.length)]).append(random.nextInt(100)).append(' ');
+        }
+        return Arrays.copyOf(sb.toString().getBytes(), length);
+    }
+
+    static byte[] compress(CompressionCodec codec, byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompressionOutputStream out = codec.createOutputStream(bytes);
+        // 分多次写入
+        for (int off = 0; off < data.length; off += 1000) {
+            out.write(data, off, Math.min(1000, data.length - off));
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buf = new byte[777];
+        int n;
+        while ((n = in.read(buf, 0, buf.length)) != -1) {
+            bytes.write(buf, 0, n);
+        }
+        in.close();
+        return bytes.toByteArray();
+    }
+
+    private void codecTest(Class<? extends CompressionCodec> codecClass) throws IOException {
+        CompressionCodec codec = ReflectionUtils.newInstance(codecClass, conf);
+        for (int length : new int[]{0, 1, 100, 10000, 1 << 20}) {
+            byte[] data = generate(length, length);
+            byte[] compressed = compress(codec, data);
+            LOG.info("{}: {} bytes -> {} bytes", codecClass.getSimpleName(), length, compressed.length);
+            byte[] decompressed = readFully(codec.createInputStream(new ByteArrayInputStream(compressed)));
+            Assert.assertArrayEquals(data, decompressed);
+            if (length >= 10000) {
+                Assert.assertTrue(compressed.length < length / 2);
+            }
+        }
+    }
+
+    @Test
+    public void testDefaultCodec() throws IOException {
+        codecTest(DefaultCodec.class);
+    }
+
+    @Test
+    public void testGzipCodec() throws IOException {
+        codecTest(GzipCodec.class);
+    }
+
+    @Test
+    public void testLz4Codec() throws IOException {
+        codecTest(Lz4Codec.class);
+    }
+
+    @Test
+    public void testSnappyCodec() throws IOException {
+        codecTest(SnappyCodec.class);
+    }
+
+    /**
+     * 比一个块大的write、跨块的write，以及很小的块
+     */
+    @Test
+    public void testLz4Blocks() throws IOException {
+        conf.setInt(Lz4Codec.LZ4_BUFFER_SIZE_KEY, 4096);
+        CompressionCodec codec = ReflectionUtils.newInstance(Lz4Codec.class, conf);
+        byte[] data = generate(100000, 5);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompressionOutputStream out = codec.createOutputStream(bytes);
+        out.write(data, 0, 3000);
+        out.write(data, 3000, 3000);
+        out.write(data, 6000, 50000);
+        out.write(data[56000]);
+        out.write(data, 56001, data.length - 56001);
+        out.close();
+        Assert.assertArrayEquals(data, readFully(codec.createInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+
+        // 截断的流
+        byte[] truncated = Arrays.copyOf(bytes.toByteArray(), bytes.size() - 10);
+        try {
+            readFully(codec.createInputStream(new ByteArrayInputStream(truncated)));
+            Assert.fail("truncated lz4 stream should be rejected");
+        } catch (IOException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+
+        // 正好写满一个块之后继续写
+        bytes.reset();
+        out = codec.createOutputStream(bytes);
+        out.write(data, 0, 4096);
+        out.write(data, 4096, 100);
+        out.write(data, 4196, 20000);
+        out.close();
+        Assert.assertArrayEquals(Arrays.copyOf(data, 24196),
+                readFully(codec.createInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+    }
+
+    /**
+     * 写入时的块比读取时的缓冲区大；池中的压缩器按新的配置调整块大小
+     */
+    @Test
+    public void testLz4BufferSizes() throws IOException {
+        byte[] data = generate(300000, 6);
+        conf.setInt(Lz4Codec.LZ4_BUFFER_SIZE_KEY, 128 * 1024);
+        byte[] compressed = compress(ReflectionUtils.newInstance(Lz4Codec.class, conf), data);
+
+        Configuration small = new Configuration();
+        small.setInt(Lz4Codec.LZ4_BUFFER_SIZE_KEY, 1024);
+        CompressionCodec codec = ReflectionUtils.newInstance(Lz4Codec.class, small);
+        Assert.assertArrayEquals(data, readFully(codec.createInputStream(new ByteArrayInputStream(compressed))));
+
+        Compressor compressor = codec.createCompressor();
+        compressor.setInput(data, 0, 100000);
+        Assert.assertFalse(compressor.needsInput());
+        compressor.reinit(conf);
+        compressor.setInput(data, 0, 100000);
+        Assert.assertTrue(compressor.needsInput());
+    }
+
+    /**
+     * 写入时的块比读取时的缓冲区大；池中的压缩器按新的配置调整块大小
+     */
+    @Test
+    public void testSnappyBufferSizes() throws IOException {
+        byte[] data = generate(300000, 6);
+        conf.setInt(SnappyCodec.SNAPPY_BUFFER_SIZE_KEY, 128 * 1024);
+        byte[] compressed = compress(ReflectionUtils.newInstance(SnappyCodec.class, conf), data);
+
+        Configuration small = new Configuration();
+        small.setInt(SnappyCodec.SNAPPY_BUFFER_SIZE_KEY, 1024);
+        CompressionCodec codec = ReflectionUtils.newInstance(SnappyCodec.class, small);
+        Assert.assertArrayEquals(data, readFully(codec.createInputStream(new ByteArrayInputStream(compressed))));
+
+        Compressor compressor = codec.createCompressor();
+        compressor.setInput(data, 0, 100000);
+        Assert.assertFalse(compressor.needsInput());
+        compressor.reinit(conf);
+        compressor.setInput(data, 0, 100000);
+        Assert.assertTrue(compressor.needsInput());
+    }
+
+    @Test
+    public void testGzipCompatibility() throws IOException {
+        CompressionCodec codec = ReflectionUtils.newInstance(GzipCodec.class, conf);
+        byte[] data = generate(100000, 1);
+
+        // 我们写的gzip可以被GZIPInputStream读取
+        byte[] compressed = compress(codec, data);
+        Assert.assertArrayEquals(data, readFully(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+
+        // GZIPOutputStream写的gzip（带文件名）可以被我们读取
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+        gzip.write(data);
+        gzip.close();
+        byte[] jdk = bytes.toByteArray();
+        Assert.assertArrayEquals(data, readFully(codec.createInputStream(new ByteArrayInputStream(jdk))));
+
+        byte[] withName = withFilename(jdk, "data.txt");
+        Assert.assertArrayEquals(data, readFully(new GZIPInputStream(new ByteArrayInputStream(withName))));
+        Assert.assertArrayEquals(data, readFully(codec.createInputStream(new ByteArrayInputStream(withName))));
+
+        // 损坏的CRC
+        byte[] corrupt = compressed.clone();
+        corrupt[corrupt.length - 8] ^= 1;
+        try {
+            readFully(codec.createInputStream(new ByteArrayInputStream(corrupt)));
+            Assert.fail("corrupt gzip stream should be rejected");
+        } catch (IOException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 在gzip header中加上FNAME字段
+     */
+    private static byte[] withFilename(byte[] gzip, String name) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(gzip, 0, 3);
+        out.write(gzip[3] | 0x08);
+        out.write(gzip, 4, 6);
+        out.write(name.getBytes(), 0, name.length());
+        out.write(0);
+        out.write(gzip, 10, gzip.length - 10);
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testConcatenatedGzip() throws IOException {
+        CompressionCodec codec = ReflectionUtils.newInstance(GzipCodec.class, conf);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (int i = 0; i < 5; i++) {
+            byte[] data = generate(1000 * i + 10, i);
+            bytes.write(compress(codec, data));
+            expected.write(data);
+        }
+        byte[] concatenated = bytes.toByteArray();
+        Assert.assertArrayEquals(expected.toByteArray(),
+                readFully(codec.createInputStream(new ByteArrayInputStream(concatenated))));
+        Assert.assertArrayEquals(expected.toByteArray(),
+                readFully(new GZIPInputStream(new ByteArrayInputStream(concatenated))));
+
+        // resetState之后写出的是下一个member
+        ByteArrayOutputStream members = new ByteArrayOutputStream();
+        CompressionOutputStream out = codec.createOutputStream(members);
+        byte[] data = generate(5000, 42);
+        out.write(data, 0, 2000);
+        out.finish();
+        out.resetState();
+        out.write(data, 2000, 3000);
+        out.close();
+        Assert.assertArrayEquals(data, readFully(codec.createInputStream(new ByteArrayInputStream(members.toByteArray()))));
+    }
+
+    @Test
+    public void testReinit() throws IOException {
+        byte[] data = generate(100000, 7);
+        BuiltInZlibDeflater compressor = new BuiltInZlibDeflater(conf);
+        int defaultLength = compress(compressor, data).length;
+
+        ZlibFactory.setCompressionLevel(conf, ZlibFactory.CompressionLevel.BEST_SPEED);
+        ZlibFactory.setCompressionStrategy(conf, ZlibFactory.CompressionStrategy.HUFFMAN_ONLY);
+        compressor.reinit(conf);
+        byte[] huffman = compress(compressor, data);
+        LOG.info("default {} bytes, huffman only {} bytes", defaultLength, huffman.length);
+        Assert.assertTrue(huffman.length > defaultLength);
+
+        DefaultCodec codec = ReflectionUtils.newInstance(DefaultCodec.class, conf);
+        Assert.assertArrayEquals(data, readFully(codec.createInputStream(new ByteArrayInputStream(huffman))));
+
+        conf.set(ZlibFactory.ZLIB_COMPRESS_LEVEL_KEY, "LEVEL_ELEVEN");
+        try {
+            compressor.reinit(conf);
+            Assert.fail("unknown compression level should be rejected");
+        } catch (IllegalArgumentException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+    }
+
+    private static byte[] compress(Compressor compressor, byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new CompressorStream(bytes, compressor, 4096);
+        out.write(data);
+        out.close();
+        compressor.reset();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testDictionary() throws IOException {
+        byte[] dictionary = "hadoop sequence file codec block record key value".getBytes();
+        byte[] data = generate(200, 3);
+
+        BuiltInZlibDeflater compressor = new BuiltInZlibDeflater();
+        compressor.setDictionary(dictionary, 0, dictionary.length);
+        byte[] withDictionary = compress(compressor, data);
+        byte[] without = compress(new BuiltInZlibDeflater(), data);
+        LOG.info("{} bytes with dictionary, {} bytes without", withDictionary.length, without.length);
+        Assert.assertTrue(withDictionary.length < without.length);
+
+        BuiltInZlibInflater decompressor = new BuiltInZlibInflater();
+        decompressor.setInput(withDictionary, 0, withDictionary.length);
+        byte[] out = new byte[data.length];
+        Assert.assertEquals(0, decompressor.decompress(out, 0, out.length));
+        Assert.assertTrue(decompressor.needsDictionary());
+        decompressor.setDictionary(dictionary, 0, dictionary.length);
+        Assert.assertEquals(data.length, decompressor.decompress(out, 0, out.length));
+        Assert.assertTrue(decompressor.finished());
+        Assert.assertArrayEquals(data, out);
+    }
+
+    @Test
+    public void testCodecFactory() {
+        CompressionCodecFactory factory = new CompressionCodecFactory(conf);
+        Assert.assertTrue(factory.getCodec("part-00000.gz") instanceof GzipCodec);
+        Assert.assertEquals(DefaultCodec.class, factory.getCodec("part-00000.deflate").getClass());
+        Assert.assertTrue(factory.getCodec("part-00000.lz4") instanceof Lz4Codec);
+        Assert.assertTrue(factory.getCodec("part-00000.snappy") instanceof SnappyCodec);
+        Assert.assertNull(factory.getCodec("part-00000"));
+
+        // Path只看最后一个组件，目录名中的'.'不影响
+        Assert.assertTrue(factory.getCodec(new Path("/user/wzq/data.gz/part-00000.lz4")) instanceof Lz4Codec);
+        Assert.assertNull(factory.getCodec(new Path("/user/wzq/data.gz/part-00000")));
+        Assert.assertNull(factory.getCodec("data.gz/part-00000"));
+        Assert.assertTrue(factory.getCodec(new Path(".gz")) instanceof GzipCodec);
+
+        Assert.assertTrue(factory.getCodecByClassName(GzipCodec.class.getName()) instanceof GzipCodec);
+        Assert.assertNull(factory.getCodecByClassName("GzipCodec"));
+        Assert.assertTrue(factory.getCodecByName("gzip") instanceof GzipCodec);
+        Assert.assertTrue(factory.getCodecByName("GzipCodec") instanceof GzipCodec);
+        Assert.assertTrue(factory.getCodecByName("LZ4") instanceof Lz4Codec);
+        Assert.assertEquals(DefaultCodec.class, factory.getCodecByName("default").getClass());
+        Assert.assertEquals(DefaultCodec.class, factory.getCodecByName(DefaultCodec.class.getName()).getClass());
+        Assert.assertNull(factory.getCodecByName("zstd"));
+
+        Assert.assertEquals("part-00000", CompressionCodecFactory.removeSuffix("part-00000.gz", ".gz"));
+        Assert.assertEquals("part-00000", CompressionCodecFactory.removeSuffix("part-00000", ".gz"));
+    }
+
+    /**
+     * 后缀中有多个'.'的编解码器
+     */
+    public static class TarGzCodec extends GzipCodec {
+        @Override
+        public String getDefaultExtension() {
+            return ".tar.gz";
+        }
+    }
+
+    @Test
+    public void testLongestSuffix() {
+        CompressionCodecFactory.setCodecClasses(conf, Arrays.<Class>asList(GzipCodec.class, TarGzCodec.class));
+        CompressionCodecFactory factory = new CompressionCodecFactory(conf);
+        LOG.info("codecs: {}", factory);
+        Assert.assertTrue(factory.getCodec(new Path("src.tar.gz")) instanceof TarGzCodec);
+        Assert.assertTrue(factory.getCodec(new Path("v1.2.tar.gz")) instanceof TarGzCodec);
+        Assert.assertEquals(GzipCodec.class, factory.getCodec(new Path("src.tgz.gz")).getClass());
+        Assert.assertEquals(GzipCodec.class, factory.getCodec(new Path("tar.gz")).getClass());
+        Assert.assertNull(factory.getCodecByName("default"));
+        Assert.assertTrue(factory.getCodecByName("targz") instanceof TarGzCodec);
+    }
+}
@@ -0,0 +1,326 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.io.compress.zlib.BuiltInGzipCompressor;
+import com.wzq.hadoop.io.compress.zlib.BuiltInGzipDecompressor;
+import com.wzq.hadoop.io.compress.zlib.ZlibFactory;
+import com.wzq.hadoop.util.ReflectionUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 测试CodecPool的借出、归还、容量上限与计数
+ */
+public class TestCodecPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestCodecPool.class);
+
+    private Configuration conf;
+
+    @Before
+    public void setUp() {
+        conf = new Configuration();
+    }
+
+    /**
+     * 每个测试用自己的codec类型，避免共享全局池中的状态
+     */
+    public static class PooledGzipCodec extends GzipCodec {
+        @Override
+        public Compressor createCompressor() {
+            return new PooledGzipCompressor(conf);
+        }
+
+        @Override
+        public Class<? extends Compressor> getCompressorType() {
+            return PooledGzipCompressor.class;
+        }
+    }
+
+    static class PooledGzipCompressor extends BuiltInGzipCompressor {
+        PooledGzipCompressor(Configuration conf) {
+            super(conf);
+        }
+    }
+
+    /**
+     * 使用自己的解压缩器类型，测试解压缩器池的容量
+     */
+    public static class PooledDecompressorCodec extends GzipCodec {
+        @Override
+        public Decompressor createDecompressor() {
+            return new PooledGzipDecompressor();
+        }
+
+        @Override
+        public Class<? extends Decompressor> getDecompressorType() {
+            return PooledGzipDecompressor.class;
+        }
+    }
+
+    static class PooledGzipDecompressor extends BuiltInGzipDecompressor {
+    }
+
+    /**
+     * 声明的类型与实际创建的实例类型不一致的codec
+     */
+    public static class SubclassGzipCodec extends GzipCodec {
+        @Override
+        public Compressor createCompressor() {
+            return new SubclassGzipCompressor(conf);
+        }
+
+        @Override
+        public Class<? extends Compressor> getCompressorType() {
+            return DeclaredGzipCompressor.class;
+        }
+    }
+
+    static class DeclaredGzipCompressor extends BuiltInGzipCompressor {
+        DeclaredGzipCompressor(Configuration conf) {
+            super(conf);
+        }
+    }
+
+    static class SubclassGzipCompressor extends DeclaredGzipCompressor {
+        SubclassGzipCompressor(Configuration conf) {
+            super(conf);
+        }
+    }
+
+    /**
+     * 每次归还都记下reset()/end()的次数
+     */
+    public static class CountingGzipCodec extends GzipCodec {
+        @Override
+        public Compressor createCompressor() {
+            return new CountingGzipCompressor(conf);
+        }
+
+        @Override
+        public Class<? extends Compressor> getCompressorType() {
+            return CountingGzipCompressor.class;
+        }
+    }
+
+    static class CountingGzipCompressor extends BuiltInGzipCompressor {
+        int resets;
+        int ends;
+
+        CountingGzipCompressor(Configuration conf) {
+            super(conf);
+        }
+
+        @Override
+        public void reset() {
+            resets++;
+            super.reset();
+        }
+
+        @Override
+        public void end() {
+            ends++;
+            super.end();
+        }
+    }
+
+    @Test
+    public void testReuse() throws IOException {
+        CompressionCodec codec = ReflectionUtils.newInstance(DefaultCodec.class, conf);
+        Compressor c1 = CodecPool.getCompressor(codec, conf);
+        Decompressor d1 = CodecPool.getDecompressor(codec);
+        Assert.assertEquals(1, CodecPool.getLeasedCompressorsCount(codec));
+        Assert.assertEquals(1, CodecPool.getLeasedDecompressorsCount(codec));
+
+        CodecPool.returnCompressor(c1);
+        CodecPool.returnDecompressor(d1);
+        Assert.assertEquals(0, CodecPool.getLeasedCompressorsCount(codec));
+        Assert.assertEquals(0, CodecPool.getLeasedDecompressorsCount(codec));
+
+        // 同一个实例被再次借出
+        Compressor c2 = CodecPool.getCompressor(codec, conf);
+        Decompressor d2 = CodecPool.getDecompressor(codec);
+        Assert.assertSame(c1, c2);
+        Assert.assertSame(d1, d2);
+        CodecPool.returnCompressor(c2);
+        CodecPool.returnDecompressor(d2);
+
+        try {
+            CodecPool.returnCompressor(c2);
+            Assert.fail("a compressor cannot be returned twice");
+        } catch (IllegalStateException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+        LOG.info("statistics:\n{}", CodecPool.getStatistics());
+    }
+
+    @Test
+    public void testReinit() throws IOException {
+        CompressionCodec codec = ReflectionUtils.newInstance(DefaultCodec.class, conf);
+        byte[] data = TestCodec.generate(100000, 1);
+
+        Compressor compressor = CodecPool.getCompressor(codec, conf);
+        int defaultLength = compress(codec, compressor, data).length;
+        CodecPool.returnCompressor(compressor);
+
+        // 借出时按新的配置重新初始化
+        Configuration huffman = new Configuration();
+        ZlibFactory.setCompressionStrategy(huffman, ZlibFactory.CompressionStrategy.HUFFMAN_ONLY);
+        compressor = CodecPool.getCompressor(codec, huffman);
+        byte[] compressed = compress(codec, compressor, data);
+        CodecPool.returnCompressor(compressor);
+        Assert.assertTrue(compressed.length > defaultLength);
+
+        Decompressor decompressor = CodecPool.getDecompressor(codec);
+        Assert.assertArrayEquals(data, TestCodec.readFully(
+                codec.createInputStream(new ByteArrayInputStream(compressed), decompressor)));
+        CodecPool.returnDecompressor(decompressor);
+    }
+
+    private static byte[] compress(CompressionCodec codec, Compressor compressor, byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompressionOutputStream out = codec.createOutputStream(bytes, compressor);
+        out.write(data, 0, data.length);
+        out.finish();
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testMaxSize() {
+        conf.setInt(CodecPool.CODEC_POOL_MAX_SIZE_KEY, 2);
+        CompressionCodec codec = ReflectionUtils.newInstance(PooledGzipCodec.class, conf);
+        List<Compressor> compressors = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            compressors.add(CodecPool.getCompressor(codec, conf));
+        }
+        Assert.assertEquals(5, CodecPool.getLeasedCompressorsCount(codec));
+        for (Compressor compressor : compressors) {
+            CodecPool.returnCompressor(compressor);
+        }
+        Assert.assertEquals(0, CodecPool.getLeasedCompressorsCount(codec));
+        Assert.assertEquals(2, CodecPool.getIdleCompressorsCount(codec));
+    }
+
+    @Test
+    public void testReturnTwiceToFullPool() {
+        conf.setInt(CodecPool.CODEC_POOL_MAX_SIZE_KEY, 1);
+        CompressionCodec codec = ReflectionUtils.newInstance(CountingGzipCodec.class, conf);
+        CountingGzipCompressor c1 = (CountingGzipCompressor) CodecPool.getCompressor(codec, conf);
+        CountingGzipCompressor c2 = (CountingGzipCompressor) CodecPool.getCompressor(codec, conf);
+        CodecPool.returnCompressor(c1);
+        CodecPool.returnCompressor(c2);
+        Assert.assertEquals(1, c2.ends);
+
+        // 池已满，重复归还仍然要被发现，并且不能reset()/end()池中的实例
+        int resets = c1.resets;
+        try {
+            CodecPool.returnCompressor(c1);
+            Assert.fail("a compressor cannot be returned twice");
+        } catch (IllegalStateException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+        Assert.assertEquals(resets, c1.resets);
+        Assert.assertEquals(0, c1.ends);
+        Assert.assertEquals(0, CodecPool.getLeasedCompressorsCount(codec));
+        Assert.assertSame(c1, CodecPool.getCompressor(codec, conf));
+        CodecPool.returnCompressor(c1);
+    }
+
+    @Test
+    public void testLeasedCountWithSubclass() {
+        CompressionCodec codec = ReflectionUtils.newInstance(SubclassGzipCodec.class, conf);
+        Compressor first = CodecPool.getCompressor(codec, conf);
+        Assert.assertEquals(SubclassGzipCompressor.class, first.getClass());
+        Assert.assertEquals(1, CodecPool.getLeasedCompressorsCount(codec));
+        CodecPool.returnCompressor(first);
+        Assert.assertEquals(0, CodecPool.getLeasedCompressorsCount(codec));
+        Assert.assertEquals(1, CodecPool.getIdleCompressorsCount(codec));
+
+        // 子类实例归还到声明类型的池中，下次借出时可以复用
+        for (int i = 0; i < 2; i++) {
+            Compressor compressor = CodecPool.getCompressor(codec, conf);
+            Assert.assertSame(first, compressor);
+            Assert.assertEquals(1, CodecPool.getLeasedCompressorsCount(codec));
+            Assert.assertEquals(0, CodecPool.getIdleCompressorsCount(codec));
+            CodecPool.returnCompressor(compressor);
+        }
+        String statistics = CodecPool.getStatistics();
+        LOG.info("statistics:\n{}", statistics);
+        Assert.assertTrue(statistics, statistics.contains(DeclaredGzipCompressor.class.getSimpleName() + ": 3/1/3/0"));
+        Assert.assertFalse(statistics, statistics.contains(SubclassGzipCompressor.class.getSimpleName()));
+        Assert.assertEquals(0, CodecPool.getLeasedCompressorsCount(codec));
+        Assert.assertEquals(1, CodecPool.getIdleCompressorsCount(codec));
+
+        try {
+            CodecPool.returnCompressor(first);
+            Assert.fail("returned twice");
+        } catch (IllegalStateException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testDecompressorMaxSize() {
+        conf.setInt(CodecPool.CODEC_POOL_MAX_SIZE_KEY, 2);
+        CompressionCodec codec = ReflectionUtils.newInstance(PooledDecompressorCodec.class, conf);
+        List<Decompressor> decompressors = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            decompressors.add(CodecPool.getDecompressor(codec));
+        }
+        Assert.assertEquals(5, CodecPool.getLeasedDecompressorsCount(codec));
+        for (Decompressor decompressor : decompressors) {
+            CodecPool.returnDecompressor(decompressor);
+        }
+        Assert.assertEquals(0, CodecPool.getLeasedDecompressorsCount(codec));
+        Assert.assertEquals(2, CodecPool.getIdleDecompressorsCount(codec));
+    }
+
+    @Test
+    public void testConcurrentLease() throws Exception {
+        final CompressionCodec codec = ReflectionUtils.newInstance(GzipCodec.class, conf);
+        final byte[] data = TestCodec.generate(10000, 2);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        for (int i = 0; i < 100; i++) {
+                            Compressor compressor = CodecPool.getCompressor(codec, conf);
+                            byte[] compressed = compress(codec, compressor, data);
+                            CodecPool.returnCompressor(compressor);
+
+                            Decompressor decompressor = CodecPool.getDecompressor(codec);
+                            byte[] decompressed = TestCodec.readFully(codec.createInputStream(
+                                    new ByteArrayInputStream(compressed), decompressor));
+                            CodecPool.returnDecompressor(decompressor);
+                            Assert.assertArrayEquals(data, decompressed);
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                Assert.assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        Assert.assertEquals(0, CodecPool.getLeasedCompressorsCount(codec));
+        Assert.assertTrue(CodecPool.getIdleCompressorsCount(codec) <= 8);
+    }
+}
@@ -0,0 +1,171 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.io.compress.zlib.ZlibDictionaryCompressor;
+import com.wzq.hadoop.io.compress.zlib.ZlibFactory;
+import com.wzq.hadoop.util.ReflectionUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 测试字典训练与ZlibDictionaryCodec
+ */
+public class TestDictionaryCodec {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestDictionaryCodec.class);
+
+    private static final String[] USERS = {"alice", "bob", "carol", "dave", "erin", "frank"};
+    private static final String[] ACTIONS = {"login", "logout", "view_page", "add_to_cart", "checkout"};
+
+    private Configuration conf;
+
+    @Before
+    public void setUp() {
+        conf = new Configuration();
+    }
+
+    /**
+     * 短小而相似的JSON记录
+     */
+    static List<byte[]> records(int count, long seed) {
+        Random random = new Random(seed);
+        List<byte[]> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String record = "{\"timestamp\":" + (1700000000000L + random.nextInt(1000000))
+                    + ",\"user\":\"" + USERS[random.nextInt(USERS.length)]
+                    + "\",\"action\":\"" + ACTIONS[random.nextInt(ACTIONS.length)]
+                    + "\",\"session\":\"" + Long.toHexString(random.nextLong())
+                    + "\",\"client\":{\"os\":\"linux\",\"version\":\"2." + random.nextInt(10)
+                    + "\"},\"status\":" + (random.nextInt(10) == 0 ? 500 : 200) + "}";
+            records.add(record.getBytes());
+        }
+        return records;
+    }
+
+    private int compressedSize(CompressionCodec codec, List<byte[]> records) throws IOException {
+        int size = 0;
+        for (byte[] record : records) {
+            byte[] compressed = TestCodec.compress(codec, record);
+            Assert.assertArrayEquals(record,
+                    TestCodec.readFully(codec.createInputStream(new ByteArrayInputStream(compressed))));
+            size += compressed.length;
+        }
+        return size;
+    }
+
+    @Test
+    public void testTrainer() {
+        List<byte[]> samples = records(5000, 1);
+        byte[] dictionary = DictionaryTrainer.train(samples, 4096);
+        LOG.info("dictionary: {} bytes, {}", dictionary.length,
+                new String(dictionary, dictionary.length - 200, 200));
+        Assert.assertTrue(dictionary.length <= 4096);
+        Assert.assertTrue(dictionary.length > 1024);
+        Assert.assertTrue(new String(dictionary).contains("\"action\":\""));
+
+        // 样本比字典小时直接用样本
+        List<byte[]> few = records(3, 2);
+        int total = few.get(0).length + few.get(1).length + few.get(2).length;
+        Assert.assertEquals(total, DictionaryTrainer.train(few, 4096).length);
+    }
+
+    @Test
+    public void testDictionaryCodec() throws IOException {
+        List<byte[]> test = records(200, 3);
+        int raw = 0;
+        for (byte[] record : test) {
+            raw += record.length;
+        }
+        int plain = compressedSize(ReflectionUtils.newInstance(DefaultCodec.class, conf), test);
+
+        DictionaryTrainer.store(conf, DictionaryTrainer.train(records(5000, 4), DictionaryTrainer.DEFAULT_DICTIONARY_SIZE));
+        ZlibDictionaryCodec codec = ReflectionUtils.newInstance(ZlibDictionaryCodec.class, conf);
+        int withDictionary = compressedSize(codec, test);
+        LOG.info("{} records, {} bytes: {} bytes with zlib, {} bytes with a dictionary",
+                test.size(), raw, plain, withDictionary);
+        Assert.assertTrue(withDictionary * 2 < plain);
+
+        // 通过CodecPool借出的压缩器与解压缩器
+        byte[] record = test.get(0);
+        Compressor compressor = CodecPool.getCompressor(codec, conf);
+        Decompressor decompressor = CodecPool.getDecompressor(codec);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            CompressionOutputStream out = codec.createOutputStream(bytes, compressor);
+            out.write(record, 0, record.length);
+            out.close();
+            Assert.assertArrayEquals(record, TestCodec.readFully(
+                    codec.createInputStream(new ByteArrayInputStream(bytes.toByteArray()), decompressor)));
+        } finally {
+            CodecPool.returnCompressor(compressor);
+            CodecPool.returnDecompressor(decompressor);
+        }
+    }
+
+    @Test
+    public void testDictionaryIsCopied() throws IOException {
+        byte[] dictionary = DictionaryTrainer.train(records(1000, 8), 2048);
+        ZlibFactory.setDictionary(conf, dictionary);
+        ZlibDictionaryCodec codec = ReflectionUtils.newInstance(ZlibDictionaryCodec.class, conf);
+        byte[] record = records(1, 9).get(0);
+        byte[] compressed = TestCodec.compress(codec, record);
+
+        // 改动返回的数组不影响缓存的字典，也不影响别的压缩器
+        byte[] copy = ZlibFactory.getDictionary(conf);
+        Assert.assertArrayEquals(dictionary, copy);
+        Arrays.fill(copy, (byte) 0);
+        Assert.assertArrayEquals(dictionary, ZlibFactory.getDictionary(conf));
+
+        ZlibDictionaryCompressor compressor = new ZlibDictionaryCompressor(conf);
+        try {
+            Arrays.fill(compressor.getDictionary(), (byte) 0);
+            Assert.assertArrayEquals(dictionary, compressor.getDictionary());
+        } finally {
+            compressor.end();
+        }
+        Assert.assertArrayEquals(compressed, TestCodec.compress(codec, record));
+        Assert.assertArrayEquals(record, TestCodec.readFully(
+                codec.createInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void testMissingDictionary() throws IOException {
+        byte[] record = records(1, 5).get(0);
+        ZlibFactory.setDictionary(conf, DictionaryTrainer.train(records(1000, 6), 2048));
+        byte[] compressed = TestCodec.compress(ReflectionUtils.newInstance(ZlibDictionaryCodec.class, conf), record);
+
+        // 没有字典的DefaultCodec不能把它当作空流
+        expectFailure(ReflectionUtils.newInstance(DefaultCodec.class, new Configuration()), compressed);
+        expectFailure(ReflectionUtils.newInstance(ZlibDictionaryCodec.class, new Configuration()), compressed);
+
+        // 不同的字典
+        Configuration other = new Configuration();
+        ZlibFactory.setDictionary(other, DictionaryTrainer.train(records(1000, 7), 1024));
+        expectFailure(ReflectionUtils.newInstance(ZlibDictionaryCodec.class, other), compressed);
+
+        // 没有配置字典时写的是普通的zlib流
+        byte[] plain = TestCodec.compress(ReflectionUtils.newInstance(ZlibDictionaryCodec.class, new Configuration()), record);
+        Assert.assertArrayEquals(record, TestCodec.readFully(ReflectionUtils.newInstance(DefaultCodec.class, conf)
+                .createInputStream(new ByteArrayInputStream(plain))));
+    }
+
+    private static void expectFailure(CompressionCodec codec, byte[] compressed) {
+        try {
+            TestCodec.readFully(codec.createInputStream(new ByteArrayInputStream(compressed)));
+            Assert.fail("stream compressed with a dictionary should not be readable by " + codec);
+        } catch (IOException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+    }
+}
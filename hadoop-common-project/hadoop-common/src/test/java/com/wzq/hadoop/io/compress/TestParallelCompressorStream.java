@@ -0,0 +1,185 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.util.ReflectionUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 测试并行压缩的输出可以被各个编解码器的输入流读取
+ */
+public class TestParallelCompressorStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestParallelCompressorStream.class);
+
+    private Configuration conf;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        conf = new Configuration();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private byte[] compress(CompressionCodec codec, byte[] data, int blockSize) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new ParallelCompressorStream(bytes, codec, conf, executor, blockSize, 4);
+        // 不同大小的write，以及单个字节的write
+        Random random = new Random(0);
+        int off = 0;
+        while (off < data.length) {
+            if (random.nextInt(10) == 0) {
+                out.write(data[off++]);
+                continue;
+            }
+            int len = Math.min(random.nextInt(3 * blockSize), data.length - off);
+            out.write(data, off, len);
+            off += len;
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private void parallelTest(Class<? extends CompressionCodec> codecClass) throws IOException {
+        CompressionCodec codec = ReflectionUtils.newInstance(codecClass, conf);
+        for (int length : new int[]{0, 1, 10000, 65536, 1 << 20}) {
+            byte[] data = TestCodec.generate(length, length);
+            byte[] compressed = compress(codec, data, 16 * 1024);
+            byte[] serial = TestCodec.compress(codec, data);
+            LOG.info("{}: {} bytes -> {} bytes in parallel, {} bytes serially",
+                    codecClass.getSimpleName(), length, compressed.length, serial.length);
+            Assert.assertArrayEquals(data,
+                    TestCodec.readFully(codec.createInputStream(new ByteArrayInputStream(compressed))));
+        }
+    }
+
+    @Test
+    public void testDefaultCodec() throws IOException {
+        parallelTest(DefaultCodec.class);
+    }
+
+    @Test
+    public void testGzipCodec() throws IOException {
+        parallelTest(GzipCodec.class);
+
+        // 标准的gzip工具也能读取并行压缩的输出
+        byte[] data = TestCodec.generate(200000, 9);
+        byte[] compressed = compress(ReflectionUtils.newInstance(GzipCodec.class, conf), data, 10000);
+        Assert.assertArrayEquals(data, TestCodec.readFully(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void testBlockCodecs() throws IOException {
+        parallelTest(Lz4Codec.class);
+        parallelTest(SnappyCodec.class);
+
+        // 并行的块比编解码器的块大
+        conf.setInt(Lz4Codec.LZ4_BUFFER_SIZE_KEY, 4096);
+        CompressionCodec codec = ReflectionUtils.newInstance(Lz4Codec.class, conf);
+        byte[] data = TestCodec.generate(100000, 12);
+        byte[] compressed = compress(codec, data, 20000);
+        Assert.assertArrayEquals(data, TestCodec.readFully(codec.createInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    public void testOwnExecutor() throws IOException {
+        conf.setInt(ParallelCompressorStream.PARALLEL_THREADS_KEY, 3);
+        conf.setInt(ParallelCompressorStream.PARALLEL_BLOCK_SIZE_KEY, 4096);
+        CompressionCodec codec = ReflectionUtils.newInstance(DefaultCodec.class, conf);
+        byte[] data = TestCodec.generate(100000, 10);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ParallelCompressorStream out = new ParallelCompressorStream(bytes, codec, conf);
+        out.write(data, 0, 50000);
+        out.finish();
+        out.write(data, 50000, 50000);
+        out.close();
+        Assert.assertArrayEquals(data,
+                TestCodec.readFully(codec.createInputStream(new ByteArrayInputStream(bytes.toByteArray()))));
+
+        try {
+            out.write(1);
+            Assert.fail("write after close should fail");
+        } catch (IOException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 压缩线程中的异常在写入线程中抛出
+     */
+    @Test
+    public void testFailure() {
+        CompressionCodec codec = new DefaultCodec() {
+            @Override
+            public CompressionOutputStream createOutputStream(OutputStream out, Compressor compressor) throws IOException {
+                throw new IOException("injected failure");
+            }
+        };
+        try {
+            compress(codec, TestCodec.generate(100000, 11), 1000);
+            Assert.fail("compression failure should be reported");
+        } catch (IOException e) {
+            Assert.assertEquals("injected failure", e.getMessage());
+        }
+    }
+
+    /**
+     * finish()失败时close()仍然关闭底层的流
+     */
+    @Test
+    public void testCloseAfterFailure() throws IOException {
+        CompressionCodec codec = new DefaultCodec() {
+            @Override
+            public CompressionOutputStream createOutputStream(OutputStream out, Compressor compressor) throws IOException {
+                throw new IOException("injected failure");
+            }
+        };
+        final AtomicBoolean closed = new AtomicBoolean();
+        OutputStream bytes = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        OutputStream out = new ParallelCompressorStream(bytes, codec, conf, executor, 1000, 4);
+        out.write(TestCodec.generate(500, 13));
+        try {
+            out.close();
+            Assert.fail("compression failure should be reported");
+        } catch (IOException e) {
+            Assert.assertEquals("injected failure", e.getMessage());
+        }
+        Assert.assertTrue(closed.get());
+    }
+
+    @Test
+    public void testNullConf() {
+        CompressionCodec codec = ReflectionUtils.newInstance(DefaultCodec.class, conf);
+        try {
+            new ParallelCompressorStream(new ByteArrayOutputStream(), codec, null);
+            Assert.fail("null conf should be rejected");
+        } catch (NullPointerException e) {
+            LOG.info("expected: {}", e);
+        }
+    }
+}
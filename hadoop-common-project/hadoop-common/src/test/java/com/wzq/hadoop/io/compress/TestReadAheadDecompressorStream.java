@@ -0,0 +1,277 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.util.ReflectionUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试预读的解压缩流
+ */
+public class TestReadAheadDecompressorStream {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestReadAheadDecompressorStream.class);
+
+    private Configuration conf;
+
+    @Before
+    public void setUp() {
+        conf = new Configuration();
+    }
+
+    /**
+     * 在打开之前read一直阻塞的输入流，用来控制后台线程什么时候能读到数据
+     */
+    private static class GatedInputStream extends FilterInputStream {
+        private final CountDownLatch gate = new CountDownLatch(1);
+
+        GatedInputStream(InputStream in) {
+            super(in);
+        }
+
+        void open() {
+            gate.countDown();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return super.read(b, off, len);
+        }
+    }
+
+    /**
+     * 读出{@code failAt}个字节之后抛出异常的解压缩流，unchecked为true时抛出RuntimeException
+     */
+    private static class FailingInputStream extends CompressionInputStream {
+        private final int failAt;
+        private final boolean unchecked;
+        private int pos = 0;
+
+        FailingInputStream(byte[] data, int failAt) {
+            this(data, failAt, false);
+        }
+
+        FailingInputStream(byte[] data, int failAt, boolean unchecked) {
+            super(new ByteArrayInputStream(data));
+            this.failAt = failAt;
+            this.unchecked = unchecked;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (pos >= failAt) {
+                if (unchecked) {
+                    throw new IllegalStateException("injected failure");
+                }
+                throw new IOException("injected failure");
+            }
+            int n = in.read(b, off, Math.min(len, failAt - pos));
+            if (n > 0) {
+                pos += n;
+            }
+            return n;
+        }
+
+        @Override
+        public void resetState() {
+        }
+    }
+
+    /**
+     * 等待后台线程把队列填到{@code depth}个缓冲区
+     */
+    private static void awaitQueueDepth(ReadAheadDecompressorStream in, int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (in.getQueueDepth() < depth) {
+            Assert.assertTrue("queue depth stays at " + in.getQueueDepth(), System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    private ReadAheadDecompressorStream open(CompressionCodec codec, byte[] compressed) throws IOException {
+        return new ReadAheadDecompressorStream(codec.createInputStream(new ByteArrayInputStream(compressed)), 4096, 3);
+    }
+
+    @Test
+    public void testReadAhead() throws IOException {
+        for (Class<? extends CompressionCodec> codecClass : Arrays.asList(DefaultCodec.class, GzipCodec.class, Lz4Codec.class)) {
+            CompressionCodec codec = ReflectionUtils.newInstance(codecClass, conf);
+            for (int length : new int[]{0, 1, 4096, 100000}) {
+                byte[] data = TestCodec.generate(length, length);
+                byte[] compressed = TestCodec.compress(codec, data);
+                Assert.assertArrayEquals(data, TestCodec.readFully(open(codec, compressed)));
+
+                // 单个字节的read与skip
+                ReadAheadDecompressorStream in = open(codec, compressed);
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                int b;
+                while ((b = in.read()) != -1) {
+                    bytes.write(b);
+                    if (bytes.size() % 1000 == 0) {
+                        long skipped = in.skip(500);
+                        bytes.write(data, bytes.size(), (int) skipped);
+                    }
+                }
+                in.close();
+                Assert.assertArrayEquals(data, bytes.toByteArray());
+            }
+        }
+    }
+
+    @Test
+    public void testMetrics() throws IOException, InterruptedException {
+        CompressionCodec codec = ReflectionUtils.newInstance(DefaultCodec.class, conf);
+        byte[] data = TestCodec.generate(200000, 1);
+        byte[] compressed = TestCodec.compress(codec, data);
+
+        // 慢的输入：调用方开始等待之后才放行后台线程，第一个缓冲区一定要等
+        final GatedInputStream gated = new GatedInputStream(new ByteArrayInputStream(compressed));
+        ReadAheadDecompressorStream in = new ReadAheadDecompressorStream(codec.createInputStream(gated), 4096, 3);
+        final Thread reader = Thread.currentThread();
+        Thread opener = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (reader.getState() != Thread.State.WAITING) {
+                    Thread.yield();
+                }
+                gated.open();
+            }
+        });
+        opener.start();
+        Assert.assertArrayEquals(data, TestCodec.readFully(in));
+        opener.join();
+        LOG.info("slow producer: {} stalls, {} ms, average depth {}",
+                in.getStalls(), in.getStallTimeNanos() / 1000000, in.getAverageQueueDepth());
+        Assert.assertTrue(in.getStalls() > 0);
+        Assert.assertTrue(in.getStallTimeNanos() > 0);
+
+        // 慢的调用方：每次都等队列满了再读，队列是满的
+        in = open(codec, compressed);
+        byte[] buf = new byte[4096];
+        Assert.assertEquals(4096, in.read(buf, 0, buf.length));
+        for (int i = 0; i < 10; i++) {
+            awaitQueueDepth(in, 3);
+            Assert.assertEquals(3, in.getQueueDepth());
+            Assert.assertEquals(4096, in.read(buf, 0, buf.length));
+        }
+        LOG.info("slow consumer: {} stalls, average depth {}", in.getStalls(), in.getAverageQueueDepth());
+        Assert.assertTrue(in.getAverageQueueDepth() > 1);
+        in.close();
+    }
+
+    @Test
+    public void testErrors() throws IOException {
+        CompressionCodec codec = ReflectionUtils.newInstance(GzipCodec.class, conf);
+        byte[] data = TestCodec.generate(100000, 2);
+        byte[] compressed = TestCodec.compress(codec, data);
+        compressed[compressed.length - 8] ^= 1;
+
+        // 后台线程中的异常在读取时抛出
+        ReadAheadDecompressorStream in = open(codec, compressed);
+        try {
+            TestCodec.readFully(in);
+            Assert.fail("corrupt stream should be rejected");
+        } catch (IOException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+        in.close();
+
+        try {
+            in.read();
+            Assert.fail("read after close should fail");
+        } catch (IOException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 出错之前解压出来的数据先交给调用方，然后才抛出异常
+     */
+    @Test
+    public void testPartialChunkBeforeError() throws IOException {
+        byte[] data = TestCodec.generate(10000, 4);
+        ReadAheadDecompressorStream in = new ReadAheadDecompressorStream(new FailingInputStream(data, 6000), 4096, 3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buf = new byte[1000];
+        try {
+            int n;
+            while ((n = in.read(buf, 0, buf.length)) != -1) {
+                bytes.write(buf, 0, n);
+            }
+            Assert.fail("injected failure should be reported");
+        } catch (IOException e) {
+            Assert.assertEquals("injected failure", e.getMessage());
+        }
+        Assert.assertArrayEquals(Arrays.copyOf(data, 6000), bytes.toByteArray());
+        in.close();
+    }
+
+    /**
+     * 后台线程抛出RuntimeException时，调用方收到包装后的IOException，而不是一直等待
+     */
+    @Test(timeout = 10000)
+    public void testUncheckedError() throws IOException {
+        byte[] data = TestCodec.generate(10000, 5);
+        ReadAheadDecompressorStream in = new ReadAheadDecompressorStream(new FailingInputStream(data, 6000, true), 4096, 3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buf = new byte[1000];
+        try {
+            int n;
+            while ((n = in.read(buf, 0, buf.length)) != -1) {
+                bytes.write(buf, 0, n);
+            }
+            Assert.fail("injected failure should be reported");
+        } catch (IOException e) {
+            LOG.info("expected: {}", e.toString());
+            Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            Assert.assertEquals("injected failure", e.getCause().getMessage());
+        }
+        Assert.assertArrayEquals(Arrays.copyOf(data, 6000), bytes.toByteArray());
+        in.close();
+    }
+
+    /**
+     * 读到一半关闭流，以及resetState之后从头重新读
+     */
+    @Test
+    public void testCloseAndReset() throws IOException {
+        CompressionCodec codec = ReflectionUtils.newInstance(DefaultCodec.class, conf);
+        byte[] data = TestCodec.generate(100000, 3);
+        byte[] compressed = TestCodec.compress(codec, data);
+
+        ReadAheadDecompressorStream in = open(codec, compressed);
+        byte[] buf = new byte[1000];
+        Assert.assertEquals(1000, in.read(buf, 0, buf.length));
+        in.close();
+
+        ByteArrayInputStream raw = new ByteArrayInputStream(compressed);
+        in = new ReadAheadDecompressorStream(codec.createInputStream(raw), conf);
+        Assert.assertEquals(1000, in.read(buf, 0, buf.length));
+        in.resetState();
+        raw.reset();
+        Assert.assertArrayEquals(data, TestCodec.readFully(in));
+    }
+}
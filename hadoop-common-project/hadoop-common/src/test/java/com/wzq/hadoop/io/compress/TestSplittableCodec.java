@@ -0,0 +1,187 @@
+package com.wzq.hadoop.io.compress;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.FSDataInputStream;
+import com.wzq.hadoop.fs.FSDataOutputStream;
+import com.wzq.hadoop.fs.FileSystem;
+import com.wzq.hadoop.fs.Path;
+import com.wzq.hadoop.io.DataInputBuffer;
+import com.wzq.hadoop.io.DataOutputBuffer;
+import com.wzq.hadoop.util.ReflectionUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 测试把一个分块压缩的文件切成多段分别解压
+ */
+public class TestSplittableCodec {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestSplittableCodec.class);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Configuration conf;
+    private FileSystem fs;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        conf = new Configuration();
+        conf.setInt(Lz4Codec.LZ4_BUFFER_SIZE_KEY, 4096);
+        conf.setInt(SnappyCodec.SNAPPY_BUFFER_SIZE_KEY, 4096);
+        fs = FileSystem.getLocal(conf);
+        file = new Path(folder.getRoot().getAbsolutePath(), "data");
+    }
+
+    private void write(CompressionCodec codec, byte[] data) throws IOException {
+        FSDataOutputStream raw = fs.create(file, true, 4096);
+        CompressionOutputStream out = codec.createOutputStream(raw);
+        // 不同大小的write，有的比一个块大
+        Random random = new Random(0);
+        int off = 0;
+        while (off < data.length) {
+            int len = Math.min(random.nextInt(10000), data.length - off);
+            out.write(data, off, len);
+            off += len;
+        }
+        out.close();
+    }
+
+    private void splitTest(Class<? extends SplittableCompressionCodec> codecClass) throws IOException {
+        SplittableCompressionCodec codec = ReflectionUtils.newInstance(codecClass, conf);
+        byte[] data = TestCodec.generate(200000, 1);
+        write(codec, data);
+        long length = fs.getLength(file);
+
+        for (int splits : new int[]{1, 3, 7, 50, 500}) {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            long lastEnd = 0L;
+            for (int i = 0; i < splits; i++) {
+                long start = length * i / splits;
+                long end = length * (i + 1) / splits;
+                try (FSDataInputStream in = fs.open(file)) {
+                    SplitCompressionInputStream split = codec.createInputStream(in, codec.createDecompressor(), start, end);
+                    Assert.assertTrue(split.getAdjustedStart() >= start);
+                    Assert.assertEquals(lastEnd, split.getAdjustedStart());
+                    Assert.assertEquals(result.size(), ((SplitBlockDecompressorStream) split).getRawStart());
+                    result.write(TestCodec.readFully(split));
+                    Assert.assertEquals(split.getAdjustedEnd(), ((SplitBlockDecompressorStream) split).getPos());
+                    lastEnd = split.getAdjustedEnd();
+                }
+            }
+            Assert.assertEquals(length, lastEnd);
+            Assert.assertArrayEquals(data, result.toByteArray());
+        }
+    }
+
+    @Test
+    public void testLz4Splits() throws IOException {
+        splitTest(Lz4Codec.class);
+    }
+
+    @Test
+    public void testSnappySplits() throws IOException {
+        splitTest(SnappyCodec.class);
+    }
+
+    /**
+     * 多个线程共用一个索引，各自解压一段，按解压后的位置拼回原来的数据
+     */
+    @Test
+    public void testSharedIndex() throws IOException, InterruptedException, ExecutionException {
+        final Lz4Codec codec = ReflectionUtils.newInstance(Lz4Codec.class, conf);
+        final byte[] data = TestCodec.generate(300000, 2);
+        write(codec, data);
+        final long length = fs.getLength(file);
+
+        BlockIndex scanned;
+        try (FSDataInputStream in = fs.open(file)) {
+            scanned = BlockIndex.scan(in, Long.MAX_VALUE);
+        }
+        LOG.info("{} bytes -> {} bytes, {}", data.length, length, scanned);
+        Assert.assertEquals(length, scanned.getLength());
+        Assert.assertEquals(data.length, scanned.getRawLength());
+        Assert.assertTrue(scanned.size() > 1);
+
+        // 索引可以保存下来
+        DataOutputBuffer out = new DataOutputBuffer();
+        scanned.write(out);
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        final BlockIndex index = BlockIndex.read(in);
+        Assert.assertEquals(scanned.size(), index.size());
+        for (int i = 0; i <= index.size(); i++) {
+            Assert.assertEquals(scanned.getOffset(i), index.getOffset(i));
+            Assert.assertEquals(scanned.getRawOffset(i), index.getRawOffset(i));
+        }
+
+        final byte[] result = new byte[data.length];
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            final int splits = 8;
+            for (int i = 0; i < splits; i++) {
+                final long start = length * i / splits;
+                final long end = length * (i + 1) / splits;
+                futures.add(executor.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws IOException {
+                        try (FSDataInputStream in = fs.open(file)) {
+                            SplitBlockDecompressorStream split = (SplitBlockDecompressorStream) codec.createInputStream(
+                                    in, codec.createDecompressor(), index, start, end);
+                            byte[] bytes = TestCodec.readFully(split);
+                            System.arraycopy(bytes, 0, result, (int) split.getRawStart(), bytes.length);
+                            return bytes.length;
+                        }
+                    }
+                }));
+            }
+            int total = 0;
+            for (Future<Integer> future : futures) {
+                total += future.get();
+            }
+            Assert.assertEquals(data.length, total);
+            Assert.assertArrayEquals(data, result);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testEmptyAndCorrupt() throws IOException {
+        SplittableCompressionCodec codec = ReflectionUtils.newInstance(Lz4Codec.class, conf);
+        write(codec, new byte[0]);
+        try (FSDataInputStream in = fs.open(file)) {
+            SplitCompressionInputStream split = codec.createInputStream(in, codec.createDecompressor(), 0, fs.getLength(file));
+            Assert.assertEquals(-1, split.read());
+        }
+
+        FSDataOutputStream raw = fs.create(file, true, 4096);
+        raw.writeInt(100);
+        raw.writeInt(-1);
+        raw.close();
+        try (FSDataInputStream in = fs.open(file)) {
+            codec.createInputStream(in, codec.createDecompressor(), 0, fs.getLength(file));
+            Assert.fail("corrupt block header should be rejected");
+        } catch (IOException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+    }
+}
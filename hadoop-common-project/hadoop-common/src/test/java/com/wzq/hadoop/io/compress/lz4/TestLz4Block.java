@@ -0,0 +1,106 @@
+package com.wzq.hadoop.io.compress.lz4;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 测试LZ4块格式的压缩与解压缩
+ */
+public class TestLz4Block {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestLz4Block.class);
+
+    private final int[] hashTable = new int[Lz4Block.HASH_TABLE_SIZE];
+
+    private byte[] roundTrip(byte[] data) throws IOException {
+        byte[] compressed = new byte[Lz4Block.maxCompressedLength(data.length) + 3];
+        int n = Lz4Block.compress(data, 0, data.length, compressed, 3, hashTable);
+        Assert.assertEquals(data.length, Lz4Block.getUncompressedLength(compressed, 3, n));
+        byte[] decompressed = new byte[data.length];
+        Assert.assertEquals(data.length, Lz4Block.decompress(compressed, 3, n, decompressed, 0, data.length));
+        Assert.assertArrayEquals(data, decompressed);
+        return Arrays.copyOfRange(compressed, 3, 3 + n);
+    }
+
+    @Test
+    public void testSizes() throws IOException {
+        Random random = new Random(0);
+        for (int length : new int[]{0, 1, 4, 12, 13, 14, 15, 16, 100, 65535, 65536, 200000}) {
+            // 可以压缩的：字母表很小
+            byte[] text = new byte[length];
+            for (int i = 0; i < length; i++) {
+                text[i] = (byte) ('a' + random.nextInt(4));
+            }
+            byte[] compressed = roundTrip(text);
+            // 不可压缩的
+            byte[] noise = new byte[length];
+            random.nextBytes(noise);
+            byte[] incompressible = roundTrip(noise);
+            LOG.info("{} bytes: text -> {}, random -> {}", length, compressed.length, incompressible.length);
+            Assert.assertTrue(incompressible.length <= Lz4Block.maxCompressedLength(length));
+        }
+    }
+
+    @Test
+    public void testLongRuns() throws IOException {
+        // 重叠的匹配（offset为1），以及超过255的literal/match长度
+        byte[] zeros = new byte[100000];
+        byte[] compressed = roundTrip(zeros);
+        Assert.assertTrue(compressed.length < 1000);
+
+        byte[] pattern = new byte[100000];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = (byte) (i % 3);
+        }
+        roundTrip(pattern);
+
+        // 开头一长段literal，后面是一段重复
+        byte[] mixed = new byte[5000];
+        new Random(1).nextBytes(mixed);
+        System.arraycopy(mixed, 0, mixed, 2500, 2500);
+        Assert.assertTrue(roundTrip(mixed).length < 3000);
+    }
+
+    /**
+     * 按格式手写的块：literal "abc"，然后offset 3、长度9的匹配，最后5个字节的literal
+     */
+    @Test
+    public void testFormat() throws IOException {
+        byte[] block = {0x35, 'a', 'b', 'c', 3, 0, 0x50, 'h', 'e', 'l', 'l', 'o'};
+        byte[] out = new byte[17];
+        Assert.assertEquals(17, Lz4Block.getUncompressedLength(block, 0, block.length));
+        Assert.assertEquals(17, Lz4Block.decompress(block, 0, block.length, out, 0, out.length));
+        Assert.assertEquals("abcabcabcabchello", new String(out));
+    }
+
+    @Test
+    public void testMalformed() {
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 100);
+        }
+        byte[] compressed = new byte[Lz4Block.maxCompressedLength(data.length)];
+        int n = Lz4Block.compress(data, 0, data.length, compressed, 0, hashTable);
+
+        expectFailure(compressed, n - 1, data.length);                    // 截断
+        expectFailure(compressed, n, data.length - 1);                    // 输出空间不够
+        expectFailure(new byte[]{0x10, 'a', 5, 0, 0}, 5, 100);            // offset超出已输出的数据
+        expectFailure(new byte[]{0x10, 'a', 0, 0, 0}, 5, 100);            // offset为0
+        expectFailure(new byte[]{(byte) 0xf0, (byte) 255}, 2, 1000);      // literal长度被截断
+    }
+
+    private static void expectFailure(byte[] block, int len, int destLen) {
+        try {
+            Lz4Block.decompress(block, 0, len, new byte[destLen], 0, destLen);
+            Assert.fail("malformed block should be rejected");
+        } catch (IOException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.wzq.hadoop.io.compress.snappy;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 测试Snappy raw格式的压缩与解压缩
+ */
+public class TestSnappyBlock {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestSnappyBlock.class);
+
+    private final int[] hashTable = new int[SnappyBlock.MAX_HASH_TABLE_SIZE];
+
+    private byte[] roundTrip(byte[] data) throws IOException {
+        byte[] compressed = new byte[SnappyBlock.maxCompressedLength(data.length) + 3];
+        int n = SnappyBlock.compress(data, 0, data.length, compressed, 3, hashTable);
+        Assert.assertEquals(data.length, SnappyBlock.getUncompressedLength(compressed, 3, n));
+        byte[] decompressed = new byte[data.length];
+        Assert.assertEquals(data.length, SnappyBlock.decompress(compressed, 3, n, decompressed, 0, data.length));
+        Assert.assertArrayEquals(data, decompressed);
+        return Arrays.copyOfRange(compressed, 3, 3 + n);
+    }
+
+    @Test
+    public void testSizes() throws IOException {
+        Random random = new Random(0);
+        for (int length : new int[]{0, 1, 4, 14, 15, 16, 61, 100, 65535, 65536, 65537, 300000}) {
+            byte[] text = new byte[length];
+            for (int i = 0; i < length; i++) {
+                text[i] = (byte) ('a' + random.nextInt(4));
+            }
+            byte[] compressed = roundTrip(text);
+            byte[] noise = new byte[length];
+            random.nextBytes(noise);
+            byte[] incompressible = roundTrip(noise);
+            LOG.info("{} bytes: text -> {}, random -> {}", length, compressed.length, incompressible.length);
+            Assert.assertTrue(incompressible.length <= SnappyBlock.maxCompressedLength(length));
+        }
+    }
+
+    @Test
+    public void testLongRuns() throws IOException {
+        byte[] zeros = new byte[200000];
+        Assert.assertTrue(roundTrip(zeros).length < 20000);
+
+        byte[] pattern = new byte[100000];
+        for (int i = 0; i < pattern.length; i++) {
+            pattern[i] = (byte) (i % 3);
+        }
+        roundTrip(pattern);
+
+        byte[] mixed = new byte[5000];
+        new Random(1).nextBytes(mixed);
+        System.arraycopy(mixed, 0, mixed, 2500, 2500);
+        Assert.assertTrue(roundTrip(mixed).length < 3000);
+    }
+
+    /**
+     * 按格式手写的块，覆盖三种copy
+     */
+    @Test
+    public void testFormat() throws IOException {
+        // literal "abc"，1字节offset、长度9的copy，literal "hello"
+        byte[] block = {17, 0x08, 'a', 'b', 'c', 0x15, 3, 0x10, 'h', 'e', 'l', 'l', 'o'};
+        byte[] out = new byte[17];
+        Assert.assertEquals(17, SnappyBlock.decompress(block, 0, block.length, out, 0, out.length));
+        Assert.assertEquals("abcabcabcabchello", new String(out));
+
+        // literal "ab"，2字节offset、长度3的copy，4字节offset、长度3的copy
+        block = new byte[]{8, 0x04, 'a', 'b', 0x0a, 2, 0, 0x0b, 4, 0, 0, 0};
+        out = new byte[8];
+        Assert.assertEquals(8, SnappyBlock.decompress(block, 0, block.length, out, 0, out.length));
+        Assert.assertEquals("abababab", new String(out));
+
+        // 长度需要两个字节的varint
+        byte[] data = new byte[300];
+        byte[] compressed = roundTrip(data);
+        Assert.assertEquals((byte) (300 & 0x7f | 0x80), compressed[0]);
+        Assert.assertEquals((byte) (300 >>> 7), compressed[1]);
+    }
+
+    @Test
+    public void testMalformed() {
+        byte[] data = new byte[10000];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 100);
+        }
+        byte[] compressed = new byte[SnappyBlock.maxCompressedLength(data.length)];
+        int n = SnappyBlock.compress(data, 0, data.length, compressed, 0, hashTable);
+
+        expectFailure(compressed, n - 1, data.length);                    // 截断
+        expectFailure(compressed, n, data.length - 1);                    // 输出空间不够
+        expectFailure(new byte[]{5, 0x00, 'a', 0x01, 5}, 5, 100);         // offset超出已输出的数据
+        expectFailure(new byte[]{5, 0x00, 'a', 0x01, 0}, 5, 100);         // offset为0
+        expectFailure(new byte[]{5, 0x10, 'a'}, 3, 100);                  // literal被截断
+        expectFailure(new byte[]{(byte) 0x80, (byte) 0x80}, 2, 100);      // 长度被截断
+    }
+
+    private static void expectFailure(byte[] block, int len, int destLen) {
+        try {
+            SnappyBlock.decompress(block, 0, len, new byte[destLen], 0, destLen);
+            Assert.fail("malformed block should be rejected");
+        } catch (IOException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+    }
+}
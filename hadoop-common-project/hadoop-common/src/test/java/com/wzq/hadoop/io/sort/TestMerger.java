@@ -0,0 +1,125 @@
+package com.wzq.hadoop.io.sort;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.FileSystem;
+import com.wzq.hadoop.fs.Path;
+import com.wzq.hadoop.io.WritableComparator;
+import com.wzq.hadoop.io.basic.IntWritable;
+import com.wzq.hadoop.io.basic.Text;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 测试多个溢写文件的K路归并
+ */
+public class TestMerger {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestMerger.class);
+
+    private static final int RECORDS = 60000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Configuration conf;
+    private FileSystem fs;
+    private Path spillDir;
+    private Path tmpDir;
+
+    @Before
+    public void setUp() throws IOException {
+        conf = new Configuration();
+        conf.setInt(SortBuffer.IO_SORT_MB_KEY, 1);
+        fs = FileSystem.getLocal(conf);
+        spillDir = new Path(folder.newFolder("spill").getAbsolutePath());
+        tmpDir = new Path(folder.newFolder("tmp").getAbsolutePath());
+    }
+
+    @Test
+    public void testSinglePass() throws IOException {
+        List<Path> spills = spill(RECORDS);
+        conf.setInt(Merger.IO_SORT_FACTOR_KEY, spills.size());
+        Merger merger = checkMerge(spills, false);
+        Assert.assertEquals(0, merger.getIntermediateMerges());
+        Assert.assertEquals(RECORDS, merger.getRecordsMerged());
+        for (Path spill : spills) {
+            Assert.assertTrue(fs.exists(spill));
+        }
+    }
+
+    @Test
+    public void testMultiPass() throws IOException {
+        List<Path> spills = spill(RECORDS);
+        conf.setInt(Merger.IO_SORT_FACTOR_KEY, 3);
+        long inputBytes = 0;
+        for (Path spill : spills) {
+            inputBytes += fs.getLength(spill);
+        }
+        Merger merger = checkMerge(spills, true);
+        LOG.info("{} spills, {} intermediate merges, {} records merged, {} bytes merged",
+                spills.size(), merger.getIntermediateMerges(), merger.getRecordsMerged(), merger.getBytesMerged());
+        Assert.assertTrue(merger.getIntermediateMerges() > 1);
+        // 中间归并的记录会被读多次
+        Assert.assertTrue(merger.getRecordsMerged() > RECORDS);
+        Assert.assertTrue(merger.getBytesMerged() > inputBytes);
+        Assert.assertEquals(inputBytes + merger.getBytesWritten(), merger.getBytesMerged());
+        for (Path spill : spills) {
+            Assert.assertFalse(fs.exists(spill));
+        }
+        Assert.assertEquals(0, folder.getRoot().toPath().resolve("tmp").toFile().list().length);
+    }
+
+    @Test
+    public void testNoSegments() throws IOException {
+        Merger merger = new Merger(conf, fs, WritableComparator.get(IntWritable.class), tmpDir);
+        RawKeyValueIterator records = merger.merge(new ArrayList<>(), true);
+        Assert.assertFalse(records.next());
+        records.close();
+    }
+
+    private List<Path> spill(int records) throws IOException {
+        Random random = new Random(records);
+        SortBuffer<IntWritable, Text> buffer = new SortBuffer<>(conf, IntWritable.class, Text.class, spillDir);
+        IntWritable key = new IntWritable();
+        Text value = new Text();
+        for (int i = 0; i < records; i++) {
+            // 有重复的key
+            key.set(random.nextInt(records / 2));
+            value.set("value-" + key.get());
+            buffer.collect(key, value);
+        }
+        List<Path> spills = new ArrayList<>(buffer.flush());
+        buffer.close();
+        return spills;
+    }
+
+    private Merger checkMerge(List<Path> spills, boolean deleteInputs) throws IOException {
+        Merger merger = new Merger(conf, fs, WritableComparator.get(IntWritable.class), tmpDir);
+        RawKeyValueIterator records = merger.merge(spills, deleteInputs);
+        IntWritable key = new IntWritable();
+        Text value = new Text();
+        int previous = Integer.MIN_VALUE;
+        int count = 0;
+        while (records.next()) {
+            key.readFields(records.getKey());
+            value.readFields(records.getValue());
+            Assert.assertTrue(previous <= key.get());
+            Assert.assertEquals("value-" + key.get(), value.toString());
+            previous = key.get();
+            count++;
+        }
+        records.close();
+        Assert.assertEquals(RECORDS, count);
+        return merger;
+    }
+}
@@ -0,0 +1,137 @@
+package com.wzq.hadoop.io.sort;
+
+import com.wzq.hadoop.conf.Configuration;
+import com.wzq.hadoop.fs.FileSystem;
+import com.wzq.hadoop.fs.Path;
+import com.wzq.hadoop.io.DataInputBuffer;
+import com.wzq.hadoop.io.basic.IntWritable;
+import com.wzq.hadoop.io.basic.Text;
+import com.wzq.hadoop.util.HeapSort;
+import com.wzq.hadoop.util.IndexedSorter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 测试SortBuffer的排序与溢写
+ */
+public class TestSortBuffer {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestSortBuffer.class);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Configuration conf;
+    private Path spillDir;
+
+    @Before
+    public void setUp() {
+        conf = new Configuration();
+        conf.setInt(SortBuffer.IO_SORT_MB_KEY, 1);
+        spillDir = new Path(folder.getRoot().getAbsolutePath());
+    }
+
+    @Test
+    public void testSortAndSpill() throws IOException {
+        checkSortAndSpill(200000);
+    }
+
+    @Test
+    public void testHeapSort() throws IOException {
+        conf.setClass(SortBuffer.MAP_SORT_CLASS_KEY, HeapSort.class, IndexedSorter.class);
+        checkSortAndSpill(50000);
+    }
+
+    private void checkSortAndSpill(int records) throws IOException {
+        Random random = new Random(records);
+        List<Integer> expected = new ArrayList<>(records);
+        SortBuffer<IntWritable, Text> buffer =
+                new SortBuffer<>(conf, IntWritable.class, Text.class, spillDir);
+        IntWritable key = new IntWritable();
+        Text value = new Text();
+        for (int i = 0; i < records; i++) {
+            int k = random.nextInt();
+            key.set(k);
+            value.set("value-" + k);
+            buffer.collect(key, value);
+            expected.add(k);
+        }
+        List<Path> spills = buffer.flush();
+        buffer.close();
+        LOG.info("{} records, {} spills, {} bytes", buffer.getRecordsCollected(),
+                buffer.getSpillCount(), buffer.getBytesSpilled());
+        Assert.assertEquals(records, buffer.getRecordsCollected());
+        Assert.assertTrue("expected more than one spill", spills.size() > 1);
+
+        // 每个溢写文件内部有序，所有文件的记录合起来与写入的记录相同
+        List<Integer> actual = new ArrayList<>(records);
+        FileSystem fs = FileSystem.getLocal(conf);
+        DataInputBuffer keyIn = new DataInputBuffer();
+        DataInputBuffer valueIn = new DataInputBuffer();
+        for (Path spill : spills) {
+            IFile.Reader reader = new IFile.Reader(conf, fs, spill);
+            int previous = Integer.MIN_VALUE;
+            while (reader.nextRawKey(keyIn)) {
+                key.readFields(keyIn);
+                reader.nextRawValue(valueIn);
+                value.readFields(valueIn);
+                Assert.assertTrue(previous <= key.get());
+                Assert.assertEquals("value-" + key.get(), value.toString());
+                previous = key.get();
+                actual.add(key.get());
+            }
+            reader.close();
+        }
+        Collections.sort(expected);
+        Collections.sort(actual);
+        Assert.assertEquals(expected, actual);
+    }
+
+    @Test
+    public void testRecordLargerThanBuffer() throws IOException {
+        SortBuffer<Text, IntWritable> buffer =
+                new SortBuffer<>(conf, Text.class, IntWritable.class, spillDir);
+        buffer.collect(new Text("b"), new IntWritable(1));
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < (2 << 20); i++) {
+            sb.append('a');
+        }
+        Text large = new Text(sb.toString());
+        buffer.collect(large, new IntWritable(2));
+        buffer.collect(new Text("a"), new IntWritable(3));
+        List<Path> spills = buffer.flush();
+        buffer.close();
+        Assert.assertEquals(3, spills.size());
+
+        IFile.Reader reader = new IFile.Reader(conf, FileSystem.getLocal(conf), spills.get(1));
+        DataInputBuffer keyIn = new DataInputBuffer();
+        DataInputBuffer valueIn = new DataInputBuffer();
+        Assert.assertTrue(reader.nextRawKey(keyIn));
+        Text key = new Text();
+        key.readFields(keyIn);
+        Assert.assertEquals(large, key);
+        reader.nextRawValue(valueIn);
+        IntWritable value = new IntWritable();
+        value.readFields(valueIn);
+        Assert.assertEquals(2, value.get());
+        Assert.assertFalse(reader.nextRawKey(keyIn));
+        reader.close();
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidSortMb() throws IOException {
+        conf.setInt(SortBuffer.IO_SORT_MB_KEY, 4096);
+        new SortBuffer<>(conf, IntWritable.class, Text.class, spillDir);
+    }
+}
@@ -0,0 +1,81 @@
+package com.wzq.hadoop.util;
+
+import com.wzq.hadoop.fs.ChecksumException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Checksum;
+
+/**
+ * 测试CRC32C的实现，以及按chunk计算、校验校验和
+ */
+public class TestDataChecksum {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestDataChecksum.class);
+
+    @Test
+    public void testCrc32C() {
+        // RFC 3720中的测试向量
+        Checksum crc = new PureJavaCrc32C();
+        byte[] check = "123456789".getBytes(StandardCharsets.US_ASCII);
+        crc.update(check, 0, check.length);
+        Assert.assertEquals(0xE3069283L, crc.getValue());
+
+        crc.reset();
+        crc.update(new byte[32], 0, 32);
+        Assert.assertEquals(0x8A9136AAL, crc.getValue());
+
+        byte[] ones = new byte[32];
+        java.util.Arrays.fill(ones, (byte) 0xff);
+        crc.reset();
+        crc.update(ones, 0, ones.length);
+        Assert.assertEquals(0x62A8AB43L, crc.getValue());
+
+        // 按8字节一次与逐字节计算的结果一致，与JDK的实现（如果有）一致
+        Random random = new Random(0);
+        for (int len = 0; len < 100; len++) {
+            byte[] data = new byte[len + 3];
+            random.nextBytes(data);
+            Checksum bulk = new PureJavaCrc32C();
+            bulk.update(data, 3, len);
+            Checksum single = new PureJavaCrc32C();
+            for (int i = 3; i < data.length; i++) {
+                single.update(data[i]);
+            }
+            Assert.assertEquals(single.getValue(), bulk.getValue());
+            Checksum jdk = DataChecksum.newCrc32C();
+            jdk.update(data, 3, len);
+            Assert.assertEquals(jdk.getValue(), bulk.getValue());
+        }
+        LOG.info("CRC32C implementation: {}", DataChecksum.newCrc32C().getClass().getName());
+    }
+
+    @Test
+    public void testChunkedSums() throws ChecksumException {
+        for (DataChecksum.Type type : DataChecksum.Type.values()) {
+            DataChecksum checksum = DataChecksum.newDataChecksum(type, 512);
+            byte[] data = new byte[512 * 5 + 100];
+            new Random(1).nextBytes(data);
+            byte[] sums = new byte[checksum.getChecksumSize(data.length)];
+            Assert.assertEquals(6 * type.size, sums.length);
+            checksum.calculateChunkedSums(data, 0, data.length, sums, 0);
+            checksum.verifyChunkedSums(data, 0, data.length, sums, 0, "data", 0);
+            if (type == DataChecksum.Type.NULL) {
+                continue;
+            }
+
+            data[512 * 3 + 7] ^= 1;
+            try {
+                checksum.verifyChunkedSums(data, 0, data.length, sums, 0, "data", 10000);
+                Assert.fail("corrupt chunk should be detected");
+            } catch (ChecksumException e) {
+                LOG.info("expected: {}", e.getMessage());
+                Assert.assertEquals(10000 + 512 * 3, e.getPos());
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.wzq.hadoop.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 测试QuickSort与HeapSort
+ */
+public class TestIndexedSort {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestIndexedSort.class);
+
+    private final Random random = new Random(0xC0FFEE);
+
+    @Test
+    public void testQuickSort() {
+        sortAllEqual(new QuickSort());
+        sortSorted(new QuickSort());
+        sortRandom(new QuickSort());
+    }
+
+    @Test
+    public void testHeapSort() {
+        sortAllEqual(new HeapSort());
+        sortSorted(new HeapSort());
+        sortRandom(new HeapSort());
+    }
+
+    private void sortAllEqual(IndexedSorter sorter) {
+        int[] values = new int[500];
+        Arrays.fill(values, 7);
+        check(sorter, values);
+    }
+
+    private void sortSorted(IndexedSorter sorter) {
+        int[] values = new int[1000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i;
+        }
+        check(sorter, values);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = values.length - i;
+        }
+        check(sorter, values);
+    }
+
+    private void sortRandom(IndexedSorter sorter) {
+        for (int n : new int[]{0, 1, 12, 13, 100, 10000}) {
+            int[] values = new int[n];
+            for (int i = 0; i < n; i++) {
+                // 有大量重复值
+                values[i] = random.nextInt(Math.max(1, n / 4));
+            }
+            check(sorter, values);
+        }
+    }
+
+    private void check(IndexedSorter sorter, int[] values) {
+        int[] expected = values.clone();
+        Arrays.sort(expected);
+        SampleSortable sortable = new SampleSortable(values);
+        sorter.sort(sortable, 0, values.length);
+        LOG.debug("{} sorted {} values", sorter.getClass().getSimpleName(), values.length);
+        Assert.assertArrayEquals(expected, sortable.values);
+    }
+
+    private static class SampleSortable implements IndexedSortable {
+        private final int[] values;
+
+        SampleSortable(int[] values) {
+            this.values = values;
+        }
+
+        @Override
+        public int compare(int i, int j) {
+            return Integer.compare(values[i], values[j]);
+        }
+
+        @Override
+        public void swap(int i, int j) {
+            int tmp = values[i];
+            values[i] = values[j];
+            values[j] = tmp;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.wzq.hadoop.util.bloom;
+
+import com.wzq.hadoop.io.DataInputBuffer;
+import com.wzq.hadoop.io.DataOutputBuffer;
+import com.wzq.hadoop.io.basic.LongWritable;
+import com.wzq.hadoop.io.basic.Text;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+/**
+ * 测试BloomFilter与CountingBloomFilter的判定、序列化与合并
+ */
+public class TestBloomFilter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TestBloomFilter.class);
+
+    private static final int ENTRIES = 10000;
+    private static final double FPP = 0.01;
+
+    private static Text key(int i) {
+        return new Text("key-" + i);
+    }
+
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter filter = BloomFilter.create(ENTRIES, FPP);
+        for (int i = 0; i < ENTRIES; i++) {
+            filter.add(key(i));
+        }
+        for (int i = 0; i < ENTRIES; i++) {
+            Assert.assertTrue(filter.membershipTest(key(i)));
+        }
+
+        // 误判率应该接近期望值
+        int falsePositives = 0;
+        for (int i = ENTRIES; i < ENTRIES * 11; i++) {
+            if (filter.membershipTest(key(i))) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / (ENTRIES * 10);
+        LOG.info("{}: false positive rate {}", filter, rate);
+        Assert.assertTrue("false positive rate " + rate, rate < FPP * 2);
+    }
+
+    @Test
+    public void testRawBytes() throws IOException {
+        BloomFilter filter = new BloomFilter(1 << 16, 5);
+        LongWritable key = new LongWritable(42);
+        filter.add(key);
+
+        // 序列化后的字节与key本身得到相同的结果
+        DataOutputBuffer out = new DataOutputBuffer();
+        out.writeInt(7);
+        key.write(out);
+        Assert.assertTrue(filter.membershipTest(out.getData(), 4, out.getLength() - 4));
+        Assert.assertFalse(filter.membershipTest(new LongWritable(43)));
+    }
+
+    @Test
+    public void testWritable() throws IOException {
+        BloomFilter filter = BloomFilter.create(ENTRIES, FPP);
+        CountingBloomFilter counting = new CountingBloomFilter(filter.getVectorSize(), filter.getNbHash());
+        for (int i = 0; i < ENTRIES; i++) {
+            filter.add(key(i));
+            counting.add(key(i));
+        }
+
+        DataOutputBuffer out = new DataOutputBuffer();
+        filter.write(out);
+        counting.write(out);
+
+        DataInputBuffer in = new DataInputBuffer();
+        in.reset(out.getData(), out.getLength());
+        BloomFilter filterCopy = new BloomFilter();
+        filterCopy.readFields(in);
+        CountingBloomFilter countingCopy = new CountingBloomFilter();
+        countingCopy.readFields(in);
+
+        Assert.assertEquals(filter, filterCopy);
+        Assert.assertEquals(counting, countingCopy);
+        Assert.assertEquals(filter, counting.toBloomFilter());
+        for (int i = 0; i < ENTRIES; i++) {
+            Assert.assertTrue(filterCopy.membershipTest(key(i)));
+            Assert.assertTrue(countingCopy.membershipTest(key(i)));
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        int vectorSize = Filter.optimalVectorSize(ENTRIES, FPP);
+        int nbHash = Filter.optimalNbHash(ENTRIES, vectorSize);
+        BloomFilter all = new BloomFilter(vectorSize, nbHash);
+        CountingBloomFilter countingAll = new CountingBloomFilter(vectorSize, nbHash);
+
+        // 分4份并行构建，合并后与整体构建的结果相同
+        BloomFilter[] parts = new BloomFilter[4];
+        CountingBloomFilter[] countingParts = new CountingBloomFilter[4];
+        for (int p = 0; p < parts.length; p++) {
+            parts[p] = new BloomFilter(vectorSize, nbHash);
+            countingParts[p] = new CountingBloomFilter(vectorSize, nbHash);
+        }
+        for (int i = 0; i < ENTRIES; i++) {
+            all.add(key(i));
+            countingAll.add(key(i));
+            parts[i % 4].add(key(i));
+            countingParts[i % 4].add(key(i));
+        }
+        for (int p = 1; p < parts.length; p++) {
+            parts[0].or(parts[p]);
+            countingParts[0].or(countingParts[p]);
+        }
+        Assert.assertEquals(all, parts[0]);
+        Assert.assertEquals(countingAll, countingParts[0]);
+
+        try {
+            all.or(new BloomFilter(vectorSize + 1, nbHash));
+            Assert.fail("filters of different sizes cannot be merged");
+        } catch (IllegalArgumentException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+        try {
+            all.or(countingAll);
+            Assert.fail("filters of different types cannot be merged");
+        } catch (IllegalArgumentException e) {
+            LOG.info("expected: {}", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCountingDelete() {
+        CountingBloomFilter filter = new CountingBloomFilter(1 << 16, 4);
+        filter.add(key(1));
+        filter.add(key(1));
+        filter.add(key(2));
+        Assert.assertEquals(2, filter.approximateCount(key(1)));
+        Assert.assertEquals(1, filter.approximateCount(key(2)));
+
+        filter.delete(key(1));
+        Assert.assertTrue(filter.membershipTest(key(1)));
+        filter.delete(key(1));
+        Assert.assertFalse(filter.membershipTest(key(1)));
+        Assert.assertTrue(filter.membershipTest(key(2)));
+
+        // 计数器到15之后不再变化
+        for (int i = 0; i < 20; i++) {
+            filter.add(key(3));
+        }
+        Assert.assertEquals(15, filter.approximateCount(key(3)));
+        filter.delete(key(3));
+        Assert.assertEquals(15, filter.approximateCount(key(3)));
+    }
+}